@@ -2,6 +2,7 @@ import me.lusory.relate.gradle.DependencyVersions
 
 plugins {
     id("io.freefair.lombok") version "6.4.1"
+    id("me.champeau.jmh") version "0.6.6"
     `java-library`
 }
 
@@ -18,6 +19,7 @@ dependencies {
     implementation(group = "net.bytebuddy", name = "byte-buddy", version = DependencyVersions.BYTEBUDDY)
     implementation(group = "net.bytebuddy", name = "byte-buddy-agent", version = DependencyVersions.BYTEBUDDY)
     implementation(group = "io.github.classgraph", name = "classgraph", version = DependencyVersions.CLASSGRAPH)
+    compileOnly(group = "io.micrometer", name = "micrometer-core", version = DependencyVersions.MICROMETER)
 
     // R2DBC drivers
 
@@ -29,13 +31,26 @@ dependencies {
 
     testImplementation(group = "org.springframework.boot", name = "spring-boot-starter-test", version = DependencyVersions.SPRING_BOOT)
     testImplementation(group = "org.springframework.boot", name = "spring-boot-starter-data-r2dbc", version = DependencyVersions.SPRING_BOOT)
+    testImplementation(group = "io.micrometer", name = "micrometer-core", version = DependencyVersions.MICROMETER)
     testRuntimeOnly(group = "io.r2dbc", name = "r2dbc-h2", version = DependencyVersions.H2)
+
+    // benchmarks
+
+    jmh(group = "org.springframework.boot", name = "spring-boot-starter-data-r2dbc", version = DependencyVersions.SPRING_BOOT)
+    jmh(group = "io.r2dbc", name = "r2dbc-h2", version = DependencyVersions.H2)
 }
 
 tasks.withType<Test> {
     useJUnitPlatform()
 }
 
+jmh {
+    jmhVersion.set(DependencyVersions.JMH)
+    // allocation rate
+    profilers.add("gc")
+    resultFormat.set("JSON")
+}
+
 java.toolchain {
     languageVersion.set(JavaLanguageVersion.of(8))
 }
\ No newline at end of file
@@ -5,6 +5,8 @@ object DependencyVersions {
     const val COMMONS_LANG3 = "3.12.0"
     const val BYTEBUDDY = "1.12.8"
     const val CLASSGRAPH = "4.8.141"
+    const val JMH = "1.34"
+    const val MICROMETER = "1.8.3"
 
     // R2DBC drivers
 
@@ -0,0 +1,61 @@
+package me.lusory.relate.benchmark;
+
+import me.lusory.relate.LcReactiveDataRelationalClient;
+import me.lusory.relate.benchmark.model.Author;
+import me.lusory.relate.benchmark.model.Book;
+import me.lusory.relate.benchmark.model.Chapter;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Application started by the benchmarks, using an in-memory H2 database. The schema is created at
+ * startup from the entities of the model package.
+ */
+@SpringBootApplication(scanBasePackages = "me.lusory.relate.benchmark")
+public class BenchmarkApplication {
+
+    public static ConfigurableApplicationContext start(String databaseName) {
+        return new SpringApplicationBuilder(BenchmarkApplication.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .properties(
+                        "spring.r2dbc.url=r2dbc:h2:mem:///"
+                                + databaseName
+                                + ";DB_CLOSE_DELAY=-1;",
+                        "spring.r2dbc.username=sa",
+                        "logging.level.root=WARN")
+                .run();
+    }
+
+    public static LcReactiveDataRelationalClient getClient(ConfigurableApplicationContext context) {
+        return context.getBean(LcReactiveDataRelationalClient.class);
+    }
+
+    /**
+     * Create authors, each with the given number of books, each with the given number of chapters.
+     */
+    public static List<Author> createAuthors(
+            int authors, int booksPerAuthor, int chaptersPerBook) {
+        List<Author> list = new ArrayList<>(authors);
+        for (int i = 0; i < authors; ++i) {
+            Author author = new Author("author " + i, i);
+            author.setBooks(new HashSet<>());
+            for (int j = 0; j < booksPerAuthor; ++j) {
+                Book book = new Book("book " + i + "." + j, 100 + j, author);
+                book.setChapters(new HashSet<>());
+                for (int k = 0; k < chaptersPerBook; ++k) {
+                    book.getChapters().add(new Chapter("chapter " + k, k, book));
+                }
+                author.getBooks().add(book);
+            }
+            list.add(author);
+        }
+        return list;
+    }
+}
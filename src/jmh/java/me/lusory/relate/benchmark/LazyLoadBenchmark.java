@@ -0,0 +1,75 @@
+package me.lusory.relate.benchmark;
+
+import me.lusory.relate.LcReactiveDataRelationalClient;
+import me.lusory.relate.benchmark.model.Author;
+import me.lusory.relate.benchmark.model.Book;
+import me.lusory.relate.query.SelectQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lazy loading of N entities referenced by foreign keys, which are not loaded when selecting the
+ * entities holding the foreign keys.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LazyLoadBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int entities;
+
+    private ConfigurableApplicationContext context;
+    private LcReactiveDataRelationalClient client;
+    private List<Author> toLoad;
+
+    @Setup
+    public void setup() {
+        context = BenchmarkApplication.start("lazyloadbench");
+        client = BenchmarkApplication.getClient(context);
+        client.save(BenchmarkApplication.createAuthors(entities, 1, 0)).then().block();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Select the books without their authors, so the next invocation has N authors to load.
+     */
+    @Setup(Level.Invocation)
+    public void selectBooks() {
+        toLoad = new ArrayList<>(entities);
+        for (Book book : SelectQuery.from(Book.class, "book").execute(client).toIterable()) {
+            toLoad.add(book.getAuthor());
+        }
+    }
+
+    @Benchmark
+    public List<Author> lazyLoad() {
+        return client.lazyLoad(
+                        toLoad, client.getMappingContext().getRequiredPersistentEntity(Author.class))
+                .collectList()
+                .block();
+    }
+}
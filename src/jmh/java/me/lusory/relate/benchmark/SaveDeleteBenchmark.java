@@ -0,0 +1,86 @@
+package me.lusory.relate.benchmark;
+
+import me.lusory.relate.LcReactiveDataRelationalClient;
+import me.lusory.relate.benchmark.model.Author;
+import me.lusory.relate.query.SelectQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insert, update and delete of N entities with their books and chapters, covering the save and
+ * delete processors and the execution of an operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SaveDeleteBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int entities;
+
+    private ConfigurableApplicationContext context;
+    private LcReactiveDataRelationalClient client;
+    private List<Author> saved;
+
+    @Setup
+    public void setup() {
+        context = BenchmarkApplication.start("savebench");
+        client = BenchmarkApplication.getClient(context);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Insert the entities to update or delete by the next invocation.
+     */
+    @Setup(Level.Invocation)
+    public void insertEntities() {
+        saved =
+                SelectQuery.from(Author.class, "author")
+                        .execute(client)
+                        .collectList()
+                        .flatMap(existing -> client.delete(existing))
+                        .thenMany(client.save(BenchmarkApplication.createAuthors(entities, 2, 2)))
+                        .collectList()
+                        .block();
+    }
+
+    @Benchmark
+    public List<Author> insert() {
+        return client.save(BenchmarkApplication.createAuthors(entities, 2, 2)).collectList().block();
+    }
+
+    @Benchmark
+    public List<Author> update() {
+        for (Author author : saved) {
+            author.setRank(author.getRank() + 1);
+        }
+        return client.save(saved).collectList().block();
+    }
+
+    @Benchmark
+    public void delete() {
+        client.delete(saved).block();
+    }
+}
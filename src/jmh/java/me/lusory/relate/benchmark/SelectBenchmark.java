@@ -0,0 +1,98 @@
+package me.lusory.relate.benchmark;
+
+import me.lusory.relate.LcReactiveDataRelationalClient;
+import me.lusory.relate.benchmark.model.Author;
+import me.lusory.relate.query.SelectQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Select of entities with joins, covering SQL rendering, execution and mapping of rows, and
+ * paginated select needing to pre-select the ids of the root entities.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SelectBenchmark {
+
+    @Param({"0", "1", "2"})
+    private int joins;
+
+    @Param({"100"})
+    private int authors;
+
+    private ConfigurableApplicationContext context;
+    private LcReactiveDataRelationalClient client;
+
+    @Setup
+    public void setup() {
+        context = BenchmarkApplication.start("selectbench");
+        client = BenchmarkApplication.getClient(context);
+        client.save(BenchmarkApplication.createAuthors(authors, 5, 3)).then().block();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    private SelectQuery<Author> createQuery() {
+        SelectQuery<Author> query = SelectQuery.from(Author.class, "author");
+        if (joins > 0) {
+            query.join("author", "books", "book");
+        }
+        if (joins > 1) {
+            query.join("book", "chapters", "chapter");
+        }
+        return query;
+    }
+
+    @Benchmark
+    public List<Author> select() {
+        return createQuery().execute(client).collectList().block();
+    }
+
+    @Benchmark
+    public List<Author> selectReadOnly() {
+        return createQuery().readOnly().execute(client).collectList().block();
+    }
+
+    @Benchmark
+    public List<Object[]> selectProjection() {
+        SelectQuery<Author> query = createQuery().select("author", "name");
+        if (joins > 0) {
+            query.select("book", "title");
+        }
+        if (joins > 1) {
+            query.select("chapter", "title", "chapterTitle");
+        }
+        return query.executeProjection(client, Object[].class).collectList().block();
+    }
+
+    @Benchmark
+    public List<Author> selectWithPreSelect() {
+        return createQuery()
+                .orderBy("author", "rank", true)
+                .limit(authors / 2, 20)
+                .execute(client)
+                .collectList()
+                .block();
+    }
+}
@@ -0,0 +1,30 @@
+package me.lusory.relate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup of the application, including the scan and rewrite of the entity classes by the
+ * EntityClassRewriter and the creation of the schema.
+ *
+ * <p>Entity classes are rewritten only once by JVM, so each measurement is done in a new JVM.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class StartupBenchmark {
+
+    @Benchmark
+    public void startup() {
+        BenchmarkApplication.start("startupbench").close();
+    }
+}
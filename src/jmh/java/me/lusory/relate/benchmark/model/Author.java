@@ -0,0 +1,31 @@
+package me.lusory.relate.benchmark.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import me.lusory.relate.annotations.ForeignTable;
+import me.lusory.relate.annotations.GeneratedValue;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.util.Set;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@Table("benchAuthor")
+public class Author {
+    @Id
+    @GeneratedValue
+    private Long id;
+    private String name;
+    private int rank;
+
+    @ForeignTable(joinKey = "author")
+    private Set<Book> books;
+
+    public Author(String name, int rank) {
+        this.name = name;
+        this.rank = rank;
+    }
+}
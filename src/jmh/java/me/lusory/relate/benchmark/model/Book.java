@@ -0,0 +1,36 @@
+package me.lusory.relate.benchmark.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import me.lusory.relate.annotations.ForeignKey;
+import me.lusory.relate.annotations.ForeignTable;
+import me.lusory.relate.annotations.GeneratedValue;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.util.Set;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@Table("benchBook")
+public class Book {
+    @Id
+    @GeneratedValue
+    private Long id;
+    private String title;
+    private int pages;
+
+    @ForeignKey(optional = true, onForeignDeleted = ForeignKey.OnForeignDeleted.SET_TO_NULL)
+    private Author author;
+
+    @ForeignTable(joinKey = "book")
+    private Set<Chapter> chapters;
+
+    public Book(String title, int pages, Author author) {
+        this.title = title;
+        this.pages = pages;
+        this.author = author;
+    }
+}
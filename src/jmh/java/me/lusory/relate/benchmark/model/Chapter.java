@@ -0,0 +1,30 @@
+package me.lusory.relate.benchmark.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import me.lusory.relate.annotations.ForeignKey;
+import me.lusory.relate.annotations.GeneratedValue;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@Table("benchChapter")
+public class Chapter {
+    @Id
+    @GeneratedValue
+    private Long id;
+    private String title;
+    private int number;
+
+    @ForeignKey
+    private Book book;
+
+    public Chapter(String title, int number, Book book) {
+        this.title = title;
+        this.number = number;
+        this.book = book;
+    }
+}
@@ -19,8 +19,11 @@ import net.bytebuddy.description.field.FieldDescription;
 import net.bytebuddy.description.method.MethodDescription;
 import net.bytebuddy.description.type.TypeDescription;
 import net.bytebuddy.dynamic.DynamicType;
+import net.bytebuddy.implementation.FieldAccessor;
 import net.bytebuddy.implementation.MethodDelegation;
 import net.bytebuddy.implementation.bind.annotation.*;
+import net.bytebuddy.implementation.bytecode.assign.Assigner;
+import net.bytebuddy.matcher.ElementMatcher;
 import net.bytebuddy.matcher.ElementMatchers;
 import net.bytebuddy.pool.TypePool;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -39,6 +42,10 @@ import reactor.core.publisher.Mono;
 import reactor.util.function.Tuple4;
 import reactor.util.function.Tuples;
 
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
@@ -261,11 +268,12 @@ public class EntityClassRewriter implements SpringApplicationRunListener {
         final Set<DynamicType.Builder<?>> classBuilders = new HashSet<>();
         // process the entity classes
         for (final ClassInfo classInfo : entityClasses.values()) {
-            classBuilders.add(processEntityClassBuilder(byteBuddy.subclass(contextTypePool.describe(classInfo.getName()).resolve())));
+            final TypeDescription entityType = contextTypePool.describe(classInfo.getName()).resolve();
+            classBuilders.add(processEntityClassBuilder(byteBuddy.subclass(entityType), entityType));
         }
         // process the join table class builders
         for (final DynamicType.Builder<Object> builder : joinClasses.values()) {
-            classBuilders.add(processEntityClassBuilder(builder));
+            classBuilders.add(processEntityClassBuilder(builder, builder.toTypeDescription()));
         }
         // process join table accessors
         for (final Map.Entry<String, Map<String, JoinTableInfo>> classEntry : joinTableFields.entrySet()) {
@@ -331,18 +339,81 @@ public class EntityClassRewriter implements SpringApplicationRunListener {
                 || annotations.isAnnotationPresent(ForeignKey.class);
     }
 
-    private <T> DynamicType.Builder<T> processEntityClassBuilder(DynamicType.Builder<T> builder) {
-        // add state attribute
+    /**
+     * Return the names of the fields saved by {@link EntityState} to detect modifications, sorted
+     * by name: the index of a field is its ordinal, as given by {@link LcEntityTypeInfo#getFieldOrdinal(String)}.
+     */
+    private List<String> getFieldOrdinals(TypeDescription entityType) {
+        final List<String> names = new ArrayList<>();
+        for (final FieldDescription field : entityType.getDeclaredFields()) {
+            final AnnotationList annotations = field.getDeclaredAnnotations();
+            if ("_rlState".equals(field.getName())
+                    || field.isSynthetic()
+                    || annotations.isAnnotationPresent(Transient.class)
+                    || annotations.isAnnotationPresent(Autowired.class)
+                    || annotations.isAnnotationPresent(Value.class)) {
+                continue;
+            }
+            names.add(field.getName());
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    private static Class<?> getSetterAdvice(TypeDescription fieldType) {
+        if (!fieldType.isPrimitive()) {
+            return ObjectSetterMethodAdvice.class;
+        }
+        switch (fieldType.getName()) {
+            case "boolean":
+                return BooleanSetterMethodAdvice.class;
+            case "byte":
+                return ByteSetterMethodAdvice.class;
+            case "short":
+                return ShortSetterMethodAdvice.class;
+            case "int":
+                return IntSetterMethodAdvice.class;
+            case "long":
+                return LongSetterMethodAdvice.class;
+            case "float":
+                return FloatSetterMethodAdvice.class;
+            case "double":
+                return DoubleSetterMethodAdvice.class;
+            default:
+                return CharSetterMethodAdvice.class;
+        }
+    }
+
+    private <T> DynamicType.Builder<T> processEntityClassBuilder(DynamicType.Builder<T> builder, TypeDescription entityType) {
+        final List<String> ordinals = getFieldOrdinals(entityType);
+        // add state attribute, with its accessors to avoid reflection
         builder = builder.defineField("_rlState", EntityState.class, Modifier.PUBLIC)
-                .annotateField(AnnotationDescription.Builder.ofType(Transient.class).build());
+                .annotateField(AnnotationDescription.Builder.ofType(Transient.class).build())
+                .implement(StatefulEntity.class)
+                .intercept(FieldAccessor.ofField("_rlState"));
 
         for (final FieldDescription fieldDescription : builder.toTypeDescription().getDeclaredFields()) {
             if (!isPersistent(fieldDescription)) {
                 continue;
             }
 
-            // persistent fields accessor
-            builder = builder.visit(SETTER_METHOD_ADVICE.on(ElementMatchers.isSetter(fieldDescription.getName()))); // TODO: perhaps expand this to account for type
+            // persistent fields accessor, giving the ordinal and the value without boxing when possible
+            final int ordinal = ordinals.indexOf(fieldDescription.getName());
+            final ElementMatcher.Junction<MethodDescription> setter = ElementMatchers.isSetter(fieldDescription.getName());
+            if (ordinal < 0) {
+                builder = builder.visit(SETTER_METHOD_ADVICE.on(setter));
+                continue;
+            }
+            final TypeDescription fieldType = fieldDescription.getType().asErasure();
+            final ElementMatcher.Junction<MethodDescription> sameType = ElementMatchers.takesArguments(fieldType);
+            builder = builder.visit(
+                    Advice.withCustomMapping()
+                            .bind(FieldOrdinal.class, ordinal)
+                            .to(getSetterAdvice(fieldType))
+                            .on(setter.and(sameType))
+            );
+            // setters taking another type than the field
+            builder = builder.visit(SETTER_METHOD_ADVICE.on(setter.and(ElementMatchers.not(sameType))));
         }
 
         final TypeDescription builderType = builder.toTypeDescription();
@@ -394,14 +465,142 @@ public class EntityClassRewriter implements SpringApplicationRunListener {
 
     // advices and method delegates
 
+    /**
+     * Ordinal of the field set by a setter, bound by the setter advices.
+     */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.PARAMETER)
+    public @interface FieldOrdinal {
+    }
+
+    // the state is null for a read-only entity, which is not tracked
     public static class SetterMethodAdvice {
         @Advice.OnMethodEnter
         public static void intercept(
                 @Advice.FieldValue("_rlState") EntityState _rlState,
                 @Advice.Origin("#p") String backingField,
+                @Advice.Argument(value = 0, typing = Assigner.Typing.DYNAMIC) Object newValue
+        ) {
+            if (_rlState != null) {
+                _rlState.fieldSet(backingField, newValue);
+            }
+        }
+    }
+
+    public static class ObjectSetterMethodAdvice {
+        @Advice.OnMethodEnter
+        public static void intercept(
+                @Advice.FieldValue("_rlState") EntityState _rlState,
+                @FieldOrdinal int ordinal,
                 @Advice.Argument(0) Object newValue
         ) {
-            _rlState.fieldSet(backingField, newValue);
+            if (_rlState != null) {
+                _rlState.fieldSet(ordinal, newValue);
+            }
+        }
+    }
+
+    public static class BooleanSetterMethodAdvice {
+        @Advice.OnMethodEnter
+        public static void intercept(
+                @Advice.FieldValue("_rlState") EntityState _rlState,
+                @FieldOrdinal int ordinal,
+                @Advice.Argument(0) boolean newValue
+        ) {
+            if (_rlState != null) {
+                _rlState.fieldSet(ordinal, newValue);
+            }
+        }
+    }
+
+    public static class ByteSetterMethodAdvice {
+        @Advice.OnMethodEnter
+        public static void intercept(
+                @Advice.FieldValue("_rlState") EntityState _rlState,
+                @FieldOrdinal int ordinal,
+                @Advice.Argument(0) byte newValue
+        ) {
+            if (_rlState != null) {
+                _rlState.fieldSet(ordinal, newValue);
+            }
+        }
+    }
+
+    public static class ShortSetterMethodAdvice {
+        @Advice.OnMethodEnter
+        public static void intercept(
+                @Advice.FieldValue("_rlState") EntityState _rlState,
+                @FieldOrdinal int ordinal,
+                @Advice.Argument(0) short newValue
+        ) {
+            if (_rlState != null) {
+                _rlState.fieldSet(ordinal, newValue);
+            }
+        }
+    }
+
+    public static class IntSetterMethodAdvice {
+        @Advice.OnMethodEnter
+        public static void intercept(
+                @Advice.FieldValue("_rlState") EntityState _rlState,
+                @FieldOrdinal int ordinal,
+                @Advice.Argument(0) int newValue
+        ) {
+            if (_rlState != null) {
+                _rlState.fieldSet(ordinal, newValue);
+            }
+        }
+    }
+
+    public static class LongSetterMethodAdvice {
+        @Advice.OnMethodEnter
+        public static void intercept(
+                @Advice.FieldValue("_rlState") EntityState _rlState,
+                @FieldOrdinal int ordinal,
+                @Advice.Argument(0) long newValue
+        ) {
+            if (_rlState != null) {
+                _rlState.fieldSet(ordinal, newValue);
+            }
+        }
+    }
+
+    public static class FloatSetterMethodAdvice {
+        @Advice.OnMethodEnter
+        public static void intercept(
+                @Advice.FieldValue("_rlState") EntityState _rlState,
+                @FieldOrdinal int ordinal,
+                @Advice.Argument(0) float newValue
+        ) {
+            if (_rlState != null) {
+                _rlState.fieldSet(ordinal, newValue);
+            }
+        }
+    }
+
+    public static class DoubleSetterMethodAdvice {
+        @Advice.OnMethodEnter
+        public static void intercept(
+                @Advice.FieldValue("_rlState") EntityState _rlState,
+                @FieldOrdinal int ordinal,
+                @Advice.Argument(0) double newValue
+        ) {
+            if (_rlState != null) {
+                _rlState.fieldSet(ordinal, newValue);
+            }
+        }
+    }
+
+    public static class CharSetterMethodAdvice {
+        @Advice.OnMethodEnter
+        public static void intercept(
+                @Advice.FieldValue("_rlState") EntityState _rlState,
+                @FieldOrdinal int ordinal,
+                @Advice.Argument(0) char newValue
+        ) {
+            if (_rlState != null) {
+                _rlState.fieldSet(ordinal, newValue);
+            }
         }
     }
 
@@ -525,7 +724,7 @@ public class EntityClassRewriter implements SpringApplicationRunListener {
                 foreignKeyGetter = instrumentedType.getDeclaredMethod(propertyName);
             }
             final Object value = foreignKeyGetter.invoke(instance);
-            return value != null ? ((EntityState) value.getClass().getDeclaredField("_rlState").get(value)).load(value) : Mono.empty();
+            return value != null ? ((StatefulEntity) value)._rlGetState().load(value) : Mono.empty();
         }
     }
 
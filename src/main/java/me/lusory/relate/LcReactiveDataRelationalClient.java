@@ -2,9 +2,17 @@ package me.lusory.relate;
 
 import lombok.extern.slf4j.Slf4j;
 import me.lusory.relate.mapping.LcMappingR2dbcConverter;
+import me.lusory.relate.metrics.CacheKind;
+import me.lusory.relate.metrics.RelateMetrics;
+import me.lusory.relate.metrics.StatementListener;
 import me.lusory.relate.model.EntityCache;
 import me.lusory.relate.model.ModelUtils;
+import me.lusory.relate.model.PropertiesSource;
+import me.lusory.relate.model.SequenceAllocator;
+import me.lusory.relate.model.SharedEntityCache;
 import me.lusory.relate.query.SelectExecution;
+import me.lusory.relate.query.SelectPlanCache;
+import me.lusory.relate.query.StatementChunks;
 import me.lusory.relate.query.criteria.Criteria;
 import me.lusory.relate.query.operation.Operation;
 import me.lusory.relate.schema.dialect.RelationalDatabaseSchemaDialect;
@@ -17,6 +25,7 @@ import me.lusory.relate.schema.RelationalDatabaseSchema;
 import me.lusory.relate.schema.SchemaBuilderFromEntities;
 import org.reactivestreams.Publisher;
 import org.springframework.data.mapping.PersistentPropertyAccessor;
+import org.springframework.data.mapping.PropertyHandler;
 import org.springframework.data.mapping.context.MappingContext;
 import org.springframework.data.r2dbc.dialect.R2dbcDialect;
 import org.springframework.data.relational.core.mapping.RelationalPersistentEntity;
@@ -26,20 +35,32 @@ import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 import reactor.core.scheduler.Schedulers;
 
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 @Slf4j
 public class LcReactiveDataRelationalClient {
     private static final String QUERY_ENTITY_NAME = "entity";
+    private static final int LAZY_LOAD_MAX_BUNCH_SIZE = 1000;
+    private static final int LAZY_LOAD_CONCURRENCY = 4;
+    private static final int BULK_INSERT_BUNCH_SIZE = 10000;
 
     private final DatabaseClient client;
     private final MappingContext<RelationalPersistentEntity<?>, ? extends RelationalPersistentProperty> mappingContext;
     private final RelationalDatabaseSchemaDialect schemaDialect;
     private final LcReactiveDataAccessStrategy dataAccess;
     private final LcMappingR2dbcConverter mapper;
+    private final SelectPlanCache selectPlanCache = new SelectPlanCache();
+    private final SharedEntityCache sharedCache = new SharedEntityCache();
+    private final StatementChunks statementChunks = new StatementChunks();
+    private final SequenceAllocator sequenceAllocator = new SequenceAllocator(this);
+    private final List<StatementListener> statementListeners = new CopyOnWriteArrayList<>();
+    private RelateMetrics metrics = RelateMetrics.NONE;
 
     public LcReactiveDataRelationalClient(
             DatabaseClient client,
@@ -58,6 +79,7 @@ public class LcReactiveDataRelationalClient {
         for (Class<?> type : LcEntityTypeInfo.getClasses()) {
             mappingContext.getPersistentEntity(type);
         }
+        sharedCache.configure(LcEntityTypeInfo.getClasses());
     }
 
     /**
@@ -103,6 +125,91 @@ public class LcReactiveDataRelationalClient {
         return dataAccess.getDialect();
     }
 
+    /**
+     * @return the cache of select plans, giving statistics about hits, misses and evictions.
+     */
+    public SelectPlanCache getSelectPlanCache() {
+        return selectPlanCache;
+    }
+
+    /**
+     * @return the cache of entities shared by all operations, for entity classes configured to use
+     * it.
+     */
+    public SharedEntityCache getSharedCache() {
+        return sharedCache;
+    }
+
+    /**
+     * @return the chunking of statements exceeding the limits of the database, giving statistics
+     * about the chunks sizes.
+     */
+    public StatementChunks getStatementChunks() {
+        return statementChunks;
+    }
+
+    /**
+     * @return the allocator of values for sequences with an allocation size greater than 1.
+     */
+    public SequenceAllocator getSequenceAllocator() {
+        return sequenceAllocator;
+    }
+
+    /**
+     * @return the metrics receiving the measurements of statements, operations and caches.
+     */
+    public RelateMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Set the metrics receiving the measurements of statements, operations and caches.
+     */
+    public void setMetrics(RelateMetrics metrics) {
+        this.metrics = metrics != null ? metrics : RelateMetrics.NONE;
+    }
+
+    /**
+     * @return the listeners notified before and after the execution of each statement.
+     */
+    public List<StatementListener> getStatementListeners() {
+        return statementListeners;
+    }
+
+    /**
+     * Add a listener notified before and after the execution of each statement.
+     */
+    public void addStatementListener(StatementListener listener) {
+        statementListeners.add(listener);
+    }
+
+    /**
+     * Remove a listener previously added.
+     */
+    public void removeStatementListener(StatementListener listener) {
+        statementListeners.remove(listener);
+    }
+
+    /**
+     * Return the entity with the given id from the shared cache, or null if it is not cached.
+     *
+     * @param entityType type of entity, with an @Id property
+     * @param id         id of the entity
+     * @param cache      cache of the current operation, which may already contain the instance
+     */
+    @Nullable
+    public <T> T getFromSharedCache(
+            RelationalPersistentEntity<T> entityType, Object id, @Nullable EntityCache cache) {
+        PropertiesSource source = sharedCache.get(entityType.getType(), id);
+        if (metrics != RelateMetrics.NONE && sharedCache.isEnabled(entityType.getType())) {
+            metrics.cacheAccessed(CacheKind.SHARED_ENTITY, entityType.getType(), source != null);
+        }
+        if (source == null) {
+            return null;
+        }
+        return new LcEntityReader(cache, getMapper()).read(entityType, source);
+    }
+
     /**
      * Drop all elements from the given schema.
      */
@@ -124,6 +231,20 @@ public class LcReactiveDataRelationalClient {
         return dropSchemaContent(schema).then(createSchemaContent(schema));
     }
 
+    /**
+     * Create what is missing in the database to match the given schema: tables, columns, indexes,
+     * foreign keys and sequences. Nothing is dropped. An existing sequence incremented by another
+     * value than its allocation size is reported as a {@link
+     * me.lusory.relate.schema.SchemaException}.
+     */
+    public Mono<Void> updateSchemaContent(RelationalDatabaseSchema schema) {
+        return schemaDialect
+                .readSchemaContent(this)
+                .flatMap(
+                        existing ->
+                                schemaDialect.updateSchemaContent(schema, existing).execute(this));
+    }
+
     /**
      * Build the schema definition from all known entities.
      */
@@ -182,7 +303,10 @@ public class LcReactiveDataRelationalClient {
     }
 
     /**
-     * Save the given entities (insert or update in cascade).
+     * Save the given entities (insert or update in cascade), in a single operation executed once
+     * the publisher is complete.
+     *
+     * @see #save(Publisher, int, int) to save a large number of entities by bunch
      */
     public <T> Flux<T> save(Publisher<T> publisher) {
         Operation op = new Operation(this);
@@ -199,6 +323,65 @@ public class LcReactiveDataRelationalClient {
                 .flatMapMany(Flux::fromIterable);
     }
 
+    /**
+     * Save the given entities (insert or update in cascade), by bunch.
+     *
+     * <p>Each bunch is saved by its own operation, so only the entities of the bunches being
+     * saved are kept in memory. Entities are requested from the publisher only when a bunch can
+     * be saved, and saved entities are emitted as soon as their bunch is saved, in the same order
+     * as received.
+     *
+     * <p>Contrary to {@link #save(Publisher)}, the entities are not saved atomically, and new
+     * entities linked from entities of different bunches are not shared between the bunches.
+     *
+     * @param publisher   entities to save
+     * @param bunchSize   number of entities saved by each operation
+     * @param concurrency maximum number of bunches saved at the same time
+     */
+    public <T> Flux<T> save(Publisher<T> publisher, int bunchSize, int concurrency) {
+        if (bunchSize < 1) {
+            throw new IllegalArgumentException("Bunch size must be at least 1");
+        }
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1");
+        }
+        return Flux.from(publisher)
+                .buffer(bunchSize)
+                .flatMapSequential(this::saveBunch, concurrency, 1);
+    }
+
+    /**
+     * Insert a large number of new entities.
+     *
+     * <p>Entities are saved by bunches of 10000 entities. When the database supports it (COPY on
+     * PostgreSQL) and the entities do not need values generated by the database, rows are
+     * streamed using the bulk copy protocol, else they are inserted using multiple rows INSERT
+     * statements.
+     */
+    public <T> Flux<T> bulkInsert(Publisher<T> entities) {
+        return save(entities, BULK_INSERT_BUNCH_SIZE, 1);
+    }
+
+    /**
+     * Insert a large number of new entities.
+     *
+     * @see #bulkInsert(Publisher)
+     */
+    public <T> Flux<T> bulkInsert(Iterable<T> entities) {
+        return bulkInsert(Flux.fromIterable(entities));
+    }
+
+    private <T> Flux<T> saveBunch(List<T> entities) {
+        return Flux.defer(
+                () -> {
+                    Operation op = new Operation(this);
+                    for (T instance : entities) {
+                        op.addToSave(instance, null, null, null);
+                    }
+                    return op.execute().thenMany(Flux.fromIterable(entities));
+                });
+    }
+
     /**
      * Save the given entities (insert or update in cascade).
      */
@@ -250,6 +433,13 @@ public class LcReactiveDataRelationalClient {
         Object id = ModelUtils.getId(entityType, accessor, this);
         EntityCache cache = new EntityCache();
         cache.setById((Class<T>) entity.getClass(), id, entity);
+        if (entityType.hasIdProperty() && sharedCache.isEnabled(entityType.getType())) {
+            T cached =
+                    getFromSharedCache((RelationalPersistentEntity<T>) entityType, id, cache);
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+        }
         return SelectQuery.from((Class<T>) entity.getClass(), QUERY_ENTITY_NAME)
                 .where(ModelUtils.getCriteriaOnId(QUERY_ENTITY_NAME, entityType, accessor, this))
                 .limit(0, 1)
@@ -262,7 +452,7 @@ public class LcReactiveDataRelationalClient {
      */
     public <T> Flux<T> lazyLoad(Iterable<T> entities, RelationalPersistentEntity<?> entityType) {
         List<Mono<T>> alreadyLoading = new LinkedList<>();
-        List<T> toLoad = new LinkedList<>();
+        List<T> toLoad = new ArrayList<>();
         for (T entity : entities) {
             EntityState state = EntityState.get(entity, this, entityType);
             Mono<T> loading = state.getLoading();
@@ -272,41 +462,138 @@ public class LcReactiveDataRelationalClient {
                 toLoad.add(entity);
             }
         }
-        Flux<T> loading = doLoading(toLoad, entityType).cache();
-        for (T entity : toLoad) {
-            EntityState state = EntityState.get(entity, this, entityType);
-            alreadyLoading.add(state.loading(() -> loading.filter(e -> e == entity).next()));
+        if (toLoad.size() == 1) {
+            T entity = toLoad.get(0);
+            alreadyLoading.add(
+                    lazyLoad(entity, EntityState.get(entity, this, entityType), entityType));
+        } else if (!toLoad.isEmpty()) {
+            // loaded entities are the same instances, thanks to the entity cache
+            Map<T, Sinks.One<T>> waiters = new IdentityHashMap<>(toLoad.size() * 2);
+            Map<T, Mono<T>> loadings = new IdentityHashMap<>(toLoad.size() * 2);
+            for (T entity : toLoad) {
+                Sinks.One<T> sink = Sinks.one();
+                waiters.put(entity, sink);
+                Mono<T> loading = EntityState.get(entity, this, entityType).loading(sink::asMono);
+                loadings.put(entity, loading);
+                alreadyLoading.add(loading);
+            }
+            // a single subscription dispatching each loaded entity to its waiter, subscribed by
+            // the returned Flux so it keeps its context (i.e. the transaction) and is cancelled
+            // with it
+            Mono<T> load =
+                    Flux.defer(() -> doLoading(toLoad, entityType))
+                            .doOnNext(
+                                    loaded -> {
+                                        Sinks.One<T> sink = waiters.get(loaded);
+                                        if (sink != null) {
+                                            sink.tryEmitValue(loaded);
+                                        }
+                                    })
+                            .doOnError(
+                                    error ->
+                                            waiters.values()
+                                                    .forEach(sink -> sink.tryEmitError(error)))
+                            .doOnComplete(
+                                    () -> waiters.values().forEach(Sinks.One::tryEmitEmpty))
+                            .doOnCancel(
+                                    () -> {
+                                        // a next lazy load of the entities starts a new loading
+                                        for (T entity : toLoad) {
+                                            EntityState.get(entity, this, entityType)
+                                                    .cancelLoading(loadings.get(entity));
+                                        }
+                                        CancellationException cancelled =
+                                                new CancellationException("Loading cancelled");
+                                        waiters.values()
+                                                .forEach(sink -> sink.tryEmitError(cancelled));
+                                    })
+                            .then(Mono.empty());
+            return Flux.merge(alreadyLoading).mergeWith(load);
         }
         return Flux.merge(alreadyLoading);
     }
 
-    @SuppressWarnings("unchecked")
-    private <T> Flux<T> doLoading(Iterable<T> entities, RelationalPersistentEntity<?> entityType) {
-        Iterator<T> it = entities.iterator();
-        if (!it.hasNext()) {
-            return Flux.empty();
+    /**
+     * Load entities by bunches, each bunch using as many parameters as supported by the database.
+     */
+    private <T> Flux<T> doLoading(List<T> entities, RelationalPersistentEntity<?> entityType) {
+        int idColumns;
+        if (entityType.hasIdProperty()) {
+            idColumns = 1;
+        } else {
+            String[] compositeId = ModelUtils.getCompositeIdProperties(entityType);
+            idColumns =
+                    compositeId != null
+                            ? compositeId.length
+                            : Math.max(1, countProperties(entityType));
         }
-        T entity = it.next();
-        if (!it.hasNext()) {
-            return Flux.from(doLoading(entity, entityType));
+        int bunchSize =
+                Math.max(
+                        1,
+                        Math.min(
+                                LAZY_LOAD_MAX_BUNCH_SIZE,
+                                schemaDialect.getMaxBindParameters() / idColumns));
+        List<List<T>> bunches = new ArrayList<>(entities.size() / bunchSize + 1);
+        for (int i = 0; i < entities.size(); i += bunchSize) {
+            bunches.add(entities.subList(i, Math.min(entities.size(), i + bunchSize)));
         }
+        return Flux.fromIterable(bunches)
+                .flatMap(bunch -> doLoadingBunch(bunch, entityType), LAZY_LOAD_CONCURRENCY);
+    }
+
+    private static int countProperties(RelationalPersistentEntity<?> entityType) {
+        int[] count = new int[1];
+        entityType.doWithProperties(
+                (PropertyHandler<RelationalPersistentProperty>) property -> count[0]++);
+        return count[0];
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Flux<T> doLoadingBunch(List<T> entities, RelationalPersistentEntity<?> entityType) {
         EntityCache cache = new EntityCache();
         Criteria criteria = null;
-        do {
-            PersistentPropertyAccessor<?> accessor = entityType.getPropertyAccessor(entity);
-            Object id = ModelUtils.getId(entityType, accessor, this);
-            cache.setById((Class<T>) entity.getClass(), id, entity);
-            Criteria entityCriteria =
-                    ModelUtils.getCriteriaOnId(QUERY_ENTITY_NAME, entityType, accessor, this);
-            criteria = criteria != null ? criteria.or(entityCriteria) : entityCriteria;
-            if (!it.hasNext()) {
-                break;
+        List<T> fromSharedCache = new LinkedList<>();
+        if (entityType.hasIdProperty()) {
+            boolean useSharedCache = sharedCache.isEnabled(entityType.getType());
+            List<Object> ids = new ArrayList<>(entities.size());
+            for (T entity : entities) {
+                Object id =
+                        ModelUtils.getId(entityType, entityType.getPropertyAccessor(entity), this);
+                cache.setById((Class<T>) entity.getClass(), id, entity);
+                T cached =
+                        useSharedCache
+                                ? getFromSharedCache(
+                                        (RelationalPersistentEntity<T>) entityType, id, cache)
+                                : null;
+                if (cached != null) {
+                    fromSharedCache.add(cached);
+                } else {
+                    ids.add(id);
+                }
             }
-            entity = it.next();
-        } while (true);
-        return SelectQuery.from((Class<T>) entity.getClass(), QUERY_ENTITY_NAME)
-                .where(criteria)
-                .execute(this, new LcEntityReader(cache, getMapper()));
+            if (ids.isEmpty()) {
+                return Flux.fromIterable(fromSharedCache);
+            }
+            criteria =
+                    Criteria.property(
+                                    QUERY_ENTITY_NAME,
+                                    entityType.getRequiredIdProperty().getName())
+                            .in(ids);
+        } else {
+            for (T entity : entities) {
+                PersistentPropertyAccessor<?> accessor = entityType.getPropertyAccessor(entity);
+                Object id = ModelUtils.getId(entityType, accessor, this);
+                cache.setById((Class<T>) entity.getClass(), id, entity);
+                Criteria entityCriteria =
+                        ModelUtils.getCriteriaOnId(QUERY_ENTITY_NAME, entityType, accessor, this);
+                criteria = criteria != null ? criteria.or(entityCriteria) : entityCriteria;
+            }
+        }
+        return Flux.fromIterable(fromSharedCache)
+                .concatWith(
+                        SelectQuery.from((Class<T>) entities.get(0).getClass(), QUERY_ENTITY_NAME)
+                                .where(criteria)
+                                .execute(this, new LcEntityReader(cache, getMapper())));
     }
 
     /**
@@ -316,6 +603,13 @@ public class LcReactiveDataRelationalClient {
         return new SelectExecution<>(query, this, reader).execute();
     }
 
+    /**
+     * Execute a select query, returning only the selected properties as the given result type.
+     */
+    public <R> Flux<R> executeProjection(SelectQuery<?> query, Class<R> resultType) {
+        return new SelectExecution<>(query, this, null).executeProjection(resultType);
+    }
+
     /**
      * Execute a select query.
      */
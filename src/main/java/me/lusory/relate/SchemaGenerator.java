@@ -2,6 +2,7 @@ package me.lusory.relate;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
 import org.springframework.stereotype.Component;
@@ -10,9 +11,37 @@ import org.springframework.stereotype.Component;
 @RequiredArgsConstructor(onConstructor_ = {@Autowired})
 public class SchemaGenerator implements ApplicationRunner {
     private final LcReactiveDataRelationalClient lcClient;
+    private String mode = "drop-create";
+
+    /**
+     * What is done on the schema at startup: drop-create to drop then create the content of the
+     * schema, update to only create what does not exist yet in the database, or none.
+     */
+    @Value("${relate.schema.mode:drop-create}")
+    public void setMode(String mode) {
+        switch (mode) {
+            case "drop-create":
+            case "update":
+            case "none":
+                this.mode = mode;
+                break;
+            default:
+                throw new IllegalArgumentException(
+                        "Unknown schema mode <" + mode + ">, expected drop-create, update or none");
+        }
+    }
 
     @Override
     public void run(ApplicationArguments args) {
-        lcClient.dropCreateSchemaContent(lcClient.buildSchemaFromEntities()).block();
+        switch (mode) {
+            case "update":
+                lcClient.updateSchemaContent(lcClient.buildSchemaFromEntities()).block();
+                break;
+            case "none":
+                break;
+            default:
+                lcClient.dropCreateSchemaContent(lcClient.buildSchemaFromEntities()).block();
+                break;
+        }
     }
 }
@@ -22,6 +22,17 @@ public @interface GeneratedValue {
      */
     String sequence() default "";
 
+    /**
+     * For SEQUENCE strategy, number of values reserved each time the sequence is called. When
+     * greater than 1, the sequence is created with the same increment, and values are assigned
+     * before the insert by the application from the reserved blocks, so the sequence is called
+     * only once per block and generated values do not need to be returned by the database.
+     *
+     * <p>All properties using the same sequence must declare the same allocation size, and an
+     * existing sequence must have been created with an increment equal to the allocation size.
+     */
+    int allocationSize() default 1;
+
     enum Strategy {
         /**
          * Use auto increment/serial capability from database.
@@ -0,0 +1,29 @@
+package me.lusory.relate.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Enables the shared cache for an entity with an @Id property: entities read from the database
+ * are kept across operations, and used by findById, findAllById and lazy loading instead of
+ * querying the database again.
+ *
+ * <p>Cached entities are invalidated when they are saved or deleted using this library, but not
+ * when the table is modified by another application.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE})
+public @interface SharedCache {
+
+    /**
+     * Maximum number of entities kept in the cache.
+     */
+    int maxSize() default 1000;
+
+    /**
+     * Time, in seconds, after which a cached entity is not used anymore.
+     */
+    long ttlSeconds() default 300;
+}
@@ -3,6 +3,8 @@ package me.lusory.relate.configuration;
 import io.r2dbc.spi.ConnectionFactory;
 import lombok.RequiredArgsConstructor;
 import me.lusory.relate.mapping.LcMappingR2dbcConverter;
+import me.lusory.relate.metrics.RelateMetrics;
+import me.lusory.relate.metrics.StatementListener;
 import me.lusory.relate.schema.dialect.RelationalDatabaseSchemaDialect;
 import me.lusory.relate.LcReactiveDataRelationalClient;
 import me.lusory.relate.mapping.LcReactiveDataAccessStrategy;
@@ -86,6 +88,12 @@ public abstract class LcReactiveDataRelationalConfiguration extends AbstractR2db
                 (LcReactiveDataAccessStrategy) dataAccessStrategy,
                 (LcMappingR2dbcConverter) dataAccessStrategy.getConverter()
         );
+        if (context != null) {
+            lcClient.setMetrics(context.getBeanProvider(RelateMetrics.class).getIfAvailable());
+            context.getBeanProvider(StatementListener.class)
+                    .orderedStream()
+                    .forEach(lcClient::addStatementListener);
+        }
         return new LcR2dbcEntityTemplate(lcClient);
     }
 
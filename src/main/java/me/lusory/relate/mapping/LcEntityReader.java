@@ -6,6 +6,7 @@ import me.lusory.relate.model.EntityState;
 import me.lusory.relate.model.EntityCache;
 import me.lusory.relate.model.ModelUtils;
 import me.lusory.relate.model.PropertiesSource;
+import io.r2dbc.spi.Row;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.core.convert.ConversionService;
@@ -30,14 +31,34 @@ public class LcEntityReader {
 
     private final CustomConversions conversions;
     private final ConversionService conversionService;
+    @Nullable
     private final EntityCache cache;
     private final LcReactiveDataRelationalClient client;
+    private final boolean readOnly;
 
     public LcEntityReader(
             @Nullable EntityCache cache,
             @Nullable CustomConversions conversions,
             LcReactiveDataRelationalClient client) {
-        this.cache = cache != null ? cache : new EntityCache();
+        this(cache, conversions, client, false);
+    }
+
+    /**
+     * Create a reader.
+     *
+     * @param cache       cache of instances, or null to create a new one
+     * @param conversions conversions, or null to use the ones of the client
+     * @param client      client
+     * @param readOnly    if true, entities are not tracked: no state is created for them, and
+     *                    they are registered in the cache only if one is given
+     */
+    public LcEntityReader(
+            @Nullable EntityCache cache,
+            @Nullable CustomConversions conversions,
+            LcReactiveDataRelationalClient client,
+            boolean readOnly) {
+        this.readOnly = readOnly;
+        this.cache = cache != null || readOnly ? cache : new EntityCache();
         R2dbcConverter converter = client.getDataAccess().getConverter();
         if (conversions != null) {
             this.conversions = conversions;
@@ -54,10 +75,32 @@ public class LcEntityReader {
         this(cache, converter.getConversions(), converter.getLcClient());
     }
 
+    /**
+     * Create a reader for entities which are not tracked.
+     *
+     * @param cache     cache of instances, or null to not register instances in a cache
+     * @param converter converter
+     */
+    public static LcEntityReader readOnly(
+            @Nullable EntityCache cache, LcMappingR2dbcConverter converter) {
+        return new LcEntityReader(cache, converter.getConversions(), converter.getLcClient(), true);
+    }
+
+    /**
+     * @return the cache of instances, which may be null for a read-only reader.
+     */
+    @Nullable
     public EntityCache getCache() {
         return cache;
     }
 
+    /**
+     * @return true if the entities read are not tracked.
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
     @SuppressWarnings("unchecked")
     public <T> T read(Class<T> type, PropertiesSource source) {
         TypeInformation<? extends T> typeInfo = ClassTypeInformation.from(type);
@@ -86,7 +129,7 @@ public class LcEntityReader {
         }
 
         T result = getOrCreateInstance(entityType, source);
-        EntityState state = EntityState.get(result, client, entityType);
+        EntityState state = readOnly ? null : EntityState.get(result, client, entityType);
 
         if (entityType.requiresPropertyPopulation()) {
             ConvertingPropertyAccessor<T> propertyAccessor =
@@ -106,7 +149,22 @@ public class LcEntityReader {
                 }
             }
         }
-        state.loaded(result);
+        if (state != null) {
+            state.loaded(result);
+        }
+
+        if (!readOnly
+                && source.getSource() instanceof Row
+                && entityType.hasIdProperty()
+                && client.getSharedCache().isEnabled(entityType.getType())) {
+            // read from database: keep the values in the shared cache
+            client.getSharedCache()
+                    .put(
+                            entityType,
+                            ModelUtils.getIdPropertyValue(
+                                    entityType, entityType.getPropertyAccessor(result)),
+                            source);
+        }
 
         return result;
     }
@@ -199,6 +257,11 @@ public class LcEntityReader {
             return null; // foreign key is null
         }
         T instance = getOrCreateInstance(entityType, source, value);
+        if (readOnly) {
+            ModelUtils.setFieldValue(instance, entityType.getRequiredIdProperty().getField(), value);
+            ModelUtils.setReverseLink(instance, parentInstance, property);
+            return instance;
+        }
         EntityState state = EntityState.get(instance, client, entityType);
         if (!state.isLoaded()) {
             state.setPersistedField(
@@ -227,7 +290,7 @@ public class LcEntityReader {
 
     protected <T> T getOrCreateInstance(
             RelationalPersistentEntity<T> entityType, PropertiesSource source, Object id) {
-        if (id != null) {
+        if (id != null && cache != null) {
             T instance = cache.getById(entityType.getType(), id);
             if (instance != null) {
                 return instance;
@@ -240,7 +303,7 @@ public class LcEntityReader {
                 client.getMapper()
                         .createInstance(entityType, parameterValueProvider::getParameterValue);
 
-        if (id != null) {
+        if (id != null && cache != null) {
             cache.setById(entityType.getType(), id, instance);
         }
 
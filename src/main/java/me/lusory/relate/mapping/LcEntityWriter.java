@@ -107,6 +107,21 @@ public class LcEntityWriter {
         }
     }
 
+    /**
+     * Return the type of the values written for the given property, after conversion.
+     */
+    public Class<?> getWriteType(RelationalPersistentProperty property) {
+        if (property.isAnnotationPresent(ForeignKey.class)) {
+            // the id of the foreign entity is written
+            RelationalPersistentEntity<?> fe =
+                    converter
+                            .getMappingContext()
+                            .getRequiredPersistentEntity(property.getActualType());
+            return getPotentiallyConvertedSimpleNullType(fe.getRequiredIdProperty().getType());
+        }
+        return getPotentiallyConvertedSimpleNullType(property.getType());
+    }
+
     protected void writeNull(OutboundRow sink, RelationalPersistentProperty property) {
         sink.put(
                 property.getColumnName(),
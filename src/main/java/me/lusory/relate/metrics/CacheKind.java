@@ -0,0 +1,16 @@
+package me.lusory.relate.metrics;
+
+/**
+ * Caches reporting their hits and misses.
+ */
+public enum CacheKind {
+    /**
+     * Cache of rendered select queries, see {@link me.lusory.relate.query.SelectPlanCache}.
+     */
+    SELECT_PLAN,
+    /**
+     * Cache of entities shared by operations, see {@link
+     * me.lusory.relate.model.SharedEntityCache}.
+     */
+    SHARED_ENTITY
+}
@@ -0,0 +1,171 @@
+package me.lusory.relate.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.lang.Nullable;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Record metrics using Micrometer. Micrometer is an optional dependency, so this implementation
+ * is not registered automatically and must be declared as a bean:
+ *
+ * <pre>
+ * &#64;Bean
+ * public RelateMetrics relateMetrics(MeterRegistry registry) {
+ *     return new MicrometerRelateMetrics(registry);
+ * }
+ * </pre>
+ *
+ * <p>Meters are named with the prefix <code>relate</code> by default:
+ *
+ * <ul>
+ *   <li><code>relate.statements</code>: timer of statements, tagged by kind, entity and outcome
+ *   <li><code>relate.statements.rows</code>: rows returned or affected by statements
+ *   <li><code>relate.selects</code>: count of selects, tagged by entity and pre_select
+ *   <li><code>relate.operations</code>: timer of save and delete operations, tagged by outcome
+ *   <li><code>relate.operations.steps</code>: timer of each step of operations
+ *   <li><code>relate.operations.step.count</code>: number of steps of operations
+ *   <li><code>relate.operations.statements</code>: number of statements of operations
+ *   <li><code>relate.cache.lookups</code>: lookups in caches, tagged by cache, entity and result
+ * </ul>
+ */
+public class MicrometerRelateMetrics implements RelateMetrics {
+
+    private static final String TAG_ENTITY = "entity";
+    private static final String TAG_OUTCOME = "outcome";
+    private static final String NO_ENTITY = "none";
+
+    private final MeterRegistry registry;
+    private final String prefix;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> summaries = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    public MicrometerRelateMetrics(MeterRegistry registry) {
+        this(registry, "relate");
+    }
+
+    public MicrometerRelateMetrics(MeterRegistry registry, String prefix) {
+        this.registry = registry;
+        this.prefix = prefix;
+    }
+
+    private static String entity(@Nullable Class<?> entityType) {
+        return entityType != null ? entityType.getSimpleName() : NO_ENTITY;
+    }
+
+    private static String outcome(boolean success) {
+        return success ? "success" : "error";
+    }
+
+    @Override
+    public void statementExecuted(
+            StatementKind kind,
+            @Nullable Class<?> entityType,
+            long durationNanos,
+            long rows,
+            boolean success) {
+        String kindTag = kind.name().toLowerCase(Locale.ROOT);
+        String entityTag = entity(entityType);
+        String outcomeTag = outcome(success);
+        timers.computeIfAbsent(
+                        kindTag + ':' + entityTag + ':' + outcomeTag,
+                        k ->
+                                Timer.builder(prefix + ".statements")
+                                        .description("Execution of SQL statements")
+                                        .tag("kind", kindTag)
+                                        .tag(TAG_ENTITY, entityTag)
+                                        .tag(TAG_OUTCOME, outcomeTag)
+                                        .publishPercentileHistogram()
+                                        .register(registry))
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+        summaries
+                .computeIfAbsent(
+                        "rows:" + kindTag + ':' + entityTag,
+                        k ->
+                                DistributionSummary.builder(prefix + ".statements.rows")
+                                        .description("Rows returned or affected by SQL statements")
+                                        .tag("kind", kindTag)
+                                        .tag(TAG_ENTITY, entityTag)
+                                        .register(registry))
+                .record(rows);
+    }
+
+    @Override
+    public void selectExecuted(Class<?> entityType, boolean preSelect) {
+        String entityTag = entity(entityType);
+        counters.computeIfAbsent(
+                        "select:" + entityTag + ':' + preSelect,
+                        k ->
+                                Counter.builder(prefix + ".selects")
+                                        .description("Selects, with or without pre-selection of ids")
+                                        .tag(TAG_ENTITY, entityTag)
+                                        .tag("pre_select", Boolean.toString(preSelect))
+                                        .register(registry))
+                .increment();
+    }
+
+    @Override
+    public void operationStepExecuted(long durationNanos) {
+        timers.computeIfAbsent(
+                        "step",
+                        k ->
+                                Timer.builder(prefix + ".operations.steps")
+                                        .description("Steps of save and delete operations")
+                                        .publishPercentileHistogram()
+                                        .register(registry))
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void operationExecuted(int steps, int statements, long durationNanos, boolean success) {
+        String outcomeTag = outcome(success);
+        timers.computeIfAbsent(
+                        "operation:" + outcomeTag,
+                        k ->
+                                Timer.builder(prefix + ".operations")
+                                        .description("Save and delete operations")
+                                        .tag(TAG_OUTCOME, outcomeTag)
+                                        .publishPercentileHistogram()
+                                        .register(registry))
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+        summaries
+                .computeIfAbsent(
+                        "steps",
+                        k ->
+                                DistributionSummary.builder(prefix + ".operations.step.count")
+                                        .description("Number of steps of operations")
+                                        .register(registry))
+                .record(steps);
+        summaries
+                .computeIfAbsent(
+                        "statements",
+                        k ->
+                                DistributionSummary.builder(prefix + ".operations.statements")
+                                        .description("Number of statements executed by operations")
+                                        .register(registry))
+                .record(statements);
+    }
+
+    @Override
+    public void cacheAccessed(CacheKind cache, @Nullable Class<?> entityType, boolean hit) {
+        String cacheTag = cache.name().toLowerCase(Locale.ROOT);
+        String entityTag = entity(entityType);
+        counters.computeIfAbsent(
+                        "cache:" + cacheTag + ':' + entityTag + ':' + hit,
+                        k ->
+                                Counter.builder(prefix + ".cache.lookups")
+                                        .description("Lookups in caches")
+                                        .tag("cache", cacheTag)
+                                        .tag(TAG_ENTITY, entityTag)
+                                        .tag("result", hit ? "hit" : "miss")
+                                        .register(registry))
+                .increment();
+    }
+}
@@ -0,0 +1,77 @@
+package me.lusory.relate.metrics;
+
+import org.springframework.lang.Nullable;
+
+/**
+ * Receives measurements of the statements and operations executed by the client.
+ *
+ * <p>All methods do nothing by default, so an implementation only overrides the measurements it
+ * is interested in. Methods are called on the threads executing the statements, and must not
+ * block. An implementation is used by declaring it as a bean, or by calling {@link
+ * me.lusory.relate.LcReactiveDataRelationalClient#setMetrics(RelateMetrics)}.
+ *
+ * @see MicrometerRelateMetrics
+ */
+public interface RelateMetrics {
+
+    /**
+     * Implementation doing nothing, used when no metrics are configured.
+     */
+    RelateMetrics NONE = new RelateMetrics() {
+    };
+
+    /**
+     * Called when the results of a statement have been consumed.
+     *
+     * @param kind          kind of statement
+     * @param entityType    entity class the statement is about, or null if unknown
+     * @param durationNanos time between the execution of the statement and the end of its
+     *                      results
+     * @param rows          number of rows returned by a select, or number of rows affected by
+     *                      another statement
+     * @param success       false if the statement failed
+     */
+    default void statementExecuted(
+            StatementKind kind,
+            @Nullable Class<?> entityType,
+            long durationNanos,
+            long rows,
+            boolean success) {
+    }
+
+    /**
+     * Called when a select is executed, to indicate if the ids of the root entities are selected
+     * first (because the query has a limit and joins on collections) or not.
+     */
+    default void selectExecuted(Class<?> entityType, boolean preSelect) {
+    }
+
+    /**
+     * Called when a step of an operation (save or delete) is done.
+     *
+     * @param durationNanos duration of the step
+     */
+    default void operationStepExecuted(long durationNanos) {
+    }
+
+    /**
+     * Called when an operation (save or delete) is done.
+     *
+     * @param steps         number of steps needed to process the operation
+     * @param statements    number of statements executed by the operation
+     * @param durationNanos duration of the operation
+     * @param success       false if the operation failed
+     */
+    default void operationExecuted(int steps, int statements, long durationNanos, boolean success) {
+    }
+
+    /**
+     * Called on each lookup in a cache.
+     *
+     * @param cache      the cache
+     * @param entityType entity class concerned by the lookup, or null if unknown
+     * @param hit        true if the value was found in the cache
+     */
+    default void cacheAccessed(CacheKind cache, @Nullable Class<?> entityType, boolean hit) {
+    }
+}
@@ -0,0 +1,116 @@
+package me.lusory.relate.metrics;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Log the statements taking more time than a threshold.
+ *
+ * <p>Statements exceeding the info threshold are logged with level INFO, and statements exceeding
+ * the warning threshold are logged with level WARN. To avoid flooding the logs when the database
+ * is slow, only a sample of the slow statements can be logged. Failed statements are not logged,
+ * as they are already reported by the error.
+ *
+ * <p>It is enabled with the property <code>relate.slow-query-log.enabled=true</code>.
+ */
+@Component
+@ConditionalOnProperty(name = "relate.slow-query-log.enabled", havingValue = "true")
+public class SlowQueryLogger implements StatementListener {
+
+    private static final Log LOGGER = LogFactory.getLog(SlowQueryLogger.class);
+
+    private long infoThresholdNanos = TimeUnit.MILLISECONDS.toNanos(200);
+    private long warnThresholdNanos = TimeUnit.MILLISECONDS.toNanos(1000);
+    private double sampleRate = 1;
+    private int maxSqlLength = 2000;
+
+    /**
+     * Duration in milliseconds from which a statement is logged with level INFO, 0 to disable.
+     */
+    @Value("${relate.slow-query-log.info-threshold-ms:200}")
+    public void setInfoThresholdMillis(long millis) {
+        this.infoThresholdNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * Duration in milliseconds from which a statement is logged with level WARN, 0 to disable.
+     */
+    @Value("${relate.slow-query-log.warn-threshold-ms:1000}")
+    public void setWarnThresholdMillis(long millis) {
+        this.warnThresholdNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * Fraction, between 0 and 1, of the slow statements to log.
+     */
+    @Value("${relate.slow-query-log.sample-rate:1}")
+    public void setSampleRate(double sampleRate) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("Sample rate must be between 0 and 1");
+        }
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Maximum number of characters of the SQL to log, longer statements being truncated.
+     */
+    @Value("${relate.slow-query-log.max-sql-length:2000}")
+    public void setMaxSqlLength(int maxSqlLength) {
+        this.maxSqlLength = maxSqlLength;
+    }
+
+    @Override
+    public void afterStatement(StatementEvent event) {
+        if (!event.isSuccess()) {
+            return;
+        }
+        boolean warn = exceeds(event, warnThresholdNanos);
+        if (!warn && !exceeds(event, infoThresholdNanos)) {
+            return;
+        }
+        if (warn ? !LOGGER.isWarnEnabled() : !LOGGER.isInfoEnabled()) {
+            return;
+        }
+        if (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+        String message = format(event);
+        if (warn) {
+            LOGGER.warn(message);
+        } else {
+            LOGGER.info(message);
+        }
+    }
+
+    private static boolean exceeds(StatementEvent event, long thresholdNanos) {
+        return thresholdNanos > 0 && event.getDurationNanos() >= thresholdNanos;
+    }
+
+    private String format(StatementEvent event) {
+        StringBuilder s = new StringBuilder(128);
+        s.append("Slow ").append(event.getKind()).append(" statement");
+        if (event.getEntityType() != null) {
+            s.append(" on ").append(event.getEntityType().getSimpleName());
+        }
+        s.append(": ")
+                .append(TimeUnit.NANOSECONDS.toMillis(event.getDurationNanos()))
+                .append(" ms, ")
+                .append(event.getRows())
+                .append(" row(s), ")
+                .append(event.getBindCount())
+                .append(" parameter(s): ");
+        String sql = event.getSql();
+        if (maxSqlLength > 0 && sql.length() > maxSqlLength) {
+            s.append(sql, 0, maxSqlLength).append("...");
+        } else {
+            s.append(sql);
+        }
+        return s.toString();
+    }
+}
@@ -0,0 +1,46 @@
+package me.lusory.relate.metrics;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.lang.Nullable;
+
+import java.time.Duration;
+
+/**
+ * Execution of a SQL statement, given to {@link StatementListener#afterStatement(StatementEvent)}.
+ */
+@Getter
+@RequiredArgsConstructor
+public class StatementEvent {
+
+    /** Kind of statement. */
+    private final StatementKind kind;
+
+    /** Entity class the statement is about, or null if unknown. */
+    @Nullable
+    private final Class<?> entityType;
+
+    /** The rendered SQL. */
+    private final String sql;
+
+    /** Number of values bound to the statement. */
+    private final int bindCount;
+
+    /** Time between the execution of the statement and the end of its results. */
+    private final long durationNanos;
+
+    /** Number of rows returned by a select, or number of rows affected by another statement. */
+    private final long rows;
+
+    /** The error if the statement failed, or null. */
+    @Nullable
+    private final Throwable error;
+
+    public Duration getDuration() {
+        return Duration.ofNanos(durationNanos);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
@@ -0,0 +1,15 @@
+package me.lusory.relate.metrics;
+
+/**
+ * Kind of SQL statement, used to group metrics.
+ */
+public enum StatementKind {
+    SELECT,
+    INSERT,
+    UPDATE,
+    DELETE,
+    /** Creation or removal of tables, indexes, constraints and sequences. */
+    SCHEMA,
+    /** Statement which kind cannot be determined. */
+    OTHER
+}
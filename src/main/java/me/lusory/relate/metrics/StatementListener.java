@@ -0,0 +1,29 @@
+package me.lusory.relate.metrics;
+
+/**
+ * Listener notified before and after the execution of each SQL statement.
+ *
+ * <p>All methods do nothing by default. Methods are called on the threads executing the
+ * statements, and must not block. A listener is used by declaring it as a bean, or by calling
+ * {@link me.lusory.relate.LcReactiveDataRelationalClient#addStatementListener(StatementListener)}.
+ *
+ * @see SlowQueryLogger
+ */
+public interface StatementListener {
+
+    /**
+     * Called when a statement is about to be executed.
+     *
+     * @param kind      kind of statement
+     * @param sql       the rendered SQL
+     * @param bindCount number of values bound to the statement
+     */
+    default void beforeStatement(StatementKind kind, String sql, int bindCount) {
+    }
+
+    /**
+     * Called when the results of a statement have been consumed, or the statement failed.
+     */
+    default void afterStatement(StatementEvent event) {
+    }
+}
@@ -4,10 +4,7 @@ import me.lusory.relate.LcReactiveDataRelationalClient;
 import me.lusory.relate.query.criteria.Criteria;
 import me.lusory.relate.query.SelectQuery;
 import org.apache.commons.lang3.mutable.MutableObject;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.CollectionFactory;
-import org.springframework.data.annotation.Transient;
 import org.springframework.data.mapping.MappingException;
 import org.springframework.data.relational.core.mapping.RelationalPersistentEntity;
 import org.springframework.data.relational.core.mapping.RelationalPersistentProperty;
@@ -22,15 +19,52 @@ import java.util.*;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
+/**
+ * State of an entity instance: persisted values, modified fields and loading of linked entities.
+ *
+ * <p>Persisted fields are identified by their ordinal (see {@link
+ * LcEntityTypeInfo#getFieldOrdinal(String)}), which is given directly by the setters of enhanced
+ * classes. Values of primitive fields are kept as raw bits, so tracking modifications does not
+ * need boxing, and modified fields are kept in a bit set.
+ *
+ * <p>As a state is kept for each loaded entity, it is kept compact: values are stored in flat
+ * arrays following the layout shared by all the instances of a class, arrays and maps are
+ * allocated only when first needed, and collections are kept as array snapshots. {@link
+ * #estimateSize()} gives the memory used, see {@link EntityStateMemoryReport}.
+ */
 @SuppressWarnings({"java:S3011"})
 public class EntityState {
 
     private static final String ENTITY_ALIAS = "entity";
     private final LcReactiveDataRelationalClient client;
     private final RelationalPersistentEntity<?> entityType;
-    private final Map<String, Object> persistedValues = new HashMap<>();
-    private final Set<String> modifiedFields = new HashSet<>();
-    private final Map<String, CorePublisher<?>> foreignTablesLoaded = new HashMap<>();
+    @Nullable
+    private final LcEntityTypeInfo typeInfo;
+    /** Persisted values of non-primitive fields, by slot, created only if needed. */
+    @Nullable
+    private Object[] persistedValues = null;
+    /** Persisted values of primitive fields as raw bits, by slot, created only if needed. */
+    @Nullable
+    private long[] persistedPrimitives = null;
+    /** Ordinals, lower than 64, of the fields having a persisted value. */
+    private long persistedBits = 0;
+    /** Ordinals, lower than 64, of the modified fields. */
+    private long modifiedBits = 0;
+    /**
+     * Persisted and modified bits of ordinals from 64, alternating a word of persisted bits and a
+     * word of modified bits, created only if needed.
+     */
+    @Nullable
+    private long[] moreBits = null;
+    /** Persisted values of fields without ordinal, created only if needed. */
+    @Nullable
+    private Map<String, Object> otherPersistedValues = null;
+    /** Modified fields without ordinal, created only if needed. */
+    @Nullable
+    private Set<String> otherModifiedFields = null;
+    /** Foreign tables loaded or being loaded, created only if needed. */
+    @Nullable
+    private Map<String, CorePublisher<?>> foreignTablesLoaded = null;
     private boolean persisted = false;
     private boolean loaded = false;
     private Mono<?> loading = null;
@@ -38,6 +72,7 @@ public class EntityState {
     public EntityState(LcReactiveDataRelationalClient client, RelationalPersistentEntity<?> entityType) {
         this.client = client;
         this.entityType = entityType;
+        this.typeInfo = LcEntityTypeInfo.find(entityType.getType());
     }
 
     public static EntityState get(Object entity, LcReactiveDataRelationalClient client) {
@@ -49,10 +84,11 @@ public class EntityState {
             LcReactiveDataRelationalClient client,
             @Nullable RelationalPersistentEntity<?> entityType
     ) {
-        final Object byteBuddySubclassedEntity = LcEntityTypeInfo.convertToByteBuddySubclass(entity);
+        final Object byteBuddySubclassedEntity =
+                entity instanceof StatefulEntity ? entity : LcEntityTypeInfo.convertToByteBuddySubclass(entity);
         try {
-            final Field fieldInfo = byteBuddySubclassedEntity.getClass().getDeclaredField("_rlState");
-            EntityState state = (EntityState) fieldInfo.get(byteBuddySubclassedEntity);
+            final StatefulEntity stateful = (StatefulEntity) byteBuddySubclassedEntity;
+            EntityState state = stateful._rlGetState();
             if (state == null) {
                 RelationalPersistentEntity<?> type;
                 if (entityType == null) {
@@ -62,7 +98,7 @@ public class EntityState {
                     type = entityType;
                 }
                 state = new EntityState(client, type);
-                fieldInfo.set(byteBuddySubclassedEntity, state);
+                stateful._rlSetState(state);
             }
             return state;
         } catch (Exception e) {
@@ -99,22 +135,122 @@ public class EntityState {
         return persisted;
     }
 
+    private int ordinal(String fieldName) {
+        return typeInfo != null ? typeInfo.getFieldOrdinal(fieldName) : -1;
+    }
+
+    private boolean getBit(int ordinal, boolean modified) {
+        if (ordinal < 64) {
+            return ((modified ? modifiedBits : persistedBits) & (1L << ordinal)) != 0;
+        }
+        if (moreBits == null) {
+            return false;
+        }
+        return (moreBits[bitsWord(ordinal, modified)] & (1L << ordinal)) != 0;
+    }
+
+    private void setBit(int ordinal, boolean modified, boolean value) {
+        long mask = 1L << ordinal;
+        if (ordinal < 64) {
+            if (modified) {
+                modifiedBits = value ? modifiedBits | mask : modifiedBits & ~mask;
+            } else {
+                persistedBits = value ? persistedBits | mask : persistedBits & ~mask;
+            }
+            return;
+        }
+        if (moreBits == null) {
+            if (!value) {
+                return;
+            }
+            moreBits = new long[((typeInfo.getPersistedFields().length - 1) >> 6) * 2];
+        }
+        int word = bitsWord(ordinal, modified);
+        moreBits[word] = value ? moreBits[word] | mask : moreBits[word] & ~mask;
+    }
+
+    private static int bitsWord(int ordinal, boolean modified) {
+        return ((ordinal >> 6) - 1) * 2 + (modified ? 1 : 0);
+    }
+
     public boolean isFieldModified(String name) {
-        return modifiedFields.contains(name);
+        int ordinal = ordinal(name);
+        if (ordinal >= 0) {
+            return getBit(ordinal, true);
+        }
+        return otherModifiedFields != null && otherModifiedFields.contains(name);
+    }
+
+    public boolean isFieldModified(int ordinal) {
+        return getBit(ordinal, true);
+    }
+
+    /**
+     * Return the names of the modified fields.
+     */
+    public List<String> getModifiedFields() {
+        List<String> names = new LinkedList<>();
+        if (typeInfo != null) {
+            Field[] fields = typeInfo.getPersistedFields();
+            addModifiedFields(names, fields, modifiedBits, 0);
+            if (moreBits != null) {
+                for (int word = 1; word < moreBits.length; word += 2) {
+                    addModifiedFields(names, fields, moreBits[word], (word / 2 + 1) * 64);
+                }
+            }
+        }
+        if (otherModifiedFields != null) {
+            names.addAll(otherModifiedFields);
+        }
+        return names;
+    }
+
+    private static void addModifiedFields(List<String> names, Field[] fields, long bits, int offset) {
+        while (bits != 0) {
+            int bit = Long.numberOfTrailingZeros(bits);
+            names.add(fields[offset + bit].getName());
+            bits &= bits - 1;
+        }
     }
 
     @Nullable
     public Object getPersistedValue(String fieldName) {
-        return persistedValues.get(fieldName);
+        int ordinal = ordinal(fieldName);
+        if (ordinal >= 0) {
+            return getPersistedValue(ordinal);
+        }
+        return otherPersistedValues != null ? otherPersistedValues.get(fieldName) : null;
+    }
+
+    @Nullable
+    public Object getPersistedValue(int ordinal) {
+        if (!getBit(ordinal, false)) {
+            return null;
+        }
+        int slot = typeInfo.getFieldSlot(ordinal);
+        if (typeInfo.isPrimitiveField(ordinal)) {
+            return fromBits(typeInfo.getPersistedFields()[ordinal].getType(), persistedPrimitives[slot]);
+        }
+        return persistedValues != null ? persistedValues[slot] : null;
+    }
+
+    private void clearPersistedValues() {
+        if (persistedValues != null) {
+            Arrays.fill(persistedValues, null);
+        }
+        persistedBits = 0;
+        modifiedBits = 0;
+        moreBits = null;
+        otherPersistedValues = null;
+        otherModifiedFields = null;
     }
 
     public void deleted() {
         persisted = false;
         loaded = false;
         loading = null;
-        persistedValues.clear();
-        modifiedFields.clear();
-        foreignTablesLoaded.clear();
+        clearPersistedValues();
+        foreignTablesLoaded = null;
     }
 
     public void lazyLoaded() {
@@ -143,6 +279,15 @@ public class EntityState {
         return (Mono<T>) loading;
     }
 
+    /**
+     * Forget the given loading if it is still the current one, because it has been cancelled.
+     */
+    public synchronized void cancelLoading(Mono<?> cancelled) {
+        if (loading == cancelled) {
+            loading = null;
+        }
+    }
+
     @SuppressWarnings("unchecked")
     @Nullable
     public <T> Mono<T> getLoading() {
@@ -156,31 +301,217 @@ public class EntityState {
     }
 
     private void updatePersistedValues(Object entity) {
-        modifiedFields.clear();
-        persistedValues.clear();
-        for (Field f : entity.getClass().getDeclaredFields()) {
-            if ("_rlState".equals(f.getName())
-                    || f.isAnnotationPresent(Transient.class)
-                    || f.isAnnotationPresent(Autowired.class)
-                    || f.isAnnotationPresent(Value.class)) {
-                continue;
+        clearPersistedValues();
+        if (typeInfo == null) {
+            for (Field f : LcEntityTypeInfo.get(entity.getClass()).getPersistedFields()) {
+                try {
+                    savePersistedValue(f, f.get(entity));
+                } catch (Exception e) {
+                    throw new ModelAccessException(
+                            "Error saving value for field " + f.getName(), e);
+                }
             }
-            f.setAccessible(true);
+            return;
+        }
+        Field[] fields = typeInfo.getPersistedFields();
+        for (int i = 0; i < fields.length; ++i) {
+            Field f = fields[i];
             try {
-                savePersistedValue(f, f.get(entity));
+                if (typeInfo.isPrimitiveField(i)) {
+                    primitives()[typeInfo.getFieldSlot(i)] = readBits(f, entity);
+                    setBit(i, false, true);
+                } else {
+                    savePersistedValue(i, f, f.get(entity));
+                }
             } catch (Exception e) {
                 throw new ModelAccessException("Error saving value for field " + f.getName(), e);
             }
         }
     }
 
-    private void savePersistedValue(Field field, Object value) {
+    private void savePersistedValue(Field field, @Nullable Object value) {
+        int ordinal = ordinal(field.getName());
+        if (ordinal >= 0) {
+            savePersistedValue(ordinal, field, value);
+            return;
+        }
+        if (otherPersistedValues == null) {
+            otherPersistedValues = new HashMap<>();
+        }
+        otherPersistedValues.put(field.getName(), copyPersistedValue(field, value));
+    }
+
+    private void savePersistedValue(int ordinal, Field field, @Nullable Object value) {
+        int slot = typeInfo.getFieldSlot(ordinal);
+        if (typeInfo.isPrimitiveField(ordinal)) {
+            primitives()[slot] = toBits(value);
+        } else if (value != null || persistedValues != null) {
+            values()[slot] = copyPersistedValue(field, value);
+        }
+        setBit(ordinal, false, true);
+    }
+
+    private Object[] values() {
+        if (persistedValues == null) {
+            persistedValues = new Object[typeInfo.getObjectFieldCount()];
+        }
+        return persistedValues;
+    }
+
+    private long[] primitives() {
+        if (persistedPrimitives == null) {
+            persistedPrimitives = new long[typeInfo.getPrimitiveFieldCount()];
+        }
+        return persistedPrimitives;
+    }
+
+    /**
+     * Keep a snapshot of the elements of a collection, as a fixed-size list over an array.
+     */
+    @Nullable
+    private static Object copyPersistedValue(Field field, @Nullable Object value) {
         if (value != null && ModelUtils.isCollection(field)) {
-            List<Object> list = new LinkedList<>(ModelUtils.getAsCollection(value));
-            persistedValues.put(field.getName(), list);
-        } else {
-            persistedValues.put(field.getName(), value);
+            Collection<?> collection = ModelUtils.getAsCollection(value);
+            return collection.isEmpty()
+                    ? Collections.emptyList()
+                    : Arrays.asList(collection.toArray());
         }
+        return value;
+    }
+
+    /**
+     * Return true if the given value is the persisted value of the field with the given ordinal.
+     */
+    private boolean isPersistedValue(int ordinal, @Nullable Object value) {
+        if (!getBit(ordinal, false)) {
+            return value == null;
+        }
+        int slot = typeInfo.getFieldSlot(ordinal);
+        if (typeInfo.isPrimitiveField(ordinal)) {
+            return value != null && persistedPrimitives[slot] == toBits(value);
+        }
+        return Objects.equals(value, persistedValues != null ? persistedValues[slot] : null);
+    }
+
+    private boolean isPersistedValue(int ordinal, long bits) {
+        return getBit(ordinal, false)
+                && persistedPrimitives[typeInfo.getFieldSlot(ordinal)] == bits;
+    }
+
+    private static long toBits(@Nullable Object value) {
+        if (value instanceof Boolean) {
+            return ((Boolean) value).booleanValue() ? 1 : 0;
+        }
+        if (value instanceof Character) {
+            return (Character) value;
+        }
+        if (value instanceof Float) {
+            return Float.floatToIntBits((Float) value);
+        }
+        if (value instanceof Double) {
+            return Double.doubleToLongBits((Double) value);
+        }
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        throw new ModelAccessException("Unexpected value for a primitive field: " + value);
+    }
+
+    private static Object fromBits(Class<?> type, long bits) {
+        if (type == boolean.class) {
+            return bits != 0;
+        }
+        if (type == byte.class) {
+            return (byte) bits;
+        }
+        if (type == short.class) {
+            return (short) bits;
+        }
+        if (type == int.class) {
+            return (int) bits;
+        }
+        if (type == long.class) {
+            return bits;
+        }
+        if (type == float.class) {
+            return Float.intBitsToFloat((int) bits);
+        }
+        if (type == double.class) {
+            return Double.longBitsToDouble(bits);
+        }
+        return (char) bits;
+    }
+
+    private static long readBits(Field field, Object entity) throws IllegalAccessException {
+        Class<?> type = field.getType();
+        if (type == boolean.class) {
+            return field.getBoolean(entity) ? 1 : 0;
+        }
+        if (type == float.class) {
+            return Float.floatToIntBits(field.getFloat(entity));
+        }
+        if (type == double.class) {
+            return Double.doubleToLongBits(field.getDouble(entity));
+        }
+        if (type == char.class) {
+            return field.getChar(entity);
+        }
+        return field.getLong(entity);
+    }
+
+    private void setModified(int ordinal, boolean modified) {
+        setBit(ordinal, true, modified);
+    }
+
+    private void setModified(String fieldName, boolean modified) {
+        if (modified) {
+            if (otherModifiedFields == null) {
+                otherModifiedFields = new HashSet<>();
+            }
+            otherModifiedFields.add(fieldName);
+        } else if (otherModifiedFields != null) {
+            otherModifiedFields.remove(fieldName);
+        }
+    }
+
+    /**
+     * Return an estimation of the memory used by this state, in bytes, excluding the values
+     * themselves but including the snapshots of collections.
+     *
+     * <p>The estimation assumes a 64-bit JVM with compressed references: 12 bytes of object
+     * header, 4 bytes per reference and objects aligned on 8 bytes.
+     */
+    public long estimateSize() {
+        long size = EntityStateMemoryReport.STATE_SIZE;
+        if (persistedValues != null) {
+            size += EntityStateMemoryReport.arraySize(persistedValues.length, 4);
+            for (Object value : persistedValues) {
+                if (value instanceof List && value != Collections.emptyList()) {
+                    size += estimateSnapshotSize(((List<?>) value).size());
+                }
+            }
+        }
+        if (persistedPrimitives != null) {
+            size += EntityStateMemoryReport.arraySize(persistedPrimitives.length, 8);
+        }
+        if (moreBits != null) {
+            size += EntityStateMemoryReport.arraySize(moreBits.length, 8);
+        }
+        if (otherPersistedValues != null) {
+            size += EntityStateMemoryReport.hashMapSize(otherPersistedValues.size());
+        }
+        if (otherModifiedFields != null) {
+            size += EntityStateMemoryReport.hashMapSize(otherModifiedFields.size()) + 16;
+        }
+        if (foreignTablesLoaded != null) {
+            size += EntityStateMemoryReport.hashMapSize(foreignTablesLoaded.size());
+        }
+        return size;
+    }
+
+    private static long estimateSnapshotSize(int elements) {
+        // list over an array
+        return 16 + EntityStateMemoryReport.arraySize(elements, 4);
     }
 
     public <T> Mono<T> load(T entity) {
@@ -188,11 +519,16 @@ public class EntityState {
     }
 
     public void fieldSet(String fieldName, Object newValue) {
-        if (Objects.equals(newValue, persistedValues.get(fieldName))) {
-            modifiedFields.remove(fieldName);
+        int ordinal = ordinal(fieldName);
+        if (ordinal >= 0) {
+            fieldSet(ordinal, newValue);
             return;
         }
-        modifiedFields.add(fieldName);
+        setModified(
+                fieldName,
+                !Objects.equals(
+                        newValue,
+                        otherPersistedValues != null ? otherPersistedValues.get(fieldName) : null));
     }
 
     public void fieldSet(String fieldName, boolean newValue) {
@@ -227,6 +563,74 @@ public class EntityState {
         fieldSet(fieldName, Character.valueOf(newValue));
     }
 
+    public void fieldSet(int ordinal, Object newValue) {
+        setModified(ordinal, !isPersistedValue(ordinal, newValue));
+    }
+
+    public void fieldSet(int ordinal, boolean newValue) {
+        if (!typeInfo.isPrimitiveField(ordinal)) {
+            fieldSet(ordinal, Boolean.valueOf(newValue));
+            return;
+        }
+        setModified(ordinal, !isPersistedValue(ordinal, newValue ? 1 : 0));
+    }
+
+    public void fieldSet(int ordinal, byte newValue) {
+        if (!typeInfo.isPrimitiveField(ordinal)) {
+            fieldSet(ordinal, Byte.valueOf(newValue));
+            return;
+        }
+        setModified(ordinal, !isPersistedValue(ordinal, newValue));
+    }
+
+    public void fieldSet(int ordinal, short newValue) {
+        if (!typeInfo.isPrimitiveField(ordinal)) {
+            fieldSet(ordinal, Short.valueOf(newValue));
+            return;
+        }
+        setModified(ordinal, !isPersistedValue(ordinal, newValue));
+    }
+
+    public void fieldSet(int ordinal, int newValue) {
+        if (!typeInfo.isPrimitiveField(ordinal)) {
+            fieldSet(ordinal, Integer.valueOf(newValue));
+            return;
+        }
+        setModified(ordinal, !isPersistedValue(ordinal, newValue));
+    }
+
+    public void fieldSet(int ordinal, long newValue) {
+        if (!typeInfo.isPrimitiveField(ordinal)) {
+            fieldSet(ordinal, Long.valueOf(newValue));
+            return;
+        }
+        setModified(ordinal, !isPersistedValue(ordinal, newValue));
+    }
+
+    public void fieldSet(int ordinal, float newValue) {
+        if (!typeInfo.isPrimitiveField(ordinal)) {
+            fieldSet(ordinal, Float.valueOf(newValue));
+            return;
+        }
+        setModified(ordinal, !isPersistedValue(ordinal, Float.floatToIntBits(newValue)));
+    }
+
+    public void fieldSet(int ordinal, double newValue) {
+        if (!typeInfo.isPrimitiveField(ordinal)) {
+            fieldSet(ordinal, Double.valueOf(newValue));
+            return;
+        }
+        setModified(ordinal, !isPersistedValue(ordinal, Double.doubleToLongBits(newValue)));
+    }
+
+    public void fieldSet(int ordinal, char newValue) {
+        if (!typeInfo.isPrimitiveField(ordinal)) {
+            fieldSet(ordinal, Character.valueOf(newValue));
+            return;
+        }
+        setModified(ordinal, !isPersistedValue(ordinal, newValue));
+    }
+
     public void setPersistedField(Object instance, Field field, Object value, boolean saved) {
         field.setAccessible(true);
         try {
@@ -235,37 +639,55 @@ public class EntityState {
             throw new ModelAccessException(
                     "Error setting field " + field.getName() + " on " + instance, e);
         }
-        if (Objects.equals(value, persistedValues.get(field.getName()))) {
-            modifiedFields.remove(field.getName());
-        } else if (saved) {
-            modifiedFields.remove(field.getName());
+        int ordinal = ordinal(field.getName());
+        boolean same =
+                ordinal >= 0
+                        ? isPersistedValue(ordinal, value)
+                        : Objects.equals(value, getPersistedValue(field.getName()));
+        if (!same && saved) {
             savePersistedValue(field, value);
+        }
+        if (ordinal >= 0) {
+            setModified(ordinal, !same && !saved);
         } else {
-            modifiedFields.add(field.getName());
+            setModified(field.getName(), !same && !saved);
         }
     }
 
     public void restorePersistedValue(Object instance, Field field) {
         field.setAccessible(true);
-        Object value = persistedValues.get(field.getName());
+        Object value = getPersistedValue(field.getName());
         try {
             field.set(instance, value);
         } catch (Exception e) {
             throw new ModelAccessException(
                     "Error setting field " + field.getName() + " on " + instance, e);
         }
-        modifiedFields.remove(field.getName());
+        int ordinal = ordinal(field.getName());
+        if (ordinal >= 0) {
+            setModified(ordinal, false);
+        } else {
+            setModified(field.getName(), false);
+        }
+    }
+
+    private Map<String, CorePublisher<?>> foreignTablesLoaded() {
+        if (foreignTablesLoaded == null) {
+            foreignTablesLoaded = new HashMap<>(4);
+        }
+        return foreignTablesLoaded;
     }
 
     public void setForeignTableField(Object instance, Field field, Object value, boolean saved) {
         setPersistedField(instance, field, value, saved);
-        foreignTablesLoaded.put(field.getName(), null);
+        foreignTablesLoaded().put(field.getName(), null);
     }
 
     @Nullable
     public <T> MutableObject<T> getForeignTableField(Object entity, String fieldName)
             throws IllegalAccessException, NoSuchFieldException {
-        return getForeignTableField(entity, entity.getClass().getDeclaredField(fieldName));
+        return getForeignTableField(
+                entity, LcEntityTypeInfo.get(entity.getClass()).getRequiredField(fieldName));
     }
 
     @SuppressWarnings("unchecked")
@@ -277,9 +699,8 @@ public class EntityState {
         if (instance != null) {
             return new MutableObject<>((T) instance);
         }
-        if (foreignTablesLoaded.containsKey(field.getName())
-                || (persistedValues.containsKey(field.getName())
-                && persistedValues.get(field.getName()) != null)) {
+        if ((foreignTablesLoaded != null && foreignTablesLoaded.containsKey(field.getName()))
+                || getPersistedValue(field.getName()) != null) {
             return new MutableObject<>(null);
         }
         return null;
@@ -288,7 +709,8 @@ public class EntityState {
     @SuppressWarnings("unchecked")
     public <T> Mono<T> lazyGetForeignTableField(Object entity, String fieldName, String joinKey) {
         try {
-            CorePublisher<?> foreignLoading = foreignTablesLoaded.get(fieldName);
+            CorePublisher<?> foreignLoading =
+                    foreignTablesLoaded != null ? foreignTablesLoaded.get(fieldName) : null;
             if (foreignLoading != null) {
                 return (Mono<T>) foreignLoading;
             }
@@ -296,7 +718,7 @@ public class EntityState {
             if (instance != null) {
                 return instance.getValue() != null ? Mono.just(instance.getValue()) : Mono.empty();
             }
-            Field field = entity.getClass().getDeclaredField(fieldName);
+            Field field = LcEntityTypeInfo.get(entity.getClass()).getRequiredField(fieldName);
             Object id = ModelUtils.getRequiredId(entity, entityType, null);
             RelationalPersistentEntity<?> elementEntity =
                     client.getMappingContext().getRequiredPersistentEntity(field.getType());
@@ -310,19 +732,18 @@ public class EntityState {
                             .doOnNext(
                                     inst -> {
                                         try {
-                                            field.setAccessible(true);
                                             field.set(entity, inst);
                                             savePersistedValue(field, inst);
-                                            Field fk = field.getType().getDeclaredField(joinKey);
-                                            fk.setAccessible(true);
-                                            fk.set(inst, entity);
+                                            LcEntityTypeInfo.get(field.getType())
+                                                    .getRequiredField(joinKey)
+                                                    .set(inst, entity);
                                         } catch (Exception e) {
                                             throw new ModelAccessException(
                                                     "Unable to set " + fieldName, e);
                                         }
                                     });
             select = select.cache();
-            foreignTablesLoaded.put(fieldName, select);
+            foreignTablesLoaded().put(fieldName, select);
             return select;
         } catch (Exception e) {
             return Mono.error(e);
@@ -333,7 +754,8 @@ public class EntityState {
     public <T> Flux<T> lazyGetForeignTableCollectionField(
             Object entity, String fieldName, String joinKey) {
         try {
-            CorePublisher<?> foreignLoading = foreignTablesLoaded.get(fieldName);
+            CorePublisher<?> foreignLoading =
+                    foreignTablesLoaded != null ? foreignTablesLoaded.get(fieldName) : null;
             if (foreignLoading != null) {
                 return (Flux<T>) foreignLoading;
             }
@@ -349,10 +771,10 @@ public class EntityState {
                 return Flux.fromIterable((Iterable<T>) collection);
             }
 
-            Field field = entity.getClass().getDeclaredField(fieldName);
-            field.setAccessible(true);
+            LcEntityTypeInfo typeInfo = LcEntityTypeInfo.get(entity.getClass());
+            Field field = typeInfo.getRequiredField(fieldName);
             Object id = ModelUtils.getRequiredId(entity, entityType, null);
-            Class<?> elementType = ModelUtils.getCollectionType(field);
+            Class<?> elementType = typeInfo.getCollectionElementType(fieldName);
             if (elementType == null) {
                 throw new MappingException("Property is not a collection: " + fieldName);
             }
@@ -365,15 +787,14 @@ public class EntityState {
                             .where(Criteria.property("element", fkProperty.getName()).is(id))
                             .execute(client);
 
-            Field fk = elementType.getDeclaredField(joinKey);
-            fk.setAccessible(true);
+            Field fk = LcEntityTypeInfo.get(elementType).getRequiredField(joinKey);
             if (field.getType().isArray()) {
                 flux = toArray(flux, field, entity, elementType, fk);
             } else {
                 flux = toCollection(flux, field, entity, elementType, fk);
             }
             flux = flux.cache();
-            foreignTablesLoaded.put(fieldName, flux);
+            foreignTablesLoaded().put(fieldName, flux);
             return flux;
         } catch (Exception e) {
             return Flux.error(e);
@@ -391,12 +812,8 @@ public class EntityState {
                         joinEntity -> {
                             try {
                                 Field f =
-                                        joinEntity
-                                                .getClass()
-                                                .getDeclaredField(
-                                                        "entity"
-                                                                + joinFieldKeyNumber);
-                                f.setAccessible(true);
+                                        LcEntityTypeInfo.get(joinEntity.getClass())
+                                                .getRequiredField("entity" + joinFieldKeyNumber);
                                 return (T) f.get(joinEntity);
                             } catch (Exception e) {
                                 throw new ModelAccessException(
@@ -427,15 +844,14 @@ public class EntityState {
     }
 
     public void foreignTableLoaded(Field field, Object value) {
-        foreignTablesLoaded.put(field.getName(), null);
+        foreignTablesLoaded().put(field.getName(), null);
         savePersistedValue(field, value);
     }
 
     @SuppressWarnings("unchecked")
     public <T, R> Function<T, R> getFieldMapper(Object entity, String fieldName) {
         try {
-            Field field = entity.getClass().getDeclaredField(fieldName);
-            field.setAccessible(true);
+            Field field = LcEntityTypeInfo.get(entity.getClass()).getRequiredField(fieldName);
             return e -> {
                 try {
                     return (R) field.get(e);
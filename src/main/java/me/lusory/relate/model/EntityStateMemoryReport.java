@@ -0,0 +1,153 @@
+package me.lusory.relate.model;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Report of the memory used by the states of entities, to size heaps when loading large numbers
+ * of entities.
+ *
+ * <p>Sizes are estimated for a 64-bit JVM with compressed references. They include the {@link
+ * EntityState} of each entity and the snapshots of collections it keeps, not the entities
+ * themselves.
+ */
+public class EntityStateMemoryReport {
+
+    /** Estimated size of an {@link EntityState} without its arrays and maps. */
+    static final long STATE_SIZE = 72;
+
+    private final Map<Class<?>, Usage> usages = new LinkedHashMap<>();
+
+    /**
+     * Create a report for the given entities. Entities without state are ignored.
+     */
+    public static EntityStateMemoryReport of(Iterable<?> entities) {
+        EntityStateMemoryReport report = new EntityStateMemoryReport();
+        for (Object entity : entities) {
+            report.add(entity);
+        }
+        return report;
+    }
+
+    /**
+     * Return an estimation of the memory used by the state of an entity of the given class, once
+     * loaded, excluding the snapshots of collections.
+     */
+    public static long estimateLoadedStateSize(Class<?> entityClass) {
+        LcEntityTypeInfo info = LcEntityTypeInfo.get(entityClass);
+        int fields = info.getPersistedFields().length;
+        long size = STATE_SIZE;
+        if (info.getObjectFieldCount() > 0) {
+            size += arraySize(info.getObjectFieldCount(), 4);
+        }
+        if (info.getPrimitiveFieldCount() > 0) {
+            size += arraySize(info.getPrimitiveFieldCount(), 8);
+        }
+        if (fields > 64) {
+            size += arraySize(((fields - 1) >> 6) * 2, 8);
+        }
+        return size;
+    }
+
+    /**
+     * Add an entity to this report.
+     */
+    public void add(Object entity) {
+        if (!(entity instanceof StatefulEntity)) {
+            return;
+        }
+        EntityState state = ((StatefulEntity) entity)._rlGetState();
+        if (state == null) {
+            return;
+        }
+        Class<?> type = entity.getClass();
+        if (type.getName().contains("ByteBuddy")) { // subclassed with bytebuddy
+            type = type.getSuperclass();
+        }
+        Usage usage = usages.computeIfAbsent(type, t -> new Usage());
+        usage.count++;
+        usage.bytes += state.estimateSize();
+    }
+
+    /**
+     * Return the number of entities per class.
+     */
+    public Map<Class<?>, Long> getEntityCounts() {
+        Map<Class<?>, Long> counts = new LinkedHashMap<>();
+        usages.forEach((type, usage) -> counts.put(type, usage.count));
+        return Collections.unmodifiableMap(counts);
+    }
+
+    /**
+     * Return the estimated memory, in bytes, used by the states of the entities per class.
+     */
+    public Map<Class<?>, Long> getBytes() {
+        Map<Class<?>, Long> bytes = new LinkedHashMap<>();
+        usages.forEach((type, usage) -> bytes.put(type, usage.bytes));
+        return Collections.unmodifiableMap(bytes);
+    }
+
+    /**
+     * Return the total number of entities in this report.
+     */
+    public long getEntityCount() {
+        long count = 0;
+        for (Usage usage : usages.values()) {
+            count += usage.count;
+        }
+        return count;
+    }
+
+    /**
+     * Return the total estimated memory, in bytes, used by the states of the entities.
+     */
+    public long getTotalBytes() {
+        long bytes = 0;
+        for (Usage usage : usages.values()) {
+            bytes += usage.bytes;
+        }
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder("Entity states memory:");
+        usages.forEach(
+                (type, usage) ->
+                        s.append("\n - ")
+                                .append(type.getSimpleName())
+                                .append(": ")
+                                .append(usage.count)
+                                .append(" entities, ")
+                                .append(usage.bytes)
+                                .append(" bytes (")
+                                .append(usage.bytes / usage.count)
+                                .append(" per entity)"));
+        s.append("\n Total: ")
+                .append(getEntityCount())
+                .append(" entities, ")
+                .append(getTotalBytes())
+                .append(" bytes");
+        return s.toString();
+    }
+
+    static long arraySize(int length, int elementSize) {
+        return align(16L + (long) length * elementSize);
+    }
+
+    static long hashMapSize(int entries) {
+        // map, table and entries
+        int table = Integer.highestOneBit(Math.max(1, entries * 4 / 3)) * 2;
+        return 48 + arraySize(table, 4) + 32L * entries;
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    private static final class Usage {
+        private long count;
+        private long bytes;
+    }
+}
@@ -28,15 +28,11 @@ public class JoinTableCollectionFromTargetCollection<J, T> implements Collection
                         : new ArrayList<>(0);
         try {
             joinClass = (Class<J>) getClass().getClassLoader().loadClass(joinClassName);
-            sourceField =
-                    joinClass.getDeclaredField(
-                            "entity" + sourceAttributeLinkNumber);
-            sourceField.setAccessible(true);
+            LcEntityTypeInfo joinInfo = LcEntityTypeInfo.get(joinClass);
+            sourceField = joinInfo.getRequiredField("entity" + sourceAttributeLinkNumber);
             targetField =
-                    joinClass.getDeclaredField(
-                            "entity"
-                                    + (sourceAttributeLinkNumber == 1 ? 2 : 1));
-            targetField.setAccessible(true);
+                    joinInfo.getRequiredField(
+                            "entity" + (sourceAttributeLinkNumber == 1 ? 2 : 1));
         } catch (Exception e) {
             throw new ModelAccessException(
                     "Error initializing JoinTableCollectionFromTargetCollection on "
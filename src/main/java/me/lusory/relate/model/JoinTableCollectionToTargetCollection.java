@@ -26,15 +26,11 @@ public class JoinTableCollectionToTargetCollection<J, T> implements Set<T> {
         this.sourceCollection = sourceCollection;
         try {
             joinClass = getClass().getClassLoader().loadClass(joinClassName);
-            sourceField =
-                    joinClass.getDeclaredField(
-                            "entity" + sourceAttributeLinkNumber);
-            sourceField.setAccessible(true);
+            LcEntityTypeInfo joinInfo = LcEntityTypeInfo.get(joinClass);
+            sourceField = joinInfo.getRequiredField("entity" + sourceAttributeLinkNumber);
             targetField =
-                    joinClass.getDeclaredField(
-                            "entity"
-                                    + (sourceAttributeLinkNumber == 1 ? 2 : 1));
-            targetField.setAccessible(true);
+                    joinInfo.getRequiredField(
+                            "entity" + (sourceAttributeLinkNumber == 1 ? 2 : 1));
         } catch (Exception e) {
             throw new ModelAccessException(
                     "Error initializing JoinTableCollectionToTargetCollection on " + joinClassName,
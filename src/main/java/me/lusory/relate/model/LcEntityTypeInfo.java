@@ -1,8 +1,12 @@
 package me.lusory.relate.model;
 
+import me.lusory.relate.annotations.CompositeId;
 import me.lusory.relate.annotations.ForeignTable;
 import me.lusory.relate.annotations.JoinTable;
 import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.mapping.MappingException;
 import org.springframework.lang.Nullable;
 import org.springframework.objenesis.ObjenesisHelper;
@@ -11,31 +15,74 @@ import java.lang.reflect.Field;
 import java.util.*;
 import java.util.stream.Collectors;
 
+/**
+ * Metadata about an entity class, resolved once when the entity classes are registered at startup.
+ *
+ * <p>The registry is immutable once published: registering classes creates a new registry, so it
+ * can be read concurrently without locking.
+ */
 public class LcEntityTypeInfo {
 
-    private static final Map<Class<?>, LcEntityTypeInfo> cache = new HashMap<>();
+    /**
+     * Registered entity classes.
+     */
+    private static volatile Map<Class<?>, LcEntityTypeInfo> cache = Collections.emptyMap();
+    /**
+     * Registered entity classes, and their ByteBuddy subclass.
+     */
+    private static volatile Map<Class<?>, LcEntityTypeInfo> lookup = Collections.emptyMap();
 
     private static final String ATTRIBUTE1 = "entity" + "1";
     private static final String ATTRIBUTE2 = "entity" + "2";
     private final List<Class<?>> types = new ArrayList<>();
     private final Map<String, ForeignTableInfo> foreignTables = new HashMap<>();
     private final Map<String, JoinTableInfo> joinTables = new HashMap<>();
+    private final Map<String, Field> fields = new HashMap<>();
+    private final Map<String, Class<?>> collectionElementTypes = new HashMap<>();
+    private final Field[] persistedFields;
+    private final Map<String, Integer> fieldOrdinals = new HashMap<>();
+    private final boolean[] primitiveFields;
+    private final int[] fieldSlots;
+    private int objectFieldCount = 0;
+    private int primitiveFieldCount = 0;
+    @Nullable
+    private final String[] compositeIdProperties;
 
     @SuppressWarnings({"squid:S3011"})
     private LcEntityTypeInfo(Class<?> clazz) throws ModelException {
         types.add(clazz);
+        Class<?> entityClass = clazz;
         if (clazz.getName().contains("ByteBuddy")) { // subclassed with bytebuddy
-            types.add(clazz.getSuperclass());
+            entityClass = clazz.getSuperclass();
+            types.add(entityClass);
         }
-        Field stateField;
-        try {
-            stateField = clazz.getDeclaredField("_rlState");
-            stateField.setAccessible(true);
-        } catch (Exception e) {
+        if (!StatefulEntity.class.isAssignableFrom(clazz)) {
             throw new ModelException(
                     "Unable to access to state field for entity class " + clazz.getName());
         }
         List<Field> fields = ModelUtils.getAllFields(clazz);
+        for (Field f : fields) {
+            // fields are listed from the class to its super classes, the first one wins
+            if (this.fields.containsKey(f.getName())) {
+                continue;
+            }
+            f.setAccessible(true);
+            this.fields.put(f.getName(), f);
+            if (ModelUtils.isCollection(f)) {
+                // element type may be null if it cannot be resolved
+                collectionElementTypes.put(f.getName(), ModelUtils.getCollectionType(f));
+            }
+        }
+        persistedFields = getPersistedFields(entityClass);
+        primitiveFields = new boolean[persistedFields.length];
+        fieldSlots = new int[persistedFields.length];
+        for (int i = 0; i < persistedFields.length; ++i) {
+            fieldOrdinals.put(persistedFields[i].getName(), i);
+            primitiveFields[i] = persistedFields[i].getType().isPrimitive();
+            fieldSlots[i] = primitiveFields[i] ? primitiveFieldCount++ : objectFieldCount++;
+        }
+        CompositeId compositeId = entityClass.getAnnotation(CompositeId.class);
+        compositeIdProperties = compositeId != null ? compositeId.properties() : null;
         for (Field f : fields) {
             ForeignTable ft = f.getAnnotation(ForeignTable.class);
             if (ft != null) {
@@ -69,8 +116,33 @@ public class LcEntityTypeInfo {
         }
     }
 
+    /**
+     * Return the fields of the given class that need to be saved when an entity is loaded, to
+     * detect modifications.
+     *
+     * <p>Fields are sorted by name, so the index of a field in the array is its ordinal, which is
+     * also computed by {@link me.lusory.relate.EntityClassRewriter} when the class is enhanced.
+     */
+    @SuppressWarnings({"squid:S3011"})
+    private static Field[] getPersistedFields(Class<?> type) {
+        List<Field> list = new ArrayList<>();
+        for (Field f : type.getDeclaredFields()) {
+            if ("_rlState".equals(f.getName())
+                    || f.isSynthetic()
+                    || f.isAnnotationPresent(Transient.class)
+                    || f.isAnnotationPresent(Autowired.class)
+                    || f.isAnnotationPresent(Value.class)) {
+                continue;
+            }
+            f.setAccessible(true);
+            list.add(f);
+        }
+        list.sort(Comparator.comparing(Field::getName));
+        return list.toArray(new Field[0]);
+    }
+
     public static LcEntityTypeInfo get(Class<?> clazz) {
-        LcEntityTypeInfo info = cache.get(clazz);
+        LcEntityTypeInfo info = lookup.get(clazz);
         if (info == null) {
             throw new ModelAccessException(
                     "Unknown entity class "
@@ -81,20 +153,34 @@ public class LcEntityTypeInfo {
         return info;
     }
 
+    /**
+     * Return the information about the given class, or null if this is not a known entity class.
+     */
+    @Nullable
+    public static LcEntityTypeInfo find(Class<?> clazz) {
+        return lookup.get(clazz);
+    }
+
     public static Collection<Class<?>> getClasses() {
         return cache.keySet();
     }
 
-    public static void setClasses(Collection<Class<?>> classes) throws ModelException {
+    public static synchronized void setClasses(Collection<Class<?>> classes) throws ModelException {
+        Map<Class<?>, LcEntityTypeInfo> newCache = new HashMap<>(cache);
+        Map<Class<?>, LcEntityTypeInfo> newLookup = new HashMap<>(lookup);
         for (Class<?> cl : classes) {
             final LcEntityTypeInfo info = new LcEntityTypeInfo(cl);
             // TODO: maybe think this out better
             if (cl.getName().contains("ByteBuddy")) { // subclassed with bytebuddy
-                cache.put(cl.getSuperclass(), info);
+                newCache.put(cl.getSuperclass(), info);
+                newLookup.put(cl.getSuperclass(), info);
             } else {
-                cache.put(cl, info);
+                newCache.put(cl, info);
             }
+            newLookup.put(cl, info);
         }
+        cache = Collections.unmodifiableMap(newCache);
+        lookup = Collections.unmodifiableMap(newLookup);
     }
 
     public static Collection<Class<?>> addGeneratedJoinTables(Collection<Class<?>> classes) {
@@ -124,7 +210,7 @@ public class LcEntityTypeInfo {
      * @return true if it is a foreign table
      */
     public static boolean isForeignTableField(Field field) {
-        LcEntityTypeInfo ti = cache.get(field.getDeclaringClass());
+        LcEntityTypeInfo ti = lookup.get(field.getDeclaringClass());
         if (ti == null) {
             return false;
         }
@@ -136,6 +222,114 @@ public class LcEntityTypeInfo {
         return false;
     }
 
+    /**
+     * Return the field with the given name, declared on the class or one of its super classes.
+     *
+     * @param fieldName name of the field
+     * @return the field, already accessible, or null if it does not exist
+     */
+    @Nullable
+    public Field getField(String fieldName) {
+        return fields.get(fieldName);
+    }
+
+    /**
+     * Return the field with the given name, declared on the class or one of its super classes.
+     *
+     * @param fieldName name of the field
+     * @return the field, already accessible
+     */
+    public Field getRequiredField(String fieldName) {
+        Field field = fields.get(fieldName);
+        if (field == null) {
+            throw new ModelAccessException(
+                    "Unknown field " + fieldName + " in class " + types.get(0).getName());
+        }
+        return field;
+    }
+
+    /**
+     * Return true if the given field is a collection or an array.
+     *
+     * @param fieldName name of the field
+     * @return true if it is a collection, false if it is not or it does not exist
+     */
+    public boolean isCollection(String fieldName) {
+        return collectionElementTypes.containsKey(fieldName);
+    }
+
+    /**
+     * Return the type of elements of a collection field.
+     *
+     * @param fieldName name of the field
+     * @return the type of elements, or null if the field is not a collection
+     */
+    @Nullable
+    public Class<?> getCollectionElementType(String fieldName) {
+        return collectionElementTypes.get(fieldName);
+    }
+
+    /**
+     * Return the fields to save when an entity is loaded, to be able to detect modifications.
+     *
+     * @return persisted fields, already accessible
+     */
+    public Field[] getPersistedFields() {
+        return persistedFields;
+    }
+
+    /**
+     * Return the ordinal of a persisted field, which is its index in {@link
+     * #getPersistedFields()}.
+     *
+     * @param fieldName name of the field
+     * @return the ordinal, or -1 if this is not a persisted field
+     */
+    public int getFieldOrdinal(String fieldName) {
+        Integer ordinal = fieldOrdinals.get(fieldName);
+        return ordinal != null ? ordinal : -1;
+    }
+
+    /**
+     * Return true if the persisted field with the given ordinal has a primitive type.
+     */
+    public boolean isPrimitiveField(int ordinal) {
+        return primitiveFields[ordinal];
+    }
+
+    /**
+     * Return the index of the persisted field with the given ordinal, among the primitive fields
+     * if it has a primitive type, else among the other fields. This is the layout shared by the
+     * {@link EntityState} of all the instances of this class.
+     */
+    public int getFieldSlot(int ordinal) {
+        return fieldSlots[ordinal];
+    }
+
+    /**
+     * Return the number of persisted fields with a non-primitive type.
+     */
+    public int getObjectFieldCount() {
+        return objectFieldCount;
+    }
+
+    /**
+     * Return the number of persisted fields with a primitive type.
+     */
+    public int getPrimitiveFieldCount() {
+        return primitiveFieldCount;
+    }
+
+    /**
+     * Return the properties composing the id, if the entity is annotated with {@link CompositeId}.
+     *
+     * @return the properties names, or null
+     */
+    @Nullable
+    public String[] getCompositeIdProperties() {
+        return compositeIdProperties;
+    }
+
     /**
      * Return the foreign table field having the given join key.
      *
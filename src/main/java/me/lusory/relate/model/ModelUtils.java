@@ -111,6 +111,24 @@ public class ModelUtils {
         }
     }
 
+    /**
+     * Set the value of a field, without tracking the modification.
+     *
+     * @param instance entity
+     * @param field    field to set
+     * @param value    value
+     */
+    @SuppressWarnings("java:S3011")
+    public static void setFieldValue(Object instance, Field field, @Nullable Object value) {
+        field.setAccessible(true);
+        try {
+            field.set(instance, value);
+        } catch (Exception e) {
+            throw new ModelAccessException(
+                    "Error setting field " + field.getName() + " on " + instance, e);
+        }
+    }
+
     /**
      * Retrieve all fields from the class and its super classes.
      *
@@ -353,6 +371,20 @@ public class ModelUtils {
         return value;
     }
 
+    /**
+     * Return the names of the properties composing the id, if the entity is annotated with {@link
+     * CompositeId}, or null.
+     */
+    @Nullable
+    public static String[] getCompositeIdProperties(RelationalPersistentEntity<?> entityType) {
+        LcEntityTypeInfo info = LcEntityTypeInfo.find(entityType.getType());
+        if (info != null) {
+            return info.getCompositeIdProperties();
+        }
+        CompositeId compositeId = entityType.findAnnotation(CompositeId.class);
+        return compositeId != null ? compositeId.properties() : null;
+    }
+
     public static List<RelationalPersistentProperty> getProperties(
             RelationalPersistentEntity<?> entityType, String... names) {
         ArrayList<RelationalPersistentProperty> list = new ArrayList<>(names.length);
@@ -369,11 +401,10 @@ public class ModelUtils {
         if (entityType.hasIdProperty()) {
             return getIdPropertyValue(entityType, accessor);
         }
-        if (entityType.isAnnotationPresent(CompositeId.class)) {
+        String[] compositeId = getCompositeIdProperties(entityType);
+        if (compositeId != null) {
             return getIdFromProperties(
-                    getProperties(
-                            entityType,
-                            entityType.getRequiredAnnotation(CompositeId.class).properties()),
+                    getProperties(entityType, compositeId),
                     accessor,
                     client);
         }
@@ -400,11 +431,10 @@ public class ModelUtils {
         if (entityType.hasIdProperty()) {
             return getIdPropertyValue(entityType, source);
         }
-        if (entityType.isAnnotationPresent(CompositeId.class)) {
+        String[] compositeId = getCompositeIdProperties(entityType);
+        if (compositeId != null) {
             return getIdFromProperties(
-                    getProperties(
-                            entityType,
-                            entityType.getRequiredAnnotation(CompositeId.class).properties()),
+                    getProperties(entityType, compositeId),
                     source);
         }
         return getIdFromProperties(entityType, source);
@@ -440,13 +470,12 @@ public class ModelUtils {
                     accessor,
                     client);
         }
-        if (entityType.isAnnotationPresent(CompositeId.class)) {
+        String[] compositeId = getCompositeIdProperties(entityType);
+        if (compositeId != null) {
             return getConditionOnProperties(
                     query,
                     entityType,
-                    getProperties(
-                            entityType,
-                            entityType.getRequiredAnnotation(CompositeId.class).properties()),
+                    getProperties(entityType, compositeId),
                     accessor,
                     client);
         }
@@ -486,12 +515,11 @@ public class ModelUtils {
                     accessor,
                     client);
         }
-        if (entityType.isAnnotationPresent(CompositeId.class)) {
+        String[] compositeId = getCompositeIdProperties(entityType);
+        if (compositeId != null) {
             return getCriteriaOnProperties(
                     entityName,
-                    getProperties(
-                            entityType,
-                            entityType.getRequiredAnnotation(CompositeId.class).properties()),
+                    getProperties(entityType, compositeId),
                     accessor,
                     client);
         }
@@ -0,0 +1,52 @@
+package me.lusory.relate.model;
+
+import io.r2dbc.spi.Row;
+import org.springframework.data.relational.core.mapping.RelationalPersistentProperty;
+
+import java.util.Map;
+
+/**
+ * Properties source reading the values directly from a R2DBC row, using a precomputed column index
+ * for each property.
+ *
+ * <p>Contrary to {@link PropertiesSourceRow}, columns are not looked up by name, and the same
+ * instance can be reused for successive rows having the same columns, using {@link #setRow(Row)}.
+ * The indexes are resolved when the query is planned, including for the properties of other
+ * instances describing the same entity, so a lookup is a single identity hash.
+ */
+public class PropertiesSourceIndexedRow implements PropertiesSource {
+
+    private final Map<RelationalPersistentProperty, Integer> indexes;
+    private Row row;
+
+    /**
+     * @param indexes index of the column in the row, for each property, compared by identity
+     */
+    public PropertiesSourceIndexedRow(Map<RelationalPersistentProperty, Integer> indexes) {
+        this.indexes = indexes;
+    }
+
+    /**
+     * Set the current row to read values from.
+     */
+    public PropertiesSourceIndexedRow setRow(Row row) {
+        this.row = row;
+        return this;
+    }
+
+    @Override
+    public Object getSource() {
+        return row;
+    }
+
+    @Override
+    public boolean isPropertyPresent(RelationalPersistentProperty property) {
+        return indexes.containsKey(property);
+    }
+
+    @Override
+    public Object getPropertyValue(RelationalPersistentProperty property) {
+        Integer index = indexes.get(property);
+        return index != null ? row.get(index) : null;
+    }
+}
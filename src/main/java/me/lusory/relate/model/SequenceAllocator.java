@@ -0,0 +1,99 @@
+package me.lusory.relate.model;
+
+import me.lusory.relate.LcReactiveDataRelationalClient;
+import me.lusory.relate.metrics.StatementKind;
+import me.lusory.relate.query.SqlQuery;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Assign values of sequences with an allocation size greater than 1, from blocks of values
+ * reserved by calling the sequence once per block.
+ *
+ * <p>The sequence being incremented by the allocation size, a value <code>v</code> returned by
+ * the sequence reserves the values from <code>v</code> to <code>v + allocationSize - 1</code>.
+ * Values are taken from the current block without lock, and a new block is requested only when
+ * the current one is exhausted. When several blocks are requested at the same time, the
+ * remaining values of a replaced block are lost, which only creates gaps.
+ */
+public class SequenceAllocator {
+
+    private final LcReactiveDataRelationalClient client;
+    private final Map<String, AtomicReference<Block>> blocks = new ConcurrentHashMap<>();
+
+    public SequenceAllocator(LcReactiveDataRelationalClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Allocate the given number of values from the given sequence.
+     */
+    public Mono<long[]> allocate(String sequence, int allocationSize, int count) {
+        if (allocationSize < 1) {
+            return Mono.error(new IllegalArgumentException("Allocation size must be positive"));
+        }
+        AtomicReference<Block> current =
+                blocks.computeIfAbsent(sequence, s -> new AtomicReference<>(Block.EMPTY));
+        return fill(sequence, allocationSize, current, new long[count], 0);
+    }
+
+    private Mono<long[]> fill(
+            String sequence,
+            int allocationSize,
+            AtomicReference<Block> current,
+            long[] values,
+            int from) {
+        int index = current.get().take(values, from);
+        if (index == values.length) {
+            return Mono.just(values);
+        }
+        String sql = client.getSchemaDialect().sequenceNextValueQuery(sequence);
+        return SqlQuery.observe(
+                        client, client.getSpringClient().sql(sql), StatementKind.SELECT, null, sql, 0)
+                .map((row, meta) -> ((Number) row.get(0)).longValue())
+                .one()
+                .switchIfEmpty(
+                        Mono.error(
+                                new ModelAccessException(
+                                        "No value returned by sequence " + sequence)))
+                .flatMap(
+                        start -> {
+                            Block block = new Block(start, start + allocationSize);
+                            // take our values before to publish the block
+                            int next = block.take(values, index);
+                            current.set(block);
+                            if (next == values.length) {
+                                return Mono.just(values);
+                            }
+                            return fill(sequence, allocationSize, current, values, next);
+                        });
+    }
+
+    private static final class Block {
+        private static final Block EMPTY = new Block(0, 0);
+
+        private final AtomicLong next;
+        private final long end;
+
+        private Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+
+        private int take(long[] values, int from) {
+            int index = from;
+            while (index < values.length) {
+                long value = next.getAndIncrement();
+                if (value >= end) {
+                    break;
+                }
+                values[index++] = value;
+            }
+            return index;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package me.lusory.relate.model;
+
+import me.lusory.relate.annotations.SharedCache;
+import org.springframework.data.relational.core.mapping.RelationalPersistentEntity;
+import org.springframework.data.relational.core.mapping.RelationalPersistentProperty;
+import org.springframework.lang.Nullable;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of entities shared by all operations, enabled per entity class using {@link SharedCache}
+ * or {@link #configure(Class, int, Duration)}.
+ *
+ * <p>Contrary to {@link EntityCache}, instances are never shared: the values read from the
+ * database are kept, and a new instance is created each time an entity is taken from the cache.
+ */
+public class SharedEntityCache {
+
+    private final Map<Class<?>, Region> regions = new ConcurrentHashMap<>();
+
+    /**
+     * Create regions for the given entity classes annotated with {@link SharedCache}.
+     */
+    public void configure(Iterable<Class<?>> classes) {
+        for (Class<?> type : classes) {
+            SharedCache annotation = type.getAnnotation(SharedCache.class);
+            if (annotation != null) {
+                configure(type, annotation.maxSize(), Duration.ofSeconds(annotation.ttlSeconds()));
+            }
+        }
+    }
+
+    /**
+     * Enable the cache for the given entity class.
+     */
+    public void configure(Class<?> type, int maxSize, Duration ttl) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Maximum size must be at least 1");
+        }
+        regions.put(type, new Region(maxSize, ttl.toNanos()));
+    }
+
+    /**
+     * Return true if the cache is enabled for the given entity class.
+     */
+    public boolean isEnabled(Class<?> type) {
+        return getRegion(type) != null;
+    }
+
+    @Nullable
+    private Region getRegion(Class<?> type) {
+        Region region = regions.get(type);
+        if (region == null && type.getName().contains("ByteBuddy")) { // subclassed with bytebuddy
+            region = regions.get(type.getSuperclass());
+        }
+        return region;
+    }
+
+    /**
+     * Return the values of the entity with the given id, or null if it is not in the cache.
+     */
+    @Nullable
+    public PropertiesSource get(Class<?> type, Object id) {
+        Region region = getRegion(type);
+        if (region == null) {
+            return null;
+        }
+        Map<String, Object> values = region.get(id);
+        if (values == null) {
+            return null;
+        }
+        return new PropertiesSourceMap(values, region.getAliases(values));
+    }
+
+    /**
+     * Keep the values of an entity read from the database. Values are taken only if all the
+     * properties of the entity are present in the source.
+     */
+    public void put(RelationalPersistentEntity<?> entityType, Object id, PropertiesSource source) {
+        Region region = getRegion(entityType.getType());
+        if (region == null) {
+            return;
+        }
+        Map<String, Object> values = new HashMap<>();
+        for (RelationalPersistentProperty property : entityType) {
+            if (!source.isPropertyPresent(property)) {
+                return;
+            }
+            values.put(property.getName(), source.getPropertyValue(property));
+        }
+        region.put(id, values);
+    }
+
+    /**
+     * Remove the entity with the given id from the cache.
+     */
+    public void invalidate(Class<?> type, Object id) {
+        Region region = getRegion(type);
+        if (region != null) {
+            region.remove(id);
+        }
+    }
+
+    /**
+     * Remove all the entities of the given class from the cache.
+     */
+    public void invalidate(Class<?> type) {
+        Region region = getRegion(type);
+        if (region != null) {
+            region.clear();
+        }
+    }
+
+    /**
+     * Remove all entities from the cache.
+     */
+    public void invalidateAll() {
+        for (Region region : regions.values()) {
+            region.clear();
+        }
+    }
+
+    /**
+     * Return the number of entities taken from the cache, for the given class.
+     */
+    public long getHitCount(Class<?> type) {
+        Region region = getRegion(type);
+        return region != null ? region.hits.sum() : 0;
+    }
+
+    /**
+     * Return the number of entities not found in the cache, for the given class.
+     */
+    public long getMissCount(Class<?> type) {
+        Region region = getRegion(type);
+        return region != null ? region.misses.sum() : 0;
+    }
+
+    /**
+     * Return the number of entities removed because the maximum size has been reached, for the
+     * given class.
+     */
+    public long getEvictionCount(Class<?> type) {
+        Region region = getRegion(type);
+        return region != null ? region.evictions.sum() : 0;
+    }
+
+    /**
+     * Return the ratio of hits among the lookups for the given class, or 0 if no lookup has been
+     * done yet.
+     */
+    public double getHitRatio(Class<?> type) {
+        long hits = getHitCount(type);
+        long total = hits + getMissCount(type);
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Return the number of entities currently in the cache for the given class.
+     */
+    public int size(Class<?> type) {
+        Region region = getRegion(type);
+        return region != null ? region.size() : 0;
+    }
+
+    private static final class Region {
+        private final long ttlNanos;
+        // access order: the eldest entry is the least recently used
+        private final LinkedHashMap<Object, Entry> entries;
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+        private volatile Map<String, String> aliases = null;
+
+        private Region(int maxSize, long ttlNanos) {
+            this.ttlNanos = ttlNanos;
+            this.entries =
+                    new LinkedHashMap<Object, Entry>(16, 0.75f, true) {
+                        private static final long serialVersionUID = 1L;
+
+                        @Override
+                        protected boolean removeEldestEntry(Map.Entry<Object, Entry> eldest) {
+                            if (size() <= maxSize) {
+                                return false;
+                            }
+                            evictions.increment();
+                            return true;
+                        }
+                    };
+        }
+
+        @Nullable
+        private Map<String, Object> get(Object id) {
+            Entry entry;
+            synchronized (entries) {
+                entry = entries.get(id);
+                if (entry != null && System.nanoTime() - entry.created > ttlNanos) {
+                    entries.remove(id);
+                    entry = null;
+                }
+            }
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return entry.values;
+        }
+
+        private void put(Object id, Map<String, Object> values) {
+            Entry entry = new Entry(values, System.nanoTime());
+            synchronized (entries) {
+                entries.put(id, entry);
+            }
+        }
+
+        private void remove(Object id) {
+            synchronized (entries) {
+                entries.remove(id);
+            }
+        }
+
+        private void clear() {
+            synchronized (entries) {
+                entries.clear();
+            }
+        }
+
+        private int size() {
+            synchronized (entries) {
+                return entries.size();
+            }
+        }
+
+        private Map<String, String> getAliases(Map<String, Object> values) {
+            Map<String, String> result = aliases;
+            if (result == null) {
+                // values are stored by property name, so each property is its own alias
+                Map<String, String> map = new HashMap<>();
+                for (String name : values.keySet()) {
+                    map.put(name, name);
+                }
+                result = Collections.unmodifiableMap(map);
+                aliases = result;
+            }
+            return result;
+        }
+    }
+
+    private static final class Entry {
+        private final Map<String, Object> values;
+        private final long created;
+
+        private Entry(Map<String, Object> values, long created) {
+            this.values = values;
+            this.created = created;
+        }
+    }
+}
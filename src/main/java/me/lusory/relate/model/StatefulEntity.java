@@ -0,0 +1,18 @@
+package me.lusory.relate.model;
+
+/**
+ * Interface implemented by the entity classes rewritten at startup, giving direct access to the
+ * {@link EntityState} stored in the entity instance.
+ */
+public interface StatefulEntity {
+
+    /**
+     * @return the state of this entity, or null if not yet initialized.
+     */
+    EntityState _rlGetState();
+
+    /**
+     * Set the state of this entity.
+     */
+    void _rlSetState(EntityState state);
+}
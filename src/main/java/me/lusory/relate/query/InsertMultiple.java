@@ -14,8 +14,10 @@ import java.util.stream.Collectors;
 
 /**
  * Specify an INSERT query, with multiple rows.<br>
- * As Spring Data R2DBC does not support it, we define a custom request, but it cannot be used with
- * MySql which does not support to return all generated values.<br>
+ * As Spring Data R2DBC does not support it, we define a custom request. MySql does not return all
+ * generated values, so it can be used only if there is no generated value, or if auto-increment
+ * values are consecutive (see {@link
+ * me.lusory.relate.schema.dialect.RelationalDatabaseSchemaDialect#isMultipleInsertWithConsecutiveIdsSupported()}).<br>
  * An InsertMultiple can be used in a SqlQuery to be executed.
  */
 public class InsertMultiple {
@@ -0,0 +1,39 @@
+package me.lusory.relate.query;
+
+import org.springframework.lang.Nullable;
+
+import java.util.List;
+
+/**
+ * A page of entities returned by {@link SelectQuery#executePage}, with the token to use to get the
+ * next page.
+ *
+ * @param <T> type of entity
+ */
+public class KeysetPage<T> {
+
+    private final List<T> entities;
+    private final String nextPageToken;
+
+    KeysetPage(List<T> entities, @Nullable String nextPageToken) {
+        this.entities = entities;
+        this.nextPageToken = nextPageToken;
+    }
+
+    public List<T> getEntities() {
+        return entities;
+    }
+
+    /**
+     * Return the token to give to {@link SelectQuery#after(String)} to get the next page, or null
+     * if this is the last page.
+     */
+    @Nullable
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+
+    public boolean hasNextPage() {
+        return nextPageToken != null;
+    }
+}
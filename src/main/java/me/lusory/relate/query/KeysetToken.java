@@ -0,0 +1,191 @@
+package me.lusory.relate.query;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.time.ZonedDateTime;
+import java.util.Base64;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Encode and decode the values of the sort properties of the last entity of a page, as an opaque
+ * token.
+ *
+ * <p>Only a known set of value types is supported, so decoding a token received from a client
+ * never instantiates arbitrary classes.
+ */
+final class KeysetToken {
+
+    private static final byte VERSION = 1;
+
+    private KeysetToken() {
+        // no instance
+    }
+
+    static String encode(Object[] values) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeShort(values.length);
+            for (Object value : values) {
+                writeValue(out, value);
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to encode keyset token", e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    static Object[] decode(String token) {
+        try (DataInputStream in =
+                     new DataInputStream(
+                             new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)))) {
+            if (in.readByte() != VERSION) {
+                throw new IllegalArgumentException("Invalid keyset token: " + token);
+            }
+            Object[] values = new Object[in.readUnsignedShort()];
+            for (int i = 0; i < values.length; ++i) {
+                values[i] = readValue(in);
+            }
+            return values;
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalArgumentException("Invalid keyset token: " + token, e);
+        }
+    }
+
+    @SuppressWarnings("java:S3776")
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            throw new IllegalArgumentException("Keyset pagination does not support null values");
+        }
+        if (value instanceof String) {
+            out.writeByte('S');
+            out.writeUTF((String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte('I');
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte('L');
+            out.writeLong((Long) value);
+        } else if (value instanceof Short) {
+            out.writeByte('s');
+            out.writeShort((Short) value);
+        } else if (value instanceof Byte) {
+            out.writeByte('B');
+            out.writeByte((Byte) value);
+        } else if (value instanceof Double) {
+            out.writeByte('D');
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte('F');
+            out.writeFloat((Float) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte('Z');
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Character) {
+            out.writeByte('C');
+            out.writeChar((Character) value);
+        } else if (value instanceof BigDecimal) {
+            out.writeByte('d');
+            out.writeUTF(value.toString());
+        } else if (value instanceof BigInteger) {
+            out.writeByte('b');
+            out.writeUTF(value.toString());
+        } else if (value instanceof UUID) {
+            out.writeByte('U');
+            out.writeUTF(value.toString());
+        } else if (value instanceof Enum) {
+            // converted back using the type of the property
+            out.writeByte('E');
+            out.writeUTF(((Enum<?>) value).name());
+        } else if (value instanceof Date) {
+            out.writeByte('W');
+            out.writeLong(((Date) value).getTime());
+        } else if (value instanceof LocalDate) {
+            out.writeByte('1');
+            out.writeUTF(value.toString());
+        } else if (value instanceof LocalTime) {
+            out.writeByte('2');
+            out.writeUTF(value.toString());
+        } else if (value instanceof LocalDateTime) {
+            out.writeByte('3');
+            out.writeUTF(value.toString());
+        } else if (value instanceof OffsetDateTime) {
+            out.writeByte('4');
+            out.writeUTF(value.toString());
+        } else if (value instanceof OffsetTime) {
+            out.writeByte('5');
+            out.writeUTF(value.toString());
+        } else if (value instanceof ZonedDateTime) {
+            out.writeByte('6');
+            out.writeUTF(value.toString());
+        } else if (value instanceof Instant) {
+            out.writeByte('7');
+            out.writeUTF(value.toString());
+        } else {
+            throw new IllegalArgumentException(
+                    "Keyset pagination does not support values of type "
+                            + value.getClass().getName());
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case 'S':
+            case 'E':
+                return in.readUTF();
+            case 'I':
+                return in.readInt();
+            case 'L':
+                return in.readLong();
+            case 's':
+                return in.readShort();
+            case 'B':
+                return in.readByte();
+            case 'D':
+                return in.readDouble();
+            case 'F':
+                return in.readFloat();
+            case 'Z':
+                return in.readBoolean();
+            case 'C':
+                return in.readChar();
+            case 'd':
+                return new BigDecimal(in.readUTF());
+            case 'b':
+                return new BigInteger(in.readUTF());
+            case 'U':
+                return UUID.fromString(in.readUTF());
+            case 'W':
+                return new Date(in.readLong());
+            case '1':
+                return LocalDate.parse(in.readUTF());
+            case '2':
+                return LocalTime.parse(in.readUTF());
+            case '3':
+                return LocalDateTime.parse(in.readUTF());
+            case '4':
+                return OffsetDateTime.parse(in.readUTF());
+            case '5':
+                return OffsetTime.parse(in.readUTF());
+            case '6':
+                return ZonedDateTime.parse(in.readUTF());
+            case '7':
+                return Instant.parse(in.readUTF());
+            default:
+                throw new IllegalArgumentException("Unknown value type " + (char) type);
+        }
+    }
+}
@@ -0,0 +1,394 @@
+package me.lusory.relate.query;
+
+import me.lusory.relate.model.ModelAccessException;
+import org.springframework.beans.BeanUtils;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.lang.Nullable;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Create the results of a projection from the values selected in a row.
+ *
+ * <p>The result type may be:
+ *
+ * <ul>
+ *   <li>Object[], to get the values in the order of selection
+ *   <li>a Reactor tuple, for 2 values or more
+ *   <li>a Map, from the result names to the values
+ *   <li>a simple type (String, Number, enum...), when a single value is selected
+ *   <li>an interface, with a getter for each result name, and optionally default methods
+ *   <li>a class with a constructor taking the values: the parameters are matched by name if
+ *       available, else in the order of selection
+ *   <li>a class with a default constructor, and a field for each result name
+ * </ul>
+ *
+ * @param <R> type of result
+ */
+final class ProjectionMapper<R> {
+
+    private static final ParameterNameDiscoverer parameterNameDiscoverer =
+            new DefaultParameterNameDiscoverer();
+
+    private enum Kind {
+        ARRAY,
+        TUPLE,
+        MAP,
+        VALUE,
+        INTERFACE,
+        CONSTRUCTOR,
+        FIELDS
+    }
+
+    private final Class<R> type;
+    private final String[] names;
+    private final ConversionService conversionService;
+    private final Kind kind;
+    private Constructor<R> constructor;
+    private int[] constructorValues;
+    private Field[] fields;
+    private Map<Method, Integer> getters;
+    private Map<Method, MethodHandle> defaultMethods;
+
+    /**
+     * @param type              type of result
+     * @param names             result name of each selected value
+     * @param valueTypes        type of each selected value
+     * @param conversionService used to convert the values into the types expected by the result
+     */
+    ProjectionMapper(
+            Class<R> type,
+            String[] names,
+            Class<?>[] valueTypes,
+            ConversionService conversionService) {
+        this.type = type;
+        this.names = names;
+        this.conversionService = conversionService;
+        if (Object[].class.equals(type)) {
+            kind = Kind.ARRAY;
+        } else if (Tuple2.class.isAssignableFrom(type)) {
+            if (names.length < 2) {
+                throw new IllegalArgumentException(
+                        "A tuple needs at least 2 values, found " + names.length);
+            }
+            kind = Kind.TUPLE;
+        } else if (Map.class.equals(type)) {
+            kind = Kind.MAP;
+        } else if (names.length == 1
+                && (BeanUtils.isSimpleValueType(type)
+                || ClassUtils.isAssignable(type, valueTypes[0]))) {
+            kind = Kind.VALUE;
+        } else if (type.isInterface()) {
+            kind = Kind.INTERFACE;
+            initGetters();
+        } else if (initConstructor()) {
+            kind = Kind.CONSTRUCTOR;
+        } else {
+            kind = Kind.FIELDS;
+            initFields();
+        }
+    }
+
+    private void initGetters() {
+        getters = new HashMap<>();
+        defaultMethods = new ConcurrentHashMap<>();
+        for (Method method : type.getMethods()) {
+            if (method.isDefault()
+                    || Modifier.isStatic(method.getModifiers())
+                    || method.getParameterCount() != 0) {
+                continue;
+            }
+            int index = indexOf(getPropertyName(method.getName()));
+            if (index < 0) {
+                index = indexOf(method.getName());
+            }
+            if (index < 0) {
+                throw new IllegalArgumentException(
+                        "No value selected for method "
+                                + method.getName()
+                                + " of "
+                                + type.getName());
+            }
+            getters.put(method, index);
+        }
+    }
+
+    private static String getPropertyName(String methodName) {
+        if (methodName.startsWith("get") && methodName.length() > 3) {
+            return Character.toLowerCase(methodName.charAt(3)) + methodName.substring(4);
+        }
+        if (methodName.startsWith("is") && methodName.length() > 2) {
+            return Character.toLowerCase(methodName.charAt(2)) + methodName.substring(3);
+        }
+        return methodName;
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean initConstructor() {
+        Constructor<R> positional = null;
+        int candidates = 0;
+        for (Constructor<?> ctor : type.getDeclaredConstructors()) {
+            if (ctor.getParameterCount() != names.length || names.length == 0) {
+                continue;
+            }
+            candidates++;
+            positional = (Constructor<R>) ctor;
+            String[] parameterNames = parameterNameDiscoverer.getParameterNames(ctor);
+            if (parameterNames == null) {
+                continue;
+            }
+            int[] indexes = new int[parameterNames.length];
+            boolean match = true;
+            for (int i = 0; i < parameterNames.length && match; ++i) {
+                indexes[i] = indexOf(parameterNames[i]);
+                match = indexes[i] >= 0;
+            }
+            if (match) {
+                constructor = (Constructor<R>) ctor;
+                constructorValues = indexes;
+                ReflectionUtils.makeAccessible(constructor);
+                return true;
+            }
+        }
+        if (candidates != 1) {
+            return false;
+        }
+        constructor = positional;
+        constructorValues = new int[names.length];
+        for (int i = 0; i < names.length; ++i) {
+            constructorValues[i] = i;
+        }
+        ReflectionUtils.makeAccessible(constructor);
+        return true;
+    }
+
+    private void initFields() {
+        try {
+            constructor = type.getDeclaredConstructor();
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException(
+                    "Cannot create instances of "
+                            + type.getName()
+                            + ": no constructor with "
+                            + names.length
+                            + " parameters matching the selected values, and no default constructor");
+        }
+        ReflectionUtils.makeAccessible(constructor);
+        fields = new Field[names.length];
+        for (int i = 0; i < names.length; ++i) {
+            Field field = ReflectionUtils.findField(type, names[i]);
+            if (field == null || Modifier.isStatic(field.getModifiers())) {
+                throw new IllegalArgumentException(
+                        "No field " + names[i] + " in " + type.getName());
+            }
+            ReflectionUtils.makeAccessible(field);
+            fields[i] = field;
+        }
+    }
+
+    private int indexOf(String name) {
+        for (int i = 0; i < names.length; ++i) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Create a result from the selected values.
+     */
+    @SuppressWarnings("unchecked")
+    R map(Object[] values) {
+        switch (kind) {
+            case ARRAY:
+                return (R) values;
+            case TUPLE:
+                return (R) Tuples.fromArray(values);
+            case MAP:
+                Map<String, Object> map = new LinkedHashMap<>(names.length * 2);
+                for (int i = 0; i < names.length; ++i) {
+                    map.put(names[i], values[i]);
+                }
+                return (R) map;
+            case VALUE:
+                return (R) convert(values[0], type);
+            case INTERFACE:
+                return createProxy(values);
+            case CONSTRUCTOR:
+                return createWithConstructor(values);
+            default:
+                return createWithFields(values);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private R createProxy(Object[] values) {
+        return (R)
+                Proxy.newProxyInstance(
+                        type.getClassLoader(), new Class<?>[]{type}, new ProxyHandler(values));
+    }
+
+    private MethodHandle getDefaultMethod(Method method) {
+        return defaultMethods.computeIfAbsent(
+                method,
+                m -> {
+                    Class<?> declaringClass = m.getDeclaringClass();
+                    try {
+                        return privateLookupIn(declaringClass).unreflectSpecial(m, declaringClass);
+                    } catch (ReflectiveOperationException e) {
+                        throw new ModelAccessException(
+                                "Cannot call default method "
+                                        + m.getName()
+                                        + " of "
+                                        + type.getName(),
+                                e);
+                    }
+                });
+    }
+
+    private static MethodHandles.Lookup privateLookupIn(Class<?> declaringClass)
+            throws ReflectiveOperationException {
+        try {
+            // Java 9 and later
+            Method privateLookupIn =
+                    MethodHandles.class.getMethod(
+                            "privateLookupIn", Class.class, MethodHandles.Lookup.class);
+            return (MethodHandles.Lookup)
+                    privateLookupIn.invoke(null, declaringClass, MethodHandles.lookup());
+        } catch (NoSuchMethodException e) {
+            // Java 8
+            Constructor<MethodHandles.Lookup> constructor =
+                    MethodHandles.Lookup.class.getDeclaredConstructor(Class.class, int.class);
+            constructor.setAccessible(true);
+            return constructor.newInstance(declaringClass, MethodHandles.Lookup.PRIVATE);
+        }
+    }
+
+    /**
+     * Implementation of an interface result: getters return the selected values, default methods
+     * are called on the proxy, and two results are equal if they have the same type and values.
+     */
+    private final class ProxyHandler implements InvocationHandler {
+        private final Object[] values;
+
+        private ProxyHandler(Object[] values) {
+            this.values = values;
+        }
+
+        private Class<R> getType() {
+            return type;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Integer index = getters.get(method);
+            if (index != null) {
+                return convert(values[index], method.getReturnType());
+            }
+            if (method.isDefault()) {
+                return getDefaultMethod(method)
+                        .bindTo(proxy)
+                        .invokeWithArguments(args != null ? args : new Object[0]);
+            }
+            if (method.getDeclaringClass().equals(Object.class)) {
+                switch (method.getName()) {
+                    case "equals":
+                        return isEqual(args[0]);
+                    case "hashCode":
+                        return 31 * type.hashCode() + Arrays.deepHashCode(values);
+                    case "toString":
+                        return toText();
+                    default:
+                        break;
+                }
+            }
+            throw new UnsupportedOperationException(
+                    "Method " + method.getName() + " is not supported");
+        }
+
+        private boolean isEqual(@Nullable Object other) {
+            if (other == null || !Proxy.isProxyClass(other.getClass())) {
+                return false;
+            }
+            InvocationHandler handler = Proxy.getInvocationHandler(other);
+            if (!(handler instanceof ProjectionMapper.ProxyHandler)) {
+                return false;
+            }
+            ProjectionMapper<?>.ProxyHandler h = (ProjectionMapper<?>.ProxyHandler) handler;
+            return type.equals(h.getType()) && Arrays.deepEquals(values, h.values);
+        }
+
+        private String toText() {
+            StringBuilder s = new StringBuilder(type.getSimpleName()).append('{');
+            for (int i = 0; i < names.length; ++i) {
+                if (i > 0) {
+                    s.append(", ");
+                }
+                // also renders the content of arrays
+                String value = Arrays.deepToString(new Object[]{values[i]});
+                s.append(names[i]).append('=').append(value, 1, value.length() - 1);
+            }
+            return s.append('}').toString();
+        }
+    }
+
+    private R createWithConstructor(Object[] values) {
+        Class<?>[] parameterTypes = constructor.getParameterTypes();
+        Object[] args = new Object[parameterTypes.length];
+        for (int i = 0; i < args.length; ++i) {
+            args[i] = convert(values[constructorValues[i]], parameterTypes[i]);
+        }
+        try {
+            return constructor.newInstance(args);
+        } catch (ReflectiveOperationException e) {
+            throw new ModelAccessException("Error creating projection " + type.getName(), e);
+        }
+    }
+
+    private R createWithFields(Object[] values) {
+        try {
+            R instance = constructor.newInstance();
+            for (int i = 0; i < fields.length; ++i) {
+                Object value = convert(values[i], fields[i].getType());
+                if (value != null) {
+                    fields[i].set(instance, value);
+                }
+            }
+            return instance;
+        } catch (ReflectiveOperationException e) {
+            throw new ModelAccessException("Error creating projection " + type.getName(), e);
+        }
+    }
+
+    @Nullable
+    private Object convert(@Nullable Object value, Class<?> target) {
+        if (value == null) {
+            // default value of primitive types
+            return target.isPrimitive() ? Array.get(Array.newInstance(target, 1), 0) : null;
+        }
+        if (ClassUtils.isAssignableValue(target, value)) {
+            return value;
+        }
+        return conversionService.convert(value, target);
+    }
+}
@@ -2,10 +2,12 @@ package me.lusory.relate.query;
 
 import me.lusory.relate.model.ModelUtils;
 import me.lusory.relate.model.PropertiesSource;
-import me.lusory.relate.model.PropertiesSourceMap;
+import me.lusory.relate.model.PropertiesSourceIndexedRow;
 import me.lusory.relate.LcReactiveDataRelationalClient;
+import me.lusory.relate.metrics.CacheKind;
 import me.lusory.relate.annotations.CompositeId;
 import me.lusory.relate.annotations.ForeignTable;
+import me.lusory.relate.model.EntityCache;
 import me.lusory.relate.model.EntityState;
 import me.lusory.relate.mapping.LcEntityReader;
 import me.lusory.relate.model.LcEntityTypeInfo;
@@ -13,33 +15,47 @@ import me.lusory.relate.query.SelectQuery.TableReference;
 import me.lusory.relate.query.criteria.Criteria;
 import me.lusory.relate.query.criteria.Criteria.PropertyOperand;
 import me.lusory.relate.query.criteria.Criteria.PropertyOperation;
+import me.lusory.relate.query.criteria.CriteriaBinder;
 import me.lusory.relate.query.criteria.CriteriaSqlBuilder;
 import me.lusory.relate.query.criteria.CriteriaVisitor;
+import me.lusory.relate.schema.dialect.RelationalDatabaseSchemaDialect;
+import io.r2dbc.spi.Row;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.core.CollectionFactory;
+import org.springframework.core.convert.ConversionService;
 import org.springframework.data.domain.Sort.Direction;
 import org.springframework.data.mapping.MappingException;
 import org.springframework.data.relational.core.mapping.RelationalPersistentEntity;
 import org.springframework.data.relational.core.mapping.RelationalPersistentProperty;
 import org.springframework.data.relational.core.sql.*;
 import org.springframework.data.relational.core.sql.SelectBuilder.*;
+import org.springframework.data.relational.core.sql.render.RenderContext;
+import org.springframework.data.relational.core.sql.render.SqlRenderer;
+import org.springframework.data.util.ClassTypeInformation;
+import org.springframework.data.util.TypeInformation;
+import org.springframework.util.ClassUtils;
 import org.springframework.lang.Nullable;
 import reactor.core.publisher.Flux;
-import reactor.core.publisher.FluxSink;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
 import reactor.util.function.Tuple3;
 
 import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class SelectExecution<T> {
 
     private static final Log logger = LogFactory.getLog(SelectExecution.class);
 
-    private final SelectQuery<T> query;
+    // replaced by a copy including the keyset pagination clauses when the plan is resolved
+    private SelectQuery<T> query;
     private final LcReactiveDataRelationalClient client;
     private final LcEntityReader reader;
 
@@ -49,7 +65,16 @@ public class SelectExecution<T> {
             @Nullable LcEntityReader reader) {
         this.query = query;
         this.client = client;
-        this.reader = reader != null ? reader : new LcEntityReader(null, client.getMapper());
+        if (reader != null) {
+            this.reader = reader;
+        } else if (query.readOnly) {
+            // instances are registered only to assemble the entities linked by joins
+            this.reader =
+                    LcEntityReader.readOnly(
+                            query.joins.isEmpty() ? null : new EntityCache(), client.getMapper());
+        } else {
+            this.reader = new LcEntityReader(null, client.getMapper());
+        }
     }
 
     private static boolean isSourceFor(TableReference t1, TableReference t2) {
@@ -63,20 +88,150 @@ public class SelectExecution<T> {
     }
 
     public Flux<T> execute() {
-        return Mono.fromCallable(this::needsPreSelectIds)
+        if (!query.projection.isEmpty()) {
+            throw new IllegalArgumentException(
+                    "A select query with a projection must be executed using executeProjection");
+        }
+        for (Tuple3<String, String, Boolean> order : query.orderBy) {
+            if (SelectQuery.RESULT_ORDER.equals(order.getT1())) {
+                throw new IllegalArgumentException(
+                        "Order by result " + order.getT2() + " requires a projection");
+            }
+        }
+        return Mono.fromCallable(this::getPlan)
+                .flatMapMany(
+                        plan -> {
+                            client.getMetrics()
+                                    .selectExecuted(query.from.targetType, plan.needsPreSelect);
+                            return plan.needsPreSelect
+                                    ? executeWithPreSelect(plan)
+                                    : executeWithoutPreSelect(plan);
+                        })
+                .checkpoint(query.toString());
+    }
+
+    /**
+     * Execute the query, selecting only the properties of the projection, and creating the results
+     * from the values of each row.
+     */
+    public <R> Flux<R> executeProjection(Class<R> resultType) {
+        if (query.projection.isEmpty()) {
+            throw new IllegalArgumentException("No property selected for the projection");
+        }
+        return Mono.fromCallable(this::getPlan)
                 .flatMapMany(
-                        needsPreSelect ->
-                                needsPreSelect
-                                        ? executeWithPreSelect()
-                                        : executeWithoutPreSelect())
+                        plan -> {
+                            client.getMetrics().selectExecuted(query.from.targetType, false);
+                            SelectMapping mapping = plan.mapping;
+                            ProjectionMapper<R> mapper =
+                                    plan.getProjectionMapper(
+                                            resultType,
+                                            client.getDataAccess()
+                                                    .getConverter()
+                                                    .getConversionService());
+                            // values of the having clause are bound after the ones of the where
+                            Criteria criteria = query.where;
+                            if (query.having != null) {
+                                criteria =
+                                        criteria == null
+                                                ? query.having
+                                                : criteria.and(query.having);
+                            }
+                            SqlQuery<Select> q =
+                                    fromPlan(
+                                            plan.sql,
+                                            criteria,
+                                            true,
+                                            mapping,
+                                            () -> buildProjectionSql(mapping),
+                                            sql -> plan.sql = sql);
+                            q.setFetchSize(query.fetchSize);
+                            return q.execute()
+                                    .map((row, metadata) -> mapper.map(readProjection(row, mapping)))
+                                    .all();
+                        })
                 .checkpoint(query.toString());
     }
 
+    private Object[] readProjection(Row row, SelectMapping mapping) {
+        Object[] values = new Object[mapping.fields.size()];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = reader.readValue(row.get(i), mapping.fields.get(i).valueType);
+        }
+        return values;
+    }
+
     public Mono<Long> executeCount() {
+        return Mono.fromCallable(this::getPlan)
+                .flatMap(
+                        plan ->
+                                fromPlan(
+                                                plan.countSql,
+                                                query.where,
+                                                false,
+                                                plan.mapping,
+                                                () -> buildCountSql(plan.mapping),
+                                                sql -> plan.countSql = sql)
+                                        .execute()
+                                        .fetch()
+                                        .one())
+                .map(m -> (Long) m.values().iterator().next());
+    }
+
+    private Plan getPlan() {
+        // first step is to ensure we have the target type for all joins
         query.setJoinsTargetType(client.getMapper());
+        query = query.withKeyset(client.getMapper());
+        boolean[] created = new boolean[1];
+        Plan plan =
+                client.getSelectPlanCache()
+                        .get(
+                                query.getPlanKey(client),
+                                () -> {
+                                    created[0] = true;
+                                    if (!query.projection.isEmpty()) {
+                                        // one result per row, ids do not need to be pre-selected
+                                        return new Plan(buildProjectionMapping(), false);
+                                    }
+                                    return new Plan(buildSelectMapping(), needsPreSelectIds());
+                                });
+        client.getMetrics()
+                .cacheAccessed(CacheKind.SELECT_PLAN, query.from.targetType, !created[0]);
+        return plan;
+    }
+
+    /**
+     * Return a query using the SQL of the plan if already rendered, else build the query and store
+     * its SQL in the plan.
+     */
+    private SqlQuery<Select> fromPlan(
+            @Nullable String sql,
+            @Nullable Criteria criteria,
+            boolean limited,
+            SelectMapping mapping,
+            Supplier<SqlQuery<Select>> builder,
+            Consumer<String> store) {
+        if (sql == null) {
+            SqlQuery<Select> q = builder.get();
+            store.accept(q.getSql());
+            return q;
+        }
+        SqlQuery<Select> q = new SqlQuery<>(client, query.from.targetType);
+        q.setSql(sql);
+        if (criteria != null) {
+            criteria.accept(new CriteriaBinder(mapping.entitiesByAlias, q));
+        }
+        if (limited && query.limit > 0) {
+            // same order as appendLimit
+            q.bind(query.limit);
+            q.bind(query.offset);
+        }
+        return q;
+    }
+
+    private SqlQuery<Select> buildCountSql(SelectMapping mapping) {
         RelationalPersistentEntity<?> entity =
                 client.getMappingContext().getRequiredPersistentEntity(query.from.targetType);
-        SelectMapping mapping = buildSelectMapping();
         List<Expression> idColumns;
         if (entity.hasIdProperty()) {
             idColumns =
@@ -109,7 +264,7 @@ public class SelectExecution<T> {
             select = join(select, join, mapping);
         }
 
-        SqlQuery<Select> q = new SqlQuery<>(client);
+        SqlQuery<Select> q = new SqlQuery<>(client, query.from.targetType);
         if (query.where != null) {
             select =
                     ((SelectWhere) select)
@@ -122,13 +277,10 @@ public class SelectExecution<T> {
         }
 
         q.setQuery(select.build());
-
-        return q.execute().fetch().one().map(m -> (Long) m.values().iterator().next());
+        return q;
     }
 
     private boolean needsPreSelectIds() {
-        // first step is to ensure we wave the target type for all joins
-        query.setJoinsTargetType(client.getMapper());
         if (!hasJoinMany()) {
             return false;
         }
@@ -152,14 +304,8 @@ public class SelectExecution<T> {
         if (table.source == null) {
             return false;
         }
-        RelationalPersistentEntity<?> entity =
-                client.getMappingContext().getRequiredPersistentEntity(table.source.targetType);
-        try {
-            Field field = entity.getType().getDeclaredField(table.propertyName);
-            return ModelUtils.isCollection(field);
-        } catch (Exception e) {
-            return false;
-        }
+        LcEntityTypeInfo info = LcEntityTypeInfo.find(table.source.targetType);
+        return info != null && info.isCollection(table.propertyName);
     }
 
     private boolean isManyFromRoot(TableReference table) {
@@ -274,15 +420,24 @@ public class SelectExecution<T> {
                 });
     }
 
-    private Flux<T> executeWithPreSelect() {
-        SelectMapping mapping = buildSelectMapping();
-        return buildDistinctRootIdSql(mapping)
+    private Flux<T> executeWithPreSelect(Plan plan) {
+        SelectMapping mapping = plan.mapping;
+        SqlQuery<Select> idsQuery =
+                fromPlan(
+                        plan.preSelectSql,
+                        query.where,
+                        true,
+                        mapping,
+                        () -> buildDistinctRootIdSql(mapping),
+                        sql -> plan.preSelectSql = sql);
+        idsQuery.setFetchSize(query.fetchSize);
+        return idsQuery
                 .execute()
-                .fetch()
+                .map((row, metadata) -> row.get(0))
                 .all()
-                .map(row -> row.values().iterator().next())
-                .buffer(100)
-                .flatMap(
+                .buffer(query.preSelectBatchSize)
+                // next bunch of ids is requested while the previous one is mapped
+                .flatMapSequential(
                         ids -> {
                             logger.debug("Pre-selected ids bunch: " + ids);
                             String idPropertyName = Objects.requireNonNull(
@@ -290,102 +445,317 @@ public class SelectExecution<T> {
                                             .get(query.from.alias)
                                             .getIdProperty()
                             ).getName();
-                            Flux<Map<String, Object>> fromDb =
-                                    buildFinalSql(
-                                            mapping,
-                                            Criteria.property(
-                                                            query.from.alias,
-                                                            idPropertyName)
-                                                    .in(ids),
-                                            false,
-                                            false)
-                                            .execute()
-                                            .fetch()
-                                            .all();
-                            RowHandler handler = new RowHandler(mapping);
-                            return Flux.create(
-                                            (Consumer<FluxSink<T>>)
-                                                    sink ->
-                                                            fromDb.doOnComplete(
-                                                                            () ->
-                                                                                    handler
-                                                                                            .handleEnd(
-                                                                                                    sink))
-                                                                    .subscribe(
-                                                                            row ->
-                                                                                    handler
-                                                                                            .handleRow(
-                                                                                                    row,
-                                                                                                    sink)))
-                                    .collectList()
-                                    .flatMapMany(
-                                            list -> {
-                                                List<T> orderedList = new ArrayList<>(list.size());
-                                                List<T> rawList = new ArrayList<>(list);
-                                                RelationalPersistentEntity<?> entityType =
-                                                        mapping.entitiesByAlias.get(
-                                                                query.from.alias);
-                                                for (Object id : ids) {
-                                                    for (Iterator<T> it = rawList.iterator();
-                                                         it.hasNext(); ) {
-                                                        T entity = it.next();
-                                                        Object entityId =
-                                                                ModelUtils.getRequiredId(
-                                                                        entity, entityType, null);
-                                                        if (entityId.equals(id)) {
-                                                            it.remove();
-                                                            orderedList.add(entity);
-                                                            break;
-                                                        }
-                                                    }
-                                                }
-                                                return Flux.fromIterable(orderedList);
-                                            });
-                        });
-    }
-
-    private Flux<T> executeWithoutPreSelect() {
-        SelectMapping mapping = buildSelectMapping();
-        Flux<Map<String, Object>> fromDb =
-                buildFinalSql(mapping, query.where, true, true).execute().fetch().all();
-        RowHandler handler = new RowHandler(mapping);
-        return Flux.create(sink ->
-                fromDb.doOnComplete(() -> handler.handleEnd(sink))
-                        .subscribe(row -> handler.handleRow(row, sink))
-        );
+                            Criteria idsCriteria =
+                                    Criteria.property(query.from.alias, idPropertyName).in(ids);
+                            SqlQuery<Select> q =
+                                    fromPlan(
+                                                    plan.sqlByIdsCount.get(ids.size()),
+                                                    idsCriteria,
+                                                    false,
+                                                    mapping,
+                                                    () ->
+                                                            buildFinalSql(
+                                                                    mapping,
+                                                                    idsCriteria,
+                                                                    false,
+                                                                    true),
+                                                    sql -> plan.sqlByIdsCount.put(ids.size(), sql));
+                            IdsOrder<T> order =
+                                    new IdsOrder<>(
+                                            ids, mapping.entitiesByAlias.get(query.from.alias));
+                            return mapRows(q, mapping)
+                                    .concatMapIterable(order::next)
+                                    .concatWith(Flux.defer(() -> Flux.fromIterable(order.end())));
+                        },
+                        2);
+    }
+
+    /**
+     * Put entities back in the order of the pre-selected ids, emitting each entity as soon as all
+     * the entities before it have been emitted. An entity received again is the same instance,
+     * already merged by the entity cache, so it is not emitted twice.
+     */
+    private static final class IdsOrder<T> {
+        private final List<Object> ids;
+        private final RelationalPersistentEntity<?> entityType;
+        private final Map<Object, T> pending;
+        private final Set<Object> received;
+        private int nextIndex = 0;
+
+        private IdsOrder(List<Object> ids, RelationalPersistentEntity<?> entityType) {
+            this.ids = ids;
+            this.entityType = entityType;
+            this.pending = new HashMap<>(ids.size() * 2);
+            this.received = new HashSet<>(ids.size() * 2);
+        }
+
+        private List<T> next(T entity) {
+            Object id = ModelUtils.getRequiredId(entity, entityType, null);
+            if (!received.add(id)) {
+                return Collections.emptyList();
+            }
+            if (nextIndex >= ids.size() || !id.equals(ids.get(nextIndex))) {
+                pending.put(id, entity);
+                return Collections.emptyList();
+            }
+            nextIndex++;
+            if (pending.isEmpty()) {
+                return Collections.singletonList(entity);
+            }
+            List<T> ready = new ArrayList<>();
+            ready.add(entity);
+            while (nextIndex < ids.size()) {
+                T e = pending.remove(ids.get(nextIndex));
+                if (e == null) {
+                    break;
+                }
+                ready.add(e);
+                nextIndex++;
+            }
+            return ready;
+        }
+
+        private List<T> end() {
+            // ids not found anymore are skipped
+            List<T> ready = new ArrayList<>(pending.size());
+            for (; nextIndex < ids.size() && !pending.isEmpty(); nextIndex++) {
+                T e = pending.remove(ids.get(nextIndex));
+                if (e != null) {
+                    ready.add(e);
+                }
+            }
+            return ready;
+        }
+    }
+
+    private Flux<T> executeWithoutPreSelect(Plan plan) {
+        SelectMapping mapping = plan.mapping;
+        SqlQuery<Select> q =
+                fromPlan(
+                        plan.sql,
+                        query.where,
+                        true,
+                        mapping,
+                        () -> buildFinalSql(mapping, query.where, true, true),
+                        sql -> plan.sql = sql);
+        return mapRows(q, mapping);
+    }
+
+    /**
+     * Map the rows to root entities, the consecutive rows having the same root id being merged into
+     * the same entity. Rows are requested from the database according to the demand, and a
+     * cancellation is propagated to the statement.
+     */
+    private Flux<T> mapRows(SqlQuery<Select> q, SelectMapping mapping) {
+        q.setFetchSize(query.fetchSize);
+        return Flux.defer(
+                () -> {
+                    RowHandler handler = new RowHandler(mapping);
+                    // a root entity is complete when a row of the next one is received
+                    return q.execute()
+                            .map((row, metadata) -> handler.handleRow(row))
+                            .all()
+                            .filter(Optional::isPresent)
+                            .map(Optional::get)
+                            .concatWith(Mono.fromSupplier(handler::handleEnd));
+                });
     }
 
     private SelectMapping buildSelectMapping() {
         SelectMapping mapping = new SelectMapping();
-        RelationalPersistentEntity<?> entity =
-                client.getMappingContext().getRequiredPersistentEntity(query.from.targetType);
-        Map<String, String> fieldAliases = new HashMap<>();
-        mapping.fieldAliasesByTableAlias.put(query.from.alias, fieldAliases);
-        mapping.entitiesByAlias.put(query.from.alias, entity);
-        mapping.tableByAlias.put(
-                query.from.alias, Table.create(entity.getTableName()).as(query.from.alias));
-        for (RelationalPersistentProperty property : entity) {
-            String alias = mapping.generateAlias();
-            mapping.fields.add(new SelectField(query.from.alias, property, alias));
-            fieldAliases.put(property.getName(), alias);
+        Collection<RelationalPersistentEntity<?>> entities =
+                client.getMappingContext().getPersistentEntities();
+        mapping.addTable(
+                query.from.alias,
+                client.getMappingContext().getRequiredPersistentEntity(query.from.targetType),
+                entities);
+        for (TableReference join : query.joins) {
+            mapping.addTable(
+                    join.alias,
+                    client.getMappingContext().getRequiredPersistentEntity(join.targetType),
+                    entities);
         }
+        return mapping;
+    }
+
+    private SelectMapping buildProjectionMapping() {
+        SelectMapping mapping = new SelectMapping();
+        mapping.registerTable(
+                query.from.alias,
+                client.getMappingContext().getRequiredPersistentEntity(query.from.targetType));
         for (TableReference join : query.joins) {
-            RelationalPersistentEntity<?> joinEntity =
-                    client.getMappingContext().getRequiredPersistentEntity(join.targetType);
-            fieldAliases = new HashMap<>();
-            mapping.fieldAliasesByTableAlias.put(join.alias, fieldAliases);
-            mapping.entitiesByAlias.put(join.alias, joinEntity);
-            mapping.tableByAlias.put(
-                    join.alias, Table.create(joinEntity.getTableName()).as(join.alias));
-            for (RelationalPersistentProperty property : joinEntity) {
-                String alias = mapping.generateAlias();
-                mapping.fields.add(new SelectField(join.alias, property, alias));
-                fieldAliases.put(property.getName(), alias);
-            }
+            mapping.registerTable(
+                    join.alias,
+                    client.getMappingContext().getRequiredPersistentEntity(join.targetType));
+        }
+        for (Tuple2<PropertyOperand, String> p : query.projection) {
+            PropertyOperand operand = p.getT1();
+            RelationalPersistentProperty property =
+                    mapping.entitiesByAlias
+                            .get(operand.getEntityName())
+                            .getRequiredPersistentProperty(operand.getPropertyName());
+            mapping.addField(operand, property, p.getT2(), getValueType(operand, property));
         }
         return mapping;
     }
 
+    /**
+     * Return the type of the value selected for the given operand, once the functions and the
+     * aggregate function are applied.
+     */
+    private TypeInformation<?> getValueType(
+            PropertyOperand operand, RelationalPersistentProperty property) {
+        TypeInformation<?> type = property.getTypeInformation();
+        if (property.isEntity()) {
+            // the column contains the id of the linked entity
+            type =
+                    client.getMappingContext()
+                            .getRequiredPersistentEntity(property.getActualType())
+                            .getRequiredIdProperty()
+                            .getTypeInformation();
+        }
+        List<RelationalDatabaseSchemaDialect.SqlFunction> functions =
+                operand.getFunctionsToApply();
+        if (!functions.isEmpty()) {
+            type =
+                    ClassTypeInformation.from(
+                            client.getSchemaDialect()
+                                    .getFunctionResultType(functions.get(functions.size() - 1)));
+        }
+        if (operand.getAggregate() == null) {
+            return type;
+        }
+        switch (operand.getAggregate()) {
+            case COUNT:
+            case COUNT_DISTINCT:
+                return ClassTypeInformation.from(Long.class);
+            case AVG:
+                return ClassTypeInformation.from(Double.class);
+            case SUM:
+                Class<?> c = ClassUtils.resolvePrimitiveIfNecessary(type.getType());
+                if (Float.class.equals(c) || Double.class.equals(c)) {
+                    return ClassTypeInformation.from(Double.class);
+                }
+                if (Number.class.isAssignableFrom(c)
+                        && !BigDecimal.class.equals(c)
+                        && !BigInteger.class.equals(c)) {
+                    return ClassTypeInformation.from(Long.class);
+                }
+                return type;
+            default:
+                return type;
+        }
+    }
+
+    private SqlQuery<Select> buildProjectionSql(SelectMapping mapping) {
+        // GROUP BY and HAVING are not supported by the builder, they are added to the SQL
+        boolean grouped = !query.groupBy.isEmpty() || query.having != null;
+        StringBuilder end = new StringBuilder();
+        SqlQuery<Select> q = newQuery(end);
+        CriteriaSqlBuilder criteriaBuilder =
+                new CriteriaSqlBuilder(mapping.entitiesByAlias, mapping.tableByAlias, q);
+
+        List<Expression> selectFields = new ArrayList<>(mapping.fields.size());
+        for (SelectField field : mapping.fields) {
+            selectFields.add(
+                    field.isComputed()
+                            ? criteriaBuilder.toExpression(field.operand)
+                            : field.toSql());
+        }
+        Table root = mapping.tableByAlias.get(query.from.alias);
+        BuildSelect select = Select.builder().select(selectFields).from(root);
+        // an order on a result may be an aggregate, it is appended to the SQL like GROUP BY
+        boolean orderByResult = false;
+        for (Tuple3<String, String, Boolean> order : query.orderBy) {
+            orderByResult |= SelectQuery.RESULT_ORDER.equals(order.getT1());
+        }
+        if (!grouped && !orderByResult) {
+            select = addOrderBy(select);
+        }
+
+        for (TableReference join : query.joins) {
+            select = join(select, join, mapping);
+        }
+
+        if (query.where != null) {
+            select = ((SelectWhere) select).where(query.where.accept(criteriaBuilder));
+        }
+
+        if (grouped || orderByResult) {
+            SqlRenderer renderer = getRenderer();
+            if (!query.groupBy.isEmpty()) {
+                end.append(" GROUP BY ");
+                for (int i = 0; i < query.groupBy.size(); ++i) {
+                    if (i > 0) {
+                        end.append(", ");
+                    }
+                    Expression expression = criteriaBuilder.toExpression(query.groupBy.get(i));
+                    end.append(render(renderer, root, expression));
+                }
+            }
+            if (query.having != null) {
+                end.append(" HAVING ")
+                        .append(render(renderer, root, query.having.accept(criteriaBuilder)));
+            }
+            for (int i = 0; i < query.orderBy.size(); ++i) {
+                Tuple3<String, String, Boolean> orderBy = query.orderBy.get(i);
+                PropertyOperand operand =
+                        SelectQuery.RESULT_ORDER.equals(orderBy.getT1())
+                                ? getResultOperand(orderBy.getT2())
+                                : Criteria.property(orderBy.getT1(), orderBy.getT2());
+                end.append(i == 0 ? " ORDER BY " : ", ")
+                        .append(render(renderer, root, criteriaBuilder.toExpression(operand)))
+                        .append(orderBy.getT3() ? " ASC" : " DESC");
+            }
+        }
+        appendLimit(q, end);
+
+        q.setQuery(select.build());
+        return q;
+    }
+
+    /**
+     * Return the operand selected with the given result name, the expression being repeated in
+     * the ORDER BY clause as result names cannot be used in expressions by all databases.
+     */
+    private PropertyOperand getResultOperand(String resultName) {
+        for (Tuple2<PropertyOperand, String> p : query.projection) {
+            if (p.getT2().equals(resultName)) {
+                return p.getT1();
+            }
+        }
+        throw new IllegalArgumentException(
+                "Cannot order by result <" + resultName + ">: it is not selected");
+    }
+
+    private SqlRenderer getRenderer() {
+        RenderContext renderContext =
+                client.getDataAccess().getStatementMapper().getRenderContext();
+        return renderContext != null ? SqlRenderer.create(renderContext) : SqlRenderer.create();
+    }
+
+    /**
+     * Render an expression, using a SELECT of this expression.
+     */
+    private static String render(SqlRenderer renderer, Table table, Expression expression) {
+        String sql = renderer.render(Select.builder().select(expression).from(table).build());
+        return sql.substring("SELECT ".length(), sql.lastIndexOf(" FROM "));
+    }
+
+    /**
+     * Render a condition, using a SELECT with this condition as where clause.
+     */
+    private static String render(SqlRenderer renderer, Table table, Condition condition) {
+        String sql =
+                renderer.render(
+                        Select.builder()
+                                .select(Expressions.asterisk())
+                                .from(table)
+                                .where(condition)
+                                .build());
+        return sql.substring(sql.indexOf(" WHERE ") + " WHERE ".length());
+    }
+
     private SqlQuery<Select> buildFinalSql(
             SelectMapping mapping,
             Criteria criteria,
@@ -401,7 +771,6 @@ public class SelectExecution<T> {
                         .select(selectFields)
                         .from(mapping.tableByAlias.get(query.from.alias));
         if (applyLimitAndOrderBy) {
-            select = addLimit(select);
             select = addOrderBy(select);
         }
 
@@ -409,7 +778,8 @@ public class SelectExecution<T> {
             select = join(select, join, mapping);
         }
 
-        SqlQuery<Select> q = new SqlQuery<>(client);
+        StringBuilder end = new StringBuilder();
+        SqlQuery<Select> q = newQuery(end);
         if (criteria != null) {
             select =
                     ((SelectWhere) select)
@@ -452,16 +822,40 @@ public class SelectExecution<T> {
                 select = ((SelectOrdered) select).orderBy(columns);
             }
         }
+        if (applyLimitAndOrderBy) {
+            appendLimit(q, end);
+        }
 
         q.setQuery(select.build());
         return q;
     }
 
-    private BuildSelect addLimit(BuildSelect select) {
+    /**
+     * Create a query whose SQL is completed with the given end, for the clauses the builder does
+     * not support or cannot render with bind markers.
+     */
+    private SqlQuery<Select> newQuery(StringBuilder end) {
+        return new SqlQuery<Select>(client, query.from.targetType) {
+            @Override
+            protected String finalizeQuery(String sql) {
+                return sql + end;
+            }
+        };
+    }
+
+    /**
+     * Append the limit and offset with bind markers, so the plan can be used for any page. This
+     * must be called once the bind markers of the where and having clauses have been created.
+     */
+    private void appendLimit(SqlQuery<Select> q, StringBuilder end) {
         if (query.limit > 0) {
-            return ((SelectFromAndJoin) select).limitOffset(query.limit, query.offset);
+            end.append(' ')
+                    .append(
+                            client.getSchemaDialect()
+                                    .limitOffset(
+                                            q.placeholder(query.limit),
+                                            q.placeholder(query.offset)));
         }
-        return select;
     }
 
     private BuildSelect addOrderBy(BuildSelect select) {
@@ -503,7 +897,6 @@ public class SelectExecution<T> {
                                         mapping.tableByAlias.get(query.from.alias)))
                         .distinct()
                         .from(mapping.tableByAlias.get(query.from.alias));
-        select = addLimit(select);
         select = addOrderBy(select);
 
         for (TableReference join : query.joins) {
@@ -513,7 +906,8 @@ public class SelectExecution<T> {
             select = join(select, join, mapping);
         }
 
-        SqlQuery<Select> q = new SqlQuery<>(client);
+        StringBuilder end = new StringBuilder();
+        SqlQuery<Select> q = newQuery(end);
         if (query.where != null) {
             select =
                     ((SelectWhere) select)
@@ -524,6 +918,7 @@ public class SelectExecution<T> {
                                                     mapping.tableByAlias,
                                                     q)));
         }
+        appendLimit(q, end);
 
         q.setQuery(select.build());
         return q;
@@ -547,8 +942,9 @@ public class SelectExecution<T> {
             select = join(select, join, mapping);
         }
 
+        StringBuilder end = new StringBuilder();
         SqlQuery<Select> q =
-                new SqlQuery<Select>(client) {
+                new SqlQuery<Select>(client, query.from.targetType) {
                     @Override
                     protected String finalizeQuery(String sql) {
                         StringBuilder s = new StringBuilder(sql);
@@ -557,8 +953,8 @@ public class SelectExecution<T> {
                                         Column.create(
                                                 entity.getIdColumn(),
                                                 mapping.tableByAlias.get(query.from.alias)));
-                        s.append(" ORDER BY ");
-                        for (Tuple3<String, String, Boolean> orderBy : query.orderBy) {
+                        for (int i = 0; i < query.orderBy.size(); ++i) {
+                            Tuple3<String, String, Boolean> orderBy = query.orderBy.get(i);
                             TableReference table = query.tableAliases.get(orderBy.getT1());
                             RelationalPersistentEntity<?> e =
                                     client.getMappingContext()
@@ -569,19 +965,14 @@ public class SelectExecution<T> {
                                     Column.create(
                                             p.getColumnName(),
                                             Table.create(e.getTableName()).as(table.alias));
+                            s.append(i == 0 ? " ORDER BY " : ", ");
                             if (orderBy.getT3()) {
                                 s.append("MIN(").append(col).append(") ASC");
                             } else {
                                 s.append("MAX(").append(col).append(") DESC");
                             }
                         }
-                        if (query.limit > 0) {
-                            s.append(" LIMIT ")
-                                    .append(query.limit)
-                                    .append(" OFFSET ")
-                                    .append(query.offset);
-                        }
-                        return s.toString();
+                        return s.append(end).toString();
                     }
                 };
         if (query.where != null) {
@@ -594,6 +985,7 @@ public class SelectExecution<T> {
                                                     mapping.tableByAlias,
                                                     q)));
         }
+        appendLimit(q, end);
 
         q.setQuery(select.build());
         return q;
@@ -631,13 +1023,134 @@ public class SelectExecution<T> {
                 .equals(joinSource);
     }
 
+    /**
+     * Plan of a select query, shared by all queries having the same shape, see {@link
+     * SelectPlanCache}.
+     */
+    static final class Plan {
+        private final SelectMapping mapping;
+        private final boolean needsPreSelect;
+        private final Map<Integer, String> sqlByIdsCount = new ConcurrentHashMap<>();
+        private final Map<Class<?>, ProjectionMapper<?>> projectionMappers =
+                new ConcurrentHashMap<>();
+        private volatile String sql;
+        private volatile String preSelectSql;
+        private volatile String countSql;
+
+        private Plan(SelectMapping mapping, boolean needsPreSelect) {
+            this.mapping = mapping;
+            this.needsPreSelect = needsPreSelect;
+        }
+
+        @SuppressWarnings("unchecked")
+        private <R> ProjectionMapper<R> getProjectionMapper(
+                Class<R> resultType, ConversionService conversionService) {
+            return (ProjectionMapper<R>)
+                    projectionMappers.computeIfAbsent(
+                            resultType,
+                            type -> {
+                                String[] names = new String[mapping.fields.size()];
+                                Class<?>[] valueTypes = new Class<?>[names.length];
+                                for (int i = 0; i < names.length; ++i) {
+                                    SelectField field = mapping.fields.get(i);
+                                    names[i] = field.resultName;
+                                    valueTypes[i] = field.valueType.getType();
+                                }
+                                return new ProjectionMapper<>(
+                                        type, names, valueTypes, conversionService);
+                            });
+        }
+    }
+
     private static class SelectMapping {
         private final Map<String, RelationalPersistentEntity<?>> entitiesByAlias = new HashMap<>();
         private final Map<String, Table> tableByAlias = new HashMap<>();
         private final Map<String, Map<String, String>> fieldAliasesByTableAlias = new HashMap<>();
-        private final List<SelectField> fields = new LinkedList<>();
+        private final Map<String, Map<RelationalPersistentProperty, Integer>>
+                columnIndexesByTableAlias = new HashMap<>();
+        private final List<SelectField> fields = new ArrayList<>();
         private int aliasCounter = 0;
 
+        private void registerTable(String tableAlias, RelationalPersistentEntity<?> entity) {
+            fieldAliasesByTableAlias.put(tableAlias, new HashMap<>());
+            entitiesByAlias.put(tableAlias, entity);
+            tableByAlias.put(tableAlias, Table.create(entity.getTableName()).as(tableAlias));
+        }
+
+        /**
+         * Add the columns of all the properties of the entity.
+         *
+         * @param entities all the entities of the mapping context, so the properties of other
+         *                 instances describing the same entity (such as the one of its generated
+         *                 subclass) are resolved to the same columns
+         */
+        private void addTable(
+                String tableAlias,
+                RelationalPersistentEntity<?> entity,
+                Collection<RelationalPersistentEntity<?>> entities) {
+            registerTable(tableAlias, entity);
+            Map<String, String> fieldAliases = fieldAliasesByTableAlias.get(tableAlias);
+            Map<RelationalPersistentProperty, Integer> indexes = new IdentityHashMap<>();
+            for (RelationalPersistentProperty property : entity) {
+                String alias = generateAlias();
+                // the column index in the result is the index of the field in the select clause
+                indexes.put(property, fields.size());
+                fields.add(
+                        new SelectField(
+                                tableAlias,
+                                property,
+                                alias,
+                                property.getName(),
+                                property.getTypeInformation(),
+                                null));
+                fieldAliases.put(property.getName(), alias);
+            }
+            for (RelationalPersistentEntity<?> other : entities) {
+                if (other == entity
+                        || !(entity.getType().isAssignableFrom(other.getType())
+                                || other.getType().isAssignableFrom(entity.getType()))) {
+                    continue;
+                }
+                for (RelationalPersistentProperty property : other) {
+                    RelationalPersistentProperty own =
+                            entity.getPersistentProperty(property.getName());
+                    if (own != null) {
+                        indexes.putIfAbsent(property, indexes.get(own));
+                    }
+                }
+            }
+            columnIndexesByTableAlias.put(tableAlias, indexes);
+        }
+
+        /**
+         * Add a field of a projection, the column index in the result being the index of the
+         * field.
+         */
+        private void addField(
+                PropertyOperand operand,
+                RelationalPersistentProperty property,
+                String resultName,
+                TypeInformation<?> valueType) {
+            String alias = generateAlias();
+            fields.add(
+                    new SelectField(
+                            operand.getEntityName(),
+                            property,
+                            alias,
+                            resultName,
+                            valueType,
+                            operand));
+            if (operand.getAggregate() == null && operand.getFunctionsToApply().isEmpty()) {
+                fieldAliasesByTableAlias
+                        .get(operand.getEntityName())
+                        .put(property.getName(), alias);
+            }
+        }
+
+        private PropertiesSourceIndexedRow createSource(String tableAlias) {
+            return new PropertiesSourceIndexedRow(columnIndexesByTableAlias.get(tableAlias));
+        }
+
         private String generateAlias() {
             int num = aliasCounter++;
             return "f" + StringUtils.leftPad(Integer.toString(num), 4, '0');
@@ -648,12 +1161,32 @@ public class SelectExecution<T> {
         private final String tableAlias;
         private final RelationalPersistentProperty property;
         private final String fieldAlias;
+        private final String resultName;
+        private final TypeInformation<?> valueType;
+        @Nullable
+        private final PropertyOperand operand;
 
         public SelectField(
-                String tableAlias, RelationalPersistentProperty property, String fieldAlias) {
+                String tableAlias,
+                RelationalPersistentProperty property,
+                String fieldAlias,
+                String resultName,
+                TypeInformation<?> valueType,
+                @Nullable PropertyOperand operand) {
             this.tableAlias = tableAlias;
             this.property = property;
             this.fieldAlias = fieldAlias;
+            this.resultName = resultName;
+            this.valueType = valueType;
+            this.operand = operand;
+        }
+
+        /**
+         * Return true if the value is computed by functions or an aggregate function.
+         */
+        public boolean isComputed() {
+            return operand != null
+                    && (operand.getAggregate() != null || !operand.getFunctionsToApply().isEmpty());
         }
 
         public Column toSql() {
@@ -666,30 +1199,37 @@ public class SelectExecution<T> {
 
     private class RowHandler {
 
-        private final SelectMapping mapping;
         private final RelationalPersistentEntity<?> rootEntity;
-        private final Map<String, String> rootAliases;
+        private final PropertiesSourceIndexedRow rootSource;
+        private final Map<TableReference, PropertiesSourceIndexedRow> joinSources =
+                new IdentityHashMap<>();
         private T currentRoot = null;
         private Object currentRootId = null;
 
         private RowHandler(SelectMapping mapping) {
-            this.mapping = mapping;
             this.rootEntity =
                     client.getMappingContext().getRequiredPersistentEntity(query.from.targetType);
-            this.rootAliases = mapping.fieldAliasesByTableAlias.get(query.from.alias);
+            this.rootSource = mapping.createSource(query.from.alias);
+            for (TableReference join : query.joins) {
+                joinSources.put(join, mapping.createSource(join.alias));
+            }
         }
 
+        /**
+         * Handle a row, and return the previous root entity if this row starts a new one.
+         */
         @SuppressWarnings("unchecked")
-        private void handleRow(Map<String, Object> row, FluxSink<T> sink) {
+        private Optional<T> handleRow(Row row) {
             if (logger.isDebugEnabled()) {
-                logger.debug("Result row = " + row);
+                logger.debug("Result row for " + query.from.targetType.getSimpleName());
             }
-            PropertiesSource source = new PropertiesSourceMap(row, rootAliases);
+            PropertiesSource source = rootSource.setRow(row);
             Object rootId = ModelUtils.getId(rootEntity, source);
+            T complete = null;
             if (currentRoot != null) {
                 if (rootId != null && !currentRootId.equals(rootId)) {
                     endOfRoot();
-                    sink.next(currentRoot);
+                    complete = currentRoot;
                     currentRoot = (T) reader.read(query.from.targetType, source);
                     currentRootId = rootId;
                 }
@@ -697,26 +1237,37 @@ public class SelectExecution<T> {
                 currentRoot = (T) reader.read(query.from.targetType, source);
                 currentRootId = rootId;
             }
-            fillLinkedEntities(
-                    currentRoot, EntityState.get(currentRoot, client, rootEntity), query.from, row);
+            fillLinkedEntities(currentRoot, getState(currentRoot, rootEntity), query.from, row);
+            return Optional.ofNullable(complete);
         }
 
-        private void handleEnd(FluxSink<T> sink) {
+        /**
+         * Return the last root entity, or null if there was no row.
+         */
+        @Nullable
+        private T handleEnd() {
             if (logger.isDebugEnabled()) {
                 logger.debug("End of rows");
             }
-            if (currentRoot != null) {
-                endOfRoot();
-                sink.next(currentRoot);
+            if (currentRoot == null) {
+                return null;
             }
-            sink.complete();
+            endOfRoot();
+            T last = currentRoot;
+            currentRoot = null;
+            return last;
+        }
+
+        @Nullable
+        private EntityState getState(Object entity, RelationalPersistentEntity<?> entityType) {
+            return reader.isReadOnly() ? null : EntityState.get(entity, client, entityType);
         }
 
         private void fillLinkedEntities(
                 Object parent,
-                EntityState parentState,
+                @Nullable EntityState parentState,
                 TableReference parentTable,
-                Map<String, Object> row) {
+                Row row) {
             for (TableReference join : query.joins) {
                 if (join.source != parentTable) {
                     continue;
@@ -734,8 +1285,8 @@ public class SelectExecution<T> {
         private <J> void fillLinkedEntity(
                 TableReference join,
                 Object parent,
-                EntityState parentState,
-                Map<String, Object> row)
+                @Nullable EntityState parentState,
+                Row row)
                 throws ReflectiveOperationException {
             if (logger.isDebugEnabled()) {
                 logger.debug(
@@ -746,19 +1297,23 @@ public class SelectExecution<T> {
                                 + " from "
                                 + parent.getClass().getSimpleName());
             }
-            Field field = parent.getClass().getDeclaredField(join.propertyName);
-            field.setAccessible(true);
+            LcEntityTypeInfo parentInfo = LcEntityTypeInfo.get(parent.getClass());
+            Field field = parentInfo.getRequiredField(join.propertyName);
             Class<?> type;
-            boolean isCollection = ModelUtils.isCollection(field);
+            boolean isCollection = parentInfo.isCollection(join.propertyName);
             if (isCollection) {
-                type = ModelUtils.getRequiredCollectionType(field);
+                type = parentInfo.getCollectionElementType(join.propertyName);
+                if (type == null) {
+                    throw new MappingException(
+                            "Unable to determine collection element type for "
+                                    + join.propertyName);
+                }
             } else {
                 type = field.getType();
             }
             RelationalPersistentEntity<?> entity =
                     client.getMappingContext().getRequiredPersistentEntity(type);
-            PropertiesSource source =
-                    new PropertiesSourceMap(row, mapping.fieldAliasesByTableAlias.get(join.alias));
+            PropertiesSource source = joinSources.get(join).setRow(row);
             Object id = ModelUtils.getId(entity, source);
             if (id == null) {
                 // left join without any match
@@ -766,13 +1321,15 @@ public class SelectExecution<T> {
                     field.set(
                             parent,
                             CollectionFactory.createCollection(
-                                    field.getType(), ModelUtils.getCollectionType(field), 0));
+                                    field.getType(), type, 0));
                 }
                 return;
             }
             J instance = reader.read((Class<J>) join.targetType, source);
             if (isCollection) {
                 ModelUtils.addToCollectionField(field, parent, instance);
+            } else if (parentState == null) {
+                ModelUtils.setFieldValue(parent, field, instance);
             } else {
                 if (LcEntityTypeInfo.isForeignTableField(field)) {
                     parentState.setForeignTableField(parent, field, instance, true);
@@ -780,7 +1337,7 @@ public class SelectExecution<T> {
                     parentState.setPersistedField(parent, field, instance, true);
                 }
             }
-            fillLinkedEntities(instance, EntityState.get(instance, client, entity), join, row);
+            fillLinkedEntities(instance, getState(instance, entity), join, row);
         }
 
         private void endOfRoot() {
@@ -804,15 +1361,14 @@ public class SelectExecution<T> {
         @SuppressWarnings("squid:S3011")
         private void signalLoadedForeignTable(Object parent, TableReference join)
                 throws ReflectiveOperationException {
-            Field field = parent.getClass().getDeclaredField(join.propertyName);
-            field.setAccessible(true);
+            LcEntityTypeInfo parentInfo = LcEntityTypeInfo.get(parent.getClass());
+            Field field = parentInfo.getRequiredField(join.propertyName);
             Object instance = field.get(parent);
-            if (field.isAnnotationPresent(ForeignTable.class)) {
+            if (field.isAnnotationPresent(ForeignTable.class) && !reader.isReadOnly()) {
                 EntityState.get(parent, client).foreignTableLoaded(field, instance);
             }
             if (instance != null) {
-                boolean isCollection = ModelUtils.isCollection(field);
-                if (isCollection) {
+                if (parentInfo.isCollection(join.propertyName)) {
                     for (Object element : Objects.requireNonNull(ModelUtils.getAsCollection(instance))) {
                         signalLoadedForeignTables(element, join);
                     }
@@ -0,0 +1,113 @@
+package me.lusory.relate.query;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of select plans, keyed by the shape of a {@link SelectQuery}.
+ *
+ * <p>A plan contains the mapping of the selected fields (table and field aliases) and the SQL
+ * already rendered for the query. When a query with the same shape is executed again, only the
+ * values of the where clause, the limit and the offset need to be bound, without building and
+ * rendering the SQL again.
+ *
+ * <p>When the maximum size is reached, the least recently used plan is evicted.
+ */
+public class SelectPlanCache {
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 512;
+
+    private final int maximumSize;
+    private final LinkedHashMap<String, SelectExecution.Plan> plans;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public SelectPlanCache() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public SelectPlanCache(int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Maximum size must be at least 1");
+        }
+        this.maximumSize = maximumSize;
+        // access order: the eldest entry is the least recently used
+        this.plans =
+                new LinkedHashMap<String, SelectExecution.Plan>(16, 0.75f, true) {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected boolean removeEldestEntry(
+                            Map.Entry<String, SelectExecution.Plan> eldest) {
+                        if (size() <= SelectPlanCache.this.maximumSize) {
+                            return false;
+                        }
+                        evictions.increment();
+                        return true;
+                    }
+                };
+    }
+
+    SelectExecution.Plan get(String key, Supplier<SelectExecution.Plan> planSupplier) {
+        synchronized (plans) {
+            SelectExecution.Plan plan = plans.get(key);
+            if (plan != null) {
+                hits.increment();
+                return plan;
+            }
+        }
+        misses.increment();
+        // the plan is built outside of the lock, only one of concurrent builds is kept
+        SelectExecution.Plan created = planSupplier.get();
+        synchronized (plans) {
+            SelectExecution.Plan existing = plans.putIfAbsent(key, created);
+            return existing != null ? existing : created;
+        }
+    }
+
+    /**
+     * Remove all plans from this cache.
+     */
+    public void clear() {
+        synchronized (plans) {
+            plans.clear();
+        }
+    }
+
+    /**
+     * Return the number of plans currently in this cache.
+     */
+    public int size() {
+        synchronized (plans) {
+            return plans.size();
+        }
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Return the number of executions which used a plan already in the cache.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Return the number of executions which needed to build a new plan.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Return the number of plans evicted because the maximum size has been reached.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+}
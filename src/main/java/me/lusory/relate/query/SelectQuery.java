@@ -7,13 +7,21 @@ import me.lusory.relate.model.LcEntityTypeInfo;
 import me.lusory.relate.model.ModelAccessException;
 import me.lusory.relate.model.ModelUtils;
 import me.lusory.relate.query.criteria.Criteria;
+import me.lusory.relate.query.criteria.CriteriaSqlBuilder;
+import me.lusory.relate.query.criteria.CriteriaVisitor;
+import me.lusory.relate.schema.dialect.RelationalDatabaseSchemaDialect;
+import org.springframework.data.mapping.PersistentPropertyAccessor;
 import org.springframework.data.relational.core.mapping.RelationalPersistentEntity;
 import org.springframework.data.relational.core.mapping.RelationalPersistentProperty;
+import org.springframework.lang.Nullable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
 import reactor.util.function.Tuple3;
 import reactor.util.function.Tuples;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -26,6 +34,11 @@ import java.util.Map;
  */
 public class SelectQuery<T> {
 
+    /**
+     * Default number of root entities loaded by each query, when ids need to be pre-selected.
+     */
+    public static final int DEFAULT_PRE_SELECT_BATCH_SIZE = 100;
+
     TableReference from;
     List<TableReference> joins = new LinkedList<>();
     Map<String, TableReference> tableAliases = new HashMap<>();
@@ -33,12 +46,38 @@ public class SelectQuery<T> {
     long offset = 0;
     long limit = -1;
     List<Tuple3<String, String, Boolean>> orderBy = new LinkedList<>();
+    /** Entity name of an order by clause on a value of the projection, given by its name. */
+    static final String RESULT_ORDER = "#result";
+    int preSelectBatchSize = DEFAULT_PRE_SELECT_BATCH_SIZE;
+    boolean readOnly = false;
+    int fetchSize = 0;
+    List<Tuple2<Criteria.PropertyOperand, String>> projection = new LinkedList<>();
+    List<Criteria.PropertyOperand> groupBy = new LinkedList<>();
+    Criteria having = null;
+    private boolean keyset = false;
+    private Object[] keysetValues = null;
 
     private SelectQuery(Class<T> type, String alias) {
         from = new TableReference(null, null, type, alias);
         tableAliases.put(alias, from);
     }
 
+    private SelectQuery(SelectQuery<T> query) {
+        from = query.from;
+        joins = query.joins;
+        tableAliases = query.tableAliases;
+        where = query.where;
+        offset = query.offset;
+        limit = query.limit;
+        orderBy = query.orderBy;
+        preSelectBatchSize = query.preSelectBatchSize;
+        readOnly = query.readOnly;
+        fetchSize = query.fetchSize;
+        projection = query.projection;
+        groupBy = query.groupBy;
+        having = query.having;
+    }
+
     /**
      * Create a SELECT query from the table of the given entity type, using the given alias.
      */
@@ -92,6 +131,165 @@ public class SelectQuery<T> {
         return this;
     }
 
+    /**
+     * Add an ORDER BY clause on a value of the projection, given by its result name. This is the
+     * way to sort the groups of an aggregation, for example by a count or a sum.
+     *
+     * @see #select(Criteria.PropertyOperand, String)
+     */
+    public SelectQuery<T> orderByResult(String resultName, boolean ascending) {
+        this.orderBy.add(Tuples.of(RESULT_ORDER, resultName, ascending));
+        return this;
+    }
+
+    /**
+     * Use keyset pagination, starting after the entity having the given sort values.
+     *
+     * <p>The order by clauses must be on the root entity, and the id of the root entity is
+     * automatically added as last order by clause, so the values must be the values of the order
+     * by properties followed by the value of the id (or the values of the composite id).
+     *
+     * <p>Instead of an offset, a condition is added on the sorted columns, so the cost of a page
+     * does not depend on its position.
+     */
+    public SelectQuery<T> after(Object... lastSortValues) {
+        this.keyset = true;
+        this.keysetValues = lastSortValues;
+        return this;
+    }
+
+    /**
+     * Use keyset pagination, starting after the entity described by the given token, as returned
+     * by {@link KeysetPage#getNextPageToken()}. A null token means the first page.
+     */
+    public SelectQuery<T> after(@Nullable String token) {
+        this.keyset = true;
+        this.keysetValues = token != null ? KeysetToken.decode(token) : null;
+        return this;
+    }
+
+    /**
+     * Set the number of root entities loaded by each query, when the ids of the root entities need
+     * to be selected first (for example when using a limit with a join on a collection).
+     */
+    public SelectQuery<T> preSelectBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        this.preSelectBatchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Return entities which are not tracked: no state is created, no values are kept to detect
+     * modifications, and instances are not registered in the cache of the reader.
+     *
+     * <p>This is the cheapest way to read entities which will never be saved. The returned
+     * instances must not be saved or deleted, and their linked entities which are not loaded by
+     * the query cannot be lazily loaded.
+     */
+    public SelectQuery<T> readOnly() {
+        this.readOnly = true;
+        return this;
+    }
+
+    /**
+     * Set the number of rows the driver should fetch at a time. With a driver supporting it, the
+     * results are read from a database cursor as they are requested, instead of being loaded at
+     * once, which is useful to stream a large number of entities. Zero means the default of the
+     * driver.
+     */
+    public SelectQuery<T> fetchSize(int rows) {
+        if (rows < 0) {
+            throw new IllegalArgumentException("Fetch size must be positive or zero");
+        }
+        this.fetchSize = rows;
+        return this;
+    }
+
+    /**
+     * Select only the given property, instead of the entities, for a projection. The result name
+     * is the name of the property.
+     *
+     * @see #executeProjection(LcReactiveDataRelationalClient, Class)
+     */
+    public SelectQuery<T> select(String entityName, String propertyName) {
+        return select(entityName, propertyName, propertyName);
+    }
+
+    /**
+     * Select only the given property, instead of the entities, for a projection, using the given
+     * result name.
+     *
+     * @see #executeProjection(LcReactiveDataRelationalClient, Class)
+     */
+    public SelectQuery<T> select(String entityName, String propertyName, String resultName) {
+        return select(Criteria.property(entityName, propertyName), resultName);
+    }
+
+    /**
+     * Select the given operand, instead of the entities, for a projection, using the given result
+     * name. The operand may apply functions to the property, or an aggregate function such as
+     * {@link Criteria.PropertyOperand#sum()} to get a single value for the rows of each group.
+     *
+     * @see #groupBy(Criteria.PropertyOperand)
+     * @see #executeProjection(LcReactiveDataRelationalClient, Class)
+     */
+    public SelectQuery<T> select(Criteria.PropertyOperand operand, String resultName) {
+        checkEntity(operand);
+        for (Tuple2<Criteria.PropertyOperand, String> p : projection) {
+            if (p.getT2().equals(resultName)) {
+                throw new IllegalArgumentException(
+                        "result name <" + resultName + "> is already used in the projection");
+            }
+        }
+        projection.add(Tuples.of(operand, resultName));
+        return this;
+    }
+
+    /**
+     * Add a GROUP BY clause on the given property to the projection of this select query.
+     */
+    public SelectQuery<T> groupBy(String entityName, String propertyName) {
+        return groupBy(Criteria.property(entityName, propertyName));
+    }
+
+    /**
+     * Add a GROUP BY clause on the given operand to the projection of this select query. The
+     * operand may apply functions to the property, for example to group by year of a date.
+     */
+    public SelectQuery<T> groupBy(Criteria.PropertyOperand operand) {
+        checkEntity(operand);
+        if (operand.getAggregate() != null) {
+            throw new IllegalArgumentException("Cannot group by an aggregate: " + operand);
+        }
+        groupBy.add(operand);
+        return this;
+    }
+
+    /**
+     * Set the given criteria in the HAVING clause of the projection, to filter the groups using
+     * aggregate functions. If criteria already exist, a AND is created between the existing
+     * criteria and the new criteria.
+     */
+    public SelectQuery<T> having(Criteria criteria) {
+        if (having == null) {
+            having = criteria;
+        } else {
+            having = having.and(criteria);
+        }
+        return this;
+    }
+
+    private void checkEntity(Criteria.PropertyOperand operand) {
+        if (!tableAliases.containsKey(operand.getEntityName())) {
+            throw new IllegalArgumentException(
+                    "entity <"
+                            + operand.getEntityName()
+                            + "> does not exist in current select query");
+        }
+    }
+
     /**
      * Execute the query using the given database client.
      */
@@ -106,6 +304,50 @@ public class SelectQuery<T> {
         return client.execute(this, reader);
     }
 
+    /**
+     * Execute the query, returning only the properties given to {@link #select(String, String,
+     * String)}: only the corresponding columns are selected, and no entity is created.
+     *
+     * <p>The result type may be Object[], a Reactor tuple, a Map, a simple type when a single
+     * property is selected, an interface having a getter for each result name, or a class having a
+     * constructor or fields matching the result names.
+     *
+     * <p>Contrary to entities, a row is returned for each row of the result, so a join on a
+     * collection gives a result for each element, and the limit applies to the rows. When
+     * aggregate functions are selected, a row is returned for each group given to {@link
+     * #groupBy(Criteria.PropertyOperand)}, or a single row without group by clause.
+     */
+    public <R> Flux<R> executeProjection(LcReactiveDataRelationalClient client, Class<R> resultType) {
+        return client.executeProjection(this, resultType);
+    }
+
+    /**
+     * Execute the query to get a page of entities using keyset pagination, starting after the
+     * token given to {@link #after(String)}, or from the first entity if none is given.
+     */
+    public Mono<KeysetPage<T>> executePage(LcReactiveDataRelationalClient client, int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1");
+        }
+        // this query is not modified, so it can be executed again
+        SelectQuery<T> page = new SelectQuery<>(this);
+        page.keyset = true;
+        page.keysetValues = keysetValues;
+        page.offset = 0;
+        page.limit = pageSize;
+        return page.execute(client)
+                .collectList()
+                .map(
+                        list -> {
+                            String next = null;
+                            if (list.size() == pageSize) {
+                                next = KeysetToken.encode(
+                                        getKeysetValues(client, list.get(list.size() - 1)));
+                            }
+                            return new KeysetPage<>(list, next);
+                        });
+    }
+
     /**
      * Execute a COUNT request, using the joins and where clause of this select query. Any join
      * which are not useful (not used for conditions) are automatically ignored.
@@ -162,10 +404,182 @@ public class SelectQuery<T> {
         }
     }
 
+    /**
+     * When keyset pagination is used, return a copy of this query with the id of the root entity
+     * added to the order by clauses, and the condition to start after the last sort values. This
+     * query is not modified, so it can be executed again after another call to {@link
+     * #after(String)}.
+     */
+    SelectQuery<T> withKeyset(LcMappingR2dbcConverter mapper) {
+        if (!keyset) {
+            return this;
+        }
+        RelationalPersistentEntity<?> entity =
+                mapper.getMappingContext().getRequiredPersistentEntity(from.targetType);
+        List<RelationalPersistentProperty> properties = getKeysetProperties(entity);
+        SelectQuery<T> q = new SelectQuery<>(this);
+        q.orderBy = new LinkedList<>(orderBy);
+        for (int i = orderBy.size(); i < properties.size(); ++i) {
+            q.orderBy.add(Tuples.of(from.alias, properties.get(i).getName(), Boolean.TRUE));
+        }
+        if (keysetValues == null) {
+            return q;
+        }
+        if (keysetValues.length != properties.size()) {
+            throw new IllegalArgumentException(
+                    "Keyset pagination expects "
+                            + properties.size()
+                            + " values, found "
+                            + keysetValues.length);
+        }
+        // (k1 > v1) OR (k1 = v1 AND k2 > v2) OR ...
+        Criteria seek = null;
+        for (int i = 0; i < properties.size(); ++i) {
+            Criteria.PropertyOperand operand =
+                    Criteria.property(from.alias, properties.get(i).getName());
+            Object value = getKeysetValue(properties, i);
+            Criteria c =
+                    q.orderBy.get(i).getT3().booleanValue()
+                            ? operand.greaterThan(value)
+                            : operand.lessThan(value);
+            for (int j = i - 1; j >= 0; --j) {
+                c = Criteria.property(from.alias, properties.get(j).getName())
+                        .is(getKeysetValue(properties, j))
+                        .and(c);
+            }
+            seek = seek == null ? c : seek.or(c);
+        }
+        q.where = where == null ? seek : where.and(seek);
+        return q;
+    }
+
+    /**
+     * Return the properties of the root entity used to sort the pages: the order by properties,
+     * followed by the id properties not already in the order by.
+     */
+    private List<RelationalPersistentProperty> getKeysetProperties(
+            RelationalPersistentEntity<?> entity) {
+        List<RelationalPersistentProperty> properties = new ArrayList<>(orderBy.size() + 1);
+        for (Tuple3<String, String, Boolean> o : orderBy) {
+            if (!from.alias.equals(o.getT1())) {
+                throw new IllegalArgumentException(
+                        "Keyset pagination only supports order by on the root entity, found "
+                                + o.getT1()
+                                + '.'
+                                + o.getT2());
+            }
+            properties.add(entity.getRequiredPersistentProperty(o.getT2()));
+        }
+        for (RelationalPersistentProperty idProperty : getIdProperties(entity)) {
+            if (!properties.contains(idProperty)) {
+                properties.add(idProperty);
+            }
+        }
+        return properties;
+    }
+
+    private static List<RelationalPersistentProperty> getIdProperties(
+            RelationalPersistentEntity<?> entity) {
+        if (entity.hasIdProperty()) {
+            List<RelationalPersistentProperty> list = new ArrayList<>(1);
+            list.add(entity.getRequiredIdProperty());
+            return list;
+        }
+        String[] compositeId = ModelUtils.getCompositeIdProperties(entity);
+        if (compositeId != null) {
+            return ModelUtils.getProperties(entity, compositeId);
+        }
+        throw new IllegalArgumentException(
+                "Keyset pagination needs an Id or a CompositeId on " + entity.getType().getName());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Object getKeysetValue(List<RelationalPersistentProperty> properties, int index) {
+        Object value = keysetValues[index];
+        Class<?> type = properties.get(index).getType();
+        if (value instanceof String && type.isEnum()) {
+            return Enum.valueOf((Class<? extends Enum>) type, (String) value);
+        }
+        return value;
+    }
+
+    private Object[] getKeysetValues(LcReactiveDataRelationalClient client, T entity) {
+        RelationalPersistentEntity<?> keysetEntity =
+                client.getMappingContext().getRequiredPersistentEntity(from.targetType);
+        List<RelationalPersistentProperty> properties = getKeysetProperties(keysetEntity);
+        Object[] values = new Object[properties.size()];
+        PersistentPropertyAccessor<T> accessor =
+                keysetEntity.getPropertyAccessor(entity);
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = accessor.getProperty(properties.get(i));
+        }
+        return values;
+    }
+
+    /**
+     * Return a key describing the shape of this query: entity types, joins, structure of the
+     * where clause (without the values), presence of a limit and order by. Two queries with the
+     * same key generate the same SQL, with the same bind markers.
+     */
+    String getPlanKey(LcReactiveDataRelationalClient client) {
+        StringBuilder s = new StringBuilder(128);
+        s.append(from.targetType.getName()).append(' ').append(from.alias);
+        for (TableReference join : joins) {
+            s.append("|J:")
+                    .append(join.source.alias)
+                    .append('.')
+                    .append(join.propertyName)
+                    .append(':')
+                    .append(join.targetType != null ? join.targetType.getName() : "?")
+                    .append(' ')
+                    .append(join.alias);
+        }
+        for (Tuple2<Criteria.PropertyOperand, String> p : projection) {
+            // the result name is part of the rendered SQL
+            s.append("|P:").append(p.getT1()).append(" AS ").append(p.getT2());
+        }
+        for (Criteria.PropertyOperand g : groupBy) {
+            s.append("|G:").append(g);
+        }
+        if (where != null) {
+            s.append("|W:");
+            where.accept(new PlanKeyVisitor(s, client, tableAliases));
+        }
+        if (having != null) {
+            s.append("|H:");
+            having.accept(new PlanKeyVisitor(s, client, tableAliases));
+        }
+        if (limit > 0) {
+            // limit and offset are bound, the same plan is used for every page
+            s.append("|L");
+        }
+        for (Tuple3<String, String, Boolean> o : orderBy) {
+            s.append("|O:")
+                    .append(o.getT1())
+                    .append('.')
+                    .append(o.getT2())
+                    .append(o.getT3() ? 'A' : 'D');
+        }
+        return s.toString();
+    }
+
     @Override
     public String toString() {
         StringBuilder s = new StringBuilder();
-        s.append("SELECT FROM ")
+        s.append("SELECT ");
+        for (Tuple2<Criteria.PropertyOperand, String> p : projection) {
+            if (s.length() > 7) {
+                s.append(", ");
+            }
+            s.append(p.getT1());
+            if (!p.getT1().getPropertyName().equals(p.getT2())) {
+                s.append(" AS ").append(p.getT2());
+            }
+        }
+        if (!projection.isEmpty()) {
+            s.append(' ');
+        }
+        s.append("FROM ")
                 .append(from.targetType.getSimpleName())
                 .append(" AS ")
                 .append(from.alias);
@@ -179,21 +593,138 @@ public class SelectQuery<T> {
         if (where != null) {
             s.append(" WHERE ").append(where);
         }
+        if (!groupBy.isEmpty()) {
+            s.append(" GROUP BY ");
+            for (int i = 0; i < groupBy.size(); ++i) {
+                if (i > 0) {
+                    s.append(", ");
+                }
+                s.append(groupBy.get(i));
+            }
+        }
+        if (having != null) {
+            s.append(" HAVING ").append(having);
+        }
         if (limit > 0) {
             s.append(" LIMIT ").append(offset).append(',').append(limit);
         }
         if (!orderBy.isEmpty()) {
             s.append(" ORDER BY ");
             for (Tuple3<String, String, Boolean> o : orderBy) {
-                s.append(o.getT1())
-                        .append('.')
-                        .append(o.getT2())
-                        .append(o.getT3() ? " ASC" : " DESC");
+                if (!RESULT_ORDER.equals(o.getT1())) {
+                    s.append(o.getT1()).append('.');
+                }
+                s.append(o.getT2()).append(o.getT3() ? " ASC" : " DESC");
             }
         }
         return s.toString();
     }
 
+    private static class PlanKeyVisitor implements CriteriaVisitor<Void> {
+
+        private final StringBuilder key;
+        private final LcReactiveDataRelationalClient client;
+        private final Map<String, TableReference> tableAliases;
+
+        private PlanKeyVisitor(
+                StringBuilder key,
+                LcReactiveDataRelationalClient client,
+                Map<String, TableReference> tableAliases) {
+            this.key = key;
+            this.client = client;
+            this.tableAliases = tableAliases;
+        }
+
+        @Override
+        public Void visit(Criteria.And and) {
+            key.append('(');
+            and.getLeft().accept(this);
+            key.append("&");
+            and.getRight().accept(this);
+            key.append(')');
+            return null;
+        }
+
+        @Override
+        public Void visit(Criteria.Or or) {
+            key.append('(');
+            or.getLeft().accept(this);
+            key.append("|");
+            or.getRight().accept(this);
+            key.append(')');
+            return null;
+        }
+
+        @Override
+        public Void visit(Criteria.PropertyOperation op) {
+            appendOperand(op.getLeft());
+            key.append(' ').append(op.getOperator().name()).append(' ');
+            Object value = op.getValue();
+            if (value instanceof Criteria.PropertyOperand) {
+                appendOperand((Criteria.PropertyOperand) value);
+            } else if (value instanceof Collection) {
+                appendCollection((Collection<?>) value, getProperty(op.getLeft()));
+            } else {
+                key.append('?');
+            }
+            return null;
+        }
+
+        @Nullable
+        private RelationalPersistentProperty getProperty(Criteria.PropertyOperand operand) {
+            TableReference table = tableAliases.get(operand.getEntityName());
+            if (table == null || table.targetType == null) {
+                return null;
+            }
+            return client.getMappingContext()
+                    .getRequiredPersistentEntity(table.targetType)
+                    .getPersistentProperty(operand.getPropertyName());
+        }
+
+        private void appendCollection(
+                Collection<?> value, @Nullable RelationalPersistentProperty property) {
+            if (!CriteriaSqlBuilder.containsOperand(value)) {
+                // the same values as the ones bound, as they decide between an array and lists
+                List<Object> values =
+                        property != null
+                                ? CriteriaSqlBuilder.toDatabaseValues(value, property, client)
+                                : new ArrayList<>(value);
+                RelationalDatabaseSchemaDialect dialect = client.getSchemaDialect();
+                if (CriteriaSqlBuilder.isArrayIn(values, dialect)) {
+                    key.append("[A]");
+                    return;
+                }
+                // values are split and padded into lists
+                key.append('[');
+                for (List<Object> list : CriteriaSqlBuilder.toInLists(values, dialect)) {
+                    key.append(list.size()).append(',');
+                }
+                key.append(']');
+                return;
+            }
+            key.append('[').append(value.size());
+            int index = 0;
+            for (Object element : value) {
+                if (element instanceof Criteria.PropertyOperand) {
+                    key.append(',').append(index).append(':');
+                    appendOperand((Criteria.PropertyOperand) element);
+                }
+                index++;
+            }
+            key.append(']');
+        }
+
+        private void appendOperand(Criteria.PropertyOperand operand) {
+            if (operand.getAggregate() != null) {
+                key.append(operand.getAggregate().name()).append('(');
+            }
+            for (RelationalDatabaseSchemaDialect.SqlFunction fct : operand.getFunctionsToApply()) {
+                key.append(fct.name()).append('(');
+            }
+            key.append(operand.getEntityName()).append('.').append(operand.getPropertyName());
+        }
+    }
+
     static class TableReference {
 
         TableReference source;
@@ -1,20 +1,38 @@
 package me.lusory.relate.query;
 
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+import io.r2dbc.spi.Statement;
 import me.lusory.relate.LcReactiveDataRelationalClient;
+import me.lusory.relate.metrics.RelateMetrics;
+import me.lusory.relate.metrics.StatementEvent;
+import me.lusory.relate.metrics.StatementKind;
+import me.lusory.relate.metrics.StatementListener;
+import org.reactivestreams.Publisher;
 import org.springframework.data.relational.core.sql.*;
 import org.springframework.data.relational.core.sql.render.RenderContext;
 import org.springframework.data.relational.core.sql.render.SqlRenderer;
 import org.springframework.data.util.Pair;
 import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
 import org.springframework.r2dbc.core.DatabaseClient.GenericExecuteSpec;
 import org.springframework.r2dbc.core.PreparedOperation;
 import org.springframework.r2dbc.core.binding.BindMarker;
 import org.springframework.r2dbc.core.binding.BindMarkers;
 import org.springframework.r2dbc.core.binding.BindTarget;
 import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
 
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
 
 /**
  * SQL query with binding, for execution on a database client.
@@ -24,13 +42,33 @@ import java.util.List;
  */
 public class SqlQuery<T> {
 
+    /**
+     * Key of an {@link AtomicInteger} in the Reactor context, incremented each time a statement
+     * is executed. This is used to count the statements executed by an operation.
+     */
+    public static final String STATEMENT_COUNTER_CONTEXT_KEY =
+            SqlQuery.class.getName() + ".statementCounter";
+
     private final LcReactiveDataRelationalClient client;
+    @Nullable
+    private final Class<?> entityType;
     private final BindMarkers markers;
     private final List<Pair<BindMarker, Object>> bindings = new LinkedList<>();
     private T query;
+    private String sql;
+    private int fetchSize = 0;
 
     public SqlQuery(LcReactiveDataRelationalClient client) {
+        this(client, null);
+    }
+
+    /**
+     * Create a query about the given entity class, which is given to the metrics and statement
+     * listeners when the query is executed.
+     */
+    public SqlQuery(LcReactiveDataRelationalClient client, @Nullable Class<?> entityType) {
         this.client = client;
+        this.entityType = entityType;
         markers = client.getDialect().getBindMarkersFactory().create();
     }
 
@@ -38,6 +76,11 @@ public class SqlQuery<T> {
         return client;
     }
 
+    @Nullable
+    public Class<?> getEntityType() {
+        return entityType;
+    }
+
     public T getQuery() {
         return query;
     }
@@ -55,20 +98,150 @@ public class SqlQuery<T> {
         return SQL.bindMarker(marker.getPlaceholder());
     }
 
+    /**
+     * Create a bind marker that will be bind to the statement on execution, and return its
+     * placeholder, for a clause appended to the SQL without the query builder.
+     */
+    public String placeholder(Object value) {
+        BindMarker marker = markers.next();
+        bindings.add(Pair.of(marker, value));
+        return marker.getPlaceholder();
+    }
+
+    /**
+     * Bind the given value to the next bind marker, without creating the corresponding
+     * expression. This is used when the SQL has already been rendered, to bind the values in the
+     * same order as {@link #marker(Object)} would have done.
+     */
+    public void bind(Object value) {
+        bindings.add(Pair.of(markers.next(), value));
+    }
+
+    /**
+     * Return the number of values bound to this query.
+     */
+    public int getBindCount() {
+        return bindings.size();
+    }
+
+    /**
+     * Return the SQL of this query, rendering it the first time.
+     */
+    public String getSql() {
+        if (sql == null) {
+            sql = render();
+        }
+        return sql;
+    }
+
+    /**
+     * Use an already rendered SQL, instead of rendering the query.
+     */
+    public void setSql(String sql) {
+        this.sql = sql;
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * Set the number of rows the driver should fetch at a time, allowing a database cursor to
+     * stream the results. Zero means the default of the driver.
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
     protected String finalizeQuery(String query) {
         return query;
     }
 
+    private String render() {
+        Assert.notNull(query, "Query must be set");
+        RenderContext renderContext =
+                client.getDataAccess().getStatementMapper().getRenderContext();
+        if (query instanceof InsertMultiple) {
+            return finalizeQuery(((InsertMultiple) query).render(renderContext));
+        }
+        SqlRenderer renderer =
+                renderContext != null
+                        ? SqlRenderer.create(renderContext)
+                        : SqlRenderer.create();
+        if (query instanceof Select) {
+            return finalizeQuery(renderer.render((Select) query));
+        }
+        if (query instanceof Insert) {
+            return finalizeQuery(renderer.render((Insert) query));
+        }
+        if (query instanceof Update) {
+            return finalizeQuery(renderer.render((Update) query));
+        }
+        if (query instanceof Delete) {
+            return finalizeQuery(renderer.render((Delete) query));
+        }
+        throw new IllegalArgumentException(
+                "Unexpected query type: " + query.getClass().getName());
+    }
+
+    /**
+     * Return the kind of statement, from the type of query or from the first keyword of the SQL.
+     */
+    public StatementKind getKind() {
+        if (query instanceof Select) {
+            return StatementKind.SELECT;
+        }
+        if (query instanceof Insert || query instanceof InsertMultiple) {
+            return StatementKind.INSERT;
+        }
+        if (query instanceof Update) {
+            return StatementKind.UPDATE;
+        }
+        if (query instanceof Delete) {
+            return StatementKind.DELETE;
+        }
+        return getKind(getSql());
+    }
+
+    /**
+     * Return the kind of the given SQL statement, from its first keyword.
+     */
+    public static StatementKind getKind(String sql) {
+        String s = sql.trim();
+        int end = 0;
+        while (end < s.length() && Character.isLetter(s.charAt(end))) {
+            end++;
+        }
+        switch (s.substring(0, end).toUpperCase(Locale.ROOT)) {
+            case "SELECT":
+            case "WITH":
+                return StatementKind.SELECT;
+            case "INSERT":
+            case "COPY":
+                return StatementKind.INSERT;
+            case "UPDATE":
+                return StatementKind.UPDATE;
+            case "DELETE":
+                return StatementKind.DELETE;
+            case "CREATE":
+            case "ALTER":
+            case "DROP":
+                return StatementKind.SCHEMA;
+            default:
+                return StatementKind.OTHER;
+        }
+    }
+
     /**
      * Execute the query.
      */
     public GenericExecuteSpec execute() {
-        PreparedOperation<T> operation =
-                new PreparedOperation<T>() {
+        PreparedOperation<Object> operation =
+                new PreparedOperation<Object>() {
                     @Override
                     public @NonNull
-                    T getSource() {
-                        return query;
+                    Object getSource() {
+                        return query != null ? query : getSql();
                     }
 
                     @Override
@@ -81,32 +254,270 @@ public class SqlQuery<T> {
                     @Override
                     public @NonNull
                     String toQuery() {
-                        Assert.notNull(query, "Query must be set");
-                        RenderContext renderContext =
-                                client.getDataAccess().getStatementMapper().getRenderContext();
-                        if (query instanceof InsertMultiple) {
-                            return finalizeQuery(((InsertMultiple) query).render(renderContext));
-                        }
-                        SqlRenderer renderer =
-                                renderContext != null
-                                        ? SqlRenderer.create(renderContext)
-                                        : SqlRenderer.create();
-                        if (query instanceof Select) {
-                            return finalizeQuery(renderer.render((Select) query));
-                        }
-                        if (query instanceof Insert) {
-                            return finalizeQuery(renderer.render((Insert) query));
-                        }
-                        if (query instanceof Update) {
-                            return finalizeQuery(renderer.render((Update) query));
-                        }
-                        if (query instanceof Delete) {
-                            return finalizeQuery(renderer.render((Delete) query));
-                        }
-                        throw new IllegalArgumentException(
-                                "Unexpected query type: " + query.getClass().getName());
+                        return getSql();
                     }
                 };
-        return client.getSpringClient().sql(operation);
+        GenericExecuteSpec spec = client.getSpringClient().sql(operation);
+        if (fetchSize > 0) {
+            int rows = fetchSize;
+            spec = spec.filter((statement, next) -> next.execute(statement.fetchSize(rows)));
+        }
+        // the SQL is rendered by the execution, it is given to the observation only if needed
+        return observe(client, spec, getKind(), entityType, this::getSql, bindings.size());
+    }
+
+    /**
+     * Return true if the executed statements need to be observed, because metrics or statement
+     * listeners are configured on the client.
+     */
+    public static boolean isObserved(LcReactiveDataRelationalClient client) {
+        return client.getMetrics() != RelateMetrics.NONE
+                || !client.getStatementListeners().isEmpty();
+    }
+
+    /**
+     * Observe the execution of the statement of the given spec: metrics and statement listeners
+     * are notified when its results have been consumed, and the statement is counted in the
+     * operation if any.
+     */
+    public static GenericExecuteSpec observe(
+            LcReactiveDataRelationalClient client,
+            GenericExecuteSpec spec,
+            StatementKind kind,
+            @Nullable Class<?> entityType,
+            String sql,
+            int bindCount) {
+        return observe(client, spec, kind, entityType, () -> sql, bindCount);
+    }
+
+    /**
+     * Observe the execution of the statement of the given spec, the SQL being given to the
+     * listeners only when the statement is executed.
+     *
+     * @see #observe(LcReactiveDataRelationalClient, GenericExecuteSpec, StatementKind, Class,
+     * String, int)
+     */
+    public static GenericExecuteSpec observe(
+            LcReactiveDataRelationalClient client,
+            GenericExecuteSpec spec,
+            StatementKind kind,
+            @Nullable Class<?> entityType,
+            Supplier<String> sql,
+            int bindCount) {
+        if (!isObserved(client)) {
+            return spec;
+        }
+        return spec.filter(
+                (statement, next) ->
+                        Flux.deferContextual(
+                                ctx -> {
+                                    countStatement(ctx);
+                                    Observation observation =
+                                            new Observation(
+                                                    client,
+                                                    kind,
+                                                    entityType,
+                                                    sql.get(),
+                                                    bindCount);
+                                    return Flux.<Result>from(next.execute(statement))
+                                            .doOnError(e -> observation.end(0, e))
+                                            .<Result>map(
+                                                    result ->
+                                                            new ObservedResult(
+                                                                    result, observation));
+                                }));
+    }
+
+    /**
+     * Observe a statement executed without a spec, such as a bulk copy, the given execution
+     * emitting the number of rows.
+     */
+    public static Mono<Long> observe(
+            LcReactiveDataRelationalClient client,
+            Mono<Long> execution,
+            StatementKind kind,
+            @Nullable Class<?> entityType,
+            Supplier<String> sql,
+            int bindCount) {
+        if (!isObserved(client)) {
+            return execution;
+        }
+        return Mono.deferContextual(
+                ctx -> {
+                    countStatement(ctx);
+                    Observation observation =
+                            new Observation(client, kind, entityType, sql.get(), bindCount);
+                    return execution
+                            .doOnSuccess(n -> observation.end(n != null ? n : 0, null))
+                            .doOnError(e -> observation.end(0, e))
+                            .doOnCancel(() -> observation.end(0, null));
+                });
+    }
+
+    private static void countStatement(ContextView ctx) {
+        ctx.<AtomicInteger>getOrEmpty(STATEMENT_COUNTER_CONTEXT_KEY)
+                .ifPresent(AtomicInteger::incrementAndGet);
+    }
+
+    /**
+     * Execute the given queries as a single batch statement. All the queries must have the same
+     * SQL, only their bindings differ.
+     *
+     * @return the number of rows updated by each query, in the same order as the queries
+     */
+    public static Flux<Integer> executeBatch(
+            LcReactiveDataRelationalClient client, List<? extends SqlQuery<?>> queries) {
+        Assert.notEmpty(queries, "At least one query is required");
+        String sql = queries.get(0).getSql();
+        Flux<Integer> execution = client.getSpringClient()
+                .inConnectionMany(
+                        connection -> {
+                            Statement statement = connection.createStatement(sql);
+                            BindTarget target = new StatementBindTarget(statement);
+                            boolean first = true;
+                            for (SqlQuery<?> q : queries) {
+                                Assert.isTrue(
+                                        sql.equals(q.getSql()),
+                                        "All queries of a batch must have the same SQL");
+                                if (!first) {
+                                    statement.add();
+                                }
+                                first = false;
+                                for (Pair<BindMarker, Object> binding : q.bindings) {
+                                    binding.getFirst().bind(target, binding.getSecond());
+                                }
+                            }
+                            return Flux.from(statement.execute())
+                                    .concatMap(Result::getRowsUpdated);
+                        });
+        if (!isObserved(client)) {
+            return execution;
+        }
+        StatementKind kind = queries.get(0).getKind();
+        Class<?> entityType = queries.get(0).getEntityType();
+        int bindCount = 0;
+        for (SqlQuery<?> q : queries) {
+            bindCount += q.getBindCount();
+        }
+        int totalBindCount = bindCount;
+        return Flux.deferContextual(
+                ctx -> {
+                    countStatement(ctx);
+                    Observation observation =
+                            new Observation(client, kind, entityType, sql, totalBindCount);
+                    long[] rows = new long[1];
+                    return execution
+                            .doOnNext(n -> rows[0] += n)
+                            .doOnComplete(() -> observation.end(rows[0], null))
+                            .doOnError(e -> observation.end(rows[0], e));
+                });
+    }
+
+    /**
+     * Execution of a statement, notifying the listeners when it starts and the metrics and
+     * listeners only once when it ends.
+     */
+    private static final class Observation {
+        private final LcReactiveDataRelationalClient client;
+        private final StatementKind kind;
+        @Nullable
+        private final Class<?> entityType;
+        private final String sql;
+        private final int bindCount;
+        private final long start;
+        private final AtomicBoolean ended = new AtomicBoolean(false);
+
+        private Observation(
+                LcReactiveDataRelationalClient client,
+                StatementKind kind,
+                @Nullable Class<?> entityType,
+                String sql,
+                int bindCount) {
+            this.client = client;
+            this.kind = kind;
+            this.entityType = entityType;
+            this.sql = sql;
+            this.bindCount = bindCount;
+            for (StatementListener listener : client.getStatementListeners()) {
+                listener.beforeStatement(kind, sql, bindCount);
+            }
+            this.start = System.nanoTime();
+        }
+
+        private void end(long rows, @Nullable Throwable error) {
+            if (!ended.compareAndSet(false, true)) {
+                return;
+            }
+            long duration = System.nanoTime() - start;
+            client.getMetrics().statementExecuted(kind, entityType, duration, rows, error == null);
+            List<StatementListener> listeners = client.getStatementListeners();
+            if (listeners.isEmpty()) {
+                return;
+            }
+            StatementEvent event =
+                    new StatementEvent(kind, entityType, sql, bindCount, duration, rows, error);
+            for (StatementListener listener : listeners) {
+                listener.afterStatement(event);
+            }
+        }
+    }
+
+    /**
+     * Result ending the observation of its statement once consumed.
+     */
+    private static final class ObservedResult implements Result {
+        private final Result result;
+        private final Observation observation;
+
+        private ObservedResult(Result result, Observation observation) {
+            this.result = result;
+            this.observation = observation;
+        }
+
+        @Override
+        public @NonNull Publisher<Integer> getRowsUpdated() {
+            return Mono.from(result.getRowsUpdated())
+                    .doOnSuccess(n -> observation.end(n != null ? n : 0, null))
+                    .doOnError(e -> observation.end(0, e));
+        }
+
+        @Override
+        public @NonNull <R> Publisher<R> map(
+                @NonNull BiFunction<Row, RowMetadata, ? extends R> mappingFunction) {
+            long[] rows = new long[1];
+            return Flux.<R>from(result.map(mappingFunction))
+                    .doOnNext(r -> rows[0]++)
+                    .doOnComplete(() -> observation.end(rows[0], null))
+                    .doOnCancel(() -> observation.end(rows[0], null))
+                    .doOnError(e -> observation.end(rows[0], e));
+        }
+    }
+
+    private static final class StatementBindTarget implements BindTarget {
+        private final Statement statement;
+
+        private StatementBindTarget(Statement statement) {
+            this.statement = statement;
+        }
+
+        @Override
+        public void bind(@NonNull String identifier, @NonNull Object value) {
+            statement.bind(identifier, value);
+        }
+
+        @Override
+        public void bind(int index, @NonNull Object value) {
+            statement.bind(index, value);
+        }
+
+        @Override
+        public void bindNull(@NonNull String identifier, @NonNull Class<?> type) {
+            statement.bindNull(identifier, type);
+        }
+
+        @Override
+        public void bindNull(int index, @NonNull Class<?> type) {
+            statement.bindNull(index, type);
+        }
     }
 }
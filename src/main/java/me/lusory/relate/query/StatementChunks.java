@@ -0,0 +1,146 @@
+package me.lusory.relate.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Split the values of a statement into chunks respecting the limits of the database, and keep
+ * statistics about the chunks created.
+ */
+public class StatementChunks {
+
+    /**
+     * Estimated size, in characters, of a value for which the actual value is not known yet.
+     */
+    public static final int ESTIMATED_VALUE_SIZE = 24;
+
+    private final Map<Kind, Statistics> statistics = new EnumMap<>(Kind.class);
+
+    public StatementChunks() {
+        for (Kind kind : Kind.values()) {
+            statistics.put(kind, new Statistics());
+        }
+    }
+
+    /**
+     * Split the given elements into chunks of at most <code>maxChunkSize</code> elements, and
+     * record the size of each chunk in the statistics of the given kind of statement.
+     *
+     * @see #splitEvenly(List, int)
+     */
+    public <T> List<List<T>> split(Kind kind, List<T> elements, int maxChunkSize) {
+        List<List<T>> chunks = splitEvenly(elements, maxChunkSize);
+        for (List<T> chunk : chunks) {
+            record(kind, chunk.size());
+        }
+        return chunks;
+    }
+
+    /**
+     * Record a chunk of the given size in the statistics of the given kind of statement.
+     */
+    public void record(Kind kind, int chunkSize) {
+        statistics.get(kind).add(chunkSize);
+    }
+
+    /**
+     * Split the given elements into chunks of at most <code>maxChunkSize</code> elements.
+     *
+     * <p>Elements are distributed evenly, so 1001 elements with a maximum of 1000 give 2 chunks
+     * of 501 and 500 elements instead of 1000 and 1.
+     */
+    public static <T> List<List<T>> splitEvenly(List<T> elements, int maxChunkSize) {
+        if (elements.isEmpty()) {
+            return Collections.emptyList();
+        }
+        int max = Math.max(1, maxChunkSize);
+        int nbChunks = (elements.size() + max - 1) / max;
+        if (nbChunks == 1) {
+            return Collections.singletonList(elements);
+        }
+        int size = elements.size() / nbChunks;
+        int remaining = elements.size() % nbChunks;
+        List<List<T>> chunks = new ArrayList<>(nbChunks);
+        int start = 0;
+        for (int i = 0; i < nbChunks; ++i) {
+            int end = start + size + (i < remaining ? 1 : 0);
+            chunks.add(elements.subList(start, end));
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * Return an estimation of the size, in characters, a value takes in a statement.
+     */
+    public static int estimateSize(Object value) {
+        if (value == null) {
+            return 4;
+        }
+        if (value instanceof CharSequence) {
+            return ((CharSequence) value).length() + 2;
+        }
+        if (value instanceof byte[]) {
+            return ((byte[]) value).length * 2 + 3;
+        }
+        return ESTIMATED_VALUE_SIZE;
+    }
+
+    /**
+     * Return the number of chunks created for the given kind of statement.
+     */
+    public long getChunkCount(Kind kind) {
+        return statistics.get(kind).chunks.sum();
+    }
+
+    /**
+     * Return the total number of elements split into chunks for the given kind of statement.
+     */
+    public long getElementCount(Kind kind) {
+        return statistics.get(kind).elements.sum();
+    }
+
+    /**
+     * Return the size of the largest chunk created for the given kind of statement.
+     */
+    public long getMaxChunkSize(Kind kind) {
+        return statistics.get(kind).maxSize.get();
+    }
+
+    /**
+     * Return the average size of the chunks created for the given kind of statement, or 0 if no
+     * chunk has been created yet.
+     */
+    public double getAverageChunkSize(Kind kind) {
+        long chunks = getChunkCount(kind);
+        return chunks == 0 ? 0 : (double) getElementCount(kind) / chunks;
+    }
+
+    public enum Kind {
+        /** Rows of a multiple rows INSERT. */
+        INSERT,
+        /** Values of the condition of an UPDATE, or updates sent as a single batch. */
+        UPDATE,
+        /** Values of the condition of a DELETE. */
+        DELETE,
+        /** Values of an IN condition, counted when its SQL is rendered. */
+        IN_LIST
+    }
+
+    private static final class Statistics {
+        private final LongAdder chunks = new LongAdder();
+        private final LongAdder elements = new LongAdder();
+        private final LongAccumulator maxSize = new LongAccumulator(Math::max, 0);
+
+        private void add(int size) {
+            chunks.increment();
+            elements.add(size);
+            maxSize.accumulate(size);
+        }
+    }
+}
@@ -122,6 +122,7 @@ public interface Criteria {
         private final String entityName;
         private final String propertyName;
         private final LinkedList<RelationalDatabaseSchemaDialect.SqlFunction> functionsToApply = new LinkedList<>();
+        private RelationalDatabaseSchemaDialect.AggregateFunction aggregate = null;
 
         public PropertyOperand(String entityName, String propertyName) {
             this.entityName = entityName;
@@ -140,6 +141,13 @@ public interface Criteria {
             return new ArrayList<>(functionsToApply);
         }
 
+        /**
+         * Return the aggregate function applied after the functions, or null.
+         */
+        public RelationalDatabaseSchemaDialect.AggregateFunction getAggregate() {
+            return aggregate;
+        }
+
         /**
          * Create a 'is equal' condition on this property with the given value. The value may be an
          * entity in case this property is a foreign key, another property operand for properties
@@ -404,9 +412,70 @@ public interface Criteria {
             return this;
         }
 
+        /**
+         * Count the rows having a non-null value for this property, to use in a select or a
+         * having clause of an aggregation.
+         */
+        public PropertyOperand count() {
+            return aggregate(RelationalDatabaseSchemaDialect.AggregateFunction.COUNT);
+        }
+
+        /**
+         * Count the distinct non-null values of this property, to use in a select or a having
+         * clause of an aggregation.
+         */
+        public PropertyOperand countDistinct() {
+            return aggregate(RelationalDatabaseSchemaDialect.AggregateFunction.COUNT_DISTINCT);
+        }
+
+        /**
+         * Sum the values of this property, to use in a select or a having clause of an
+         * aggregation.
+         */
+        public PropertyOperand sum() {
+            return aggregate(RelationalDatabaseSchemaDialect.AggregateFunction.SUM);
+        }
+
+        /**
+         * Average the values of this property, to use in a select or a having clause of an
+         * aggregation.
+         */
+        public PropertyOperand avg() {
+            return aggregate(RelationalDatabaseSchemaDialect.AggregateFunction.AVG);
+        }
+
+        /**
+         * Get the minimum value of this property, to use in a select or a having clause of an
+         * aggregation.
+         */
+        public PropertyOperand min() {
+            return aggregate(RelationalDatabaseSchemaDialect.AggregateFunction.MIN);
+        }
+
+        /**
+         * Get the maximum value of this property, to use in a select or a having clause of an
+         * aggregation.
+         */
+        public PropertyOperand max() {
+            return aggregate(RelationalDatabaseSchemaDialect.AggregateFunction.MAX);
+        }
+
+        private PropertyOperand aggregate(RelationalDatabaseSchemaDialect.AggregateFunction fct) {
+            if (aggregate != null) {
+                throw new InvalidCriteriaException(
+                        "Aggregate " + aggregate + " already applied on " + this);
+            }
+            aggregate = fct;
+            return this;
+        }
+
         @Override
         public String toString() {
-            return entityName + "." + propertyName;
+            String s = entityName + "." + propertyName;
+            for (RelationalDatabaseSchemaDialect.SqlFunction fct : functionsToApply) {
+                s = fct.name() + "(" + s + ")";
+            }
+            return aggregate != null ? aggregate.name() + "(" + s + ")" : s;
         }
     }
 
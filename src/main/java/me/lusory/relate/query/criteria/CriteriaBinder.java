@@ -0,0 +1,88 @@
+package me.lusory.relate.query.criteria;
+
+import me.lusory.relate.query.SqlQuery;
+import me.lusory.relate.schema.dialect.RelationalDatabaseSchemaDialect;
+import org.springframework.data.relational.core.mapping.RelationalPersistentEntity;
+import org.springframework.data.relational.core.mapping.RelationalPersistentProperty;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bind the values of a criteria to a query which SQL has already been rendered by a {@link
+ * CriteriaSqlBuilder}. Values are bound in the same order as the bind markers created by the
+ * builder, so the rendered SQL can be reused as long as the criteria has the same structure.
+ */
+public class CriteriaBinder implements CriteriaVisitor<Void> {
+
+    protected Map<String, RelationalPersistentEntity<?>> entitiesByAlias;
+    protected SqlQuery<?> query;
+
+    public CriteriaBinder(
+            Map<String, RelationalPersistentEntity<?>> entitiesByAlias, SqlQuery<?> query) {
+        this.entitiesByAlias = entitiesByAlias;
+        this.query = query;
+    }
+
+    @Override
+    public Void visit(Criteria.And and) {
+        and.getLeft().accept(this);
+        and.getRight().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(Criteria.Or or) {
+        or.getLeft().accept(this);
+        or.getRight().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(Criteria.PropertyOperation op) {
+        if (op.getOperator() == Criteria.PropertyOperator.IS_NULL
+                || op.getOperator() == Criteria.PropertyOperator.IS_NOT_NULL) {
+            return null;
+        }
+        RelationalPersistentEntity<?> entity = entitiesByAlias.get(op.getLeft().getEntityName());
+        RelationalPersistentProperty property =
+                entity.getRequiredPersistentProperty(op.getLeft().getPropertyName());
+        if (op.getValue() instanceof Collection) {
+            Collection<?> values = (Collection<?>) op.getValue();
+            if (CriteriaSqlBuilder.containsOperand(values)) {
+                for (Object v : values) {
+                    bind(v, property);
+                }
+                return null;
+            }
+            bindIn(CriteriaSqlBuilder.toDatabaseValues(values, property, query), property);
+            return null;
+        }
+        bind(CriteriaSqlBuilder.foreignKeyToId(op.getValue(), property, query), property);
+        return null;
+    }
+
+    /**
+     * Bind the values of an IN condition the same way as {@link CriteriaSqlBuilder#inCondition}.
+     */
+    protected void bindIn(List<Object> values, RelationalPersistentProperty property) {
+        RelationalDatabaseSchemaDialect dialect = query.getClient().getSchemaDialect();
+        if (CriteriaSqlBuilder.isArrayIn(values, dialect)) {
+            query.bind(CriteriaSqlBuilder.toArray(values, property));
+            return;
+        }
+        for (List<Object> list : CriteriaSqlBuilder.toInLists(values, dialect)) {
+            for (Object value : list) {
+                query.bind(value);
+            }
+        }
+    }
+
+    protected void bind(Object value, RelationalPersistentProperty property) {
+        if (value instanceof Criteria.PropertyOperand) {
+            return;
+        }
+        query.bind(query.getClient().getSchemaDialect().convertToDataBase(value, property));
+    }
+}
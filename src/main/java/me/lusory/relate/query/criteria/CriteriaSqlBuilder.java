@@ -1,21 +1,33 @@
 package me.lusory.relate.query.criteria;
 
+import me.lusory.relate.LcReactiveDataRelationalClient;
 import me.lusory.relate.annotations.ForeignKey;
 import me.lusory.relate.model.ModelUtils;
+import me.lusory.relate.query.StatementChunks;
 import me.lusory.relate.schema.dialect.RelationalDatabaseSchemaDialect;
 import me.lusory.relate.query.SqlQuery;
 import org.springframework.data.mapping.context.MappingContext;
 import org.springframework.data.relational.core.mapping.RelationalPersistentEntity;
 import org.springframework.data.relational.core.mapping.RelationalPersistentProperty;
 import org.springframework.data.relational.core.sql.*;
+import org.springframework.lang.Nullable;
+import org.springframework.util.ClassUtils;
 
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
 public class CriteriaSqlBuilder implements CriteriaVisitor<Condition> {
 
+    private static final List<Class<?>> INTEGRAL_TYPES =
+            Arrays.asList(Byte.class, Short.class, Integer.class, Long.class);
+
     protected Map<String, RelationalPersistentEntity<?>> entitiesByAlias;
     protected Map<String, Table> tablesByAlias;
     protected SqlQuery<?> query;
@@ -57,37 +69,30 @@ public class CriteriaSqlBuilder implements CriteriaVisitor<Condition> {
 
         if (op.getValue() instanceof Collection) {
             Collection<?> value = (Collection<?>) op.getValue();
-            List<Expression> expressions = new ArrayList<>(value.size());
-            for (Object v : value) {
-                expressions.add(toExpression(v, property));
-            }
-
+            boolean not;
             switch (op.getOperator()) {
                 case IN:
-                    return Conditions.in(left, expressions);
+                    not = false;
+                    break;
                 case NOT_IN:
-                    return Conditions.in(left, expressions).not();
+                    not = true;
+                    break;
                 default:
                     throw new InvalidCriteriaException(
                             "Unexpected operator " + op.getOperator() + " on a collection");
             }
+            if (!containsOperand(value)) {
+                return inCondition(
+                        query, left, toDatabaseValues(value, property, query), property, not);
+            }
+            List<Expression> expressions = new ArrayList<>(value.size());
+            for (Object v : value) {
+                expressions.add(toExpression(v, property));
+            }
+            return inCondition(left, expressions, not);
         }
 
-        Object rightValue = op.getValue();
-        if (property.isAnnotationPresent(ForeignKey.class)
-                && rightValue != null
-                && property.getType().isAssignableFrom(rightValue.getClass())) {
-            // if foreign key, we need to use the id instead of the object
-            MappingContext<RelationalPersistentEntity<?>, ? extends RelationalPersistentProperty>
-                    context = query.getClient().getMappingContext();
-            RelationalPersistentEntity<?> foreignEntity =
-                    context.getRequiredPersistentEntity(property.getType());
-            rightValue =
-                    ModelUtils.getId(
-                            foreignEntity,
-                            foreignEntity.getPropertyAccessor(rightValue),
-                            query.getClient());
-        }
+        Object rightValue = foreignKeyToId(op.getValue(), property, query);
         Expression right = toExpression(rightValue, property);
         switch (op.getOperator()) {
             case EQUALS:
@@ -111,6 +116,334 @@ public class CriteriaSqlBuilder implements CriteriaVisitor<Condition> {
         }
     }
 
+    /**
+     * Create an IN condition on values already converted for the database.
+     *
+     * <p>If the dialect supports it, values are bound as a single array parameter. Else they are
+     * split into lists of at most {@link RelationalDatabaseSchemaDialect#getMaxInListSize()}
+     * values, each padded to its {@link RelationalDatabaseSchemaDialect#getInListBucketSize(int)
+     * bucket size}, so the SQL does not change with each number of values.
+     *
+     * @param property the property compared to the values, giving the type of the array
+     */
+    public static Condition inCondition(
+            SqlQuery<?> query,
+            Expression left,
+            List<?> values,
+            @Nullable RelationalPersistentProperty property,
+            boolean not) {
+        return inCondition(
+                query, query.getClient().getSchemaDialect(), left, values, property, not);
+    }
+
+    /**
+     * Create an IN condition on values already converted for the database, according to the
+     * given dialect.
+     *
+     * @see #inCondition(SqlQuery, Expression, List, RelationalPersistentProperty, boolean)
+     */
+    public static Condition inCondition(
+            SqlQuery<?> query,
+            RelationalDatabaseSchemaDialect dialect,
+            Expression left,
+            List<?> values,
+            @Nullable RelationalPersistentProperty property,
+            boolean not) {
+        if (isArrayIn(values, dialect)) {
+            Expression array = query.marker(toArray(values, property));
+            Condition condition =
+                    Conditions.isEqual(
+                            left, SimpleFunction.create("ANY", Collections.singletonList(array)));
+            return not ? Conditions.nest(condition).not() : condition;
+        }
+        List<List<Object>> lists = toInLists(values, dialect);
+        if (lists.isEmpty()) {
+            Condition in = Conditions.in(left, Collections.emptyList());
+            return not ? in.not() : in;
+        }
+        Condition condition = null;
+        for (List<Object> list : lists) {
+            query.getClient().getStatementChunks().record(StatementChunks.Kind.IN_LIST, list.size());
+            List<Expression> markers = new ArrayList<>(list.size());
+            for (Object value : list) {
+                markers.add(query.marker(value));
+            }
+            Condition in = Conditions.in(left, markers);
+            if (condition == null) {
+                condition = not ? in.not() : in;
+            } else {
+                condition = not ? condition.and(in.not()) : condition.or(in);
+            }
+        }
+        return lists.size() > 1 ? Conditions.nest(condition) : condition;
+    }
+
+    /**
+     * Return true if the values of an IN condition are bound as a single array parameter: the
+     * dialect supports it, values contain no property operand and at least one non-null value,
+     * and they have a common type.
+     *
+     * <p>Otherwise, the values are bound as padded lists (see {@link #toInLists(List,
+     * RelationalDatabaseSchemaDialect)}).
+     */
+    public static boolean isArrayIn(Collection<?> values, RelationalDatabaseSchemaDialect dialect) {
+        return dialect.isArrayParameterSupported()
+                && !containsOperand(values)
+                && getArrayType(values, null) != null;
+    }
+
+    /**
+     * Return the lists of values bound for an IN condition which is not bound as an array.
+     */
+    public static List<List<Object>> toInLists(
+            List<?> values, RelationalDatabaseSchemaDialect dialect) {
+        List<List<Object>> lists = new ArrayList<>();
+        for (List<?> chunk : StatementChunks.splitEvenly(values, dialect.getMaxInListSize())) {
+            int size = dialect.getInListBucketSize(chunk.size());
+            List<Object> list = new ArrayList<>(size);
+            list.addAll(chunk);
+            Object last = chunk.get(chunk.size() - 1);
+            while (list.size() < size) {
+                list.add(last);
+            }
+            lists.add(list);
+        }
+        return lists;
+    }
+
+    /**
+     * Return true if one of the values is a property, in which case the values are not bound.
+     */
+    public static boolean containsOperand(Collection<?> values) {
+        for (Object value : values) {
+            if (value instanceof Criteria.PropertyOperand) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static List<Object> toDatabaseValues(
+            Collection<?> values, RelationalPersistentProperty property, SqlQuery<?> query) {
+        return toDatabaseValues(values, property, query.getClient());
+    }
+
+    /**
+     * Convert the values of an IN condition to the values bound: entities compared to a foreign
+     * key are replaced by their id, then values are converted by the dialect.
+     */
+    public static List<Object> toDatabaseValues(
+            Collection<?> values,
+            RelationalPersistentProperty property,
+            LcReactiveDataRelationalClient client) {
+        List<Object> list = new ArrayList<>(values.size());
+        for (Object value : values) {
+            list.add(
+                    client.getSchemaDialect()
+                            .convertToDataBase(foreignKeyToId(value, property, client), property));
+        }
+        return list;
+    }
+
+    /**
+     * Create an array of the values, to be bound as a single parameter.
+     *
+     * @param property the property compared to the values: if values are numbers, the array
+     *                 has at least the precision of its type
+     * @throws InvalidCriteriaException if values have no common type, which cannot happen when
+     *                                  isArrayIn returned true
+     */
+    public static Object toArray(List<?> values, @Nullable RelationalPersistentProperty property) {
+        Class<?> type = getArrayType(values, property);
+        if (type == null) {
+            throw new InvalidCriteriaException(
+                    "Values of an IN condition cannot be bound as an array: " + values);
+        }
+        Object array = Array.newInstance(type, values.size());
+        int index = 0;
+        for (Object value : values) {
+            Array.set(
+                    array,
+                    index++,
+                    value instanceof Number ? toNumber((Number) value, type) : value);
+        }
+        return array;
+    }
+
+    /**
+     * Return the type of the elements of an array containing the given values, or null if there
+     * is no non-null value or the values have no common type.
+     *
+     * <p>Numbers of different types are widened to a type able to hold all of them, and at least
+     * the type of the property. The property never changes whether a type is found, so the
+     * result of {@link #isArrayIn(Collection, RelationalDatabaseSchemaDialect)} does not depend
+     * on it.
+     */
+    @Nullable
+    static Class<?> getArrayType(
+            Collection<?> values, @Nullable RelationalPersistentProperty property) {
+        Class<?> type = null;
+        boolean sameType = true;
+        boolean numbers = true;
+        for (Object value : values) {
+            if (value == null) {
+                continue;
+            }
+            if (type == null) {
+                type = value.getClass();
+            } else if (!type.equals(value.getClass())) {
+                sameType = false;
+            }
+            numbers &= value instanceof Number;
+        }
+        if (type == null) {
+            return null;
+        }
+        if (numbers) {
+            Class<?> numberType = getNumberType(values, property);
+            if (numberType != null) {
+                return numberType;
+            }
+        }
+        return sameType ? type : null;
+    }
+
+    /**
+     * Return the number type able to hold all the given numbers and the values of the property,
+     * or null if a number is not of a standard type.
+     */
+    @Nullable
+    private static Class<?> getNumberType(
+            Collection<?> values, @Nullable RelationalPersistentProperty property) {
+        List<Class<?>> types = new ArrayList<>(values.size() + 1);
+        for (Object value : values) {
+            if (value != null) {
+                types.add(value.getClass());
+            }
+        }
+        if (property != null) {
+            Class<?> propertyType = ClassUtils.resolvePrimitiveIfNecessary(property.getType());
+            if (Number.class.isAssignableFrom(propertyType)) {
+                types.add(propertyType);
+            }
+        }
+        int integral = -1;
+        boolean bigInteger = false;
+        boolean floating = false;
+        boolean onlyFloat = true;
+        boolean decimal = false;
+        for (Class<?> type : types) {
+            int index = INTEGRAL_TYPES.indexOf(type);
+            if (index >= 0) {
+                integral = Math.max(integral, index);
+                onlyFloat = false;
+            } else if (BigInteger.class.equals(type)) {
+                bigInteger = true;
+                onlyFloat = false;
+            } else if (Float.class.equals(type) || Double.class.equals(type)) {
+                floating = true;
+                onlyFloat &= Float.class.equals(type);
+            } else if (BigDecimal.class.equals(type)) {
+                decimal = true;
+                onlyFloat = false;
+            } else {
+                return null;
+            }
+        }
+        if (decimal || (bigInteger && floating)) {
+            return BigDecimal.class;
+        }
+        if (floating) {
+            return onlyFloat ? Float.class : Double.class;
+        }
+        return bigInteger ? BigInteger.class : INTEGRAL_TYPES.get(integral);
+    }
+
+    private static Object toNumber(Number value, Class<?> type) {
+        if (type.isInstance(value)) {
+            return value;
+        }
+        if (Long.class.equals(type)) {
+            return value.longValue();
+        }
+        if (Integer.class.equals(type)) {
+            return value.intValue();
+        }
+        if (Short.class.equals(type)) {
+            return value.shortValue();
+        }
+        if (Double.class.equals(type)) {
+            return value.doubleValue();
+        }
+        if (Float.class.equals(type)) {
+            return value.floatValue();
+        }
+        if (BigInteger.class.equals(type)) {
+            return BigInteger.valueOf(value.longValue());
+        }
+        if (BigDecimal.class.equals(type)) {
+            return value instanceof BigInteger
+                    ? new BigDecimal((BigInteger) value)
+                    : new BigDecimal(value.toString());
+        }
+        return value;
+    }
+
+    /**
+     * Create an IN condition with the given expressions, split into several IN conditions if the
+     * list of values exceeds the maximum supported by the database.
+     */
+    protected Condition inCondition(Expression left, List<Expression> expressions, boolean not) {
+        List<List<Expression>> lists =
+                query.getClient()
+                        .getStatementChunks()
+                        .split(
+                                StatementChunks.Kind.IN_LIST,
+                                expressions,
+                                query.getClient().getSchemaDialect().getMaxInListSize());
+        if (lists.size() <= 1) {
+            Condition in = Conditions.in(left, expressions);
+            return not ? in.not() : in;
+        }
+        Condition condition = null;
+        for (List<Expression> list : lists) {
+            Condition in = Conditions.in(left, list);
+            if (condition == null) {
+                condition = not ? in.not() : in;
+            } else {
+                condition = not ? condition.and(in.not()) : condition.or(in);
+            }
+        }
+        return Conditions.nest(condition);
+    }
+
+    /**
+     * In case the property is a foreign key and the value is an entity, return the id of the
+     * entity instead of the entity.
+     */
+    static Object foreignKeyToId(
+            Object value, RelationalPersistentProperty property, SqlQuery<?> query) {
+        return foreignKeyToId(value, property, query.getClient());
+    }
+
+    private static Object foreignKeyToId(
+            Object value,
+            RelationalPersistentProperty property,
+            LcReactiveDataRelationalClient client) {
+        if (property.isAnnotationPresent(ForeignKey.class)
+                && value != null
+                && property.getType().isAssignableFrom(value.getClass())) {
+            // if foreign key, we need to use the id instead of the object
+            MappingContext<RelationalPersistentEntity<?>, ? extends RelationalPersistentProperty>
+                    context = client.getMappingContext();
+            RelationalPersistentEntity<?> foreignEntity =
+                    context.getRequiredPersistentEntity(property.getType());
+            return ModelUtils.getId(
+                    foreignEntity, foreignEntity.getPropertyAccessor(value), client);
+        }
+        return value;
+    }
+
     protected Expression toExpression(Object value, RelationalPersistentProperty property) {
         if (value instanceof Criteria.PropertyOperand) {
             return toExpression((Criteria.PropertyOperand) value);
@@ -119,7 +452,11 @@ public class CriteriaSqlBuilder implements CriteriaVisitor<Condition> {
                 query.getClient().getSchemaDialect().convertToDataBase(value, property));
     }
 
-    protected Expression toExpression(Criteria.PropertyOperand propertyOperand) {
+    /**
+     * Create the expression of the given operand: the column of the property, with the functions
+     * and the aggregate function of the operand applied.
+     */
+    public Expression toExpression(Criteria.PropertyOperand propertyOperand) {
         RelationalPersistentEntity<?> rightEntity =
                 entitiesByAlias.get(propertyOperand.getEntityName());
         Expression result = Column.create(
@@ -130,6 +467,12 @@ public class CriteriaSqlBuilder implements CriteriaVisitor<Condition> {
         for (RelationalDatabaseSchemaDialect.SqlFunction fct : propertyOperand.getFunctionsToApply()) {
             result = query.getClient().getSchemaDialect().applyFunctionTo(fct, result);
         }
+        if (propertyOperand.getAggregate() != null) {
+            result =
+                    query.getClient()
+                            .getSchemaDialect()
+                            .applyAggregateTo(propertyOperand.getAggregate(), result);
+        }
         return result;
     }
 }
@@ -312,7 +312,13 @@ class DeleteProcessor extends AbstractInstanceProcessor<DeleteProcessor.DeleteRe
     @Override
     protected Mono<Void> doRequests(
             Operation op, RelationalPersistentEntity<?> entityType, List<DeleteRequest> requests) {
-        SqlQuery<Delete> delete = new SqlQuery<>(op.lcClient);
+        if (entityType.hasIdProperty()) {
+            for (DeleteRequest request : requests) {
+                op.invalidateSharedCache(
+                        entityType, ModelUtils.getId(entityType, request.accessor, op.lcClient));
+            }
+        }
+        SqlQuery<Delete> delete = new SqlQuery<>(op.lcClient, entityType.getType());
         Table table = Table.create(entityType.getTableName());
         Condition criteria =
                 entityType.hasIdProperty()
@@ -2,6 +2,7 @@ package me.lusory.relate.query.operation;
 
 import lombok.extern.slf4j.Slf4j;
 import me.lusory.relate.query.SqlQuery;
+import me.lusory.relate.query.StatementChunks;
 import org.springframework.data.relational.core.mapping.RelationalPersistentEntity;
 import org.springframework.data.relational.core.mapping.RelationalPersistentProperty;
 import org.springframework.data.relational.core.sql.*;
@@ -73,12 +74,29 @@ class DeleteWithoutLoading extends AbstractProcessor<DeleteWithoutLoading.Reques
             if (ready.isEmpty()) {
                 continue;
             }
-            SqlQuery<Delete> query = new SqlQuery<>(op.lcClient);
+            op.invalidateSharedCache(entity.getKey(), null);
             Table table = Table.create(entity.getKey().getTableName());
-            Condition condition = createCondition(entity.getKey(), table, ready, query);
-            query.setQuery(Delete.builder().from(table).where(condition).build());
+            int size = 0;
+            for (Request r : ready) {
+                size += StatementChunks.estimateSize(r.whereValue);
+            }
+            int maxChunkSize =
+                    op.lcClient
+                            .getSchemaDialect()
+                            .getMaxChunkSize(0, 1, Math.max(1, size / ready.size()) + 4);
+            List<Mono<Void>> chunks = new LinkedList<>();
+            for (List<Request> chunk :
+                    op.lcClient
+                            .getStatementChunks()
+                            .split(StatementChunks.Kind.DELETE, ready, maxChunkSize)) {
+                SqlQuery<Delete> query = new SqlQuery<>(op.lcClient, entity.getKey().getType());
+                Condition condition = createCondition(entity.getKey(), table, chunk, query);
+                query.setQuery(Delete.builder().from(table).where(condition).build());
+                chunks.add(query.execute().then());
+            }
             calls.add(
-                    query.execute().then().doOnSuccess(v -> ready.forEach(r -> r.executed = true)));
+                    Operation.executeParallel(chunks)
+                            .doOnSuccess(v -> ready.forEach(r -> r.executed = true)));
         }
         return Operation.executeParallel(calls);
     }
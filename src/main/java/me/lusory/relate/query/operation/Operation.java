@@ -3,6 +3,9 @@ package me.lusory.relate.query.operation;
 import me.lusory.relate.model.EntityCache;
 import me.lusory.relate.LcReactiveDataRelationalClient;
 import me.lusory.relate.model.EntityState;
+import me.lusory.relate.model.SharedEntityCache;
+import me.lusory.relate.metrics.RelateMetrics;
+import me.lusory.relate.query.SqlQuery;
 import me.lusory.relate.query.operation.DeleteProcessor.DeleteRequest;
 import me.lusory.relate.query.operation.SaveProcessor.SaveRequest;
 import org.springframework.data.mapping.PersistentPropertyAccessor;
@@ -11,9 +14,16 @@ import org.springframework.lang.Nullable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
 
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
 
 public class Operation {
     private final Object toCallLock = new Object();
@@ -28,6 +38,11 @@ public class Operation {
      * List of functions to call in sequence.
      */
     private List<Runnable> toCall = new LinkedList<>();
+    /**
+     * Entities to remove again from the shared cache once the operation is done, in case they
+     * have been read while the operation was running. A null id means all entities of the class.
+     */
+    private final Map<Class<?>, Set<Object>> sharedCacheInvalidations = new HashMap<>();
 
     public Operation(LcReactiveDataRelationalClient lcClient) {
         this.lcClient = lcClient;
@@ -74,6 +89,42 @@ public class Operation {
         return delete.addToProcess(this, entity, entityType, state, accessor);
     }
 
+    /**
+     * Remove the entity from the shared cache, now and when the operation is done.
+     */
+    void invalidateSharedCache(RelationalPersistentEntity<?> entityType, @Nullable Object id) {
+        SharedEntityCache sharedCache = lcClient.getSharedCache();
+        if (!sharedCache.isEnabled(entityType.getType())) {
+            return;
+        }
+        if (id != null) {
+            sharedCache.invalidate(entityType.getType(), id);
+        } else {
+            sharedCache.invalidate(entityType.getType());
+        }
+        synchronized (sharedCacheInvalidations) {
+            sharedCacheInvalidations
+                    .computeIfAbsent(entityType.getType(), t -> new HashSet<>())
+                    .add(id);
+        }
+    }
+
+    private void invalidateSharedCache() {
+        SharedEntityCache sharedCache = lcClient.getSharedCache();
+        synchronized (sharedCacheInvalidations) {
+            for (Map.Entry<Class<?>, Set<Object>> e : sharedCacheInvalidations.entrySet()) {
+                if (e.getValue().contains(null)) {
+                    sharedCache.invalidate(e.getKey());
+                } else {
+                    for (Object id : e.getValue()) {
+                        sharedCache.invalidate(e.getKey(), id);
+                    }
+                }
+            }
+            sharedCacheInvalidations.clear();
+        }
+    }
+
     void toCall(Runnable fct) {
         synchronized (toCallLock) {
             toCall.add(fct);
@@ -81,16 +132,59 @@ public class Operation {
     }
 
     public Mono<Void> execute() {
-        return doNext().thenReturn(1)
+        RelateMetrics metrics = lcClient.getMetrics();
+        if (metrics == RelateMetrics.NONE) {
+            return executeSteps(UnaryOperator.identity());
+        }
+        return Mono.defer(
+                () -> {
+                    long start = System.nanoTime();
+                    AtomicInteger steps = new AtomicInteger();
+                    AtomicInteger statements = new AtomicInteger();
+                    return executeSteps(step -> measureStep(step, metrics, steps))
+                            .doOnSuccess(
+                                    v ->
+                                            metrics.operationExecuted(
+                                                    steps.get(),
+                                                    statements.get(),
+                                                    System.nanoTime() - start,
+                                                    true))
+                            .doOnError(
+                                    e ->
+                                            metrics.operationExecuted(
+                                                    steps.get(),
+                                                    statements.get(),
+                                                    System.nanoTime() - start,
+                                                    false))
+                            .contextWrite(
+                                    Context.of(
+                                            SqlQuery.STATEMENT_COUNTER_CONTEXT_KEY, statements));
+                });
+    }
+
+    private Mono<Void> executeSteps(UnaryOperator<Mono<Void>> stepWrapper) {
+        return stepWrapper.apply(doNext()).thenReturn(1)
                 .expand(
                         value -> {
                             Mono<Void> step = doNext();
                             if (step == null) {
                                 return Mono.empty();
                             }
-                            return step.thenReturn(1);
+                            return stepWrapper.apply(step).thenReturn(1);
                         })
-                .then();
+                .then()
+                .doFinally(signal -> invalidateSharedCache());
+    }
+
+    private static Mono<Void> measureStep(
+            Mono<Void> step, RelateMetrics metrics, AtomicInteger steps) {
+        return Mono.defer(
+                () -> {
+                    long start = System.nanoTime();
+                    steps.incrementAndGet();
+                    return step.doFinally(
+                            signal -> metrics.operationStepExecuted(System.nanoTime() - start));
+                });
     }
 
     private Mono<Void> doNext() {
@@ -2,6 +2,7 @@ package me.lusory.relate.query.operation;
 
 import me.lusory.relate.model.ModelUtils;
 import me.lusory.relate.query.SqlQuery;
+import me.lusory.relate.query.StatementChunks;
 import me.lusory.relate.query.operation.SaveProcessor.SaveRequest;
 import me.lusory.relate.sql.ColumnIncrement;
 import org.springframework.data.relational.core.mapping.RelationalPersistentEntity;
@@ -28,56 +29,133 @@ class PropertyUpdater extends AbstractProcessor<PropertyUpdater.Request> {
             List<Request> ready,
             List<Mono<Void>> calls) {
         Table table = Table.create(entityType.getTableName());
+        Map<Object, Integer> exclusionParameters =
+                countExclusionParameters(op, entityType, property);
+        List<Mono<Void>> updates = new LinkedList<>();
         for (Map.Entry<Object, Set<Object>> update : reverseMap.entrySet()) {
-            SqlQuery<Update> query = new SqlQuery<>(op.lcClient);
-            List<Expression> values = new ArrayList<>(update.getValue().size());
-            for (Object value : update.getValue()) {
-                values.add(query.marker(value));
+            List<Object> whereValues = new ArrayList<>(update.getValue());
+            int size = 0;
+            int maxExclusionParameters = 0;
+            for (Object value : whereValues) {
+                size += StatementChunks.estimateSize(value);
+                maxExclusionParameters =
+                        Math.max(
+                                maxExclusionParameters,
+                                exclusionParameters.getOrDefault(value, 0));
             }
-            List<AssignValue> assignments = new LinkedList<>();
+            // each element may bring the ids of the entities to exclude
+            int maxChunkSize =
+                    op.lcClient
+                            .getSchemaDialect()
+                            .getMaxChunkSize(
+                                    1,
+                                    1 + maxExclusionParameters,
+                                    Math.max(1, size / whereValues.size()) + 2);
+            for (List<Object> chunk :
+                    op.lcClient
+                            .getStatementChunks()
+                            .split(StatementChunks.Kind.UPDATE, whereValues, maxChunkSize)) {
+                updates.add(
+                        executeUpdate(
+                                op,
+                                entityType,
+                                table,
+                                property,
+                                versionProperty,
+                                update.getKey(),
+                                new HashSet<>(chunk)));
+            }
+        }
+        calls.add(
+                Operation.executeParallel(updates)
+                        .doOnSuccess(v -> ready.forEach(r -> r.executed = true)));
+    }
+
+    /**
+     * Count, for each value of the property, the bind parameters used to exclude the entities
+     * being saved by the operation (see executeUpdate).
+     */
+    private static Map<Object, Integer> countExclusionParameters(
+            Operation op,
+            RelationalPersistentEntity<?> entityType,
+            RelationalPersistentProperty property) {
+        Map<Object, Integer> counts = new HashMap<>();
+        for (SaveRequest save : op.save.getPendingRequests(entityType, s -> true)) {
+            if (save.state.isPersisted()) {
+                counts.merge(
+                        ModelUtils.getPersistedDatabaseValue(
+                                save.state, property, op.lcClient.getMappingContext()),
+                        getIdParameterCount(save.entityType),
+                        Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    private static int getIdParameterCount(RelationalPersistentEntity<?> entityType) {
+        if (entityType.hasIdProperty()) {
+            return 1;
+        }
+        String[] compositeId = ModelUtils.getCompositeIdProperties(entityType);
+        if (compositeId != null) {
+            return compositeId.length;
+        }
+        // all properties are used, see ModelUtils.getConditionOnId
+        int count = 0;
+        for (RelationalPersistentProperty p : entityType) {
+            count++;
+        }
+        return count;
+    }
+
+    private static Mono<Void> executeUpdate(
+            Operation op,
+            RelationalPersistentEntity<?> entityType,
+            Table table,
+            RelationalPersistentProperty property,
+            @Nullable RelationalPersistentProperty versionProperty,
+            @Nullable Object newValue,
+            Set<Object> whereValues) {
+        SqlQuery<Update> query = new SqlQuery<>(op.lcClient, entityType.getType());
+        List<Expression> values = new ArrayList<>(whereValues.size());
+        for (Object value : whereValues) {
+            values.add(query.marker(value));
+        }
+        List<AssignValue> assignments = new LinkedList<>();
+        assignments.add(
+                AssignValue.create(
+                        Column.create(property.getColumnName(), table),
+                        newValue != null ? query.marker(newValue) : SQL.nullLiteral()));
+        if (versionProperty != null) {
             assignments.add(
                     AssignValue.create(
-                            Column.create(property.getColumnName(), table),
-                            update.getKey() != null
-                                    ? query.marker(update.getKey())
-                                    : SQL.nullLiteral()));
-            if (versionProperty != null) {
-                assignments.add(
-                        AssignValue.create(
-                                Column.create(versionProperty.getColumnName(), table),
-                                SQL.literalOf(
-                                        new ColumnIncrement(
-                                                Column.create(
-                                                        versionProperty.getColumnName(), table),
-                                                op.lcClient))));
-            }
-            Condition where = Conditions.in(Column.create(property.getColumnName(), table), values);
-            for (SaveRequest save :
-                    op.save.getPendingRequests(
-                            entityType,
-                            s ->
-                                    update.getValue()
-                                            .contains(
-                                                    ModelUtils.getPersistedDatabaseValue(
-                                                            s.state,
-                                                            property,
-                                                            op.lcClient.getMappingContext())))) {
-                if (save.state.isPersisted()) {
-                    where =
-                            where.and(
-                                    ModelUtils.getConditionOnId(
-                                                    query,
-                                                    save.entityType,
-                                                    save.accessor,
-                                                    op.lcClient)
-                                            .not());
-                }
-                save.accessor.setProperty(property, update.getKey());
+                            Column.create(versionProperty.getColumnName(), table),
+                            SQL.literalOf(
+                                    new ColumnIncrement(
+                                            Column.create(versionProperty.getColumnName(), table),
+                                            op.lcClient))));
+        }
+        Condition where = Conditions.in(Column.create(property.getColumnName(), table), values);
+        for (SaveRequest save :
+                op.save.getPendingRequests(
+                        entityType,
+                        s ->
+                                whereValues.contains(
+                                        ModelUtils.getPersistedDatabaseValue(
+                                                s.state,
+                                                property,
+                                                op.lcClient.getMappingContext())))) {
+            if (save.state.isPersisted()) {
+                where =
+                        where.and(
+                                ModelUtils.getConditionOnId(
+                                                query, save.entityType, save.accessor, op.lcClient)
+                                        .not());
             }
-            query.setQuery(Update.builder().table(table).set(assignments).where(where).build());
-            calls.add(
-                    query.execute().then().doOnSuccess(v -> ready.forEach(r -> r.executed = true)));
+            save.accessor.setProperty(property, newValue);
         }
+        query.setQuery(Update.builder().table(table).set(assignments).where(where).build());
+        return query.execute().then();
     }
 
     Request update(
@@ -118,6 +196,7 @@ class PropertyUpdater extends AbstractProcessor<PropertyUpdater.Request> {
                 if (reverseMap.isEmpty()) {
                     continue;
                 }
+                op.invalidateSharedCache(entity.getKey(), null);
                 executeUpdates(
                         op,
                         reverseMap,
@@ -9,11 +9,14 @@ import me.lusory.relate.model.EntityState;
 import me.lusory.relate.model.LcEntityTypeInfo.ForeignTableInfo;
 import me.lusory.relate.model.ModelAccessException;
 import me.lusory.relate.query.SqlQuery;
+import me.lusory.relate.query.StatementChunks;
+import me.lusory.relate.schema.dialect.RelationalDatabaseSchemaDialect;
 import org.apache.commons.lang3.mutable.MutableObject;
 import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.mapping.PersistentPropertyAccessor;
+import org.springframework.data.util.Pair;
 import org.springframework.data.r2dbc.mapping.OutboundRow;
 import org.springframework.data.relational.core.mapping.RelationalPersistentEntity;
 import org.springframework.data.relational.core.mapping.RelationalPersistentProperty;
@@ -144,19 +147,224 @@ class SaveProcessor extends AbstractInstanceProcessor<SaveProcessor.SaveRequest>
         if (requests.isEmpty()) {
             return;
         }
-        List<SaveRequest> remaining = requests;
-        do {
-            if (remaining.size() == 1) {
-                statements.add(doInsertSingle(op, remaining.get(0)));
-                return;
+        int copyThreshold = op.lcClient.getSchemaDialect().getBulkCopyThreshold();
+        if (copyThreshold > 0 && requests.size() >= copyThreshold && canCopy(op, entityType)) {
+            statements.add(
+                    allocatePooledSequences(op, entityType, requests)
+                            .then(doCopy(op, entityType, requests)));
+            return;
+        }
+        if (requests.size() == 1) {
+            statements.add(doInsertSingle(op, requests.get(0)));
+            return;
+        }
+        int parametersPerRow = countInsertParameters(op, entityType);
+        int maxRows =
+                op.lcClient
+                        .getSchemaDialect()
+                        .getMaxChunkSize(
+                                0,
+                                parametersPerRow,
+                                parametersPerRow * StatementChunks.ESTIMATED_VALUE_SIZE);
+        for (List<SaveRequest> chunk :
+                op.lcClient
+                        .getStatementChunks()
+                        .split(StatementChunks.Kind.INSERT, requests, maxRows)) {
+            if (chunk.size() == 1) {
+                statements.add(doInsertSingle(op, chunk.get(0)));
+            } else {
+                statements.add(
+                        allocatePooledSequences(op, entityType, chunk)
+                                .then(doInsertMultiple(op, entityType, chunk)));
+            }
+        }
+    }
+
+    /**
+     * Return the number of bind parameters used by each row of a multiple insert.
+     */
+    private static int countInsertParameters(
+            Operation op, RelationalPersistentEntity<?> entityType) {
+        int count = 0;
+        for (RelationalPersistentProperty property : entityType) {
+            GeneratedValue gv = property.findAnnotation(GeneratedValue.class);
+            if (gv != null) {
+                if (isPooledSequence(gv)
+                        || (GeneratedValue.Strategy.RANDOM_UUID.equals(gv.strategy())
+                        && !op.lcClient.getSchemaDialect().supportsUuidGeneration())) {
+                    count++;
+                }
+            } else if (!property.isTransient()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Return true if the values of the sequence are allocated by blocks, and assigned before the
+     * insert.
+     */
+    private static boolean isPooledSequence(GeneratedValue gv) {
+        return GeneratedValue.Strategy.SEQUENCE.equals(gv.strategy()) && gv.allocationSize() > 1;
+    }
+
+    /**
+     * Assign the values of sequences allocated by blocks to the entities to insert.
+     */
+    private static Mono<Void> allocatePooledSequences(
+            Operation op, RelationalPersistentEntity<?> entityType, List<SaveRequest> requests) {
+        List<Mono<Void>> allocations = new LinkedList<>();
+        for (RelationalPersistentProperty property :
+                entityType.getPersistentProperties(GeneratedValue.class)) {
+            GeneratedValue gv = property.getRequiredAnnotation(GeneratedValue.class);
+            if (!isPooledSequence(gv)) {
+                continue;
+            }
+            allocations.add(
+                    op.lcClient
+                            .getSequenceAllocator()
+                            .allocate(gv.sequence(), gv.allocationSize(), requests.size())
+                            .doOnNext(
+                                    values -> {
+                                        int index = 0;
+                                        for (SaveRequest request : requests) {
+                                            request.accessor.setProperty(
+                                                    property,
+                                                    op.lcClient
+                                                            .getSchemaDialect()
+                                                            .convertFromDataBase(
+                                                                    values[index++],
+                                                                    property.getType()));
+                                        }
+                                    })
+                            .then());
+        }
+        if (allocations.isEmpty()) {
+            return Mono.empty();
+        }
+        return Flux.concat(allocations).then();
+    }
+
+    /**
+     * Return true if entities can be inserted with a single statement: the database returns all
+     * generated values, or there is no generated value to return, or the only generated value is
+     * an auto-increment with consecutive values.
+     */
+    private static boolean canInsertMultiple(
+            Operation op, RelationalPersistentEntity<?> entityType) {
+        RelationalDatabaseSchemaDialect dialect = op.lcClient.getSchemaDialect();
+        if (dialect.isMultipleInsertSupported()) {
+            return true;
+        }
+        int autoIncrement = 0;
+        for (RelationalPersistentProperty property : entityType) {
+            GeneratedValue gv = property.findAnnotation(GeneratedValue.class);
+            if (gv == null) {
+                continue;
+            }
+            if (GeneratedValue.Strategy.AUTO_INCREMENT.equals(gv.strategy())) {
+                autoIncrement++;
+            } else if (isPooledSequence(gv)) {
+                continue;
+            } else if (!GeneratedValue.Strategy.RANDOM_UUID.equals(gv.strategy())
+                    || dialect.supportsUuidGeneration()) {
+                return false;
+            }
+        }
+        return autoIncrement == 0
+                || (autoIncrement == 1 && dialect.isMultipleInsertWithConsecutiveIdsSupported());
+    }
+
+    /**
+     * Return true if entities can be inserted using the bulk copy of the database: no value is
+     * generated by the database, or only values of sequences allocated by blocks, and the values
+     * of every column can be written by the bulk copy.
+     */
+    private static boolean canCopy(Operation op, RelationalPersistentEntity<?> entityType) {
+        LcEntityWriter writer = new LcEntityWriter(op.lcClient.getMapper());
+        for (RelationalPersistentProperty property : entityType) {
+            if (property.isTransient()) {
+                continue;
+            }
+            if (!op.lcClient.getSchemaDialect().isCopySupported(writer.getWriteType(property))) {
+                return false;
             }
-            if (remaining.size() <= 1000) {
-                statements.add(doInsertMultiple(op, entityType, remaining));
-                return;
+            GeneratedValue gv = property.findAnnotation(GeneratedValue.class);
+            if (gv != null
+                    && !isPooledSequence(gv)
+                    && (!GeneratedValue.Strategy.RANDOM_UUID.equals(gv.strategy())
+                    || op.lcClient.getSchemaDialect().supportsUuidGeneration())) {
+                return false;
             }
-            statements.add(doInsertMultiple(op, entityType, remaining.subList(0, 1000)));
-            remaining = remaining.subList(1000, remaining.size());
-        } while (true);
+        }
+        return true;
+    }
+
+    @SuppressWarnings("java:S3776")
+    private static Mono<Void> doCopy(
+            Operation op, RelationalPersistentEntity<?> entityType, List<SaveRequest> requests) {
+        return Mono.defer(
+                () -> {
+                    IdentifierProcessing identifiers =
+                            op.lcClient.getDialect().getIdentifierProcessing();
+                    List<SqlIdentifier> columns = new ArrayList<>();
+                    for (RelationalPersistentProperty property : entityType) {
+                        if (!property.isTransient()) {
+                            columns.add(property.getColumnName());
+                        }
+                    }
+                    List<List<Object>> rows = new ArrayList<>(requests.size());
+                    LcEntityWriter writer = new LcEntityWriter(op.lcClient.getMapper());
+                    long currentDate = System.currentTimeMillis();
+                    for (SaveRequest request : requests) {
+                        OutboundRow row = new OutboundRow();
+                        for (RelationalPersistentProperty property : request.entityType) {
+                            if (property.isTransient()) {
+                                continue;
+                            }
+                            GeneratedValue gv = property.findAnnotation(GeneratedValue.class);
+                            if (gv != null && !isPooledSequence(gv)) {
+                                // only random UUID generated by the client, see canCopy
+                                request.accessor.setProperty(property, UUID.randomUUID());
+                            } else if (request.entityType.isVersionProperty(property)) {
+                                // Version 1 for an insert
+                                request.accessor.setProperty(
+                                        property,
+                                        op.lcClient
+                                                .getMapper()
+                                                .getConversionService()
+                                                .convert(1L, property.getType()));
+                            } else if (property.isAnnotationPresent(CreatedDate.class)
+                                    || property.isAnnotationPresent(LastModifiedDate.class)) {
+                                request.accessor.setProperty(
+                                        property, getDateValue(currentDate, property.getType()));
+                            }
+                            writer.writeProperty(row, property, request.accessor);
+                        }
+                        List<Object> values = new ArrayList<>(columns.size());
+                        for (SqlIdentifier column : columns) {
+                            Parameter value = row.get(column);
+                            values.add(value != null ? value.getValue() : null);
+                        }
+                        rows.add(values);
+                    }
+                    List<String> columnNames = new ArrayList<>(columns.size());
+                    for (SqlIdentifier column : columns) {
+                        columnNames.add(column.toSql(identifiers));
+                    }
+                    return op.lcClient
+                            .getSchemaDialect()
+                            .copyIn(
+                                    op.lcClient,
+                                    entityType.getType(),
+                                    entityType.getTableName().toSql(identifiers),
+                                    columnNames,
+                                    rows);
+                })
+                .doOnSuccess(
+                        count -> requests.forEach(request -> request.state.loaded(request.instance)))
+                .then();
     }
 
     @SuppressWarnings({"java:S1612", "java:S3776"}) // cannot do it
@@ -164,7 +372,8 @@ class SaveProcessor extends AbstractInstanceProcessor<SaveProcessor.SaveRequest>
             Operation op, RelationalPersistentEntity<?> entityType, List<SaveRequest> requests) {
         return Flux.defer(
                         () -> {
-                            SqlQuery<InsertMultiple> query = new SqlQuery<>(op.lcClient);
+                            SqlQuery<InsertMultiple> query =
+                                    new SqlQuery<>(op.lcClient, entityType.getType());
                             // table
                             Table table = Table.create(entityType.getTableName());
                             // columns
@@ -174,7 +383,10 @@ class SaveProcessor extends AbstractInstanceProcessor<SaveProcessor.SaveRequest>
                                 if (property.isAnnotationPresent(GeneratedValue.class)) {
                                     GeneratedValue gv =
                                             property.getRequiredAnnotation(GeneratedValue.class);
-                                    if (GeneratedValue.Strategy.SEQUENCE.equals(gv.strategy())) {
+                                    if (isPooledSequence(gv)) {
+                                        columns.add(Column.create(property.getColumnName(), table));
+                                    } else if (GeneratedValue.Strategy.SEQUENCE.equals(
+                                            gv.strategy())) {
                                         columns.add(Column.create(property.getColumnName(), table));
                                         generated.add(property);
                                     } else if (GeneratedValue.Strategy.RANDOM_UUID.equals(
@@ -203,7 +415,9 @@ class SaveProcessor extends AbstractInstanceProcessor<SaveProcessor.SaveRequest>
                                         GeneratedValue gv =
                                                 property.getRequiredAnnotation(
                                                         GeneratedValue.class);
-                                        if (gv.strategy()
+                                        if (isPooledSequence(gv)) {
+                                            writer.writeProperty(row, property, request.accessor);
+                                        } else if (gv.strategy()
                                                 .equals(GeneratedValue.Strategy.SEQUENCE)) {
                                             generatedValues.put(
                                                     property.getColumnName(),
@@ -259,6 +473,11 @@ class SaveProcessor extends AbstractInstanceProcessor<SaveProcessor.SaveRequest>
                             }
 
                             query.setQuery(new InsertMultiple(table, columns, rows));
+                            if (!op.lcClient.getSchemaDialect().isMultipleInsertSupported()) {
+                                return doInsertMultipleWithConsecutiveIds(
+                                                op, query, requests, generated)
+                                        .cast(Object.class);
+                            }
                             LinkedList<SaveRequest> queue = new LinkedList<>(requests);
 
                             return query.execute()
@@ -285,11 +504,60 @@ class SaveProcessor extends AbstractInstanceProcessor<SaveProcessor.SaveRequest>
                 .then();
     }
 
-    @SuppressWarnings({"java:S1612", "java:S3776"}) // cannot do it
+    /**
+     * Execute a multiple insert when the database only returns the first generated value: values
+     * of the next rows are deduced by incrementing it.
+     */
+    @SuppressWarnings("java:S1612")
+    private static Mono<Void> doInsertMultipleWithConsecutiveIds(
+            Operation op,
+            SqlQuery<InsertMultiple> query,
+            List<SaveRequest> requests,
+            List<RelationalPersistentProperty> generated) {
+        if (generated.isEmpty()) {
+            return query.execute()
+                    .then()
+                    .doOnSuccess(
+                            v -> requests.forEach(request -> request.state.loaded(request.instance)));
+        }
+        RelationalPersistentProperty property = generated.get(0);
+        return query.execute()
+                .filter(statement -> statement.returnGeneratedValues())
+                .map((r, meta) -> ((Number) r.get(0)).longValue())
+                .first()
+                .switchIfEmpty(
+                        Mono.error(
+                                new ModelAccessException(
+                                        "No generated value returned by the insert of "
+                                                + requests.size()
+                                                + " rows")))
+                .doOnNext(
+                        firstId -> {
+                            long id = firstId;
+                            for (SaveRequest request : requests) {
+                                request.accessor.setProperty(
+                                        property,
+                                        op.lcClient
+                                                .getSchemaDialect()
+                                                .convertFromDataBase(id++, property.getType()));
+                                request.state.loaded(request.instance);
+                            }
+                        })
+                .then();
+    }
+
     private static Mono<Void> doInsertSingle(Operation op, SaveRequest request) {
+        return allocatePooledSequences(
+                        op, request.entityType, Collections.singletonList(request))
+                .then(doInsertSingleStatement(op, request));
+    }
+
+    @SuppressWarnings({"java:S1612", "java:S3776"}) // cannot do it
+    private static Mono<Void> doInsertSingleStatement(Operation op, SaveRequest request) {
         return Mono.fromCallable(
                         () -> {
-                            SqlQuery<Insert> query = new SqlQuery<>(op.lcClient);
+                            SqlQuery<Insert> query =
+                                    new SqlQuery<>(op.lcClient, request.entityType.getType());
                             final List<RelationalPersistentProperty> generated = new LinkedList<>();
                             OutboundRow row = new OutboundRow();
                             LcEntityWriter writer = new LcEntityWriter(op.lcClient.getMapper());
@@ -298,7 +566,10 @@ class SaveProcessor extends AbstractInstanceProcessor<SaveProcessor.SaveRequest>
                                 if (property.isAnnotationPresent(GeneratedValue.class)) {
                                     GeneratedValue gv =
                                             property.getRequiredAnnotation(GeneratedValue.class);
-                                    if (GeneratedValue.Strategy.RANDOM_UUID.equals(gv.strategy())
+                                    if (isPooledSequence(gv)) {
+                                        writer.writeProperty(row, property, request.accessor);
+                                    } else if (GeneratedValue.Strategy.RANDOM_UUID.equals(
+                                            gv.strategy())
                                             && !op.lcClient
                                             .getSchemaDialect()
                                             .supportsUuidGeneration()) {
@@ -400,8 +671,116 @@ class SaveProcessor extends AbstractInstanceProcessor<SaveProcessor.SaveRequest>
                                         : Mono.empty());
     }
 
+    /**
+     * Update the given entities. Updates having the same SQL (same modified columns) are sent as
+     * a single batch statement, with one set of bindings per entity.
+     */
+    private static void doUpdates(
+            Operation op, List<SaveRequest> requests, List<Mono<Void>> statements) {
+        if (requests.isEmpty()) {
+            return;
+        }
+        if (requests.size() == 1) {
+            statements.add(doUpdate(op, requests.get(0)));
+            return;
+        }
+        statements.add(
+                Mono.defer(
+                        () -> {
+                            Map<String, List<Pair<SaveRequest, SqlQuery<Update>>>> bySql =
+                                    new LinkedHashMap<>();
+                            for (SaveRequest request : requests) {
+                                SqlQuery<Update> query = createUpdateQuery(op, request);
+                                if (query != null) {
+                                    bySql.computeIfAbsent(query.getSql(), sql -> new ArrayList<>())
+                                            .add(Pair.of(request, query));
+                                }
+                            }
+                            List<Mono<Void>> batches = new LinkedList<>();
+                            for (List<Pair<SaveRequest, SqlQuery<Update>>> group :
+                                    bySql.values()) {
+                                batches.add(doUpdateBatch(op, group));
+                            }
+                            Mono<Void> result = Operation.executeParallel(batches);
+                            return result != null ? result : Mono.empty();
+                        }));
+    }
+
+    private static Mono<Void> doUpdateBatch(
+            Operation op, List<Pair<SaveRequest, SqlQuery<Update>>> group) {
+        if (group.size() == 1) {
+            SaveRequest request = group.get(0).getFirst();
+            return checkUpdatedRows(
+                    request, group.get(0).getSecond().execute().fetch().rowsUpdated())
+                    .doOnSuccess(nb -> entityUpdated(op, request))
+                    .then();
+        }
+        int parametersPerUpdate = group.get(0).getSecond().getBindCount();
+        int maxUpdates =
+                op.lcClient
+                        .getSchemaDialect()
+                        .getMaxChunkSize(
+                                0,
+                                parametersPerUpdate,
+                                parametersPerUpdate * StatementChunks.ESTIMATED_VALUE_SIZE);
+        List<List<Pair<SaveRequest, SqlQuery<Update>>>> chunks =
+                op.lcClient
+                        .getStatementChunks()
+                        .split(StatementChunks.Kind.UPDATE, group, maxUpdates);
+        // all rows are checked before any entity is considered as updated
+        return Flux.fromIterable(chunks)
+                .flatMapSequential(
+                        chunk -> {
+                            List<SqlQuery<Update>> queries = new ArrayList<>(chunk.size());
+                            for (Pair<SaveRequest, SqlQuery<Update>> p : chunk) {
+                                queries.add(p.getSecond());
+                            }
+                            return SqlQuery.executeBatch(op.lcClient, queries);
+                        })
+                .collectList()
+                .doOnNext(
+                        updatedRows -> {
+                            for (int i = 0; i < group.size(); ++i) {
+                                if (group.get(i).getFirst().entityType.hasVersionProperty()
+                                        && (i >= updatedRows.size() || updatedRows.get(i) == 0)) {
+                                    throw new OptimisticLockingFailureException(
+                                            "Version does not match");
+                                }
+                            }
+                            for (Pair<SaveRequest, SqlQuery<Update>> p : group) {
+                                entityUpdated(op, p.getFirst());
+                            }
+                        })
+                .then();
+    }
+
     private static Mono<Integer> createUpdateRequest(Operation op, SaveRequest request) {
-        SqlQuery<Update> query = new SqlQuery<>(op.lcClient);
+        SqlQuery<Update> query = createUpdateQuery(op, request);
+        if (query == null) {
+            return null;
+        }
+        return checkUpdatedRows(request, query.execute().fetch().rowsUpdated());
+    }
+
+    private static Mono<Integer> checkUpdatedRows(SaveRequest request, Mono<Integer> rowsUpdated) {
+        if (request.entityType.hasVersionProperty()) {
+            rowsUpdated =
+                    rowsUpdated.flatMap(
+                            updatedRows -> {
+                                if (updatedRows == 0) {
+                                    return Mono.error(
+                                            new OptimisticLockingFailureException(
+                                                    "Version does not match"));
+                                }
+                                return Mono.just(updatedRows);
+                            });
+        }
+        return rowsUpdated;
+    }
+
+    @Nullable
+    private static SqlQuery<Update> createUpdateQuery(Operation op, SaveRequest request) {
+        SqlQuery<Update> query = new SqlQuery<>(op.lcClient, request.entityType.getType());
         Table table = Table.create(request.entityType.getTableName());
         OutboundRow row = new OutboundRow();
         LcEntityWriter writer = new LcEntityWriter(op.lcClient.getMapper());
@@ -436,20 +815,7 @@ class SaveProcessor extends AbstractInstanceProcessor<SaveProcessor.SaveRequest>
         }
 
         query.setQuery(Update.builder().table(table).set(assignments).where(criteria).build());
-        Mono<Integer> rowsUpdated = query.execute().fetch().rowsUpdated();
-        if (request.entityType.hasVersionProperty()) {
-            rowsUpdated =
-                    rowsUpdated.flatMap(
-                            updatedRows -> {
-                                if (updatedRows == 0) {
-                                    return Mono.error(
-                                            new OptimisticLockingFailureException(
-                                                    "Version does not match"));
-                                }
-                                return Mono.just(updatedRows);
-                            });
-        }
-        return rowsUpdated;
+        return query;
     }
 
     private static boolean prepareUpdate(
@@ -460,40 +826,46 @@ class SaveProcessor extends AbstractInstanceProcessor<SaveProcessor.SaveRequest>
             LcEntityWriter writer,
             SqlQuery<Update> query) {
         boolean hasUpdate = false;
-        Map<RelationalPersistentProperty, Object> propertiesToSetIfUpdate = new HashMap<>();
-        long currentDate = System.currentTimeMillis();
-        for (RelationalPersistentProperty property : request.entityType) {
-            if (request.entityType.isVersionProperty(property)) {
-                Object value = request.accessor.getProperty(property);
-                Assert.notNull(
-                        value,
-                        "Version must not be null (property "
-                                + property.getName()
-                                + " on "
-                                + request.entityType.getType().getSimpleName()
-                                + ")");
-                long currentVersion = ((Number) value).longValue();
-                assignments.add(
-                        AssignValue.create(
-                                Column.create(property.getColumnName(), table),
-                                query.marker(currentVersion + 1)));
-            } else if (property.isAnnotationPresent(LastModifiedDate.class)) {
-                propertiesToSetIfUpdate.put(
-                        property, getDateValue(currentDate, property.getType()));
-            } else if (request.state.isFieldModified(property.getName())) {
-                if (ModelUtils.isUpdatable(property)) {
-                    writer.writeProperty(row, property, request.accessor);
-                    hasUpdate = true;
-                } else {
-                    request.state.restorePersistedValue(request.instance, property.getField());
-                }
+        RelationalPersistentProperty versionProperty = request.entityType.getVersionProperty();
+        if (versionProperty != null) {
+            Object value = request.accessor.getProperty(versionProperty);
+            Assert.notNull(
+                    value,
+                    "Version must not be null (property "
+                            + versionProperty.getName()
+                            + " on "
+                            + request.entityType.getType().getSimpleName()
+                            + ")");
+            long currentVersion = ((Number) value).longValue();
+            assignments.add(
+                    AssignValue.create(
+                            Column.create(versionProperty.getColumnName(), table),
+                            query.marker(currentVersion + 1)));
+        }
+        // only the modified fields are visited
+        for (String fieldName : request.state.getModifiedFields()) {
+            RelationalPersistentProperty property =
+                    request.entityType.getPersistentProperty(fieldName);
+            if (property == null
+                    || property == versionProperty
+                    || property.isAnnotationPresent(LastModifiedDate.class)) {
+                continue;
+            }
+            if (ModelUtils.isUpdatable(property)) {
+                writer.writeProperty(row, property, request.accessor);
+                hasUpdate = true;
+            } else {
+                request.state.restorePersistedValue(request.instance, property.getField());
             }
         }
         if (hasUpdate) {
-            for (Map.Entry<RelationalPersistentProperty, Object> e :
-                    propertiesToSetIfUpdate.entrySet()) {
-                request.accessor.setProperty(e.getKey(), e.getValue());
-                writer.writeProperty(row, e.getKey(), request.accessor);
+            long currentDate = System.currentTimeMillis();
+            for (RelationalPersistentProperty property : request.entityType) {
+                if (property.isAnnotationPresent(LastModifiedDate.class)) {
+                    request.accessor.setProperty(
+                            property, getDateValue(currentDate, property.getType()));
+                    writer.writeProperty(row, property, request.accessor);
+                }
             }
         }
         return hasUpdate;
@@ -626,9 +998,9 @@ class SaveProcessor extends AbstractInstanceProcessor<SaveProcessor.SaveRequest>
     protected Mono<Void> doRequests(
             Operation op, RelationalPersistentEntity<?> entityType, List<SaveRequest> requests) {
         List<Mono<Void>> statements = new LinkedList<>();
-        boolean multipleInsertSupported =
-                op.lcClient.getSchemaDialect().isMultipleInsertSupported();
+        boolean multipleInsertSupported = canInsertMultiple(op, entityType);
         List<SaveRequest> toInsert = new LinkedList<>();
+        List<SaveRequest> toUpdate = new LinkedList<>();
         for (SaveRequest request : requests) {
             if (!request.state.isPersisted()) {
                 if (!multipleInsertSupported) {
@@ -637,9 +1009,15 @@ class SaveProcessor extends AbstractInstanceProcessor<SaveProcessor.SaveRequest>
                     toInsert.add(request);
                 }
             } else {
-                statements.add(doUpdate(op, request));
+                if (entityType.hasIdProperty()) {
+                    op.invalidateSharedCache(
+                            entityType,
+                            ModelUtils.getId(entityType, request.accessor, op.lcClient));
+                }
+                toUpdate.add(request);
             }
         }
+        doUpdates(op, toUpdate, statements);
         doInsert(op, entityType, toInsert, statements);
         return Operation.executeParallel(statements);
     }
@@ -3,10 +3,26 @@ package me.lusory.relate.repository;
 import me.lusory.relate.LcReactiveDataRelationalClient;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
 import org.springframework.data.repository.NoRepositoryBean;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 @NoRepositoryBean
 @SuppressWarnings("java:S119") // name of parameter ID
 public interface LcR2dbcRepository<T, ID> extends R2dbcRepository<T, ID> {
 
     LcReactiveDataRelationalClient getLcClient();
+
+    /**
+     * Retrieve an entity by its id, without tracking it.
+     *
+     * @see me.lusory.relate.query.SelectQuery#readOnly()
+     */
+    Mono<T> findByIdReadOnly(ID id);
+
+    /**
+     * Return all entities, without tracking them.
+     *
+     * @see me.lusory.relate.query.SelectQuery#readOnly()
+     */
+    Flux<T> findAllReadOnly();
 }
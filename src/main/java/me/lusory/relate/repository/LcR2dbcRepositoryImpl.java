@@ -2,6 +2,7 @@ package me.lusory.relate.repository;
 
 import me.lusory.relate.model.ModelUtils;
 import me.lusory.relate.query.criteria.Criteria;
+import me.lusory.relate.query.criteria.CriteriaSqlBuilder;
 import me.lusory.relate.LcReactiveDataRelationalClient;
 import me.lusory.relate.query.SelectQuery;
 import me.lusory.relate.query.SqlQuery;
@@ -20,6 +21,7 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 
+import java.util.LinkedList;
 import java.util.List;
 
 @SuppressWarnings("java:S119") // name of parameter ID
@@ -52,18 +54,52 @@ public class LcR2dbcRepositoryImpl<T, ID> extends SimpleR2dbcRepository<T, ID>
         RelationalPersistentEntity<?> entity =
                 lcClient.getMappingContext().getRequiredPersistentEntity(entityInfo.getJavaType());
         RelationalPersistentProperty idProperty = entity.getRequiredIdProperty();
+        Mono<T> select =
+                SelectQuery.from(entityInfo.getJavaType(), "e")
+                        .where(Criteria.property("e", idProperty.getName()).is(id))
+                        .execute(lcClient)
+                        .next();
+        if (!lcClient.getSharedCache().isEnabled(entityInfo.getJavaType())) {
+            return select;
+        }
+        return Mono.defer(
+                () -> {
+                    T cached = getFromSharedCache(entity, id);
+                    return cached != null ? Mono.just(cached) : select;
+                });
+    }
+
+    @Override
+    public Mono<T> findByIdReadOnly(ID id) {
+        Assert.notNull(id, "Id must not be null in findByIdReadOnly");
+        RelationalPersistentProperty idProperty =
+                lcClient.getMappingContext()
+                        .getRequiredPersistentEntity(entityInfo.getJavaType())
+                        .getRequiredIdProperty();
         return SelectQuery.from(entityInfo.getJavaType(), "e")
                 .where(Criteria.property("e", idProperty.getName()).is(id))
+                .readOnly()
                 .execute(lcClient)
                 .next();
     }
 
+    @Override
+    public Flux<T> findAllReadOnly() {
+        return SelectQuery.from(entityInfo.getJavaType(), "e").readOnly().execute(lcClient);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T getFromSharedCache(RelationalPersistentEntity<?> entity, Object id) {
+        return lcClient.getFromSharedCache((RelationalPersistentEntity<T>) entity, id, null);
+    }
+
     @Override
     public @NonNull
     Flux<T> findAllById(@NonNull Publisher<ID> idPublisher) {
         RelationalPersistentEntity<?> entity =
                 lcClient.getMappingContext().getRequiredPersistentEntity(entityInfo.getJavaType());
         RelationalPersistentProperty idProperty = entity.getRequiredIdProperty();
+        boolean useSharedCache = lcClient.getSharedCache().isEnabled(entityInfo.getJavaType());
         return Flux.from(idPublisher)
                 .buffer()
                 .filter(ids -> !ids.isEmpty())
@@ -72,9 +108,31 @@ public class LcR2dbcRepositoryImpl<T, ID> extends SimpleR2dbcRepository<T, ID>
                             if (ids.isEmpty()) {
                                 return Flux.empty();
                             }
-                            return SelectQuery.from(entityInfo.getJavaType(), "e")
-                                    .where(Criteria.property("e", idProperty.getName()).in(ids))
-                                    .execute(lcClient);
+                            List<T> cached = new LinkedList<>();
+                            List<ID> toSelect = ids;
+                            if (useSharedCache) {
+                                toSelect = new LinkedList<>();
+                                for (ID id : ids) {
+                                    T instance = getFromSharedCache(entity, id);
+                                    if (instance != null) {
+                                        cached.add(instance);
+                                    } else {
+                                        toSelect.add(id);
+                                    }
+                                }
+                                if (toSelect.isEmpty()) {
+                                    return Flux.fromIterable(cached);
+                                }
+                            }
+                            return Flux.fromIterable(cached)
+                                    .concatWith(
+                                            SelectQuery.from(entityInfo.getJavaType(), "e")
+                                                    .where(
+                                                            Criteria.property(
+                                                                            "e",
+                                                                            idProperty.getName())
+                                                                    .in(toSelect))
+                                                    .execute(lcClient));
                         });
     }
 
@@ -88,7 +146,7 @@ public class LcR2dbcRepositoryImpl<T, ID> extends SimpleR2dbcRepository<T, ID>
         Table table = Table.create(entity.getTableName());
         Column idColumn = Column.create(idProperty.getColumnName(), table);
         Object idValue = lcClient.getSchemaDialect().convertToDataBase(id, idProperty);
-        SqlQuery<Select> q = new SqlQuery<>(lcClient);
+        SqlQuery<Select> q = new SqlQuery<>(lcClient, entity.getType());
         Select select =
                 Select.builder()
                         .select(idColumn)
@@ -153,17 +211,22 @@ public class LcR2dbcRepositoryImpl<T, ID> extends SimpleR2dbcRepository<T, ID>
         Table table = Table.create(entity.getTableName());
         Column idColumn = Column.create(idProperty.getColumnName(), table);
 
-        SqlQuery<Delete> q = new SqlQuery<>(lcClient);
-        List<Expression> idsList =
+        SqlQuery<Delete> q = new SqlQuery<>(lcClient, entity.getType());
+        List<Object> idsList =
                 Streamable.of(ids)
                         .map(
                                 id ->
-                                        q.marker(
-                                                lcClient.getSchemaDialect()
-                                                        .convertToDataBase(id, idProperty)))
+                                        lcClient.getSchemaDialect()
+                                                .convertToDataBase(id, idProperty))
                         .toList();
 
-        q.setQuery(Delete.builder().from(table).where(Conditions.in(idColumn, idsList)).build());
+        q.setQuery(
+                Delete.builder()
+                        .from(table)
+                        .where(
+                                CriteriaSqlBuilder.inCondition(
+                                        q, idColumn, idsList, idProperty, false))
+                        .build());
         return q.execute().fetch().rowsUpdated().then();
     }
 
@@ -184,7 +247,7 @@ public class LcR2dbcRepositoryImpl<T, ID> extends SimpleR2dbcRepository<T, ID>
         Column idColumn = Column.create(idProperty.getColumnName(), table);
         Object idValue = lcClient.getSchemaDialect().convertToDataBase(id, idProperty);
 
-        SqlQuery<Delete> q = new SqlQuery<>(lcClient);
+        SqlQuery<Delete> q = new SqlQuery<>(lcClient, entity.getType());
         q.setQuery(
                 Delete.builder()
                         .from(table)
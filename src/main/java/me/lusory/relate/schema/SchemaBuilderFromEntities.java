@@ -164,11 +164,17 @@ public class SchemaBuilderFromEntities {
                 Assert.isTrue(
                         StringUtils.hasText(annotation.sequence()),
                         "Sequence name must be specified");
+                Assert.isTrue(annotation.allocationSize() > 0, "Allocation size must be positive");
                 try {
-                    schema.getSequence(annotation.sequence());
+                    Sequence sequence = schema.getSequence(annotation.sequence());
                     // already defined
+                    Assert.isTrue(
+                            sequence.getIncrementBy() == annotation.allocationSize(),
+                            "Sequence "
+                                    + annotation.sequence()
+                                    + " is used with different allocation sizes");
                 } catch (NoSuchElementException e) {
-                    schema.add(new Sequence(annotation.sequence()));
+                    schema.add(new Sequence(annotation.sequence(), annotation.allocationSize()));
                 }
             }
         }
@@ -3,12 +3,22 @@ package me.lusory.relate.schema;
 public class Sequence {
 
     private final String name;
+    private final int incrementBy;
 
     public Sequence(String name) {
+        this(name, 1);
+    }
+
+    public Sequence(String name, int incrementBy) {
         this.name = name;
+        this.incrementBy = incrementBy;
     }
 
     public String getName() {
         return name;
     }
+
+    public int getIncrementBy() {
+        return incrementBy;
+    }
 }
@@ -1,13 +1,21 @@
 package me.lusory.relate.schema.dialect;
 
+import io.r2dbc.spi.Row;
+import me.lusory.relate.LcReactiveDataRelationalClient;
 import me.lusory.relate.annotations.ColumnDefinition;
+import me.lusory.relate.metrics.StatementKind;
+import me.lusory.relate.query.SqlQuery;
 import me.lusory.relate.schema.*;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.mutable.MutableObject;
 import org.springframework.data.r2dbc.dialect.R2dbcDialect;
 import org.springframework.data.relational.core.mapping.RelationalPersistentProperty;
 import org.springframework.data.relational.core.sql.Expression;
 import org.springframework.data.relational.core.sql.Functions;
 import org.springframework.data.relational.core.sql.SimpleFunction;
+import org.springframework.data.util.Pair;
+import org.springframework.r2dbc.core.DatabaseClient.GenericExecuteSpec;
+import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
 import java.util.*;
@@ -278,6 +286,301 @@ public abstract class RelationalDatabaseSchemaDialect {
         return toExecute;
     }
 
+    /**
+     * Return the statements creating what is missing in the existing schema to match the given
+     * schema: tables, columns, indexes, foreign keys of the new columns, and sequences. Nothing is
+     * dropped, and existing columns are not modified.
+     *
+     * <p>An existing sequence must have the increment of the expected one, as values of a sequence
+     * are allocated by blocks of its increment, otherwise a {@link SchemaException} is thrown.
+     *
+     * @param schema   expected schema, usually built from the entities
+     * @param existing existing schema, as returned by {@link
+     *                 #readSchemaContent(LcReactiveDataRelationalClient)}
+     */
+    public SchemaStatements updateSchemaContent(
+            RelationalDatabaseSchema schema, RelationalDatabaseSchema existing) {
+        SchemaStatements toExecute = new SchemaStatements();
+        Map<Table, SchemaStatement> createTableMap = new HashMap<>();
+        Map<Table, SchemaStatement> latestAlterByTable = new HashMap<>();
+        MutableObject<SchemaStatement> latestAlterTable = new MutableObject<>(null);
+        List<Pair<Table, Column>> foreignKeys = new LinkedList<>();
+        for (Table table : schema.getTables()) {
+            Table current = findTable(existing, table.getName());
+            if (current == null) {
+                SchemaStatement createTable = new SchemaStatement(createTable(table));
+                createTableMap.put(table, createTable);
+                toExecute.add(createTable);
+                for (Index index : table.getIndexes()) {
+                    if (canCreateIndexInTableDefinition(index)) {
+                        continue;
+                    }
+                    SchemaStatement createIndex = new SchemaStatement(createIndex(table, index));
+                    createIndex.addDependency(createTable);
+                    toExecute.add(createIndex);
+                }
+                for (Column col : table.getColumns()) {
+                    if (col.getForeignKeyReferences() != null) {
+                        foreignKeys.add(Pair.of(table, col));
+                    }
+                }
+                continue;
+            }
+            for (Column col : table.getColumns()) {
+                if (findColumn(current, col.getName()) != null) {
+                    continue;
+                }
+                SchemaStatement addColumn = new SchemaStatement(alterTableAddColumn(table, col));
+                addAlterTable(table, addColumn, latestAlterByTable, latestAlterTable);
+                toExecute.add(addColumn);
+                if (col.getForeignKeyReferences() != null) {
+                    foreignKeys.add(Pair.of(table, col));
+                }
+            }
+            for (Index index : table.getIndexes()) {
+                if (findIndex(current, index.getName()) != null) {
+                    continue;
+                }
+                SchemaStatement createIndex = new SchemaStatement(createIndex(table, index));
+                // after the new columns
+                addDependency(createIndex, latestAlterByTable.get(table));
+                toExecute.add(createIndex);
+            }
+        }
+        addForeignKeys(
+                foreignKeys, toExecute, createTableMap, latestAlterByTable, latestAlterTable);
+        if (supportsSequence()) {
+            for (Sequence s : schema.getSequences()) {
+                Sequence current = findSequence(existing, s.getName());
+                if (current == null) {
+                    toExecute.add(new SchemaStatement(createSequence(s)));
+                } else if (current.getIncrementBy() != s.getIncrementBy()) {
+                    throw new SchemaException(
+                            "Sequence "
+                                    + s.getName()
+                                    + " is incremented by "
+                                    + current.getIncrementBy()
+                                    + " but its allocation size is "
+                                    + s.getIncrementBy());
+                }
+            }
+        }
+        return toExecute;
+    }
+
+    private void addForeignKeys(
+            List<Pair<Table, Column>> foreignKeys,
+            SchemaStatements toExecute,
+            Map<Table, SchemaStatement> createTableMap,
+            Map<Table, SchemaStatement> latestAlterByTable,
+            MutableObject<SchemaStatement> latestAlterTable) {
+        SchemaStatement previous = null;
+        for (Pair<Table, Column> fk : foreignKeys) {
+            Table table = fk.getFirst();
+            Table foreign = fk.getSecond().getForeignKeyReferences().getFirst();
+            SchemaStatement alterTable =
+                    new SchemaStatement(alterTableForeignKey(table, fk.getSecond()));
+            addDependency(alterTable, createTableMap.get(table));
+            addDependency(alterTable, createTableMap.get(foreign));
+            addDependency(alterTable, latestAlterByTable.get(table));
+            addDependency(alterTable, latestAlterByTable.get(foreign));
+            // a foreign key locks the two tables, they are added one after the other
+            addDependency(alterTable, previous);
+            if (!canDoConcurrentAlterTable()) {
+                addAlterTable(latestAlterTable, alterTable);
+            }
+            toExecute.add(alterTable);
+            previous = alterTable;
+        }
+    }
+
+    private void addAlterTable(
+            Table table,
+            SchemaStatement alterTable,
+            Map<Table, SchemaStatement> latestAlterByTable,
+            MutableObject<SchemaStatement> latestAlterTable) {
+        if (canDoConcurrentAlterTable()) {
+            addDependency(alterTable, latestAlterByTable.get(table));
+        } else {
+            addAlterTable(latestAlterTable, alterTable);
+        }
+        latestAlterByTable.put(table, alterTable);
+    }
+
+    private static void addDependency(SchemaStatement statement, SchemaStatement dependsOn) {
+        if (dependsOn != null) {
+            statement.addDependency(dependsOn);
+        }
+    }
+
+    private static Table findTable(RelationalDatabaseSchema schema, String name) {
+        for (Table table : schema.getTables()) {
+            if (isSameName(table.getName(), name)) {
+                return table;
+            }
+        }
+        return null;
+    }
+
+    private static Column findColumn(Table table, String name) {
+        for (Column col : table.getColumns()) {
+            if (isSameName(col.getName(), name)) {
+                return col;
+            }
+        }
+        return null;
+    }
+
+    private static Index findIndex(Table table, String name) {
+        for (Index index : table.getIndexes()) {
+            if (isSameName(index.getName(), name)) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    private static Sequence findSequence(RelationalDatabaseSchema schema, String name) {
+        for (Sequence sequence : schema.getSequences()) {
+            if (isSameName(sequence.getName(), name)) {
+                return sequence;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Compare names ignoring the quotes and the case, as the database may store unquoted names in
+     * upper or lower case.
+     */
+    private static boolean isSameName(String name1, String name2) {
+        return StringUtils.strip(name1, "\"`").equalsIgnoreCase(StringUtils.strip(name2, "\"`"));
+    }
+
+    protected String alterTableAddColumn(Table table, Column col) {
+        StringBuilder sql = new StringBuilder();
+        sql.append("ALTER TABLE ");
+        sql.append(table.getName());
+        sql.append(" ADD COLUMN ");
+        addColumnDefinition(col, sql);
+        return sql.toString();
+    }
+
+    /**
+     * Read the names of the tables, columns, indexes and sequences, with the increment of the
+     * sequences, existing in the current schema of the database, from its INFORMATION_SCHEMA. The
+     * statements are given to the statement listeners and metrics of the client, as schema
+     * statements.
+     */
+    public Mono<RelationalDatabaseSchema> readSchemaContent(LcReactiveDataRelationalClient client) {
+        return Mono.defer(
+                () -> {
+                    RelationalDatabaseSchema schema = new RelationalDatabaseSchema();
+                    Map<String, Table> tables = new HashMap<>();
+                    Mono<Void> columns =
+                            schemaQuery(client, schemaColumnsQuery())
+                                    .map((row, metadata) -> readNames(row))
+                                    .all()
+                                    .doOnNext(
+                                            c ->
+                                                    getTable(schema, tables, c.getFirst())
+                                                            .add(new Column(c.getSecond())))
+                                    .then();
+                    Mono<Void> indexes =
+                            schemaQuery(client, schemaIndexesQuery())
+                                    .map((row, metadata) -> readNames(row))
+                                    .all()
+                                    .doOnNext(
+                                            i -> {
+                                                Table table =
+                                                        getTable(schema, tables, i.getFirst());
+                                                if (findIndex(table, i.getSecond()) == null) {
+                                                    table.add(new Index(i.getSecond()));
+                                                }
+                                            })
+                                    .then();
+                    if (!supportsSequence()) {
+                        return columns.then(indexes).thenReturn(schema);
+                    }
+                    Mono<Void> sequences =
+                            schemaQuery(client, schemaSequencesQuery())
+                                    .map(
+                                            (row, metadata) ->
+                                                    new Sequence(
+                                                            row.get(0, String.class),
+                                                            toInt(row.get(1))))
+                                    .all()
+                                    .doOnNext(schema::add)
+                                    .then();
+                    return columns.then(indexes).then(sequences).thenReturn(schema);
+                });
+    }
+
+    private static GenericExecuteSpec schemaQuery(LcReactiveDataRelationalClient client, String sql) {
+        return SqlQuery.observe(
+                client, client.getSpringClient().sql(sql), StatementKind.SCHEMA, null, sql, 0);
+    }
+
+    /**
+     * Convert a number read from the INFORMATION_SCHEMA, which may be given as a string.
+     */
+    private static int toInt(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        return Integer.parseInt(String.valueOf(value).trim());
+    }
+
+    private static Pair<String, String> readNames(Row row) {
+        return Pair.of(row.get(0, String.class), row.get(1, String.class));
+    }
+
+    private static Table getTable(
+            RelationalDatabaseSchema schema, Map<String, Table> tables, String name) {
+        return tables.computeIfAbsent(
+                name,
+                n -> {
+                    Table table = new Table(n);
+                    schema.add(table);
+                    return table;
+                });
+    }
+
+    /**
+     * Return the SQL function or keyword giving the current schema, to restrict the queries on
+     * INFORMATION_SCHEMA.
+     */
+    protected String currentSchemaFunction() {
+        return "CURRENT_SCHEMA";
+    }
+
+    /**
+     * Return the query of the table name and column name of the existing columns.
+     */
+    protected String schemaColumnsQuery() {
+        return "SELECT TABLE_NAME, COLUMN_NAME FROM INFORMATION_SCHEMA.COLUMNS"
+                + " WHERE TABLE_SCHEMA = "
+                + currentSchemaFunction();
+    }
+
+    /**
+     * Return the query of the table name and index name of the existing indexes.
+     */
+    protected String schemaIndexesQuery() {
+        return "SELECT TABLE_NAME, INDEX_NAME FROM INFORMATION_SCHEMA.INDEXES"
+                + " WHERE TABLE_SCHEMA = "
+                + currentSchemaFunction();
+    }
+
+    /**
+     * Return the query of the name and increment of the existing sequences.
+     */
+    protected String schemaSequencesQuery() {
+        return "SELECT SEQUENCE_NAME, INCREMENT FROM INFORMATION_SCHEMA.SEQUENCES"
+                + " WHERE SEQUENCE_SCHEMA = "
+                + currentSchemaFunction();
+    }
+
     private Map<Table, SchemaStatement> createTables(
             RelationalDatabaseSchema schema, SchemaStatements toExecute) {
         Map<Table, SchemaStatement> createTableMap = new HashMap<>();
@@ -530,13 +833,23 @@ public abstract class RelationalDatabaseSchemaDialect {
     }
 
     protected String createSequence(Sequence sequence) {
-        return "CREATE SEQUENCE " + sequence.getName() + " START WITH 1 INCREMENT BY 1";
+        return "CREATE SEQUENCE "
+                + sequence.getName()
+                + " START WITH 1 INCREMENT BY "
+                + sequence.getIncrementBy();
     }
 
     public String sequenceNextValueFunctionName() {
         return "NEXTVAL";
     }
 
+    /**
+     * Return the query returning the next value of the given sequence.
+     */
+    public String sequenceNextValueQuery(String sequence) {
+        return "SELECT " + sequenceNextValueFunctionName() + "('" + sequence + "')";
+    }
+
     public Expression applyFunctionTo(SqlFunction function, Expression expression) {
         switch (function) {
             case DAY_OF_MONTH:
@@ -566,14 +879,163 @@ public abstract class RelationalDatabaseSchemaDialect {
         throw new SchemaException("Unknown SQL function: " + function);
     }
 
+    /**
+     * Return the type of the values returned by the driver for the given function, as rendered by
+     * {@link #applyFunctionTo(SqlFunction, Expression)}.
+     */
+    public Class<?> getFunctionResultType(SqlFunction function) {
+        switch (function) {
+            case UPPER:
+            case LOWER:
+                return String.class;
+            default:
+                // extraction of a part of a date or time
+                return Integer.class;
+        }
+    }
+
     public Expression countDistinct(List<Expression> expressions) {
         return Functions.count(SimpleFunction.create("DISTINCT", expressions));
     }
 
+    public Expression applyAggregateTo(AggregateFunction function, Expression expression) {
+        switch (function) {
+            case COUNT:
+                return Functions.count(expression);
+            case COUNT_DISTINCT:
+                return countDistinct(Collections.singletonList(expression));
+            case SUM:
+                return SimpleFunction.create("SUM", Collections.singletonList(expression));
+            case AVG:
+                return SimpleFunction.create("AVG", Collections.singletonList(expression));
+            case MIN:
+                return SimpleFunction.create("MIN", Collections.singletonList(expression));
+            case MAX:
+                return SimpleFunction.create("MAX", Collections.singletonList(expression));
+        }
+        throw new SchemaException("Unknown aggregate function: " + function);
+    }
+
+    /**
+     * Return the clause limiting the rows of a select, added at the end of the statement. The
+     * limit and offset are given as bind markers, so the same SQL can be used for any page: the
+     * limit marker must appear before the offset marker, as they are bound in this order.
+     */
+    public String limitOffset(String limitMarker, String offsetMarker) {
+        return "LIMIT " + limitMarker + " OFFSET " + offsetMarker;
+    }
+
+    /**
+     * Return true if an INSERT with multiple rows returns the generated values of every row.
+     */
     public boolean isMultipleInsertSupported() {
         return true;
     }
 
+    /**
+     * When {@link #isMultipleInsertSupported()} is false, return true if an INSERT with multiple
+     * rows generates consecutive values for an auto-increment column, so the values can be
+     * deduced from the first generated value and the number of rows.
+     */
+    public boolean isMultipleInsertWithConsecutiveIdsSupported() {
+        return false;
+    }
+
+    /**
+     * Return the minimum number of entities to insert for which {@link #copyIn} is used instead of
+     * INSERT statements, or 0 if bulk copy is not supported.
+     */
+    public int getBulkCopyThreshold() {
+        return 0;
+    }
+
+    /**
+     * Return true if values of the given type, as written to the database after conversion, can
+     * be inserted using {@link #copyIn}. Entities having a column of another type are inserted
+     * using INSERT statements.
+     */
+    public boolean isCopySupported(Class<?> type) {
+        return false;
+    }
+
+    /**
+     * Insert rows using the bulk copy protocol of the database.
+     *
+     * @param client     client, used to get a connection and to observe the statement
+     * @param entityType type of entity inserted, given to the statement listeners
+     * @param table      table name, as rendered in SQL
+     * @param columns    column names, as rendered in SQL
+     * @param rows       values of each row, in the same order as the columns, already converted
+     *                   for the database
+     * @return the number of inserted rows
+     */
+    public Mono<Long> copyIn(
+            LcReactiveDataRelationalClient client,
+            Class<?> entityType,
+            String table,
+            List<String> columns,
+            Iterable<List<Object>> rows) {
+        return Mono.error(new SchemaException("Bulk copy is not supported by " + getName()));
+    }
+
+    /**
+     * Return the maximum number of bind parameters supported in a single statement.
+     */
+    public int getMaxBindParameters() {
+        return 1000;
+    }
+
+    /**
+     * Return the maximum size, in characters, of a statement including its values.
+     */
+    public int getMaxStatementSize() {
+        return 16 * 1024 * 1024;
+    }
+
+    /**
+     * Return the maximum number of values in a single IN condition. Larger lists are split into
+     * several IN conditions.
+     */
+    public int getMaxInListSize() {
+        return 1000;
+    }
+
+    /**
+     * Return the number of values to bind for an IN condition with the given number of values.
+     * Lists are padded up to this size by repeating their last value, so only a few distinct
+     * statements are generated whatever the number of values.
+     */
+    public int getInListBucketSize(int size) {
+        if (size <= 2) {
+            return size;
+        }
+        int bucket = Integer.highestOneBit(size - 1) << 1;
+        return Math.min(bucket, Math.max(size, getMaxInListSize()));
+    }
+
+    /**
+     * Return true if a list of values can be bound as a single array parameter, so an IN
+     * condition is rendered as <code>= ANY(?)</code> whatever the number of values.
+     */
+    public boolean isArrayParameterSupported() {
+        return false;
+    }
+
+    /**
+     * Return the maximum number of elements that can be put in a single statement.
+     *
+     * @param reservedParameters   number of bind parameters used by the statement in addition to
+     *                             the elements
+     * @param parametersPerElement number of bind parameters used by each element
+     * @param elementSize          estimated size, in characters, of each element
+     */
+    public int getMaxChunkSize(int reservedParameters, int parametersPerElement, int elementSize) {
+        int byParameters =
+                (getMaxBindParameters() - reservedParameters) / Math.max(1, parametersPerElement);
+        int bySize = getMaxStatementSize() / Math.max(1, elementSize);
+        return Math.max(1, Math.min(byParameters, bySize));
+    }
+
     public enum SqlFunction {
         UPPER,
         LOWER,
@@ -587,4 +1049,13 @@ public abstract class RelationalDatabaseSchemaDialect {
         MINUTE,
         SECOND
     }
+
+    public enum AggregateFunction {
+        COUNT,
+        COUNT_DISTINCT,
+        SUM,
+        AVG,
+        MIN,
+        MAX
+    }
 }
@@ -1,6 +1,8 @@
 package me.lusory.relate.schema.dialect;
 
 import me.lusory.relate.LcReactiveDataRelationalClient;
+import me.lusory.relate.metrics.StatementKind;
+import me.lusory.relate.query.SqlQuery;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import reactor.core.publisher.Flux;
@@ -69,8 +71,13 @@ public class SchemaStatements {
                 .runOn(Schedulers.parallel())
                 .flatMap(
                         s ->
-                                client.getSpringClient()
-                                        .sql(log(s.getSql()))
+                                SqlQuery.observe(
+                                                client,
+                                                client.getSpringClient().sql(log(s.getSql())),
+                                                StatementKind.SCHEMA,
+                                                null,
+                                                s.getSql(),
+                                                0)
                                         .fetch()
                                         .rowsUpdated()
                                         .doOnError(e -> log(s, e))
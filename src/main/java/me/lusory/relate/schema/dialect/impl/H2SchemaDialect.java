@@ -61,6 +61,11 @@ public class H2SchemaDialect extends RelationalDatabaseSchemaDialect {
         return "TIMESTAMP(" + precision + ") WITH TIME ZONE";
     }
 
+    @Override
+    protected String currentSchemaFunction() {
+        return "SCHEMA()";
+    }
+
     @Override
     protected String getColumnTypeTimeWithTimeZone(
             Column col, Class<?> type, ColumnDefinition def) {
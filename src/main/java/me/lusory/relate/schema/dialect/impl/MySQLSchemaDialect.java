@@ -6,6 +6,7 @@ import me.lusory.relate.schema.Index;
 import me.lusory.relate.schema.Table;
 import me.lusory.relate.schema.dialect.RelationalDatabaseSchemaDialect;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.data.r2dbc.dialect.MySqlDialect;
 import org.springframework.data.r2dbc.dialect.R2dbcDialect;
@@ -18,6 +19,19 @@ import java.util.*;
 @Component
 @ConditionalOnClass(MySqlConnection.class)
 public class MySQLSchemaDialect extends RelationalDatabaseSchemaDialect {
+    private boolean consecutiveAutoIncrement = false;
+
+    /**
+     * Indicates if the server allocates consecutive auto-increment values to the rows of a single
+     * INSERT statement (innodb_autoinc_lock_mode 0 or 1, with auto_increment_increment 1). In
+     * this case entities can be inserted with a single statement, and their ids deduced from
+     * LAST_INSERT_ID, else one statement is executed per entity.
+     */
+    @Value("${relate.mysql.consecutive-auto-increment:false}")
+    public void setConsecutiveAutoIncrement(boolean consecutiveAutoIncrement) {
+        this.consecutiveAutoIncrement = consecutiveAutoIncrement;
+    }
+
     @Override
     public String getName() {
         return "MySQL";
@@ -122,6 +136,18 @@ public class MySQLSchemaDialect extends RelationalDatabaseSchemaDialect {
         return false;
     }
 
+    @Override
+    protected String currentSchemaFunction() {
+        return "DATABASE()";
+    }
+
+    @Override
+    protected String schemaIndexesQuery() {
+        return "SELECT TABLE_NAME, INDEX_NAME FROM INFORMATION_SCHEMA.STATISTICS"
+                + " WHERE TABLE_SCHEMA = "
+                + currentSchemaFunction();
+    }
+
     @Override
     public Expression applyFunctionTo(SqlFunction function, Expression expression) {
         switch (function) {
@@ -143,6 +169,15 @@ public class MySQLSchemaDialect extends RelationalDatabaseSchemaDialect {
         return super.applyFunctionTo(function, expression);
     }
 
+    @Override
+    public Class<?> getFunctionResultType(SqlFunction function) {
+        if (function == SqlFunction.ISO_DAY_OF_WEEK) {
+            // the addition gives a BIGINT
+            return Long.class;
+        }
+        return super.getFunctionResultType(function);
+    }
+
     @Override
     public Expression countDistinct(List<Expression> expressions) {
         if (expressions.size() == 1) {
@@ -165,4 +200,20 @@ public class MySQLSchemaDialect extends RelationalDatabaseSchemaDialect {
     public boolean isMultipleInsertSupported() {
         return false;
     }
+
+    @Override
+    public boolean isMultipleInsertWithConsecutiveIdsSupported() {
+        return consecutiveAutoIncrement;
+    }
+
+    @Override
+    public int getMaxBindParameters() {
+        return 65535;
+    }
+
+    @Override
+    public int getMaxStatementSize() {
+        // default max_allowed_packet of MySQL 5.7
+        return 4 * 1024 * 1024;
+    }
 }
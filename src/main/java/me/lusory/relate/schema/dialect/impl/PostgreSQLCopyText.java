@@ -0,0 +1,203 @@
+package me.lusory.relate.schema.dialect.impl;
+
+import me.lusory.relate.schema.SchemaException;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Text format of the PostgreSQL COPY command: tab separated values, \N for null, and backslash
+ * escapes for special characters. Each value is written using the input syntax of its column
+ * type: bytea in hex format, arrays as array literals, booleans as t or f.
+ */
+public final class PostgreSQLCopyText {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private PostgreSQLCopyText() {
+        // no instance
+    }
+
+    /**
+     * Return true if values of the given type, as written to the database, can be rendered in
+     * the COPY text format.
+     */
+    public static boolean isSupported(Class<?> type) {
+        if (type.isArray()) {
+            return byte[].class.equals(type)
+                    || char[].class.equals(type)
+                    || isSupported(type.getComponentType());
+        }
+        return type.isPrimitive()
+                || Boolean.class.equals(type)
+                || Character.class.equals(type)
+                || Byte.class.equals(type)
+                || Short.class.equals(type)
+                || Integer.class.equals(type)
+                || Long.class.equals(type)
+                || Float.class.equals(type)
+                || Double.class.equals(type)
+                || BigDecimal.class.equals(type)
+                || BigInteger.class.equals(type)
+                || String.class.equals(type)
+                || UUID.class.equals(type)
+                || type.isEnum()
+                || ByteBuffer.class.isAssignableFrom(type)
+                || LocalDate.class.equals(type)
+                || LocalTime.class.equals(type)
+                || LocalDateTime.class.equals(type)
+                || OffsetTime.class.equals(type)
+                || OffsetDateTime.class.equals(type)
+                || ZonedDateTime.class.equals(type)
+                || Instant.class.equals(type);
+    }
+
+    /**
+     * Render a row, terminated by a new line.
+     *
+     * @throws SchemaException if a value has a type not {@link #isSupported(Class) supported}
+     */
+    public static String toRow(List<Object> row) {
+        StringBuilder s = new StringBuilder(row.size() * 16);
+        boolean first = true;
+        for (Object value : row) {
+            if (first) {
+                first = false;
+            } else {
+                s.append('\t');
+            }
+            if (value == null) {
+                s.append("\\N");
+            } else {
+                appendEscaped(s, toText(value));
+            }
+        }
+        s.append('\n');
+        return s.toString();
+    }
+
+    /**
+     * Return the input syntax of a value, before the escapes of the COPY format.
+     */
+    private static String toText(Object value) {
+        if (value instanceof Boolean) {
+            return ((Boolean) value).booleanValue() ? "t" : "f";
+        }
+        if (value instanceof byte[]) {
+            return toHex((byte[]) value);
+        }
+        if (value instanceof ByteBuffer) {
+            ByteBuffer buffer = ((ByteBuffer) value).duplicate();
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return toHex(bytes);
+        }
+        if (value instanceof char[]) {
+            return new String((char[]) value);
+        }
+        if (value instanceof Enum) {
+            return ((Enum<?>) value).name();
+        }
+        if (value instanceof ZonedDateTime) {
+            // the zone id suffix is not accepted by PostgreSQL
+            return ((ZonedDateTime) value).toOffsetDateTime().toString();
+        }
+        if (value.getClass().isArray()) {
+            StringBuilder s = new StringBuilder().append('{');
+            int length = Array.getLength(value);
+            for (int i = 0; i < length; ++i) {
+                if (i > 0) {
+                    s.append(',');
+                }
+                appendArrayElement(s, Array.get(value, i));
+            }
+            return s.append('}').toString();
+        }
+        if (value instanceof Collection) {
+            StringBuilder s = new StringBuilder().append('{');
+            boolean first = true;
+            for (Object element : (Collection<?>) value) {
+                if (first) {
+                    first = false;
+                } else {
+                    s.append(',');
+                }
+                appendArrayElement(s, element);
+            }
+            return s.append('}').toString();
+        }
+        if (!isSupported(value.getClass())) {
+            throw new SchemaException(
+                    "Type not supported by bulk copy: " + value.getClass().getName());
+        }
+        return value.toString();
+    }
+
+    private static void appendArrayElement(StringBuilder s, Object element) {
+        if (element == null) {
+            s.append("NULL");
+            return;
+        }
+        String text = toText(element);
+        if (element instanceof Collection
+                || (element.getClass().isArray()
+                && !(element instanceof byte[])
+                && !(element instanceof char[]))) {
+            // sub-array of a multi-dimensional array
+            s.append(text);
+            return;
+        }
+        s.append('"');
+        for (int i = 0; i < text.length(); ++i) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                s.append('\\');
+            }
+            s.append(c);
+        }
+        s.append('"');
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder s = new StringBuilder(2 + bytes.length * 2).append("\\x");
+        for (byte b : bytes) {
+            s.append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+        }
+        return s.toString();
+    }
+
+    private static void appendEscaped(StringBuilder s, String value) {
+        for (int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    s.append("\\\\");
+                    break;
+                case '\n':
+                    s.append("\\n");
+                    break;
+                case '\r':
+                    s.append("\\r");
+                    break;
+                case '\t':
+                    s.append("\\t");
+                    break;
+                default:
+                    s.append(c);
+                    break;
+            }
+        }
+    }
+}
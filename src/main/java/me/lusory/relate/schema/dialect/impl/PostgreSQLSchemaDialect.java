@@ -1,9 +1,18 @@
 package me.lusory.relate.schema.dialect.impl;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.r2dbc.postgresql.api.PostgresqlConnection;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.Wrapped;
+import me.lusory.relate.LcReactiveDataRelationalClient;
 import me.lusory.relate.annotations.ColumnDefinition;
+import me.lusory.relate.metrics.StatementKind;
+import me.lusory.relate.query.SqlQuery;
 import me.lusory.relate.schema.Column;
+import me.lusory.relate.schema.SchemaException;
 import me.lusory.relate.schema.dialect.RelationalDatabaseSchemaDialect;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.data.r2dbc.dialect.PostgresDialect;
 import org.springframework.data.r2dbc.dialect.R2dbcDialect;
@@ -11,16 +20,42 @@ import org.springframework.data.relational.core.sql.Expression;
 import org.springframework.data.relational.core.sql.Expressions;
 import org.springframework.data.relational.core.sql.SQL;
 import org.springframework.data.relational.core.sql.SimpleFunction;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 @Component
 @ConditionalOnClass(PostgresqlConnection.class)
 public class PostgreSQLSchemaDialect extends RelationalDatabaseSchemaDialect {
     private static final String EXTRACT_DATE_TIME_FUNCTION = "EXTRACT";
 
+    private int copyThreshold = 1000;
+    private boolean arrayParameters = true;
+
+    /**
+     * Minimum number of entities to insert for which the COPY protocol is used instead of INSERT
+     * statements, 0 to disable it.
+     */
+    @Value("${relate.postgresql.copy-threshold:1000}")
+    public void setCopyThreshold(int copyThreshold) {
+        this.copyThreshold = copyThreshold;
+    }
+
+    /**
+     * Indicates if IN conditions are rendered as <code>= ANY(?)</code> with the values bound as
+     * an array.
+     */
+    @Value("${relate.postgresql.in-as-array:true}")
+    public void setArrayParameters(boolean arrayParameters) {
+        this.arrayParameters = arrayParameters;
+    }
+
     @Override
     public String getName() {
         return "PostgreSQL";
@@ -169,4 +204,87 @@ public class PostgreSQLSchemaDialect extends RelationalDatabaseSchemaDialect {
         }
         return super.applyFunctionTo(function, expression);
     }
+
+    @Override
+    public Class<?> getFunctionResultType(SqlFunction function) {
+        switch (function) {
+            case UPPER:
+            case LOWER:
+                return String.class;
+            default:
+                // EXTRACT returns a double precision, or a numeric from PostgreSQL 14
+                return Double.class;
+        }
+    }
+
+    @Override
+    protected String schemaIndexesQuery() {
+        // indexes are not part of the information schema
+        return "SELECT tablename, indexname FROM pg_indexes WHERE schemaname = "
+                + currentSchemaFunction();
+    }
+
+    @Override
+    public int getMaxBindParameters() {
+        return 32767;
+    }
+
+    @Override
+    public boolean isArrayParameterSupported() {
+        return arrayParameters;
+    }
+
+    @Override
+    public int getBulkCopyThreshold() {
+        return copyThreshold;
+    }
+
+    @Override
+    public boolean isCopySupported(Class<?> type) {
+        return PostgreSQLCopyText.isSupported(type);
+    }
+
+    @Override
+    public Mono<Long> copyIn(
+            LcReactiveDataRelationalClient client,
+            Class<?> entityType,
+            String table,
+            List<String> columns,
+            Iterable<List<Object>> rows) {
+        String sql = "COPY " + table + " (" + String.join(", ", columns) + ") FROM STDIN";
+        Mono<Long> execution = client.getSpringClient().inConnection(
+                connection -> {
+                    PostgresqlConnection pg = unwrap(connection);
+                    if (pg == null) {
+                        return Mono.error(
+                                new SchemaException(
+                                        "Bulk copy requires a PostgreSQL connection, found "
+                                                + connection.getClass().getName()));
+                    }
+                    Flux<ByteBuf> data =
+                            Flux.fromIterable(rows)
+                                    .map(
+                                            row ->
+                                                    Unpooled.wrappedBuffer(
+                                                            PostgreSQLCopyText.toRow(row)
+                                                                    .getBytes(
+                                                                            StandardCharsets
+                                                                                    .UTF_8)));
+                    return pg.copyIn(sql, data);
+                });
+        return SqlQuery.observe(client, execution, StatementKind.INSERT, entityType, () -> sql, 0);
+    }
+
+    @Nullable
+    private static PostgresqlConnection unwrap(Connection connection) {
+        Object c = connection;
+        while (!(c instanceof PostgresqlConnection) && c instanceof Wrapped) {
+            Object unwrapped = ((Wrapped<?>) c).unwrap();
+            if (unwrapped == c) {
+                break;
+            }
+            c = unwrapped;
+        }
+        return c instanceof PostgresqlConnection ? (PostgresqlConnection) c : null;
+    }
 }
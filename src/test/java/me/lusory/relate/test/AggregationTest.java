@@ -0,0 +1,139 @@
+package me.lusory.relate.test;
+
+import me.lusory.relate.LcReactiveDataRelationalClient;
+import me.lusory.relate.query.SelectQuery;
+import me.lusory.relate.query.criteria.Criteria;
+import me.lusory.relate.repository.LcR2dbcRepositoryFactoryBean;
+import me.lusory.relate.test.repo.model.ExampleEntity1;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+import reactor.core.publisher.Flux;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+@SpringBootTest(properties = {
+        "spring.r2dbc.url=r2dbc:h2:mem:///aggregationtestdb;DB_CLOSE_DELAY=-1;",
+        "spring.r2dbc.username=sa"
+})
+@SpringBootApplication(scanBasePackages = "me.lusory.relate.test")
+@EnableR2dbcRepositories(repositoryFactoryBeanClass = LcR2dbcRepositoryFactoryBean.class)
+public class AggregationTest {
+    @Autowired
+    private LcReactiveDataRelationalClient lcClient;
+
+    private List<ExampleEntity1> entities;
+
+    @BeforeEach
+    void insertEntities() {
+        entities = query().execute(lcClient).collectList().block();
+        if (!entities.isEmpty()) {
+            return;
+        }
+        entities =
+                lcClient.save(
+                                Flux.just("agg-a", "agg-a", "agg-a", "agg-b", "agg-b", "agg-c")
+                                        .map(t -> ExampleEntity1.builder().test(t).build()))
+                        .collectList()
+                        .block();
+    }
+
+    private static SelectQuery<ExampleEntity1> query() {
+        return SelectQuery.from(ExampleEntity1.class, "e")
+                .where(Criteria.property("e", "test").like("agg-%"));
+    }
+
+    @Test
+    void countSumAvg() {
+        long sum = entities.stream().mapToLong(ExampleEntity1::getId).sum();
+        long min = entities.stream().mapToLong(ExampleEntity1::getId).min().getAsLong();
+        long max = entities.stream().mapToLong(ExampleEntity1::getId).max().getAsLong();
+
+        Object[] values =
+                query().select(Criteria.property("e", "id").count(), "count")
+                        .select(Criteria.property("e", "test").countDistinct(), "distinct")
+                        .select(Criteria.property("e", "id").sum(), "sum")
+                        .select(Criteria.property("e", "id").avg(), "avg")
+                        .select(Criteria.property("e", "id").min(), "min")
+                        .select(Criteria.property("e", "id").max(), "max")
+                        .executeProjection(lcClient, Object[].class)
+                        .single()
+                        .block();
+
+        Assertions.assertNotNull(values);
+        Assertions.assertEquals(6L, values[0]);
+        Assertions.assertEquals(3L, values[1]);
+        Assertions.assertEquals(sum, values[2]);
+        Assertions.assertEquals(sum / 6.0, (Double) values[3], 1.0);
+        Assertions.assertEquals(min, values[4]);
+        Assertions.assertEquals(max, values[5]);
+    }
+
+    @Test
+    void groupByOrderedByCount() {
+        @SuppressWarnings("rawtypes")
+        List<Map> groups =
+                query().select("e", "test")
+                        .select(Criteria.property("e", "id").count(), "count")
+                        .groupBy("e", "test")
+                        .orderByResult("count", false)
+                        .executeProjection(lcClient, Map.class)
+                        .collectList()
+                        .block();
+
+        Assertions.assertNotNull(groups);
+        Assertions.assertEquals(3, groups.size());
+        Assertions.assertEquals("agg-a", groups.get(0).get("test"));
+        Assertions.assertEquals(3L, groups.get(0).get("count"));
+        Assertions.assertEquals("agg-b", groups.get(1).get("test"));
+        Assertions.assertEquals(2L, groups.get(1).get("count"));
+        Assertions.assertEquals("agg-c", groups.get(2).get("test"));
+        Assertions.assertEquals(1L, groups.get(2).get("count"));
+    }
+
+    @Test
+    void having() {
+        List<String> tests =
+                query().select("e", "test")
+                        .groupBy("e", "test")
+                        .having(Criteria.property("e", "id").count().greaterThan(1L))
+                        .orderBy("e", "test", true)
+                        .executeProjection(lcClient, String.class)
+                        .collectList()
+                        .block();
+
+        Assertions.assertEquals(Arrays.asList("agg-a", "agg-b"), tests);
+    }
+
+    @Test
+    void groupByFunction() {
+        List<String> tests =
+                query().select(Criteria.property("e", "test").toUpperCase(), "upper")
+                        .groupBy(Criteria.property("e", "test").toUpperCase())
+                        .orderByResult("upper", true)
+                        .executeProjection(lcClient, String.class)
+                        .collectList()
+                        .block();
+
+        Assertions.assertEquals(Arrays.asList("AGG-A", "AGG-B", "AGG-C"), tests);
+    }
+
+    @Test
+    void orderByResultRequiresAProjection() {
+        Assertions.assertThrows(
+                IllegalArgumentException.class,
+                () -> query().orderByResult("count", true).execute(lcClient).blockFirst());
+        Assertions.assertThrows(
+                IllegalArgumentException.class,
+                () -> query().select("e", "test")
+                        .orderByResult("unknown", true)
+                        .executeProjection(lcClient, String.class)
+                        .blockFirst());
+    }
+}
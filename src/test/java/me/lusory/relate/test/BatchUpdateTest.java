@@ -0,0 +1,91 @@
+package me.lusory.relate.test;
+
+import me.lusory.relate.LcReactiveDataRelationalClient;
+import me.lusory.relate.query.SelectQuery;
+import me.lusory.relate.query.criteria.Criteria;
+import me.lusory.relate.repository.LcR2dbcRepositoryFactoryBean;
+import me.lusory.relate.test.repo.model.VersionedEntity;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@SpringBootTest(properties = {
+        "spring.r2dbc.url=r2dbc:h2:mem:///batchupdatetestdb;DB_CLOSE_DELAY=-1;",
+        "spring.r2dbc.username=sa"
+})
+@SpringBootApplication(scanBasePackages = "me.lusory.relate.test")
+@EnableR2dbcRepositories(repositoryFactoryBeanClass = LcR2dbcRepositoryFactoryBean.class)
+public class BatchUpdateTest {
+    @Autowired
+    private LcReactiveDataRelationalClient lcClient;
+
+    private List<VersionedEntity> insert(String prefix, int count) {
+        List<VersionedEntity> entities = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            entities.add(VersionedEntity.builder().label(prefix + i).build());
+        }
+        List<VersionedEntity> saved = lcClient.save(entities).collectList().block();
+        Assertions.assertNotNull(saved);
+        return saved;
+    }
+
+    private List<String> labels(String prefix) {
+        return SelectQuery.from(VersionedEntity.class, "e")
+                .where(Criteria.property("e", "label").like(prefix + "%"))
+                .orderBy("e", "id", true)
+                .execute(lcClient)
+                .map(VersionedEntity::getLabel)
+                .collectList()
+                .block();
+    }
+
+    @Test
+    void modifiedEntitiesAreUpdated() {
+        List<VersionedEntity> entities = insert("batch", 5);
+        for (VersionedEntity entity : entities) {
+            Assertions.assertEquals(1L, entity.getVersion());
+            entity.setLabel(entity.getLabel() + "-updated");
+        }
+
+        lcClient.save(entities).then().block();
+
+        for (VersionedEntity entity : entities) {
+            Assertions.assertEquals(2L, entity.getVersion());
+        }
+        List<String> labels = labels("batch");
+        Assertions.assertEquals(5, labels.size());
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertEquals("batch" + i + "-updated", labels.get(i));
+        }
+    }
+
+    @Test
+    void staleVersionFailsTheBatch() {
+        List<VersionedEntity> entities = insert("stale", 5);
+        // another client updated the last entity
+        lcClient.getSpringClient()
+                .sql("UPDATE versionedEntity SET version = 5 WHERE id = :id")
+                .bind("id", entities.get(4).getId())
+                .then()
+                .block();
+        for (VersionedEntity entity : entities) {
+            entity.setLabel(entity.getLabel() + "-updated");
+        }
+
+        Assertions.assertThrows(
+                OptimisticLockingFailureException.class,
+                () -> lcClient.save(entities).then().block());
+
+        // no entity is considered as saved
+        for (VersionedEntity entity : entities) {
+            Assertions.assertEquals(1L, entity.getVersion());
+        }
+    }
+}
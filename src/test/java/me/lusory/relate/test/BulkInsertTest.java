@@ -0,0 +1,43 @@
+package me.lusory.relate.test;
+
+import me.lusory.relate.LcReactiveDataRelationalClient;
+import me.lusory.relate.query.SelectQuery;
+import me.lusory.relate.repository.LcR2dbcRepositoryFactoryBean;
+import me.lusory.relate.test.repo.model.ExampleEntity1;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@SpringBootTest(properties = {
+        "spring.r2dbc.url=r2dbc:h2:mem:///bulktestdb;DB_CLOSE_DELAY=-1;",
+        "spring.r2dbc.username=sa"
+})
+@SpringBootApplication(scanBasePackages = "me.lusory.relate.test")
+@EnableR2dbcRepositories(repositoryFactoryBeanClass = LcR2dbcRepositoryFactoryBean.class)
+public class BulkInsertTest {
+    @Autowired
+    private LcReactiveDataRelationalClient lcClient;
+
+    @Test
+    void bulkInsertWithoutCopy() {
+        List<ExampleEntity1> entities = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            entities.add(ExampleEntity1.builder().test("bulk" + i).build());
+        }
+        List<ExampleEntity1> inserted = lcClient.bulkInsert(entities).collectList().block();
+
+        Assertions.assertNotNull(inserted);
+        Assertions.assertEquals(2500, inserted.size());
+        Assertions.assertEquals(
+                2500, inserted.stream().map(ExampleEntity1::getId).collect(Collectors.toSet()).size());
+        Assertions.assertEquals(
+                2500L, SelectQuery.from(ExampleEntity1.class, "e").executeCount(lcClient).block());
+    }
+}
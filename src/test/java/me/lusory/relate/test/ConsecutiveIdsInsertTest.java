@@ -0,0 +1,109 @@
+package me.lusory.relate.test;
+
+import io.r2dbc.spi.ConnectionFactory;
+import me.lusory.relate.LcReactiveDataRelationalClient;
+import me.lusory.relate.configuration.LcR2dbcEntityOperationsBuilder;
+import me.lusory.relate.metrics.StatementEvent;
+import me.lusory.relate.metrics.StatementKind;
+import me.lusory.relate.metrics.StatementListener;
+import me.lusory.relate.query.SelectQuery;
+import me.lusory.relate.query.criteria.Criteria;
+import me.lusory.relate.repository.LcR2dbcRepositoryFactoryBean;
+import me.lusory.relate.schema.dialect.RelationalDatabaseSchemaDialect;
+import me.lusory.relate.schema.dialect.impl.H2SchemaDialect;
+import me.lusory.relate.test.repo.model.ExampleEntity1;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+@SpringBootTest(properties = {
+        "spring.r2dbc.url=r2dbc:h2:mem:///consecutiveidstestdb;DB_CLOSE_DELAY=-1;",
+        "spring.r2dbc.username=sa"
+})
+@SpringBootApplication(scanBasePackages = "me.lusory.relate.test")
+@EnableR2dbcRepositories(repositoryFactoryBeanClass = LcR2dbcRepositoryFactoryBean.class)
+public class ConsecutiveIdsInsertTest {
+    @Autowired
+    private LcReactiveDataRelationalClient lcClient;
+
+    @Autowired
+    private ConnectionFactory connectionFactory;
+
+    /** Behaves like MySQL: only the first generated value of a multiple insert is used. */
+    private static class ConsecutiveIdsDialect extends H2SchemaDialect {
+        @Override
+        public boolean isMultipleInsertSupported() {
+            return false;
+        }
+
+        @Override
+        public boolean isMultipleInsertWithConsecutiveIdsSupported() {
+            return true;
+        }
+    }
+
+    private static class ClientBuilder extends LcR2dbcEntityOperationsBuilder {
+        private LcReactiveDataRelationalClient build(
+                ConnectionFactory connectionFactory, RelationalDatabaseSchemaDialect dialect) {
+            return buildEntityOperations(connectionFactory, Collections.singletonList(dialect))
+                    .getLcClient();
+        }
+    }
+
+    @Test
+    void idsOfEveryRowAreDeducedFromTheFirstOne() {
+        LcReactiveDataRelationalClient client =
+                new ClientBuilder().build(connectionFactory, new ConsecutiveIdsDialect());
+        List<StatementEvent> events = new CopyOnWriteArrayList<>();
+        client.addStatementListener(
+                new StatementListener() {
+                    @Override
+                    public void afterStatement(StatementEvent event) {
+                        events.add(event);
+                    }
+                });
+
+        List<ExampleEntity1> entities = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            entities.add(ExampleEntity1.builder().test("consecutive" + i).build());
+        }
+        List<ExampleEntity1> saved = client.save(entities).collectList().block();
+
+        Assertions.assertNotNull(saved);
+        Assertions.assertEquals(5, saved.size());
+        // a single statement for all the rows
+        Assertions.assertEquals(
+                1,
+                events.stream()
+                        .filter(event -> event.getKind() == StatementKind.INSERT)
+                        .count());
+        for (int i = 1; i < entities.size(); i++) {
+            Assertions.assertEquals(entities.get(0).getId() + i, entities.get(i).getId());
+        }
+
+        // every id matches the row of its entity
+        Map<Long, String> stored =
+                SelectQuery.from(ExampleEntity1.class, "e")
+                        .where(Criteria.property("e", "test").like("consecutive%"))
+                        .execute(lcClient)
+                        .collectMap(ExampleEntity1::getId, ExampleEntity1::getTest)
+                        .block();
+        Assertions.assertNotNull(stored);
+        Assertions.assertEquals(5, stored.size());
+        for (ExampleEntity1 entity : entities) {
+            Assertions.assertEquals(entity.getTest(), stored.get(entity.getId()));
+        }
+        Assertions.assertEquals(
+                5, entities.stream().map(ExampleEntity1::getId).collect(Collectors.toSet()).size());
+    }
+}
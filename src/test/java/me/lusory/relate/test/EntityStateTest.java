@@ -0,0 +1,146 @@
+package me.lusory.relate.test;
+
+import me.lusory.relate.LcReactiveDataRelationalClient;
+import me.lusory.relate.model.EntityState;
+import me.lusory.relate.model.EntityStateMemoryReport;
+import me.lusory.relate.model.LcEntityTypeInfo;
+import me.lusory.relate.model.StatefulEntity;
+import me.lusory.relate.repository.LcR2dbcRepositoryFactoryBean;
+import me.lusory.relate.test.repo.ExampleEntityRepository;
+import me.lusory.relate.test.repo.model.ExampleEntity1;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@SpringBootTest(properties = {
+        "spring.r2dbc.url=r2dbc:h2:mem:///entitystatetestdb;DB_CLOSE_DELAY=-1;",
+        "spring.r2dbc.username=sa"
+})
+@SpringBootApplication(scanBasePackages = "me.lusory.relate.test")
+@EnableR2dbcRepositories(repositoryFactoryBeanClass = LcR2dbcRepositoryFactoryBean.class)
+public class EntityStateTest {
+    @Autowired
+    private LcReactiveDataRelationalClient lcClient;
+
+    @Autowired
+    private ExampleEntityRepository repository;
+
+    private ExampleEntity1 load(String test) {
+        ExampleEntity1 saved = repository.save(ExampleEntity1.builder().test(test).build()).block();
+        Assertions.assertNotNull(saved);
+        ExampleEntity1 entity = repository.findById(saved.getId()).block();
+        Assertions.assertNotNull(entity);
+        Assertions.assertTrue(entity instanceof StatefulEntity);
+        return entity;
+    }
+
+    @Test
+    void fieldSlots() {
+        LcEntityTypeInfo info = LcEntityTypeInfo.get(ExampleEntity1.class);
+        int id = info.getFieldOrdinal("id");
+        int test = info.getFieldOrdinal("test");
+
+        Assertions.assertEquals(2, info.getPersistedFields().length);
+        Assertions.assertEquals(-1, info.getFieldOrdinal("unknown"));
+        Assertions.assertEquals(1, info.getPrimitiveFieldCount());
+        Assertions.assertEquals(1, info.getObjectFieldCount());
+        Assertions.assertTrue(info.isPrimitiveField(id));
+        Assertions.assertFalse(info.isPrimitiveField(test));
+        // each kind of field has its own slots
+        Assertions.assertEquals(0, info.getFieldSlot(id));
+        Assertions.assertEquals(0, info.getFieldSlot(test));
+    }
+
+    @Test
+    void modifiedFields() {
+        ExampleEntity1 entity = load("dirty");
+        EntityState state = EntityState.get(entity, lcClient);
+
+        Assertions.assertTrue(state.isPersisted());
+        Assertions.assertTrue(state.isLoaded());
+        Assertions.assertTrue(state.getModifiedFields().isEmpty());
+        Assertions.assertEquals("dirty", state.getPersistedValue("test"));
+        Assertions.assertEquals(entity.getId(), state.getPersistedValue("id"));
+
+        entity.setTest("changed");
+        Assertions.assertTrue(state.isFieldModified("test"));
+        Assertions.assertEquals(Collections.singletonList("test"), state.getModifiedFields());
+        Assertions.assertEquals("dirty", state.getPersistedValue("test"));
+
+        // back to the persisted value
+        entity.setTest("dirty");
+        Assertions.assertFalse(state.isFieldModified("test"));
+
+        // primitive field
+        long id = entity.getId();
+        entity.setId(id + 1000);
+        Assertions.assertTrue(state.isFieldModified("id"));
+        entity.setId(id);
+        Assertions.assertFalse(state.isFieldModified("id"));
+        Assertions.assertTrue(state.getModifiedFields().isEmpty());
+    }
+
+    @Test
+    void savedEntityIsNotModified() {
+        ExampleEntity1 entity = load("before");
+        EntityState state = EntityState.get(entity, lcClient);
+
+        entity.setTest("after");
+        Assertions.assertTrue(state.isFieldModified("test"));
+        repository.save(entity).block();
+
+        Assertions.assertFalse(state.isFieldModified("test"));
+        Assertions.assertEquals("after", state.getPersistedValue("test"));
+    }
+
+    @Test
+    void loadedFlags() {
+        ExampleEntity1 entity = load("flags");
+        EntityState state = EntityState.get(entity, lcClient);
+
+        state.lazyLoaded();
+        Assertions.assertTrue(state.isPersisted());
+        Assertions.assertFalse(state.isLoaded());
+
+        state.loaded(entity);
+        Assertions.assertTrue(state.isLoaded());
+        Assertions.assertEquals("flags", state.getPersistedValue("test"));
+
+        entity.setTest("modified");
+        state.deleted();
+        Assertions.assertFalse(state.isPersisted());
+        Assertions.assertFalse(state.isLoaded());
+        Assertions.assertTrue(state.getModifiedFields().isEmpty());
+        Assertions.assertNull(state.getPersistedValue("test"));
+        Assertions.assertNull(state.getPersistedValue("id"));
+    }
+
+    @Test
+    void memoryReport() {
+        List<Object> entities = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            entities.add(load("report" + i));
+        }
+        // objects without state are ignored
+        entities.add("not an entity");
+
+        EntityStateMemoryReport report = EntityStateMemoryReport.of(entities);
+
+        long stateSize = EntityStateMemoryReport.estimateLoadedStateSize(ExampleEntity1.class);
+        Assertions.assertTrue(stateSize > 0);
+        Assertions.assertEquals(3, report.getEntityCount());
+        Assertions.assertEquals(
+                Collections.singletonMap(ExampleEntity1.class, 3L), report.getEntityCounts());
+        Assertions.assertEquals(3 * stateSize, report.getTotalBytes());
+        Assertions.assertEquals(
+                Collections.singletonMap(ExampleEntity1.class, 3 * stateSize), report.getBytes());
+        Assertions.assertTrue(report.toString().contains("ExampleEntity1: 3 entities"));
+    }
+}
@@ -0,0 +1,143 @@
+package me.lusory.relate.test;
+
+import me.lusory.relate.LcReactiveDataRelationalClient;
+import me.lusory.relate.model.CompositeIdValue;
+import me.lusory.relate.model.LcEntityTypeInfo;
+import me.lusory.relate.model.ModelAccessException;
+import me.lusory.relate.model.ModelUtils;
+import me.lusory.relate.query.SelectQuery;
+import me.lusory.relate.query.criteria.Criteria;
+import me.lusory.relate.repository.LcR2dbcRepositoryFactoryBean;
+import me.lusory.relate.test.repo.model.CompositeIdEntity;
+import me.lusory.relate.test.repo.model.ExampleEntity1;
+import me.lusory.relate.test.repo.model.PreSelectChild;
+import me.lusory.relate.test.repo.model.PreSelectParent;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+import org.springframework.data.relational.core.mapping.RelationalPersistentEntity;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+@SpringBootTest(properties = {
+        "spring.r2dbc.url=r2dbc:h2:mem:///entitytypeinfotestdb;DB_CLOSE_DELAY=-1;",
+        "spring.r2dbc.username=sa"
+})
+@SpringBootApplication(scanBasePackages = "me.lusory.relate.test")
+@EnableR2dbcRepositories(repositoryFactoryBeanClass = LcR2dbcRepositoryFactoryBean.class)
+public class EntityTypeInfoTest {
+    @Autowired
+    private LcReactiveDataRelationalClient lcClient;
+
+    private List<CompositeIdEntity> loadComposite(String key1) {
+        List<CompositeIdEntity> list =
+                SelectQuery.from(CompositeIdEntity.class, "e")
+                        .where(Criteria.property("e", "key1").is(key1))
+                        .orderBy("e", "key2", true)
+                        .execute(lcClient)
+                        .collectList()
+                        .block();
+        Assertions.assertNotNull(list);
+        return list;
+    }
+
+    @Test
+    void registryKnowsEntityClassesAndTheirSubclasses() {
+        Assertions.assertTrue(LcEntityTypeInfo.getClasses().contains(ExampleEntity1.class));
+        Assertions.assertTrue(LcEntityTypeInfo.getClasses().contains(CompositeIdEntity.class));
+
+        lcClient.save(ExampleEntity1.builder().test("registry").build()).block();
+        ExampleEntity1 loaded =
+                SelectQuery.from(ExampleEntity1.class, "e")
+                        .where(Criteria.property("e", "test").is("registry"))
+                        .execute(lcClient)
+                        .blockFirst();
+        Assertions.assertNotNull(loaded);
+        Assertions.assertNotEquals(ExampleEntity1.class, loaded.getClass());
+        Assertions.assertSame(
+                LcEntityTypeInfo.get(ExampleEntity1.class),
+                LcEntityTypeInfo.get(loaded.getClass()));
+
+        Assertions.assertNull(LcEntityTypeInfo.find(String.class));
+        Assertions.assertThrows(
+                ModelAccessException.class, () -> LcEntityTypeInfo.get(String.class));
+    }
+
+    @Test
+    void fieldsAreResolvedOnce() {
+        LcEntityTypeInfo info = LcEntityTypeInfo.get(PreSelectParent.class);
+
+        Field rank = info.getRequiredField("rank");
+        Assertions.assertEquals(int.class, rank.getType());
+        Assertions.assertSame(rank, info.getField("rank"));
+        Assertions.assertNull(info.getField("unknown"));
+        Assertions.assertThrows(
+                ModelAccessException.class, () -> info.getRequiredField("unknown"));
+
+        Assertions.assertTrue(info.isCollection("children"));
+        Assertions.assertEquals(PreSelectChild.class, info.getCollectionElementType("children"));
+        Assertions.assertFalse(info.isCollection("rank"));
+        Assertions.assertNull(info.getCollectionElementType("rank"));
+        Assertions.assertTrue(info.getForeignTableWithFieldForProperty("children").isCollection());
+
+        Set<String> persisted = new HashSet<>();
+        for (Field field : info.getPersistedFields()) {
+            persisted.add(field.getName());
+        }
+        Assertions.assertTrue(persisted.containsAll(Arrays.asList("id", "rank")));
+        Assertions.assertFalse(persisted.contains("_rlState"));
+    }
+
+    @Test
+    void compositeIdIsReadFromTheRegistry() {
+        RelationalPersistentEntity<?> compositeType =
+                lcClient.getMappingContext().getRequiredPersistentEntity(CompositeIdEntity.class);
+        Assertions.assertArrayEquals(
+                new String[] {"key1", "key2"},
+                LcEntityTypeInfo.get(CompositeIdEntity.class).getCompositeIdProperties());
+        Assertions.assertArrayEquals(
+                new String[] {"key1", "key2"}, ModelUtils.getCompositeIdProperties(compositeType));
+        Assertions.assertNull(
+                ModelUtils.getCompositeIdProperties(
+                        lcClient.getMappingContext()
+                                .getRequiredPersistentEntity(ExampleEntity1.class)));
+
+        lcClient.save(
+                        Arrays.asList(
+                                CompositeIdEntity.builder().key1("a").key2(1).label("one").build(),
+                                CompositeIdEntity.builder().key1("a").key2(2).label("two").build()))
+                .then()
+                .block();
+        List<CompositeIdEntity> loaded = loadComposite("a");
+        Assertions.assertEquals(2, loaded.size());
+
+        Object id =
+                ModelUtils.getId(
+                        compositeType, compositeType.getPropertyAccessor(loaded.get(0)), lcClient);
+        Assertions.assertTrue(id instanceof CompositeIdValue);
+        CompositeIdEntity sameKeys =
+                CompositeIdEntity.builder().key1("a").key2(1).label("other").build();
+        Assertions.assertEquals(
+                id,
+                ModelUtils.getId(
+                        compositeType, compositeType.getPropertyAccessor(sameKeys), lcClient));
+        Assertions.assertNotEquals(
+                id,
+                ModelUtils.getId(
+                        compositeType, compositeType.getPropertyAccessor(loaded.get(1)), lcClient));
+
+        // the update is made on the composite id
+        loaded.get(0).setLabel("updated");
+        lcClient.save(loaded.get(0)).block();
+        loaded = loadComposite("a");
+        Assertions.assertEquals("updated", loaded.get(0).getLabel());
+        Assertions.assertEquals("two", loaded.get(1).getLabel());
+    }
+}
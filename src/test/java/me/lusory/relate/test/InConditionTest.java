@@ -0,0 +1,205 @@
+package me.lusory.relate.test;
+
+import me.lusory.relate.LcReactiveDataRelationalClient;
+import me.lusory.relate.query.SelectQuery;
+import me.lusory.relate.query.SqlQuery;
+import me.lusory.relate.query.criteria.Criteria;
+import me.lusory.relate.query.criteria.CriteriaSqlBuilder;
+import me.lusory.relate.repository.LcR2dbcRepositoryFactoryBean;
+import me.lusory.relate.schema.dialect.RelationalDatabaseSchemaDialect;
+import me.lusory.relate.schema.dialect.impl.H2SchemaDialect;
+import me.lusory.relate.test.repo.model.ExampleEntity1;
+import me.lusory.relate.test.repo.model.PreSelectChild;
+import me.lusory.relate.test.repo.model.PreSelectParent;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+import org.springframework.data.relational.core.mapping.RelationalPersistentProperty;
+import org.springframework.data.relational.core.sql.Column;
+import org.springframework.data.relational.core.sql.Select;
+import org.springframework.data.relational.core.sql.Table;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+@SpringBootTest(properties = {
+        "spring.r2dbc.url=r2dbc:h2:mem:///inconditiontestdb;DB_CLOSE_DELAY=-1;",
+        "spring.r2dbc.username=sa"
+})
+@SpringBootApplication(scanBasePackages = "me.lusory.relate.test")
+@EnableR2dbcRepositories(repositoryFactoryBeanClass = LcR2dbcRepositoryFactoryBean.class)
+public class InConditionTest {
+    @Autowired
+    private LcReactiveDataRelationalClient lcClient;
+
+    private final RelationalDatabaseSchemaDialect listDialect = new H2SchemaDialect();
+
+    private final RelationalDatabaseSchemaDialect arrayDialect =
+            new H2SchemaDialect() {
+                @Override
+                public boolean isArrayParameterSupported() {
+                    return true;
+                }
+            };
+
+    private static List<Object> range(int count) {
+        List<Object> values = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            values.add((long) i);
+        }
+        return values;
+    }
+
+    private RelationalPersistentProperty idProperty() {
+        return lcClient.getMappingContext()
+                .getRequiredPersistentEntity(ExampleEntity1.class)
+                .getRequiredIdProperty();
+    }
+
+    private SqlQuery<Select> in(RelationalDatabaseSchemaDialect dialect, List<?> values) {
+        SqlQuery<Select> query = new SqlQuery<>(lcClient, ExampleEntity1.class);
+        Table table = Table.create("exampleEntity1");
+        Column id = Column.create("id", table);
+        query.setQuery(
+                Select.builder()
+                        .select(id)
+                        .from(table)
+                        .where(
+                                CriteriaSqlBuilder.inCondition(
+                                        query, dialect, id, values, idProperty(), false))
+                        .build());
+        return query;
+    }
+
+    @Test
+    void inListsArePaddedToBucketSize() {
+        Assertions.assertEquals(
+                Collections.singletonList(Arrays.asList(1L, 2L)),
+                CriteriaSqlBuilder.toInLists(range(2), listDialect));
+        Assertions.assertEquals(
+                Collections.singletonList(Arrays.asList(1L, 2L, 3L, 3L)),
+                CriteriaSqlBuilder.toInLists(range(3), listDialect));
+        Assertions.assertEquals(
+                Collections.singletonList(Arrays.asList(1L, 2L, 3L, 4L, 5L, 5L, 5L, 5L)),
+                CriteriaSqlBuilder.toInLists(range(5), listDialect));
+        Assertions.assertEquals(
+                1000, CriteriaSqlBuilder.toInLists(range(1000), listDialect).get(0).size());
+
+        // split evenly, then each list is padded
+        List<List<Object>> lists = CriteriaSqlBuilder.toInLists(range(1001), listDialect);
+        Assertions.assertEquals(2, lists.size());
+        Assertions.assertEquals(512, lists.get(0).size());
+        Assertions.assertEquals(512, lists.get(1).size());
+        Assertions.assertEquals(501L, lists.get(0).get(511));
+        Assertions.assertEquals(1001L, lists.get(1).get(511));
+    }
+
+    @Test
+    void isArrayIn() {
+        Assertions.assertFalse(CriteriaSqlBuilder.isArrayIn(range(3), listDialect));
+        Assertions.assertTrue(CriteriaSqlBuilder.isArrayIn(range(3), arrayDialect));
+        Assertions.assertFalse(
+                CriteriaSqlBuilder.isArrayIn(Collections.singletonList(null), arrayDialect));
+        Assertions.assertFalse(
+                CriteriaSqlBuilder.isArrayIn(
+                        Arrays.asList(1L, Criteria.property("e", "id")), arrayDialect));
+        // numbers are widened
+        Assertions.assertTrue(CriteriaSqlBuilder.isArrayIn(Arrays.asList(1, 2L), arrayDialect));
+        // no common type
+        Assertions.assertFalse(
+                CriteriaSqlBuilder.isArrayIn(
+                        Arrays.asList(new Timestamp(0), LocalDateTime.now()), arrayDialect));
+    }
+
+    @Test
+    void arrayTakesTheTypeOfTheProperty() {
+        Object array = CriteriaSqlBuilder.toArray(Arrays.asList(1, (short) 2, null), idProperty());
+        Assertions.assertArrayEquals(new Long[] {1L, 2L, null}, (Long[]) array);
+
+        array = CriteriaSqlBuilder.toArray(Arrays.asList(1, 2.5d), null);
+        Assertions.assertArrayEquals(new Double[] {1d, 2.5d}, (Double[]) array);
+
+        array = CriteriaSqlBuilder.toArray(Arrays.asList("a", "b"), null);
+        Assertions.assertArrayEquals(new String[] {"a", "b"}, (String[]) array);
+    }
+
+    @Test
+    void inSql() {
+        SqlQuery<Select> query = in(arrayDialect, Arrays.asList(1, 2L, 3L));
+        Assertions.assertTrue(query.getSql().contains("= ANY("), query.getSql());
+        Assertions.assertEquals(1, query.getBindCount());
+
+        // no common type, falls back to a padded list
+        query = in(arrayDialect, Arrays.asList(new Timestamp(0), LocalDateTime.now(), 3L));
+        Assertions.assertTrue(query.getSql().contains(" IN ("), query.getSql());
+        Assertions.assertFalse(query.getSql().contains("ANY"), query.getSql());
+        Assertions.assertEquals(4, query.getBindCount());
+
+        query = in(listDialect, range(5));
+        Assertions.assertTrue(query.getSql().contains(" IN ("), query.getSql());
+        Assertions.assertEquals(8, query.getBindCount());
+        String sql = query.getSql();
+        Assertions.assertEquals(in(listDialect, range(7)).getSql(), sql);
+        Assertions.assertNotEquals(in(listDialect, range(9)).getSql(), sql);
+    }
+
+    @Test
+    void inOnForeignKeyEntitiesComparesTheirIds() {
+        List<PreSelectParent> parents = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            PreSelectParent parent = new PreSelectParent(500 + i);
+            parent.setChildren(new HashSet<>());
+            for (int j = 0; j < 2; j++) {
+                parent.getChildren().add(new PreSelectChild("in " + i + "." + j, parent));
+            }
+            parents.add(parent);
+        }
+        lcClient.save(parents).then().block();
+        List<PreSelectParent> selectedParents = Arrays.asList(parents.get(0), parents.get(2));
+
+        RelationalPersistentProperty parentProperty =
+                lcClient.getMappingContext()
+                        .getRequiredPersistentEntity(PreSelectChild.class)
+                        .getRequiredPersistentProperty("parent");
+        List<Object> values =
+                CriteriaSqlBuilder.toDatabaseValues(selectedParents, parentProperty, lcClient);
+        Assertions.assertEquals(
+                Arrays.asList(parents.get(0).getId(), parents.get(2).getId()), values);
+        Assertions.assertTrue(CriteriaSqlBuilder.isArrayIn(values, arrayDialect));
+
+        List<PreSelectChild> children =
+                SelectQuery.from(PreSelectChild.class, "child")
+                        .where(Criteria.property("child", "parent").in(selectedParents))
+                        .execute(lcClient)
+                        .collectList()
+                        .block();
+        Assertions.assertNotNull(children);
+        Assertions.assertEquals(4, children.size());
+        Set<Long> parentIds = new HashSet<>();
+        for (PreSelectChild child : children) {
+            parentIds.add(child.getParent().getId());
+        }
+        Assertions.assertEquals(
+                new HashSet<>(Arrays.asList(parents.get(0).getId(), parents.get(2).getId())),
+                parentIds);
+
+        // with 3 entities the values are padded, as ids would be
+        children =
+                SelectQuery.from(PreSelectChild.class, "child")
+                        .where(Criteria.property("child", "parent").in(parents))
+                        .execute(lcClient)
+                        .collectList()
+                        .block();
+        Assertions.assertNotNull(children);
+        Assertions.assertEquals(6, children.size());
+    }
+}
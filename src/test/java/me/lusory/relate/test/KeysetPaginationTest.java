@@ -0,0 +1,124 @@
+package me.lusory.relate.test;
+
+import me.lusory.relate.LcReactiveDataRelationalClient;
+import me.lusory.relate.query.KeysetPage;
+import me.lusory.relate.query.SelectQuery;
+import me.lusory.relate.query.criteria.Criteria;
+import me.lusory.relate.repository.LcR2dbcRepositoryFactoryBean;
+import me.lusory.relate.test.repo.model.ExampleEntity1;
+import me.lusory.relate.test.repo.model.PreSelectChild;
+import me.lusory.relate.test.repo.model.PreSelectParent;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@SpringBootTest(properties = {
+        "spring.r2dbc.url=r2dbc:h2:mem:///keysettestdb;DB_CLOSE_DELAY=-1;",
+        "spring.r2dbc.username=sa"
+})
+@SpringBootApplication(scanBasePackages = "me.lusory.relate.test")
+@EnableR2dbcRepositories(repositoryFactoryBeanClass = LcR2dbcRepositoryFactoryBean.class)
+public class KeysetPaginationTest {
+    @Autowired
+    private LcReactiveDataRelationalClient lcClient;
+
+    private static List<String> names(KeysetPage<ExampleEntity1> page) {
+        return page.getEntities().stream()
+                .map(ExampleEntity1::getTest)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void readConsecutivePagesWithTheSameQuery() {
+        List<ExampleEntity1> entities = new ArrayList<>();
+        // inserted in a different order than the sort order
+        for (int i = 6; i >= 0; i--) {
+            entities.add(ExampleEntity1.builder().test("keyset" + i).build());
+        }
+        lcClient.bulkInsert(entities).collectList().block();
+
+        SelectQuery<ExampleEntity1> query =
+                SelectQuery.from(ExampleEntity1.class, "e")
+                        .where(Criteria.property("e", "test").like("keyset%"))
+                        .orderBy("e", "test", true);
+
+        KeysetPage<ExampleEntity1> page1 = query.executePage(lcClient, 3).block();
+        Assertions.assertNotNull(page1);
+        Assertions.assertEquals(Arrays.asList("keyset0", "keyset1", "keyset2"), names(page1));
+        Assertions.assertTrue(page1.hasNextPage());
+
+        KeysetPage<ExampleEntity1> page2 =
+                query.after(page1.getNextPageToken()).executePage(lcClient, 3).block();
+        Assertions.assertNotNull(page2);
+        Assertions.assertEquals(Arrays.asList("keyset3", "keyset4", "keyset5"), names(page2));
+        Assertions.assertTrue(page2.hasNextPage());
+
+        KeysetPage<ExampleEntity1> page3 =
+                query.after(page2.getNextPageToken()).executePage(lcClient, 3).block();
+        Assertions.assertNotNull(page3);
+        Assertions.assertEquals(Collections.singletonList("keyset6"), names(page3));
+        Assertions.assertFalse(page3.hasNextPage());
+
+        // going back to the first page with the same query
+        KeysetPage<ExampleEntity1> first =
+                query.after((String) null).executePage(lcClient, 3).block();
+        Assertions.assertNotNull(first);
+        Assertions.assertEquals(names(page1), names(first));
+
+        // and to the second page again
+        KeysetPage<ExampleEntity1> second =
+                query.after(first.getNextPageToken()).executePage(lcClient, 3).block();
+        Assertions.assertNotNull(second);
+        Assertions.assertEquals(names(page2), names(second));
+    }
+
+    @Test
+    void readPagesWithACollectionJoin() {
+        List<PreSelectParent> parents = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            // ranks are not in the order of the ids
+            PreSelectParent parent = new PreSelectParent((i * 3) % 7);
+            parent.setChildren(new HashSet<>());
+            for (int j = 0; j < 2; j++) {
+                parent.getChildren().add(new PreSelectChild("child " + i + "." + j, parent));
+            }
+            parents.add(parent);
+        }
+        lcClient.save(parents).then().block();
+
+        SelectQuery<PreSelectParent> query =
+                SelectQuery.from(PreSelectParent.class, "parent")
+                        .join("parent", "children", "child")
+                        .orderBy("parent", "rank", true);
+
+        List<Integer> ranks = new ArrayList<>();
+        String token = null;
+        do {
+            KeysetPage<PreSelectParent> page = query.after(token).executePage(lcClient, 3).block();
+            Assertions.assertNotNull(page);
+            Assertions.assertTrue(page.getEntities().size() <= 3);
+            for (PreSelectParent parent : page.getEntities()) {
+                ranks.add(parent.getRank());
+                Assertions.assertEquals(2, parent.getChildren().size());
+            }
+            token = page.getNextPageToken();
+        } while (token != null);
+        Assertions.assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6), ranks);
+
+        // paging did not change the query: without a starting point, it returns all entities
+        List<PreSelectParent> all =
+                query.after((String) null).execute(lcClient).collectList().block();
+        Assertions.assertNotNull(all);
+        Assertions.assertEquals(7, all.size());
+    }
+}
@@ -0,0 +1,144 @@
+package me.lusory.relate.test;
+
+import io.r2dbc.spi.ConnectionFactory;
+import me.lusory.relate.LcReactiveDataRelationalClient;
+import me.lusory.relate.metrics.StatementEvent;
+import me.lusory.relate.metrics.StatementKind;
+import me.lusory.relate.metrics.StatementListener;
+import me.lusory.relate.query.SelectQuery;
+import me.lusory.relate.query.criteria.Criteria;
+import me.lusory.relate.repository.LcR2dbcRepositoryFactoryBean;
+import me.lusory.relate.test.repo.model.ExampleEntity1;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+@SpringBootTest(properties = {
+        "spring.r2dbc.url=r2dbc:h2:mem:///lazyloadtestdb;DB_CLOSE_DELAY=-1;",
+        "spring.r2dbc.username=sa"
+})
+@SpringBootApplication(scanBasePackages = "me.lusory.relate.test")
+@EnableR2dbcRepositories(repositoryFactoryBeanClass = LcR2dbcRepositoryFactoryBean.class)
+public class LazyLoadTest {
+    @Autowired
+    private LcReactiveDataRelationalClient lcClient;
+
+    @Autowired
+    private ConnectionFactory connectionFactory;
+
+    private long count(String prefix) {
+        return SelectQuery.from(ExampleEntity1.class, "e")
+                .where(Criteria.property("e", "test").like(prefix + "%"))
+                .executeCount(lcClient)
+                .block();
+    }
+
+    @Test
+    void lazyLoadManyEntitiesInTransaction() {
+        TransactionalOperator transaction =
+                TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory));
+
+        List<ExampleEntity1> loaded =
+                transaction.execute(
+                                tx -> {
+                                    // rows are never committed, so only the transaction sees them
+                                    tx.setRollbackOnly();
+                                    return lcClient.save(
+                                                    Flux.range(0, 50)
+                                                            .map(i -> ExampleEntity1.builder()
+                                                                    .test("lazy" + i)
+                                                                    .build()))
+                                            .map(saved -> ExampleEntity1.builder()
+                                                    .id(saved.getId())
+                                                    .build())
+                                            .collectList()
+                                            .flatMapMany(toLoad -> lcClient.lazyLoad(
+                                                    toLoad,
+                                                    lcClient.getMappingContext()
+                                                            .getRequiredPersistentEntity(
+                                                                    ExampleEntity1.class)));
+                                })
+                        .collectList()
+                        .block();
+
+        Assertions.assertNotNull(loaded);
+        Assertions.assertEquals(50, loaded.size());
+        Assertions.assertEquals(
+                50,
+                loaded.stream()
+                        .map(ExampleEntity1::getTest)
+                        .filter(test -> test != null && test.startsWith("lazy"))
+                        .collect(Collectors.toSet())
+                        .size());
+        // rolled back
+        Assertions.assertEquals(0L, count("lazy"));
+    }
+
+    @Test
+    void lazyLoadBunchesWithOneQueryEach() {
+        List<ExampleEntity1> saved =
+                lcClient.save(
+                                Flux.range(0, 1500)
+                                        .map(i -> ExampleEntity1.builder()
+                                                .test("bunch" + i)
+                                                .build()))
+                        .collectList()
+                        .block();
+        Assertions.assertNotNull(saved);
+        List<ExampleEntity1> toLoad = new ArrayList<>(saved.size());
+        for (ExampleEntity1 entity : saved) {
+            toLoad.add(ExampleEntity1.builder().id(entity.getId()).build());
+        }
+
+        List<StatementEvent> events = new CopyOnWriteArrayList<>();
+        StatementListener listener =
+                new StatementListener() {
+                    @Override
+                    public void afterStatement(StatementEvent event) {
+                        events.add(event);
+                    }
+                };
+        lcClient.addStatementListener(listener);
+        List<ExampleEntity1> loaded;
+        try {
+            loaded =
+                    lcClient.lazyLoad(
+                                    toLoad,
+                                    lcClient.getMappingContext()
+                                            .getRequiredPersistentEntity(ExampleEntity1.class))
+                            .collectList()
+                            .block();
+        } finally {
+            lcClient.removeStatementListener(listener);
+        }
+
+        Assertions.assertNotNull(loaded);
+        Assertions.assertEquals(1500, loaded.size());
+        Assertions.assertEquals(
+                1500,
+                loaded.stream()
+                        .map(ExampleEntity1::getTest)
+                        .filter(test -> test != null && test.startsWith("bunch"))
+                        .collect(Collectors.toSet())
+                        .size());
+        // bunches of at most 1000 ids
+        int bunchSize = Math.min(1000, lcClient.getSchemaDialect().getMaxBindParameters());
+        long selects =
+                events.stream()
+                        .filter(event -> event.getKind() == StatementKind.SELECT)
+                        .filter(event -> event.getEntityType() == ExampleEntity1.class)
+                        .count();
+        Assertions.assertEquals((1500 + bunchSize - 1) / bunchSize, selects);
+    }
+}
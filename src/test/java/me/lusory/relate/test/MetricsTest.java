@@ -0,0 +1,227 @@
+package me.lusory.relate.test;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import me.lusory.relate.LcReactiveDataRelationalClient;
+import me.lusory.relate.metrics.MicrometerRelateMetrics;
+import me.lusory.relate.metrics.RelateMetrics;
+import me.lusory.relate.metrics.StatementKind;
+import me.lusory.relate.query.SelectQuery;
+import me.lusory.relate.query.SqlQuery;
+import me.lusory.relate.query.criteria.Criteria;
+import me.lusory.relate.repository.LcR2dbcRepositoryFactoryBean;
+import me.lusory.relate.test.repo.model.ExampleEntity1;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+import org.springframework.lang.Nullable;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+@SpringBootTest(properties = {
+        "spring.r2dbc.url=r2dbc:h2:mem:///metricstestdb;DB_CLOSE_DELAY=-1;",
+        "spring.r2dbc.username=sa"
+})
+@SpringBootApplication(scanBasePackages = "me.lusory.relate.test")
+@EnableR2dbcRepositories(repositoryFactoryBeanClass = LcR2dbcRepositoryFactoryBean.class)
+public class MetricsTest {
+    @Autowired
+    private LcReactiveDataRelationalClient lcClient;
+
+    private static final class Statement {
+        private final StatementKind kind;
+        private final Class<?> entityType;
+        private final long durationNanos;
+        private final long rows;
+        private final boolean success;
+
+        private Statement(
+                StatementKind kind,
+                @Nullable Class<?> entityType,
+                long durationNanos,
+                long rows,
+                boolean success) {
+            this.kind = kind;
+            this.entityType = entityType;
+            this.durationNanos = durationNanos;
+            this.rows = rows;
+            this.success = success;
+        }
+    }
+
+    private static final class RecordingMetrics implements RelateMetrics {
+        private final List<Statement> statements = new CopyOnWriteArrayList<>();
+        private final List<Long> steps = new CopyOnWriteArrayList<>();
+        private final List<int[]> operations = new CopyOnWriteArrayList<>();
+        private final List<Boolean> selects = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void statementExecuted(
+                StatementKind kind,
+                @Nullable Class<?> entityType,
+                long durationNanos,
+                long rows,
+                boolean success) {
+            statements.add(new Statement(kind, entityType, durationNanos, rows, success));
+        }
+
+        @Override
+        public void selectExecuted(Class<?> entityType, boolean preSelect) {
+            if (entityType == ExampleEntity1.class) {
+                selects.add(preSelect);
+            }
+        }
+
+        @Override
+        public void operationStepExecuted(long durationNanos) {
+            steps.add(durationNanos);
+        }
+
+        @Override
+        public void operationExecuted(
+                int steps, int statements, long durationNanos, boolean success) {
+            operations.add(new int[] {steps, statements, success ? 1 : 0});
+        }
+
+        private List<Statement> statements(StatementKind kind) {
+            return statements.stream()
+                    .filter(statement -> statement.kind == kind)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    @AfterEach
+    void removeMetrics() {
+        lcClient.setMetrics(RelateMetrics.NONE);
+    }
+
+    private void saveAndSelect(String prefix) {
+        lcClient.save(
+                        Flux.range(0, 3)
+                                .map(i -> ExampleEntity1.builder().test(prefix + i).build()))
+                .then()
+                .block();
+        List<ExampleEntity1> selected =
+                SelectQuery.from(ExampleEntity1.class, "e")
+                        .where(Criteria.property("e", "test").like(prefix + "%"))
+                        .execute(lcClient)
+                        .collectList()
+                        .block();
+        Assertions.assertNotNull(selected);
+        Assertions.assertEquals(3, selected.size());
+    }
+
+    @Test
+    void statementsAndStepsAreMeasured() {
+        RecordingMetrics metrics = new RecordingMetrics();
+        lcClient.setMetrics(metrics);
+
+        saveAndSelect("recorded");
+
+        List<Statement> inserts = metrics.statements(StatementKind.INSERT);
+        Assertions.assertFalse(inserts.isEmpty());
+        long insertedRows = 0;
+        for (Statement insert : inserts) {
+            Assertions.assertEquals(ExampleEntity1.class, insert.entityType);
+            Assertions.assertTrue(insert.success);
+            Assertions.assertTrue(insert.durationNanos > 0);
+            insertedRows += insert.rows;
+        }
+        Assertions.assertEquals(3, insertedRows);
+
+        List<Statement> selects = metrics.statements(StatementKind.SELECT);
+        Assertions.assertEquals(1, selects.size());
+        Assertions.assertEquals(ExampleEntity1.class, selects.get(0).entityType);
+        Assertions.assertEquals(3, selects.get(0).rows);
+        Assertions.assertTrue(selects.get(0).success);
+        Assertions.assertEquals(1, metrics.selects.size());
+        Assertions.assertFalse(metrics.selects.get(0));
+
+        // the save is a single operation, with a measure for each of its steps
+        Assertions.assertEquals(1, metrics.operations.size());
+        int[] operation = metrics.operations.get(0);
+        Assertions.assertTrue(operation[0] > 0);
+        Assertions.assertEquals(operation[0], metrics.steps.size());
+        Assertions.assertEquals(inserts.size(), operation[1]);
+        Assertions.assertEquals(1, operation[2]);
+        for (long step : metrics.steps) {
+            Assertions.assertTrue(step > 0);
+        }
+    }
+
+    @Test
+    void failedStatementIsMeasured() {
+        RecordingMetrics metrics = new RecordingMetrics();
+        lcClient.setMetrics(metrics);
+        String sql = "SELECT * FROM missingTable";
+
+        Assertions.assertThrows(
+                Exception.class,
+                () ->
+                        SqlQuery.observe(
+                                        lcClient,
+                                        lcClient.getSpringClient().sql(sql),
+                                        StatementKind.SELECT,
+                                        ExampleEntity1.class,
+                                        sql,
+                                        0)
+                                .fetch()
+                                .all()
+                                .collectList()
+                                .block());
+
+        Assertions.assertEquals(1, metrics.statements.size());
+        Assertions.assertEquals(StatementKind.SELECT, metrics.statements.get(0).kind);
+        Assertions.assertEquals(ExampleEntity1.class, metrics.statements.get(0).entityType);
+        Assertions.assertFalse(metrics.statements.get(0).success);
+    }
+
+    @Test
+    void micrometerMetersAreRegistered() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        lcClient.setMetrics(new MicrometerRelateMetrics(registry));
+
+        saveAndSelect("micrometer");
+
+        Timer inserts =
+                registry.find("relate.statements")
+                        .tag("kind", "insert")
+                        .tag("entity", "ExampleEntity1")
+                        .tag("outcome", "success")
+                        .timer();
+        Assertions.assertNotNull(inserts);
+        Assertions.assertTrue(inserts.count() > 0);
+        Timer selects =
+                registry.find("relate.statements")
+                        .tag("kind", "select")
+                        .tag("entity", "ExampleEntity1")
+                        .timer();
+        Assertions.assertNotNull(selects);
+        Assertions.assertEquals(1, selects.count());
+        Counter selectCount =
+                registry.find("relate.selects")
+                        .tag("entity", "ExampleEntity1")
+                        .tag("pre_select", "false")
+                        .counter();
+        Assertions.assertNotNull(selectCount);
+        Assertions.assertEquals(1d, selectCount.count());
+        Assertions.assertNotNull(registry.find("relate.statements.rows").summary());
+
+        Timer operations = registry.find("relate.operations").tag("outcome", "success").timer();
+        Assertions.assertNotNull(operations);
+        Assertions.assertEquals(1, operations.count());
+        Timer steps = registry.find("relate.operations.steps").timer();
+        Assertions.assertNotNull(steps);
+        Assertions.assertTrue(steps.count() > 0);
+        Assertions.assertNotNull(registry.find("relate.operations.step.count").summary());
+        Assertions.assertNotNull(registry.find("relate.operations.statements").summary());
+    }
+}
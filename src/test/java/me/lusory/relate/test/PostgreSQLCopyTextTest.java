@@ -0,0 +1,63 @@
+package me.lusory.relate.test;
+
+import me.lusory.relate.schema.SchemaException;
+import me.lusory.relate.schema.dialect.impl.PostgreSQLCopyText;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class PostgreSQLCopyTextTest {
+
+    private static String row(Object... values) {
+        return PostgreSQLCopyText.toRow(new ArrayList<>(Arrays.asList(values)));
+    }
+
+    @Test
+    void simpleValues() {
+        Assertions.assertEquals(
+                "1\tt\t\\N\ta\\tb\\nc\\\\d\n", row(1L, Boolean.TRUE, null, "a\tb\nc\\d"));
+    }
+
+    @Test
+    void bytea() {
+        Assertions.assertEquals(
+                "\\\\x0102ff\n", row((Object) new byte[]{1, 2, (byte) 0xFF}));
+    }
+
+    @Test
+    void arrays() {
+        Assertions.assertEquals("{\"1\",\"2\"}\n", row((Object) new int[]{1, 2}));
+        // quotes and backslashes are escaped in the array, then backslashes for COPY
+        Assertions.assertEquals(
+                "{\"a\\\\\"b\",NULL,\"c\\\\\\\\d\"}\n",
+                row((Object) new String[]{"a\"b", null, "c\\d"}));
+        Assertions.assertEquals(
+                "{{\"1\",\"2\"},{\"3\",\"4\"}}\n", row((Object) new int[][]{{1, 2}, {3, 4}}));
+        Assertions.assertEquals("{\"x\"}\n", row(Collections.singletonList("x")));
+    }
+
+    @Test
+    void zonedDateTime() {
+        ZonedDateTime date =
+                ZonedDateTime.of(LocalDateTime.of(2020, 1, 2, 3, 4, 5), ZoneId.of("Europe/Paris"));
+        Assertions.assertEquals("2020-01-02T03:04:05+01:00\n", row(date));
+    }
+
+    @Test
+    void unsupportedTypes() {
+        Assertions.assertTrue(PostgreSQLCopyText.isSupported(long.class));
+        Assertions.assertTrue(PostgreSQLCopyText.isSupported(String[].class));
+        Assertions.assertTrue(PostgreSQLCopyText.isSupported(byte[].class));
+        Assertions.assertFalse(PostgreSQLCopyText.isSupported(Object.class));
+        Assertions.assertFalse(PostgreSQLCopyText.isSupported(List.class));
+        Assertions.assertFalse(PostgreSQLCopyText.isSupported(Object[].class));
+        Assertions.assertThrows(SchemaException.class, () -> row(new Object()));
+    }
+}
@@ -0,0 +1,108 @@
+package me.lusory.relate.test;
+
+import me.lusory.relate.LcReactiveDataRelationalClient;
+import me.lusory.relate.query.SelectQuery;
+import me.lusory.relate.query.criteria.Criteria;
+import me.lusory.relate.repository.LcR2dbcRepositoryFactoryBean;
+import me.lusory.relate.test.repo.model.PreSelectChild;
+import me.lusory.relate.test.repo.model.PreSelectParent;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+@SpringBootTest(properties = {
+        "spring.r2dbc.url=r2dbc:h2:mem:///preselecttestdb;DB_CLOSE_DELAY=-1;",
+        "spring.r2dbc.username=sa"
+})
+@SpringBootApplication(scanBasePackages = "me.lusory.relate.test")
+@EnableR2dbcRepositories(repositoryFactoryBeanClass = LcR2dbcRepositoryFactoryBean.class)
+public class PreSelectTest {
+    @Autowired
+    private LcReactiveDataRelationalClient lcClient;
+
+    @Test
+    void batchesKeepTheOrderOfPreSelectedIds() {
+        List<PreSelectParent> parents = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            // ranks are not in the order of the ids
+            PreSelectParent parent = new PreSelectParent((i * 7) % 20);
+            parent.setChildren(new HashSet<>());
+            for (int j = 0; j < 3; j++) {
+                parent.getChildren().add(new PreSelectChild("child " + i + "." + j, parent));
+            }
+            parents.add(parent);
+        }
+        lcClient.save(parents).then().block();
+
+        // the limit on a join with a collection needs the ids to be pre-selected
+        List<PreSelectParent> result =
+                SelectQuery.from(PreSelectParent.class, "parent")
+                        .join("parent", "children", "child")
+                        .where(Criteria.property("parent", "rank").lessThan(100))
+                        .orderBy("parent", "rank", false)
+                        .limit(0, 15)
+                        .preSelectBatchSize(4)
+                        .execute(lcClient)
+                        .collectList()
+                        .block();
+
+        Assertions.assertNotNull(result);
+        Assertions.assertEquals(15, result.size());
+        for (int i = 0; i < 15; i++) {
+            PreSelectParent parent = result.get(i);
+            Assertions.assertEquals(19 - i, parent.getRank());
+            Assertions.assertEquals(3, parent.getChildren().size());
+            for (PreSelectChild child : parent.getChildren()) {
+                Assertions.assertEquals(parent.getId(), child.getParent().getId());
+            }
+        }
+    }
+
+    @Test
+    void rootWithRowsSpreadOverTheBatchIsEmittedOnce() {
+        List<PreSelectParent> parents = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            PreSelectParent parent = new PreSelectParent(100 + i);
+            parent.setChildren(new HashSet<>());
+            parents.add(parent);
+        }
+        lcClient.save(parents).then().block();
+        // children are inserted round-robin, so the rows of a parent are not consecutive
+        List<PreSelectChild> children = new ArrayList<>();
+        for (int j = 0; j < 5; j++) {
+            for (int i = 0; i < parents.size(); i++) {
+                children.add(new PreSelectChild("spread " + i + "." + j, parents.get(i)));
+            }
+        }
+        lcClient.save(children).then().block();
+
+        List<PreSelectParent> result =
+                SelectQuery.from(PreSelectParent.class, "parent")
+                        .join("parent", "children", "child")
+                        .where(Criteria.property("parent", "rank").greaterOrEqualTo(100))
+                        .orderBy("parent", "rank", true)
+                        .limit(0, 5)
+                        .preSelectBatchSize(2)
+                        .execute(lcClient)
+                        .collectList()
+                        .block();
+
+        Assertions.assertNotNull(result);
+        Assertions.assertEquals(5, result.size());
+        for (int i = 0; i < 5; i++) {
+            PreSelectParent parent = result.get(i);
+            Assertions.assertEquals(100 + i, parent.getRank());
+            Assertions.assertEquals(5, parent.getChildren().size());
+            for (PreSelectChild child : parent.getChildren()) {
+                Assertions.assertTrue(child.getName().startsWith("spread " + i + "."));
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package me.lusory.relate.test;
+
+import me.lusory.relate.LcReactiveDataRelationalClient;
+import me.lusory.relate.query.SelectQuery;
+import me.lusory.relate.query.criteria.Criteria;
+import me.lusory.relate.repository.LcR2dbcRepositoryFactoryBean;
+import me.lusory.relate.test.repo.model.ExampleEntity1;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+import reactor.core.publisher.Flux;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@SpringBootTest(properties = {
+        "spring.r2dbc.url=r2dbc:h2:mem:///projectiontestdb;DB_CLOSE_DELAY=-1;",
+        "spring.r2dbc.username=sa"
+})
+@SpringBootApplication(scanBasePackages = "me.lusory.relate.test")
+@EnableR2dbcRepositories(repositoryFactoryBeanClass = LcR2dbcRepositoryFactoryBean.class)
+public class ProjectionTest {
+    @Autowired
+    private LcReactiveDataRelationalClient lcClient;
+
+    public interface TestView {
+        String getTest();
+
+        default String getDescription() {
+            return "test " + getTest();
+        }
+
+        default String withSuffix(String suffix) {
+            return getTest() + suffix;
+        }
+    }
+
+    @BeforeEach
+    void insertEntities() {
+        if (query().execute(lcClient).count().block() > 0) {
+            return;
+        }
+        lcClient.save(
+                        Flux.just("projection1", "projection2")
+                                .map(t -> ExampleEntity1.builder().test(t).build()))
+                .then()
+                .block();
+    }
+
+    private static SelectQuery<ExampleEntity1> query() {
+        return SelectQuery.from(ExampleEntity1.class, "e")
+                .where(Criteria.property("e", "test").like("projection%"))
+                .orderBy("e", "test", true);
+    }
+
+    @Test
+    void resultNameIsPartOfThePlan() {
+        @SuppressWarnings("rawtypes")
+        List<Map> first =
+                query().select("e", "test", "first")
+                        .executeProjection(lcClient, Map.class)
+                        .collectList()
+                        .block();
+        @SuppressWarnings("rawtypes")
+        List<Map> second =
+                query().select("e", "test", "second")
+                        .executeProjection(lcClient, Map.class)
+                        .collectList()
+                        .block();
+
+        Assertions.assertNotNull(first);
+        Assertions.assertNotNull(second);
+        Assertions.assertEquals("projection1", first.get(0).get("first"));
+        Assertions.assertEquals("projection1", second.get(0).get("second"));
+        Assertions.assertFalse(second.get(0).containsKey("first"));
+    }
+
+    @Test
+    void interfaceProjection() {
+        List<TestView> views =
+                query().select("e", "test")
+                        .executeProjection(lcClient, TestView.class)
+                        .collectList()
+                        .block();
+        List<TestView> again =
+                query().select("e", "test")
+                        .executeProjection(lcClient, TestView.class)
+                        .collectList()
+                        .block();
+
+        Assertions.assertNotNull(views);
+        Assertions.assertNotNull(again);
+        Assertions.assertEquals(2, views.size());
+        TestView view = views.get(0);
+        Assertions.assertEquals("projection1", view.getTest());
+
+        // default methods
+        Assertions.assertEquals("test projection1", view.getDescription());
+        Assertions.assertEquals("projection1!", view.withSuffix("!"));
+
+        // equality by value
+        Assertions.assertEquals(view, again.get(0));
+        Assertions.assertEquals(view.hashCode(), again.get(0).hashCode());
+        Assertions.assertNotEquals(view, views.get(1));
+        Assertions.assertNotEquals(view, "projection1");
+        Set<TestView> set = new HashSet<>(views);
+        set.addAll(again);
+        Assertions.assertEquals(2, set.size());
+
+        Assertions.assertEquals("TestView{test=projection1}", view.toString());
+    }
+}
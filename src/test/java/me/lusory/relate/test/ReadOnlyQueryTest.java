@@ -0,0 +1,77 @@
+package me.lusory.relate.test;
+
+import me.lusory.relate.LcReactiveDataRelationalClient;
+import me.lusory.relate.model.SharedEntityCache;
+import me.lusory.relate.model.StatefulEntity;
+import me.lusory.relate.query.SelectQuery;
+import me.lusory.relate.query.criteria.Criteria;
+import me.lusory.relate.repository.LcR2dbcRepositoryFactoryBean;
+import me.lusory.relate.test.repo.ExampleEntityRepository;
+import me.lusory.relate.test.repo.model.ExampleEntity1;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+
+import java.time.Duration;
+import java.util.List;
+
+@SpringBootTest(properties = {
+        "spring.r2dbc.url=r2dbc:h2:mem:///readonlytestdb;DB_CLOSE_DELAY=-1;",
+        "spring.r2dbc.username=sa"
+})
+@SpringBootApplication(scanBasePackages = "me.lusory.relate.test")
+@EnableR2dbcRepositories(repositoryFactoryBeanClass = LcR2dbcRepositoryFactoryBean.class)
+public class ReadOnlyQueryTest {
+    @Autowired
+    private LcReactiveDataRelationalClient lcClient;
+
+    @Autowired
+    private ExampleEntityRepository repository;
+
+    private List<ExampleEntity1> select(String prefix, boolean readOnly) {
+        SelectQuery<ExampleEntity1> query =
+                SelectQuery.from(ExampleEntity1.class, "e")
+                        .where(Criteria.property("e", "test").like(prefix + "%"));
+        if (readOnly) {
+            query.readOnly();
+        }
+        return query.execute(lcClient).collectList().block();
+    }
+
+    @Test
+    void readOnlyEntityHasNoState() {
+        repository.save(ExampleEntity1.builder().test("state").build()).block();
+
+        List<ExampleEntity1> entities = select("state", true);
+
+        Assertions.assertNotNull(entities);
+        Assertions.assertEquals(1, entities.size());
+        ExampleEntity1 entity = entities.get(0);
+        Assertions.assertEquals("state", entity.getTest());
+        if (entity instanceof StatefulEntity) {
+            Assertions.assertNull(((StatefulEntity) entity)._rlGetState());
+        }
+        // not tracked, but still usable
+        entity.setTest("modified");
+        Assertions.assertEquals("modified", entity.getTest());
+    }
+
+    @Test
+    void readOnlyEntitiesAreNotCached() {
+        SharedEntityCache cache = lcClient.getSharedCache();
+        cache.configure(ExampleEntity1.class, 100, Duration.ofMinutes(1));
+        repository.save(ExampleEntity1.builder().test("cache1").build()).block();
+        repository.save(ExampleEntity1.builder().test("cache2").build()).block();
+        cache.invalidateAll();
+
+        Assertions.assertEquals(2, select("cache", true).size());
+        Assertions.assertEquals(0, cache.size(ExampleEntity1.class));
+
+        // a tracked query keeps the values
+        Assertions.assertEquals(2, select("cache", false).size());
+        Assertions.assertEquals(2, cache.size(ExampleEntity1.class));
+    }
+}
@@ -0,0 +1,72 @@
+package me.lusory.relate.test;
+
+import me.lusory.relate.LcReactiveDataRelationalClient;
+import me.lusory.relate.query.SelectQuery;
+import me.lusory.relate.query.criteria.Criteria;
+import me.lusory.relate.repository.LcR2dbcRepositoryFactoryBean;
+import me.lusory.relate.test.repo.model.ExampleEntity1;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+@SpringBootTest(properties = {
+        "spring.r2dbc.url=r2dbc:h2:mem:///savepublishertestdb;DB_CLOSE_DELAY=-1;",
+        "spring.r2dbc.username=sa"
+})
+@SpringBootApplication(scanBasePackages = "me.lusory.relate.test")
+@EnableR2dbcRepositories(repositoryFactoryBeanClass = LcR2dbcRepositoryFactoryBean.class)
+public class SavePublisherTest {
+    @Autowired
+    private LcReactiveDataRelationalClient lcClient;
+
+    private static Flux<ExampleEntity1> entities(String prefix, int count) {
+        return Flux.range(0, count).map(i -> ExampleEntity1.builder().test(prefix + i).build());
+    }
+
+    private long count(String prefix) {
+        return SelectQuery.from(ExampleEntity1.class, "e")
+                .where(Criteria.property("e", "test").like(prefix + "%"))
+                .executeCount(lcClient)
+                .block();
+    }
+
+    @Test
+    void saveInSingleOperation() {
+        List<ExampleEntity1> saved = lcClient.save(entities("single", 5)).collectList().block();
+
+        Assertions.assertNotNull(saved);
+        Assertions.assertEquals(5, saved.size());
+        Assertions.assertTrue(saved.stream().allMatch(e -> e.getId() > 0));
+        Assertions.assertEquals(5L, count("single"));
+    }
+
+    @Test
+    void saveByBunch() {
+        List<ExampleEntity1> saved =
+                lcClient.save(entities("bunch", 25), 10, 2).collectList().block();
+
+        Assertions.assertNotNull(saved);
+        // emitted in the same order as received
+        for (int i = 0; i < 25; i++) {
+            Assertions.assertEquals("bunch" + i, saved.get(i).getTest());
+        }
+        Assertions.assertEquals(
+                25, saved.stream().map(ExampleEntity1::getId).collect(Collectors.toSet()).size());
+        Assertions.assertEquals(25L, count("bunch"));
+    }
+
+    @Test
+    void invalidBunching() {
+        Assertions.assertThrows(
+                IllegalArgumentException.class, () -> lcClient.save(entities("invalid", 1), 0, 1));
+        Assertions.assertThrows(
+                IllegalArgumentException.class, () -> lcClient.save(entities("invalid", 1), 1, 0));
+    }
+}
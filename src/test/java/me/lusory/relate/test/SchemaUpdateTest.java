@@ -0,0 +1,98 @@
+package me.lusory.relate.test;
+
+import me.lusory.relate.LcReactiveDataRelationalClient;
+import me.lusory.relate.metrics.StatementEvent;
+import me.lusory.relate.metrics.StatementKind;
+import me.lusory.relate.metrics.StatementListener;
+import me.lusory.relate.repository.LcR2dbcRepositoryFactoryBean;
+import me.lusory.relate.schema.RelationalDatabaseSchema;
+import me.lusory.relate.schema.dialect.RelationalDatabaseSchemaDialect;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+@SpringBootTest(properties = {
+        "spring.r2dbc.url=r2dbc:h2:mem:///schemaupdatetestdb;DB_CLOSE_DELAY=-1;",
+        "spring.r2dbc.username=sa"
+})
+@SpringBootApplication(scanBasePackages = "me.lusory.relate.test")
+@EnableR2dbcRepositories(repositoryFactoryBeanClass = LcR2dbcRepositoryFactoryBean.class)
+public class SchemaUpdateTest {
+    @Autowired
+    private LcReactiveDataRelationalClient lcClient;
+
+    /**
+     * Return the statements the update of the schema would execute.
+     */
+    private String updateStatements() {
+        RelationalDatabaseSchemaDialect dialect = lcClient.getSchemaDialect();
+        RelationalDatabaseSchema existing = dialect.readSchemaContent(lcClient).block();
+        Assertions.assertNotNull(existing);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintStream print = new PrintStream(out, true);
+        dialect.updateSchemaContent(lcClient.buildSchemaFromEntities(), existing).print(print);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private void execute(String sql) {
+        lcClient.getSpringClient().sql(sql).then().block();
+    }
+
+    @Test
+    void createdSchemaIsUpToDate() {
+        Assertions.assertEquals("", updateStatements());
+    }
+
+    @Test
+    void missingElementsAreCreated() {
+        execute("DROP INDEX schemaUpdateLabel");
+        execute("ALTER TABLE schemaUpdateEntity DROP COLUMN label");
+        execute("DROP SEQUENCE schemaUpdateSeq");
+
+        String statements = updateStatements().toLowerCase(Locale.ROOT);
+        Assertions.assertTrue(statements.contains("alter table schemaupdateentity add"));
+        Assertions.assertTrue(statements.contains("create index schemaupdatelabel"));
+        Assertions.assertTrue(statements.contains("create sequence schemaupdateseq"));
+        // nothing else
+        Assertions.assertEquals(3, statements.split(";").length - 1);
+
+        lcClient.updateSchemaContent(lcClient.buildSchemaFromEntities()).block();
+
+        Assertions.assertEquals("", updateStatements());
+    }
+
+    @Test
+    void readingTheSchemaIsObserved() {
+        List<StatementEvent> events = new CopyOnWriteArrayList<>();
+        StatementListener listener =
+                new StatementListener() {
+                    @Override
+                    public void afterStatement(StatementEvent event) {
+                        events.add(event);
+                    }
+                };
+        lcClient.addStatementListener(listener);
+        try {
+            lcClient.getSchemaDialect().readSchemaContent(lcClient).block();
+        } finally {
+            lcClient.removeStatementListener(listener);
+        }
+
+        // columns, indexes and sequences
+        Assertions.assertEquals(3, events.size());
+        for (StatementEvent event : events) {
+            Assertions.assertEquals(StatementKind.SCHEMA, event.getKind());
+            Assertions.assertTrue(event.getSql().contains("INFORMATION_SCHEMA"));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package me.lusory.relate.test;
+
+import me.lusory.relate.LcReactiveDataRelationalClient;
+import me.lusory.relate.query.SelectQuery;
+import me.lusory.relate.query.criteria.Criteria;
+import me.lusory.relate.repository.LcR2dbcRepositoryFactoryBean;
+import me.lusory.relate.test.repo.model.ExampleEntity1;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+
+@SpringBootTest(properties = {
+        "spring.r2dbc.url=r2dbc:h2:mem:///selectdemandtestdb;DB_CLOSE_DELAY=-1;",
+        "spring.r2dbc.username=sa"
+})
+@SpringBootApplication(scanBasePackages = "me.lusory.relate.test")
+@EnableR2dbcRepositories(repositoryFactoryBeanClass = LcR2dbcRepositoryFactoryBean.class)
+public class SelectDemandTest {
+    private static final int COUNT = 10;
+
+    @Autowired
+    private LcReactiveDataRelationalClient lcClient;
+
+    @BeforeEach
+    void insertEntities() {
+        if (select().count().block() == COUNT) {
+            return;
+        }
+        lcClient.save(
+                        Flux.range(0, COUNT)
+                                .map(i -> ExampleEntity1.builder().test("demand" + i).build()))
+                .then()
+                .block();
+    }
+
+    private Flux<ExampleEntity1> select() {
+        return SelectQuery.from(ExampleEntity1.class, "e")
+                .where(Criteria.property("e", "test").like("demand%"))
+                .orderBy("e", "test", true)
+                .execute(lcClient);
+    }
+
+    @Test
+    void entitiesAreEmittedOnDemand() {
+        StepVerifier.create(select(), 0)
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(100))
+                .thenRequest(1)
+                .expectNextMatches(e -> "demand0".equals(e.getTest()))
+                .expectNoEvent(Duration.ofMillis(100))
+                .thenRequest(2)
+                .expectNextMatches(e -> "demand1".equals(e.getTest()))
+                .expectNextMatches(e -> "demand2".equals(e.getTest()))
+                .thenCancel()
+                .verify(Duration.ofSeconds(10));
+    }
+
+    @Test
+    void cancelledQueryReleasesItsConnection() {
+        for (int i = 0; i < 20; i++) {
+            Assertions.assertEquals(2, select().take(2).count().block());
+        }
+        Assertions.assertEquals(COUNT, select().count().block());
+    }
+
+    @Test
+    void lastEntityIsEmittedAtCompletion() {
+        List<ExampleEntity1> entities = select().collectList().block();
+
+        Assertions.assertNotNull(entities);
+        Assertions.assertEquals(COUNT, entities.size());
+        Assertions.assertEquals("demand9", entities.get(COUNT - 1).getTest());
+
+        StepVerifier.create(select().skip(COUNT - 1))
+                .expectNextMatches(e -> "demand9".equals(e.getTest()))
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,102 @@
+package me.lusory.relate.test;
+
+import me.lusory.relate.LcReactiveDataRelationalClient;
+import me.lusory.relate.query.SelectPlanCache;
+import me.lusory.relate.query.SelectQuery;
+import me.lusory.relate.query.criteria.Criteria;
+import me.lusory.relate.repository.LcR2dbcRepositoryFactoryBean;
+import me.lusory.relate.test.repo.model.ExampleEntity1;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+@SpringBootTest(properties = {
+        "spring.r2dbc.url=r2dbc:h2:mem:///plancachetestdb;DB_CLOSE_DELAY=-1;",
+        "spring.r2dbc.username=sa"
+})
+@SpringBootApplication(scanBasePackages = "me.lusory.relate.test")
+@EnableR2dbcRepositories(repositoryFactoryBeanClass = LcR2dbcRepositoryFactoryBean.class)
+public class SelectPlanCacheTest {
+    @Autowired
+    private LcReactiveDataRelationalClient lcClient;
+
+    @BeforeEach
+    void clearCache() {
+        lcClient.getSelectPlanCache().clear();
+    }
+
+    private void insertPages() {
+        if (SelectQuery.from(ExampleEntity1.class, "e")
+                .where(Criteria.property("e", "test").like("page%"))
+                .executeCount(lcClient)
+                .block() > 0) {
+            return;
+        }
+        List<ExampleEntity1> entities = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            entities.add(ExampleEntity1.builder().test("page" + i).build());
+        }
+        lcClient.bulkInsert(entities).collectList().block();
+    }
+
+    private List<String> page(long offset) {
+        return SelectQuery.from(ExampleEntity1.class, "e")
+                .where(Criteria.property("e", "test").like("page%"))
+                .orderBy("e", "test", true)
+                .limit(offset, 3)
+                .execute(lcClient)
+                .map(ExampleEntity1::getTest)
+                .collectList()
+                .block();
+    }
+
+    @Test
+    void pagesUseTheSamePlan() {
+        insertPages();
+        SelectPlanCache cache = lcClient.getSelectPlanCache();
+        cache.clear();
+        long hits = cache.getHitCount();
+        long misses = cache.getMissCount();
+
+        Assertions.assertEquals(Arrays.asList("page0", "page1", "page2"), page(0));
+        Assertions.assertEquals(Arrays.asList("page3", "page4", "page5"), page(3));
+        Assertions.assertEquals(Collections.singletonList("page9"), page(9));
+
+        Assertions.assertEquals(1, cache.size());
+        Assertions.assertEquals(misses + 1, cache.getMissCount());
+        Assertions.assertEquals(hits + 2, cache.getHitCount());
+    }
+
+    @Test
+    void leastRecentlyUsedPlanIsEvicted() {
+        SelectPlanCache cache = lcClient.getSelectPlanCache();
+        int maximumSize = cache.getMaximumSize();
+        long evictions = cache.getEvictionCount();
+
+        // the alias is part of the shape of the query, each alias gives a new plan
+        for (int i = 0; i < maximumSize + 10; i++) {
+            SelectQuery.from(ExampleEntity1.class, "hot").execute(lcClient).collectList().block();
+            SelectQuery.from(ExampleEntity1.class, "e" + i).execute(lcClient).collectList().block();
+        }
+
+        Assertions.assertEquals(maximumSize, cache.size());
+        Assertions.assertEquals(evictions + 11, cache.getEvictionCount());
+
+        // the plan used at each iteration is still cached, the first ones are not
+        long hits = cache.getHitCount();
+        SelectQuery.from(ExampleEntity1.class, "hot").execute(lcClient).collectList().block();
+        Assertions.assertEquals(hits + 1, cache.getHitCount());
+        long misses = cache.getMissCount();
+        SelectQuery.from(ExampleEntity1.class, "e0").execute(lcClient).collectList().block();
+        Assertions.assertEquals(misses + 1, cache.getMissCount());
+    }
+}
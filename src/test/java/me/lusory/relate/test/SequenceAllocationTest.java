@@ -0,0 +1,179 @@
+package me.lusory.relate.test;
+
+import me.lusory.relate.LcReactiveDataRelationalClient;
+import me.lusory.relate.metrics.StatementEvent;
+import me.lusory.relate.metrics.StatementKind;
+import me.lusory.relate.metrics.StatementListener;
+import me.lusory.relate.query.SelectQuery;
+import me.lusory.relate.repository.LcR2dbcRepositoryFactoryBean;
+import me.lusory.relate.schema.RelationalDatabaseSchema;
+import me.lusory.relate.schema.SchemaException;
+import me.lusory.relate.schema.Sequence;
+import me.lusory.relate.schema.dialect.RelationalDatabaseSchemaDialect;
+import me.lusory.relate.test.repo.model.PooledEntity;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+@SpringBootTest(properties = {
+        "spring.r2dbc.url=r2dbc:h2:mem:///sequenceallocationtestdb;DB_CLOSE_DELAY=-1;",
+        "spring.r2dbc.username=sa"
+})
+@SpringBootApplication(scanBasePackages = "me.lusory.relate.test")
+@EnableR2dbcRepositories(repositoryFactoryBeanClass = LcR2dbcRepositoryFactoryBean.class)
+public class SequenceAllocationTest {
+    @Autowired
+    private LcReactiveDataRelationalClient lcClient;
+
+    private void createSequence(String name, int incrementBy) {
+        lcClient.getSpringClient()
+                .sql("CREATE SEQUENCE " + name + " START WITH 1 INCREMENT BY " + incrementBy)
+                .then()
+                .block();
+    }
+
+    private long[] allocate(String sequence, int count) {
+        long[] values = lcClient.getSequenceAllocator().allocate(sequence, 10, count).block();
+        Assertions.assertNotNull(values);
+        Assertions.assertEquals(count, values.length);
+        return values;
+    }
+
+    @Test
+    void valuesContinueAcrossBlocks() {
+        createSequence("BOUNDARY_SEQ", 10);
+
+        Assertions.assertArrayEquals(new long[] {1, 2, 3, 4, 5, 6, 7}, allocate("BOUNDARY_SEQ", 7));
+        // the end of the first block, then the start of the second one
+        Assertions.assertArrayEquals(
+                new long[] {8, 9, 10, 11, 12, 13, 14}, allocate("BOUNDARY_SEQ", 7));
+        // more than a block at once
+        long[] values = allocate("BOUNDARY_SEQ", 25);
+        for (int i = 0; i < values.length; i++) {
+            Assertions.assertEquals(15 + i, values[i]);
+        }
+    }
+
+    @Test
+    void concurrentAllocationsDoNotShareValues() {
+        createSequence("CONCURRENT_SEQ", 10);
+
+        List<long[]> allocations =
+                Flux.range(0, 100)
+                        .flatMap(
+                                i ->
+                                        lcClient.getSequenceAllocator()
+                                                .allocate("CONCURRENT_SEQ", 10, 1 + i % 7)
+                                                .subscribeOn(Schedulers.parallel()),
+                                100)
+                        .collectList()
+                        .block();
+
+        Assertions.assertNotNull(allocations);
+        Assertions.assertEquals(100, allocations.size());
+        Set<Long> distinct = new HashSet<>();
+        int count = 0;
+        for (long[] values : allocations) {
+            for (long value : values) {
+                Assertions.assertTrue(distinct.add(value), "Duplicate value " + value);
+                count++;
+            }
+        }
+        Assertions.assertEquals(count, distinct.size());
+    }
+
+    @Test
+    void entitiesTakeIdsFromBlocks() {
+        List<StatementEvent> events = new CopyOnWriteArrayList<>();
+        StatementListener listener =
+                new StatementListener() {
+                    @Override
+                    public void afterStatement(StatementEvent event) {
+                        events.add(event);
+                    }
+                };
+        List<PooledEntity> entities = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            entities.add(PooledEntity.builder().label("pooled" + i).build());
+        }
+        lcClient.addStatementListener(listener);
+        try {
+            lcClient.save(entities).then().block();
+        } finally {
+            lcClient.removeStatementListener(listener);
+        }
+
+        // 3 blocks of 10 values
+        Assertions.assertEquals(
+                3,
+                events.stream()
+                        .filter(event -> event.getKind() == StatementKind.SELECT)
+                        .filter(event -> event.getSql()
+                                .toLowerCase(Locale.ROOT)
+                                .contains("pooledseq"))
+                        .count());
+        Map<Long, String> stored =
+                SelectQuery.from(PooledEntity.class, "e")
+                        .execute(lcClient)
+                        .collectMap(PooledEntity::getId, PooledEntity::getLabel)
+                        .block();
+        Assertions.assertNotNull(stored);
+        Assertions.assertEquals(25, stored.size());
+        for (PooledEntity entity : entities) {
+            Assertions.assertEquals(entity.getLabel(), stored.get(entity.getId()));
+        }
+    }
+
+    @Test
+    void sequenceIsCreatedWithTheAllocationSize() {
+        RelationalDatabaseSchemaDialect dialect = lcClient.getSchemaDialect();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        dialect.createSchemaContent(lcClient.buildSchemaFromEntities())
+                .print(new PrintStream(out, true));
+        String statements = new String(out.toByteArray(), StandardCharsets.UTF_8);
+
+        Assertions.assertTrue(
+                statements.contains("CREATE SEQUENCE pooledSeq START WITH 1 INCREMENT BY 10"),
+                statements);
+
+        RelationalDatabaseSchema existing = dialect.readSchemaContent(lcClient).block();
+        Assertions.assertNotNull(existing);
+        Sequence sequence =
+                existing.getSequences().stream()
+                        .filter(s -> s.getName().equalsIgnoreCase("pooledSeq"))
+                        .findFirst()
+                        .orElseThrow(AssertionError::new);
+        Assertions.assertEquals(10, sequence.getIncrementBy());
+    }
+
+    @Test
+    void incrementNotMatchingTheAllocationSizeIsDetected() {
+        createSequence("MISMATCH_SEQ", 1);
+        RelationalDatabaseSchemaDialect dialect = lcClient.getSchemaDialect();
+        RelationalDatabaseSchema existing = dialect.readSchemaContent(lcClient).block();
+        Assertions.assertNotNull(existing);
+        RelationalDatabaseSchema schema = lcClient.buildSchemaFromEntities();
+        schema.add(new Sequence("MISMATCH_SEQ", 10));
+
+        SchemaException error =
+                Assertions.assertThrows(
+                        SchemaException.class, () -> dialect.updateSchemaContent(schema, existing));
+        Assertions.assertTrue(error.getMessage().contains("MISMATCH_SEQ"), error.getMessage());
+    }
+}
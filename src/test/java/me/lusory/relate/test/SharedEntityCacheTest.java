@@ -0,0 +1,130 @@
+package me.lusory.relate.test;
+
+import me.lusory.relate.LcReactiveDataRelationalClient;
+import me.lusory.relate.model.PropertiesSourceMap;
+import me.lusory.relate.model.SharedEntityCache;
+import me.lusory.relate.repository.LcR2dbcRepositoryFactoryBean;
+import me.lusory.relate.test.repo.ExampleEntityRepository;
+import me.lusory.relate.test.repo.model.ExampleEntity1;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+import org.springframework.data.relational.core.mapping.RelationalPersistentEntity;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@SpringBootTest(properties = {
+        "spring.r2dbc.url=r2dbc:h2:mem:///sharedcachetestdb;DB_CLOSE_DELAY=-1;",
+        "spring.r2dbc.username=sa"
+})
+@SpringBootApplication(scanBasePackages = "me.lusory.relate.test")
+@EnableR2dbcRepositories(repositoryFactoryBeanClass = LcR2dbcRepositoryFactoryBean.class)
+public class SharedEntityCacheTest {
+    @Autowired
+    private LcReactiveDataRelationalClient lcClient;
+
+    @Autowired
+    private ExampleEntityRepository exampleEntityRepository;
+
+    private void put(SharedEntityCache cache, long id, String test) {
+        RelationalPersistentEntity<?> entityType =
+                lcClient.getMappingContext().getRequiredPersistentEntity(ExampleEntity1.class);
+        Map<String, Object> values = new HashMap<>();
+        values.put("id", id);
+        values.put("test", test);
+        Map<String, String> aliases = new HashMap<>();
+        aliases.put("id", "id");
+        aliases.put("test", "test");
+        cache.put(entityType, id, new PropertiesSourceMap(values, aliases));
+    }
+
+    @Test
+    void leastRecentlyUsedEntityIsEvicted() {
+        SharedEntityCache cache = new SharedEntityCache();
+        cache.configure(ExampleEntity1.class, 2, Duration.ofMinutes(1));
+
+        put(cache, 1, "one");
+        put(cache, 2, "two");
+        // 1 becomes the most recently used
+        Assertions.assertNotNull(cache.get(ExampleEntity1.class, 1L));
+        put(cache, 3, "three");
+
+        Assertions.assertEquals(2, cache.size(ExampleEntity1.class));
+        Assertions.assertEquals(1, cache.getEvictionCount(ExampleEntity1.class));
+        Assertions.assertNull(cache.get(ExampleEntity1.class, 2L));
+        Assertions.assertNotNull(cache.get(ExampleEntity1.class, 1L));
+        Assertions.assertNotNull(cache.get(ExampleEntity1.class, 3L));
+        Assertions.assertEquals(3, cache.getHitCount(ExampleEntity1.class));
+        Assertions.assertEquals(1, cache.getMissCount(ExampleEntity1.class));
+    }
+
+    @Test
+    void expiredEntityIsNotUsed() throws InterruptedException {
+        SharedEntityCache cache = new SharedEntityCache();
+        cache.configure(ExampleEntity1.class, 10, Duration.ofMillis(1));
+
+        put(cache, 1, "one");
+        Thread.sleep(10);
+
+        Assertions.assertNull(cache.get(ExampleEntity1.class, 1L));
+        Assertions.assertEquals(0, cache.size(ExampleEntity1.class));
+    }
+
+    @Test
+    void invalidate() {
+        SharedEntityCache cache = new SharedEntityCache();
+        cache.configure(ExampleEntity1.class, 10, Duration.ofMinutes(1));
+
+        put(cache, 1, "one");
+        put(cache, 2, "two");
+        put(cache, 3, "three");
+        cache.invalidate(ExampleEntity1.class, 2L);
+        Assertions.assertNull(cache.get(ExampleEntity1.class, 2L));
+        Assertions.assertEquals(2, cache.size(ExampleEntity1.class));
+
+        cache.invalidate(ExampleEntity1.class);
+        Assertions.assertEquals(0, cache.size(ExampleEntity1.class));
+
+        put(cache, 4, "four");
+        cache.invalidateAll();
+        Assertions.assertNull(cache.get(ExampleEntity1.class, 4L));
+        Assertions.assertEquals(0, cache.getEvictionCount(ExampleEntity1.class));
+    }
+
+    @Test
+    void savedEntityIsInvalidated() {
+        SharedEntityCache cache = lcClient.getSharedCache();
+        cache.configure(ExampleEntity1.class, 10, Duration.ofMinutes(1));
+
+        ExampleEntity1 saved =
+                exampleEntityRepository
+                        .save(ExampleEntity1.builder().test("before").build())
+                        .block();
+        Assertions.assertNotNull(saved);
+        cache.invalidateAll();
+
+        // read from the database, then from the cache
+        ExampleEntity1 read = exampleEntityRepository.findById(saved.getId()).block();
+        Assertions.assertNotNull(read);
+        Assertions.assertEquals(1, cache.size(ExampleEntity1.class));
+        long hits = cache.getHitCount(ExampleEntity1.class);
+        Assertions.assertEquals(
+                "before", exampleEntityRepository.findById(saved.getId()).block().getTest());
+        Assertions.assertEquals(hits + 1, cache.getHitCount(ExampleEntity1.class));
+
+        read.setTest("after");
+        exampleEntityRepository.save(read).block();
+        Assertions.assertEquals(0, cache.size(ExampleEntity1.class));
+        Assertions.assertEquals(
+                "after", exampleEntityRepository.findById(saved.getId()).block().getTest());
+
+        exampleEntityRepository.delete(read).block();
+        Assertions.assertEquals(0, cache.size(ExampleEntity1.class));
+        Assertions.assertNull(exampleEntityRepository.findById(saved.getId()).block());
+    }
+}
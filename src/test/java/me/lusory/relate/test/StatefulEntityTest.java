@@ -0,0 +1,103 @@
+package me.lusory.relate.test;
+
+import me.lusory.relate.LcReactiveDataRelationalClient;
+import me.lusory.relate.model.EntityState;
+import me.lusory.relate.model.StatefulEntity;
+import me.lusory.relate.query.SelectQuery;
+import me.lusory.relate.query.criteria.Criteria;
+import me.lusory.relate.repository.LcR2dbcRepositoryFactoryBean;
+import me.lusory.relate.test.repo.model.PreSelectChild;
+import me.lusory.relate.test.repo.model.PreSelectParent;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+@SpringBootTest(properties = {
+        "spring.r2dbc.url=r2dbc:h2:mem:///statefulentitytestdb;DB_CLOSE_DELAY=-1;",
+        "spring.r2dbc.username=sa"
+})
+@SpringBootApplication(scanBasePackages = "me.lusory.relate.test")
+@EnableR2dbcRepositories(repositoryFactoryBeanClass = LcR2dbcRepositoryFactoryBean.class)
+public class StatefulEntityTest {
+    @Autowired
+    private LcReactiveDataRelationalClient lcClient;
+
+    private PreSelectChild saveAndLoadChild(String name) {
+        PreSelectParent parent = new PreSelectParent(1000);
+        parent.setChildren(new HashSet<>());
+        parent.getChildren().add(new PreSelectChild(name, parent));
+        lcClient.save(Collections.singletonList(parent)).then().block();
+
+        List<PreSelectChild> children =
+                SelectQuery.from(PreSelectChild.class, "child")
+                        .where(Criteria.property("child", "name").is(name))
+                        .execute(lcClient)
+                        .collectList()
+                        .block();
+        Assertions.assertNotNull(children);
+        Assertions.assertEquals(1, children.size());
+        return children.get(0);
+    }
+
+    @Test
+    void loadedEntityGivesDirectAccessToItsState() {
+        PreSelectChild child = saveAndLoadChild("accessor");
+
+        Assertions.assertTrue(child instanceof StatefulEntity);
+        EntityState state = ((StatefulEntity) child)._rlGetState();
+        Assertions.assertNotNull(state);
+        Assertions.assertSame(state, EntityState.get(child, lcClient));
+        Assertions.assertTrue(state.isLoaded());
+        Assertions.assertEquals("accessor", state.getPersistedValue("name"));
+
+        // setters are tracked through the same state
+        child.setName("accessor modified");
+        Assertions.assertTrue(state.isFieldModified("name"));
+        lcClient.save(Collections.singletonList(child)).then().block();
+        Assertions.assertFalse(state.isFieldModified("name"));
+        Assertions.assertEquals("accessor modified", state.getPersistedValue("name"));
+    }
+
+    @Test
+    void stateIsCreatedOnFirstAccess() {
+        PreSelectChild child = saveAndLoadChild("created");
+        StatefulEntity stateful = (StatefulEntity) child;
+
+        stateful._rlSetState(null);
+        Assertions.assertNull(stateful._rlGetState());
+
+        EntityState state =
+                EntityState.get(
+                        child,
+                        lcClient,
+                        lcClient.getMappingContext()
+                                .getRequiredPersistentEntity(PreSelectChild.class));
+        Assertions.assertNotNull(state);
+        Assertions.assertSame(state, stateful._rlGetState());
+        Assertions.assertSame(state, EntityState.get(child, lcClient));
+    }
+
+    @Test
+    void lazyForeignKeyIsLoadedThroughItsState() {
+        PreSelectChild child = saveAndLoadChild("lazy parent");
+        PreSelectParent parent = child.getParent();
+        Assertions.assertNotNull(parent);
+        Assertions.assertTrue(parent instanceof StatefulEntity);
+        EntityState parentState = ((StatefulEntity) parent)._rlGetState();
+        Assertions.assertNotNull(parentState);
+        Assertions.assertFalse(parentState.isLoaded());
+
+        PreSelectParent loaded = parentState.load(parent).block();
+
+        Assertions.assertSame(parent, loaded);
+        Assertions.assertTrue(parentState.isLoaded());
+        Assertions.assertEquals(1000, parent.getRank());
+    }
+}
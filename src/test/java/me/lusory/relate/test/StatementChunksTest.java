@@ -0,0 +1,174 @@
+package me.lusory.relate.test;
+
+import me.lusory.relate.LcReactiveDataRelationalClient;
+import me.lusory.relate.metrics.StatementEvent;
+import me.lusory.relate.metrics.StatementKind;
+import me.lusory.relate.metrics.StatementListener;
+import me.lusory.relate.query.SelectQuery;
+import me.lusory.relate.query.StatementChunks;
+import me.lusory.relate.query.criteria.Criteria;
+import me.lusory.relate.repository.LcR2dbcRepositoryFactoryBean;
+import me.lusory.relate.test.repo.model.ChunkChild;
+import me.lusory.relate.test.repo.model.ChunkParent;
+import me.lusory.relate.test.repo.model.PreSelectChild;
+import me.lusory.relate.test.repo.model.PreSelectParent;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+@SpringBootTest(properties = {
+        "spring.r2dbc.url=r2dbc:h2:mem:///statementchunkstestdb;DB_CLOSE_DELAY=-1;",
+        "spring.r2dbc.username=sa"
+})
+@SpringBootApplication(scanBasePackages = "me.lusory.relate.test")
+@EnableR2dbcRepositories(repositoryFactoryBeanClass = LcR2dbcRepositoryFactoryBean.class)
+public class StatementChunksTest {
+    private static final int NB_PARENTS = 1500;
+
+    @Autowired
+    private LcReactiveDataRelationalClient lcClient;
+
+    private List<StatementEvent> recordStatements(Runnable execution) {
+        List<StatementEvent> events = new CopyOnWriteArrayList<>();
+        StatementListener listener =
+                new StatementListener() {
+                    @Override
+                    public void afterStatement(StatementEvent event) {
+                        events.add(event);
+                    }
+                };
+        lcClient.addStatementListener(listener);
+        try {
+            execution.run();
+        } finally {
+            lcClient.removeStatementListener(listener);
+        }
+        return events;
+    }
+
+    private static List<StatementEvent> filter(
+            List<StatementEvent> events, StatementKind kind, Class<?> entityType) {
+        return events.stream()
+                .filter(event -> event.getKind() == kind && event.getEntityType() == entityType)
+                .collect(Collectors.toList());
+    }
+
+    private <T> List<T> load(SelectQuery<T> query) {
+        List<T> list = query.execute(lcClient).collectList().block();
+        Assertions.assertNotNull(list);
+        return list;
+    }
+
+    @Test
+    void evenSplit() {
+        List<Integer> elements = new ArrayList<>();
+        for (int i = 0; i < 1001; i++) {
+            elements.add(i);
+        }
+        List<List<Integer>> chunks = StatementChunks.splitEvenly(elements, 1000);
+        Assertions.assertEquals(2, chunks.size());
+        Assertions.assertEquals(501, chunks.get(0).size());
+        Assertions.assertEquals(500, chunks.get(1).size());
+        Assertions.assertEquals(1, StatementChunks.splitEvenly(elements, 1001).size());
+        Assertions.assertTrue(StatementChunks.splitEvenly(new ArrayList<>(), 10).isEmpty());
+    }
+
+    @Test
+    void foreignKeysAreSetToNullByChunks() {
+        List<PreSelectParent> parents = new ArrayList<>(NB_PARENTS);
+        for (int i = 0; i < NB_PARENTS; i++) {
+            PreSelectParent parent = new PreSelectParent(7000);
+            parent.setChildren(new HashSet<>());
+            parent.getChildren().add(new PreSelectChild("nulled" + i, parent));
+            parents.add(parent);
+        }
+        lcClient.save(parents).then().block();
+
+        // children are not loaded, so they are updated without loading them
+        List<PreSelectParent> loaded =
+                load(
+                        SelectQuery.from(PreSelectParent.class, "p")
+                                .where(Criteria.property("p", "rank").is(7000)));
+        Assertions.assertEquals(NB_PARENTS, loaded.size());
+        StatementChunks chunks = lcClient.getStatementChunks();
+        long chunksBefore = chunks.getChunkCount(StatementChunks.Kind.UPDATE);
+        List<StatementEvent> events =
+                recordStatements(() -> lcClient.delete(loaded).block());
+
+        Assertions.assertTrue(
+                chunks.getChunkCount(StatementChunks.Kind.UPDATE) - chunksBefore >= 2);
+        Assertions.assertTrue(
+                chunks.getMaxChunkSize(StatementChunks.Kind.UPDATE)
+                        < lcClient.getSchemaDialect().getMaxBindParameters());
+        List<StatementEvent> updates = filter(events, StatementKind.UPDATE, PreSelectChild.class);
+        Assertions.assertTrue(updates.size() >= 2);
+        long updatedRows = 0;
+        for (StatementEvent update : updates) {
+            Assertions.assertTrue(
+                    update.getBindCount() <= lcClient.getSchemaDialect().getMaxBindParameters());
+            updatedRows += update.getRows();
+        }
+        Assertions.assertEquals(NB_PARENTS, updatedRows);
+
+        List<PreSelectChild> children =
+                load(
+                        SelectQuery.from(PreSelectChild.class, "c")
+                                .where(Criteria.property("c", "name").like("nulled%")));
+        Assertions.assertEquals(NB_PARENTS, children.size());
+        for (PreSelectChild child : children) {
+            Assertions.assertNull(child.getParent());
+        }
+    }
+
+    @Test
+    void childrenAreDeletedWithoutLoadingByChunks() {
+        List<ChunkParent> parents = new ArrayList<>(NB_PARENTS);
+        for (int i = 0; i < NB_PARENTS; i++) {
+            ChunkParent parent = new ChunkParent("deleted");
+            parent.setChildren(
+                    new HashSet<>(
+                            Arrays.asList(
+                                    new ChunkChild("child" + i + "a", parent),
+                                    new ChunkChild("child" + i + "b", parent))));
+            parents.add(parent);
+        }
+        lcClient.save(parents).then().block();
+
+        List<ChunkParent> loaded =
+                load(
+                        SelectQuery.from(ChunkParent.class, "p")
+                                .where(Criteria.property("p", "name").is("deleted")));
+        Assertions.assertEquals(NB_PARENTS, loaded.size());
+        StatementChunks chunks = lcClient.getStatementChunks();
+        long chunksBefore = chunks.getChunkCount(StatementChunks.Kind.DELETE);
+        List<StatementEvent> events =
+                recordStatements(() -> lcClient.delete(loaded).block());
+
+        Assertions.assertTrue(
+                chunks.getChunkCount(StatementChunks.Kind.DELETE) - chunksBefore >= 2);
+        List<StatementEvent> deletes = filter(events, StatementKind.DELETE, ChunkChild.class);
+        Assertions.assertTrue(deletes.size() >= 2);
+        long deletedRows = 0;
+        for (StatementEvent delete : deletes) {
+            Assertions.assertTrue(
+                    delete.getBindCount() <= lcClient.getSchemaDialect().getMaxBindParameters());
+            deletedRows += delete.getRows();
+        }
+        Assertions.assertEquals(2L * NB_PARENTS, deletedRows);
+        // children were never selected
+        Assertions.assertTrue(filter(events, StatementKind.SELECT, ChunkChild.class).isEmpty());
+
+        Assertions.assertTrue(load(SelectQuery.from(ChunkChild.class, "c")).isEmpty());
+        Assertions.assertTrue(load(SelectQuery.from(ChunkParent.class, "p")).isEmpty());
+    }
+}
@@ -0,0 +1,83 @@
+package me.lusory.relate.test;
+
+import me.lusory.relate.LcReactiveDataRelationalClient;
+import me.lusory.relate.metrics.StatementEvent;
+import me.lusory.relate.metrics.StatementKind;
+import me.lusory.relate.metrics.StatementListener;
+import me.lusory.relate.query.SelectQuery;
+import me.lusory.relate.repository.LcR2dbcRepositoryFactoryBean;
+import me.lusory.relate.test.repo.model.ExampleEntity1;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+@SpringBootTest(properties = {
+        "spring.r2dbc.url=r2dbc:h2:mem:///statementlistenertestdb;DB_CLOSE_DELAY=-1;",
+        "spring.r2dbc.username=sa"
+})
+@SpringBootApplication(scanBasePackages = "me.lusory.relate.test")
+@EnableR2dbcRepositories(repositoryFactoryBeanClass = LcR2dbcRepositoryFactoryBean.class)
+public class StatementListenerTest {
+    @Autowired
+    private LcReactiveDataRelationalClient lcClient;
+
+    private final List<StatementEvent> events = new CopyOnWriteArrayList<>();
+    private final StatementListener listener =
+            new StatementListener() {
+                @Override
+                public void afterStatement(StatementEvent event) {
+                    events.add(event);
+                }
+            };
+
+    @BeforeEach
+    void addListener() {
+        lcClient.addStatementListener(listener);
+    }
+
+    @AfterEach
+    void removeListener() {
+        lcClient.removeStatementListener(listener);
+    }
+
+    @Test
+    void selectIsObserved() {
+        SelectQuery.from(ExampleEntity1.class, "e").execute(lcClient).collectList().block();
+
+        Assertions.assertEquals(1, events.size());
+        StatementEvent event = events.get(0);
+        Assertions.assertEquals(StatementKind.SELECT, event.getKind());
+        Assertions.assertEquals(ExampleEntity1.class, event.getEntityType());
+        Assertions.assertTrue(event.getSql().startsWith("SELECT"));
+        Assertions.assertTrue(event.isSuccess());
+    }
+
+    @Test
+    void sequenceAllocationIsObserved() {
+        lcClient.getSpringClient()
+                .sql("CREATE SEQUENCE OBSERVED_SEQ START WITH 1 INCREMENT BY 10")
+                .then()
+                .block();
+        events.clear();
+
+        long[] values =
+                lcClient.getSequenceAllocator().allocate("OBSERVED_SEQ", 10, 15).block();
+
+        Assertions.assertNotNull(values);
+        Assertions.assertEquals(15, values.length);
+        // two blocks of 10 values were needed
+        Assertions.assertEquals(2, events.size());
+        for (StatementEvent event : events) {
+            Assertions.assertEquals(StatementKind.SELECT, event.getKind());
+            Assertions.assertTrue(event.getSql().contains("OBSERVED_SEQ"));
+        }
+    }
+}
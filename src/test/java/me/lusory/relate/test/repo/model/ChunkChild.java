@@ -0,0 +1,28 @@
+package me.lusory.relate.test.repo.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import me.lusory.relate.annotations.ForeignKey;
+import me.lusory.relate.annotations.GeneratedValue;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@Table("chunkChild")
+public class ChunkChild {
+    @Id
+    @GeneratedValue
+    private Long id;
+    private String name;
+
+    @ForeignKey
+    private ChunkParent parent;
+
+    public ChunkChild(String name, ChunkParent parent) {
+        this.name = name;
+        this.parent = parent;
+    }
+}
@@ -0,0 +1,29 @@
+package me.lusory.relate.test.repo.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import me.lusory.relate.annotations.ForeignTable;
+import me.lusory.relate.annotations.GeneratedValue;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.util.Set;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@Table("chunkParent")
+public class ChunkParent {
+    @Id
+    @GeneratedValue
+    private Long id;
+    private String name;
+
+    @ForeignTable(joinKey = "parent")
+    private Set<ChunkChild> children;
+
+    public ChunkParent(String name) {
+        this.name = name;
+    }
+}
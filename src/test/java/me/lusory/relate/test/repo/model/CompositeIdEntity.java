@@ -0,0 +1,20 @@
+package me.lusory.relate.test.repo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import me.lusory.relate.annotations.CompositeId;
+import org.springframework.data.relational.core.mapping.Table;
+
+@Data
+@Builder
+@Table("compositeIdEntity")
+@CompositeId(indexName = "compositeIdKey", properties = {"key1", "key2"})
+@AllArgsConstructor
+@NoArgsConstructor
+public class CompositeIdEntity {
+    private String key1;
+    private int key2;
+    private String label;
+}
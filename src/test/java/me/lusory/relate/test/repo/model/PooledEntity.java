@@ -0,0 +1,24 @@
+package me.lusory.relate.test.repo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import me.lusory.relate.annotations.GeneratedValue;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+@Data
+@Builder
+@Table("pooledEntity")
+@AllArgsConstructor
+@NoArgsConstructor
+public class PooledEntity {
+    @Id
+    @GeneratedValue(
+            strategy = GeneratedValue.Strategy.SEQUENCE,
+            sequence = "pooledSeq",
+            allocationSize = 10)
+    private long id;
+    private String label;
+}
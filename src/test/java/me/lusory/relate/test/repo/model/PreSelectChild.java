@@ -0,0 +1,28 @@
+package me.lusory.relate.test.repo.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import me.lusory.relate.annotations.ForeignKey;
+import me.lusory.relate.annotations.GeneratedValue;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@Table("preSelectChild")
+public class PreSelectChild {
+    @Id
+    @GeneratedValue
+    private Long id;
+    private String name;
+
+    @ForeignKey(optional = true, onForeignDeleted = ForeignKey.OnForeignDeleted.SET_TO_NULL)
+    private PreSelectParent parent;
+
+    public PreSelectChild(String name, PreSelectParent parent) {
+        this.name = name;
+        this.parent = parent;
+    }
+}
@@ -0,0 +1,29 @@
+package me.lusory.relate.test.repo.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import me.lusory.relate.annotations.ForeignTable;
+import me.lusory.relate.annotations.GeneratedValue;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.util.Set;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@Table("preSelectParent")
+public class PreSelectParent {
+    @Id
+    @GeneratedValue
+    private Long id;
+    private int rank;
+
+    @ForeignTable(joinKey = "parent")
+    private Set<PreSelectChild> children;
+
+    public PreSelectParent(int rank) {
+        this.rank = rank;
+    }
+}
@@ -0,0 +1,23 @@
+package me.lusory.relate.test.repo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import me.lusory.relate.annotations.GeneratedValue;
+import me.lusory.relate.annotations.Index;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+@Data
+@Builder
+@Table("schemaUpdateEntity")
+@Index(name = "schemaUpdateLabel", properties = "label")
+@AllArgsConstructor
+@NoArgsConstructor
+public class SchemaUpdateEntity {
+    @Id
+    @GeneratedValue(strategy = GeneratedValue.Strategy.SEQUENCE, sequence = "schemaUpdateSeq")
+    private long id;
+    private String label;
+}
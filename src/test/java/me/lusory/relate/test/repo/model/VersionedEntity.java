@@ -0,0 +1,24 @@
+package me.lusory.relate.test.repo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import me.lusory.relate.annotations.GeneratedValue;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.relational.core.mapping.Table;
+
+@Data
+@Builder
+@Table("versionedEntity")
+@AllArgsConstructor
+@NoArgsConstructor
+public class VersionedEntity {
+    @Id
+    @GeneratedValue
+    private long id;
+    @Version
+    private long version;
+    private String label;
+}